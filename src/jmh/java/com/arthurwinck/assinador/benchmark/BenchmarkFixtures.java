@@ -0,0 +1,124 @@
+package com.arthurwinck.assinador.benchmark;
+
+import com.arthurwinck.assinador.dto.SigningInfo;
+import com.arthurwinck.assinador.service.SigningEngine;
+import org.bouncycastle.asn1.cms.CMSObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.CMSProcessableByteArray;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.SignerInfoGeneratorBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.util.CollectionStore;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+// Chaves e certificados gerados em memória, os benchmarks não dependem do .pfx de testes
+public final class BenchmarkFixtures {
+
+    static {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+    }
+
+    // Chaves comparadas nos benchmarks, cada uma com o algoritmo que SigningService.SignatureAlgorithm.forKey escolhe para ela
+    public enum KeyType {
+        RSA_2048("RSA", 2048, "SHA512WITHRSA"),
+        RSA_4096("RSA", 4096, "SHA512WITHRSA"),
+        EC_P256("EC", 256, "SHA256WITHECDSA"),
+        EC_P384("EC", 384, "SHA384WITHECDSA"),
+        ED25519("Ed25519", 256, "Ed25519");
+
+        private final String keyAlgorithm;
+        private final int keySize;
+        private final String signatureAlgorithm;
+
+        KeyType(String keyAlgorithm, int keySize, String signatureAlgorithm) {
+            this.keyAlgorithm = keyAlgorithm;
+            this.keySize = keySize;
+            this.signatureAlgorithm = signatureAlgorithm;
+        }
+
+        public String getSignatureAlgorithm() {
+            return this.signatureAlgorithm;
+        }
+    }
+
+    private BenchmarkFixtures() {}
+
+    public static SigningInfo createSigningInfo(KeyType keyType) throws Exception {
+        return BenchmarkFixtures.createSigningInfo(keyType.keyAlgorithm, keyType.keySize, keyType.signatureAlgorithm);
+    }
+
+    public static SigningInfo createSigningInfo(String keyAlgorithm, int keySize, String certificateSignatureAlgorithm) throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(keyAlgorithm, BouncyCastleProvider.PROVIDER_NAME);
+        keyPairGenerator.initialize(keySize);
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+
+        X500Name subject = new X500Name("CN=Benchmark " + keyAlgorithm + " " + keySize + ", O=Assinador, C=BR");
+        Date notBefore = new Date(System.currentTimeMillis() - 60_000);
+        Date notAfter = new Date(System.currentTimeMillis() + 365L * 24 * 60 * 60 * 1000);
+
+        X509CertificateHolder certificateHolder = new JcaX509v3CertificateBuilder(
+                subject, BigInteger.valueOf(System.nanoTime()), notBefore, notAfter, subject, keyPair.getPublic())
+                .build(new JcaContentSignerBuilder(certificateSignatureAlgorithm)
+                        .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                        .build(keyPair.getPrivate()));
+
+        X509Certificate certificate = new JcaX509CertificateConverter()
+                .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .getCertificate(certificateHolder);
+
+        SigningInfo signingInfo = new SigningInfo();
+        signingInfo.setPrivateKey(keyPair.getPrivate());
+        signingInfo.setX509Certificate(certificate);
+        signingInfo.setCertificateHolderList(List.of(certificateHolder));
+        signingInfo.setSigningAttached(true);
+
+        return signingInfo;
+    }
+
+    public static SigningInfo createRsaSigningInfo(int keySize) throws Exception {
+        return BenchmarkFixtures.createSigningInfo("RSA", keySize, "SHA256WITHRSA");
+    }
+
+    public static byte[] createContent(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    // Documento assinado por signerCount chaves diferentes do mesmo tipo, como um contrato co-assinado
+    public static CMSSignedData createSignedData(KeyType keyType, int signerCount, byte[] content) throws Exception {
+        SigningEngine signingEngine = new SigningEngine();
+        CMSSignedDataGenerator cmsSignedDataGenerator = new CMSSignedDataGenerator();
+        List<X509CertificateHolder> certificates = new ArrayList<>();
+
+        for (int i = 0; i < signerCount; i++) {
+            SigningInfo signingInfo = BenchmarkFixtures.createSigningInfo(keyType);
+            ContentSigner contentSigner = signingEngine.createContentSigner(keyType.signatureAlgorithm, signingInfo.getPrivateKey());
+
+            cmsSignedDataGenerator.addSignerInfoGenerator(new SignerInfoGeneratorBuilder(signingEngine.getDigestCalculatorProvider())
+                    .build(contentSigner, signingInfo.getCertificateHolderList().get(0)));
+            certificates.addAll(signingInfo.getCertificateHolderList());
+        }
+
+        cmsSignedDataGenerator.addCertificates(new CollectionStore<>(certificates));
+
+        return cmsSignedDataGenerator.generate(new CMSProcessableByteArray(CMSObjectIdentifiers.data, content), true);
+    }
+}
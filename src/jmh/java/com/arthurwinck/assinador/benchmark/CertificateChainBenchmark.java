@@ -0,0 +1,46 @@
+package com.arthurwinck.assinador.benchmark;
+
+import com.arthurwinck.assinador.service.SigningService;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.openjdk.jmh.annotations.*;
+
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Conversão da cadeia do KeyStore para X509CertificateHolder, feita a cada PKCS#12 carregado
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CertificateChainBenchmark {
+
+    // Cadeias ICP-Brasil costumam ter de 3 a 4 certificados (assinante, ACs intermediárias e raiz)
+    @Param({"1", "3", "5"})
+    private int chainLength;
+
+    @Param({"RSA_2048", "EC_P256"})
+    private BenchmarkFixtures.KeyType keyType;
+
+    private Certificate[] certificateChain;
+    private X509Certificate signerCertificate;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.certificateChain = new Certificate[this.chainLength];
+
+        for (int i = 0; i < this.chainLength; i++) {
+            this.certificateChain[i] = BenchmarkFixtures.createSigningInfo(this.keyType).getX509Certificate();
+        }
+
+        this.signerCertificate = (X509Certificate) this.certificateChain[0];
+    }
+
+    @Benchmark
+    public List<X509CertificateHolder> getBCCertificateChain() throws Exception {
+        return SigningService.getBCCertificateChain(this.certificateChain, this.signerCertificate);
+    }
+}
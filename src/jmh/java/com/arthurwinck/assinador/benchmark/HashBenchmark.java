@@ -0,0 +1,43 @@
+package com.arthurwinck.assinador.benchmark;
+
+import com.arthurwinck.assinador.service.HashService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+// Hash de documentos de 1 KB a 100 MB, em memória e em streaming (mesmo caminho do upload de arquivos).
+// SampleTime reporta os percentis de latência, -prof gc a alocação por operação
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HashBenchmark {
+
+    @Param({"1024", "65536", "1048576", "10485760", "104857600"})
+    private int contentSize;
+
+    @Param({"SHA256", "SHA512"})
+    private HashService.HashAlgorithm algorithm;
+
+    private byte[] content;
+    private HashService hashService;
+
+    @Setup
+    public void setUp() {
+        this.content = BenchmarkFixtures.createContent(this.contentSize);
+        this.hashService = new HashService();
+    }
+
+    @Benchmark
+    public String hashBytes() {
+        return this.hashService.generateHexEncodedHash(this.content, this.algorithm);
+    }
+
+    @Benchmark
+    public String hashStream() throws Exception {
+        return this.hashService.generateHexEncodedHash(new ByteArrayInputStream(this.content), this.algorithm);
+    }
+}
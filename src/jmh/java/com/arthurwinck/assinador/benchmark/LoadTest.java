@@ -0,0 +1,225 @@
+package com.arthurwinck.assinador.benchmark;
+
+import com.arthurwinck.assinador.AssinadorApplication;
+import com.arthurwinck.assinador.dto.SigningInfo;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Teste de carga do POST /signature (upload multipart do documento e do PKCS#12, assinatura e arquivamento)
+// comparando as requisições em threads de plataforma (pool do Tomcat) e em virtual threads. A aplicação
+// é iniciada em uma porta livre para cada modo, e os clientes simultâneos enviam as requisições até o total.
+//
+// Uso: LoadTest <modos> [-c clientes] [-n requisições] [-s tamanho do documento] [-t threads do Tomcat] [-k tipo de chave]
+// ex: LoadTest platform,virtual -c 400 -n 20000 -s 65536 -t 200 -k RSA_2048
+public final class LoadTest {
+
+    private static final String PASSWORD = "load-test";
+    private static final String BOUNDARY = "----assinador-load-test";
+
+    private record Result(String mode, int requests, int errors, long elapsedNanos, long[] latenciesNanos) {}
+
+    private LoadTest() {}
+
+    public static void main(String[] args) throws Exception {
+        List<String> modes = List.of(args.length > 0 ? args[0].split(",") : new String[] {"platform", "virtual"});
+        Map<String, String> options = LoadTest.parseOptions(args);
+
+        int concurrency = Integer.parseInt(options.getOrDefault("-c", "400"));
+        int requests = Integer.parseInt(options.getOrDefault("-n", "10000"));
+        int contentSize = Integer.parseInt(options.getOrDefault("-s", "65536"));
+        int tomcatThreads = Integer.parseInt(options.getOrDefault("-t", "200"));
+        BenchmarkFixtures.KeyType keyType = BenchmarkFixtures.KeyType.valueOf(options.getOrDefault("-k", "RSA_2048"));
+
+        byte[] body = LoadTest.createMultipartBody(BenchmarkFixtures.createContent(contentSize), LoadTest.createPkcs12(keyType));
+        List<Result> results = new ArrayList<>();
+
+        for (String mode : modes) {
+            boolean virtual = "virtual".equals(mode);
+
+            if (virtual && Runtime.version().feature() < 21) {
+                System.out.println("Virtual threads exigem Java 21 (build com -Pjava21), modo ignorado: " + mode);
+                continue;
+            }
+
+            results.add(LoadTest.run(mode, virtual, body, concurrency, requests, tomcatThreads));
+        }
+
+        System.out.printf("%nclientes=%d requisições=%d documento=%d bytes threads do Tomcat=%d chave=%s%n",
+                concurrency, requests, contentSize, tomcatThreads, keyType);
+        System.out.printf("%-10s %10s %8s %10s %10s %10s %10s%n", "modo", "req/s", "erros", "p50 ms", "p90 ms", "p99 ms", "máx ms");
+
+        for (Result result : results) {
+            long[] latencies = result.latenciesNanos();
+            Arrays.sort(latencies);
+
+            System.out.printf("%-10s %10.1f %8d %10.2f %10.2f %10.2f %10.2f%n",
+                    result.mode(),
+                    result.requests() / (result.elapsedNanos() / 1e9),
+                    result.errors(),
+                    LoadTest.percentile(latencies, 0.50),
+                    LoadTest.percentile(latencies, 0.90),
+                    LoadTest.percentile(latencies, 0.99),
+                    latencies.length > 0 ? latencies[latencies.length - 1] / 1e6 : 0);
+        }
+    }
+
+    private static Result run(String mode, boolean virtual, byte[] body, int concurrency, int requests, int tomcatThreads) throws Exception {
+        Path archiveDirectory = Files.createTempDirectory("assinador-load-test");
+
+        SpringApplication application = new SpringApplication(AssinadorApplication.class);
+        application.setDefaultProperties(Map.of(
+                "server.port", "0",
+                "server.tomcat.threads.max", String.valueOf(tomcatThreads),
+                "spring.threads.virtual.enabled", String.valueOf(virtual),
+                "signing.crypto-executor.enabled", String.valueOf(virtual),
+                "signing.archive.directory", archiveDirectory.toString(),
+                "logging.level.root", "WARN"
+        ));
+
+        ExecutorService httpExecutor = Executors.newFixedThreadPool(concurrency);
+
+        try (ConfigurableApplicationContext context = application.run()) {
+            URI uri = URI.create("http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/signature");
+
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(httpExecutor)
+                    .build();
+
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .header("X-password", PASSWORD)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+
+            System.out.println("Aquecimento: " + mode);
+            LoadTest.send(httpClient, request, concurrency, Math.min(requests / 10, 2000), new long[0]);
+
+            System.out.println("Medição: " + mode);
+            long[] latencies = new long[requests];
+            long start = System.nanoTime();
+            int errors = LoadTest.send(httpClient, request, concurrency, requests, latencies);
+
+            return new Result(mode, requests, errors, System.nanoTime() - start, latencies);
+        } finally {
+            httpExecutor.shutdownNow();
+            LoadTest.deleteDirectory(archiveDirectory);
+        }
+    }
+
+    // Cada cliente envia uma requisição por vez e aguarda a resposta, como um usuário do serviço
+    private static int send(HttpClient httpClient, HttpRequest request, int concurrency, int requests, long[] latencies) throws InterruptedException {
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+
+        for (int client = 0; client < concurrency; client++) {
+            clients.execute(() -> {
+                int index;
+                while ((index = next.getAndIncrement()) < requests) {
+                    long start = System.nanoTime();
+
+                    try {
+                        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+
+                        if (response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (IOException e) {
+                        errors.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+
+                    if (index < latencies.length) {
+                        latencies[index] = System.nanoTime() - start;
+                    }
+                }
+            });
+        }
+
+        clients.shutdown();
+        clients.awaitTermination(1, TimeUnit.HOURS);
+
+        return errors.get();
+    }
+
+    private static byte[] createPkcs12(BenchmarkFixtures.KeyType keyType) throws Exception {
+        SigningInfo signingInfo = BenchmarkFixtures.createSigningInfo(keyType);
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("load-test", signingInfo.getPrivateKey(), PASSWORD.toCharArray(),
+                new Certificate[] {signingInfo.getX509Certificate()});
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        keyStore.store(outputStream, PASSWORD.toCharArray());
+
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] createMultipartBody(byte[] content, byte[] pkcs12) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        LoadTest.writePart(outputStream, "file", "documento.bin", content);
+        LoadTest.writePart(outputStream, "pkcs12", "certificado.pfx", pkcs12);
+        outputStream.write(("--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+
+        return outputStream.toByteArray();
+    }
+
+    private static void writePart(ByteArrayOutputStream outputStream, String name, String filename, byte[] content) throws IOException {
+        String header = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n";
+
+        outputStream.write(header.getBytes(StandardCharsets.US_ASCII));
+        outputStream.write(content);
+        outputStream.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            options.put(args[i], args[i + 1]);
+        }
+
+        return options;
+    }
+
+    private static double percentile(long[] sortedLatencies, double percentile) {
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+
+        int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(index, 0)] / 1e6;
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (var files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.arthurwinck.assinador.benchmark;
+
+import com.arthurwinck.assinador.dto.SigningInfo;
+import com.arthurwinck.assinador.service.RegisteredSigningKey;
+import com.arthurwinck.assinador.service.SigningEngine;
+import org.bouncycastle.asn1.cms.CMSObjectIdentifiers;
+import org.bouncycastle.cms.*;
+import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.util.CollectionStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Compara a montagem de todas as estruturas por assinatura (implementação anterior) com o SigningEngine,
+// para cada tipo de chave e tamanho de documento. SampleTime reporta os percentis de latência (p50, p99...)
+// Executar com -prof gc para obter a alocação por operação (gc.alloc.rate.norm).
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SigningBenchmark {
+
+    @Param({"1024", "1048576", "104857600"})
+    private int contentSize;
+
+    @Param({"RSA_2048", "RSA_4096", "EC_P256", "EC_P384", "ED25519"})
+    private BenchmarkFixtures.KeyType keyType;
+
+    private byte[] content;
+    private SigningInfo signingInfo;
+    private SigningEngine signingEngine;
+    private RegisteredSigningKey registeredKey;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.content = BenchmarkFixtures.createContent(this.contentSize);
+        this.signingInfo = BenchmarkFixtures.createSigningInfo(this.keyType);
+        this.signingEngine = new SigningEngine();
+        this.registeredKey = new RegisteredSigningKey("benchmark", this.signingInfo, this.signingEngine);
+    }
+
+    // Implementação anterior de SigningService.sign: builders e lookups de provider a cada chamada
+    @Benchmark
+    public CMSSignedData legacySign() throws Exception {
+        ContentSigner contentSigner = new JcaContentSignerBuilder(this.keyType.getSignatureAlgorithm())
+                .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .build(this.signingInfo.getPrivateKey());
+
+        DigestCalculatorProvider digestCalcProvider = new JcaDigestCalculatorProviderBuilder()
+                .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .build();
+
+        SignerInfoGenerator signerInfoGenerator = new JcaSignerInfoGeneratorBuilder(digestCalcProvider)
+                .build(contentSigner, this.signingInfo.getX509Certificate());
+
+        CMSSignedDataGenerator cmsSignedDataGenerator = new CMSSignedDataGenerator();
+        cmsSignedDataGenerator.addSignerInfoGenerator(signerInfoGenerator);
+        cmsSignedDataGenerator.addCertificates(new CollectionStore<>(this.signingInfo.getCertificateHolderList()));
+
+        return cmsSignedDataGenerator.generate(new CMSProcessableByteArray(CMSObjectIdentifiers.data, this.content), true);
+    }
+
+    // Mesmo caminho de SigningService.sign (estruturas do engine, SignerInfoGenerator montado por chamada),
+    // com o algoritmo escolhido pelo tipo da chave
+    @Benchmark
+    public CMSSignedData engineSign() throws Exception {
+        return this.signingEngine.sign(this.content, this.signingInfo);
+    }
+
+    // Chave registrada: mesmo caminho de SigningService.signAttached por keyId, com o SignerInfoGenerator
+    // emprestado do pool da RegisteredSigningKey e devolvido ao final (com -t N as threads disputam o pool)
+    @Benchmark
+    public CMSSignedData registeredKeySign() throws Exception {
+        return this.registeredKey.withSignerInfoGenerator(this.registeredKey.getSignatureAlgorithm(), signerInfoGenerator ->
+                SigningEngine.generate(this.content, signerInfoGenerator, this.registeredKey.getCertificateStore(), true));
+    }
+}
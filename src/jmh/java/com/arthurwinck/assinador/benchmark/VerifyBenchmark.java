@@ -0,0 +1,80 @@
+package com.arthurwinck.assinador.benchmark;
+
+import com.arthurwinck.assinador.dto.VerifyOptions;
+import com.arthurwinck.assinador.dto.VerifyResponse;
+import com.arthurwinck.assinador.service.*;
+import org.bouncycastle.cms.CMSSignedData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Verificação de documentos com 1 a 16 assinantes, por tipo de chave e tamanho de documento. O cache de
+// resultados fica desabilitado (cada operação verifica de fato); o de verificadores por certificado não,
+// como em produção. SampleTime reporta os percentis de latência, -prof gc a alocação por operação
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class VerifyBenchmark {
+
+    @Param({"1024", "1048576", "104857600"})
+    private int contentSize;
+
+    @Param({"RSA_2048", "RSA_4096", "EC_P256", "ED25519"})
+    private BenchmarkFixtures.KeyType keyType;
+
+    @Param({"1", "4", "16"})
+    private int signerCount;
+
+    private CMSSignedData signedData;
+    private byte[] encodedSignedData;
+    private ExecutorService signerVerifyExecutor;
+    private VerifyService verifyService;
+    private VerifyOptions options;
+
+    @Setup
+    public void setUp() throws Exception {
+        this.signedData = BenchmarkFixtures.createSignedData(this.keyType, this.signerCount, BenchmarkFixtures.createContent(this.contentSize));
+        this.encodedSignedData = this.signedData.getEncoded();
+
+        this.signerVerifyExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        SignerVerifierCache verifierCache = new SignerVerifierCache(true, 4096);
+        CertificateChainValidator chainValidator = new CertificateChainValidator("", 0, 0, 0);
+
+        this.verifyService = new VerifyService(
+                verifierCache,
+                new VerifyResultCache(false, 0, 0, 0),
+                this.signerVerifyExecutor,
+                2,
+                CryptoExecutor.direct(),
+                chainValidator,
+                false,
+                new CrlStore(false, false, "", 0),
+                new TimestampValidator(verifierCache, chainValidator, null, ""),
+                false,
+                PipelineMetrics.disabled());
+
+        // Conteúdo original fora da resposta: mede a verificação, não a codificação em hex
+        this.options = VerifyOptions.of(false, 0, VerifyOptions.VerifyPolicy.ALL);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.signerVerifyExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public VerifyResponse verifySignature() throws Exception {
+        return this.verifyService.verifySignature(this.signedData, this.options);
+    }
+
+    // Inclui o parse do arquivo recebido, como no endpoint /verify
+    @Benchmark
+    public VerifyResponse verifyEncoded() throws Exception {
+        return this.verifyService.verify(this.encodedSignedData, this.options);
+    }
+}
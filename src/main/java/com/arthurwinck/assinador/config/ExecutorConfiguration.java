@@ -0,0 +1,69 @@
+package com.arthurwinck.assinador.config;
+
+import com.arthurwinck.assinador.service.CryptoExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Slf4j
+@Configuration
+public class ExecutorConfiguration {
+
+    public final static String BATCH_EXECUTOR = "batchExecutor";
+    public final static String SIGNER_VERIFY_EXECUTOR = "signerVerifyExecutor";
+    public final static String CRYPTO_EXECUTOR = "cryptoWorkerExecutor";
+
+    // Assinatura/verificação em lote é limitada por CPU, um pool do tamanho do número de núcleos basta
+    @Bean(name = BATCH_EXECUTOR, destroyMethod = "shutdown")
+    public ExecutorService batchExecutor(@Value("${batch.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return Executors.newFixedThreadPool(threads, ExecutorConfiguration.namedThreadFactory("batch-worker"));
+    }
+
+    // Assinantes de um mesmo documento verificados em paralelo. Pool separado do lote: uma verificação
+    // em lote que aguardasse tarefas no próprio pool poderia ocupar todas as threads e travar
+    @Bean(name = SIGNER_VERIFY_EXECUTOR, destroyMethod = "shutdown")
+    public ExecutorService signerVerifyExecutor(@Value("${verify.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return Executors.newFixedThreadPool(threads, ExecutorConfiguration.namedThreadFactory("signer-verify"));
+    }
+
+    // Operações de chave privada (RSA) executadas em threads de plataforma quando as requisições rodam em
+    // virtual threads: o cálculo não libera a thread carregadora, um pool limitado aos núcleos impede que
+    // várias assinaturas simultâneas ocupem todas as carregadoras e travem a leitura/escrita das requisições
+    @Bean(name = CRYPTO_EXECUTOR, destroyMethod = "shutdown")
+    public ExecutorService cryptoWorkerExecutor(@Value("${signing.crypto-executor.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return Executors.newFixedThreadPool(threads, ExecutorConfiguration.namedThreadFactory("crypto-worker"));
+    }
+
+    // Somente com virtual threads disponíveis (Java 21+). No Java 17 spring.threads.virtual.enabled é ignorado,
+    // as requisições continuam no pool do Tomcat e o pool de criptografia só acrescentaria uma troca de thread
+    @Bean
+    public CryptoExecutor cryptoExecutor(@Qualifier(CRYPTO_EXECUTOR) ExecutorService cryptoWorkerExecutor,
+                                         @Value("${signing.crypto-executor.enabled:false}") boolean enabled) {
+        if (enabled && Runtime.version().feature() < 21) {
+            log.warn("signing.crypto-executor.enabled ignorado: virtual threads exigem Java 21, executando em Java {}", Runtime.version().feature());
+            enabled = false;
+        }
+
+        return new CryptoExecutor(cryptoWorkerExecutor, enabled);
+    }
+
+    public static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
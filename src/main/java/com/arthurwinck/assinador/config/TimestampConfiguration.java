@@ -0,0 +1,55 @@
+package com.arthurwinck.assinador.config;
+
+import com.arthurwinck.assinador.service.HttpTimestampAuthority;
+import com.arthurwinck.assinador.service.LocalTimestampAuthority;
+import com.arthurwinck.assinador.service.TimestampAuthority;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.tsp.TSPException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Slf4j
+@Configuration
+public class TimestampConfiguration {
+
+    // Com URL configurada usa a TSA remota (HTTP). Sem URL, a TSA local com a chave do PKCS#12 informado.
+    // Uma chave gerada na inicialização (descartada ao reiniciar, carimbos sem valor fora do processo) exige
+    // signing.timestamp.local-authority=true, sem isso o carimbo habilitado sem TSA impede a inicialização
+    @Bean
+    public TimestampAuthority timestampAuthority(@Value("${signing.timestamp.enabled:false}") boolean enabled,
+                                                 @Value("${signing.timestamp.tsa-url:}") String tsaUrl,
+                                                 @Value("${signing.timestamp.timeout-ms:10000}") long timeoutMillis,
+                                                 @Value("${signing.timestamp.local.pkcs12:}") String localPkcs12,
+                                                 @Value("${signing.timestamp.local.password:}") String localPassword,
+                                                 @Value("${signing.timestamp.local-authority:false}") boolean generatedLocalAuthority) throws Exception {
+        if (!tsaUrl.isBlank()) {
+            return new HttpTimestampAuthority(URI.create(tsaUrl), Duration.ofMillis(timeoutMillis));
+        }
+
+        if (!localPkcs12.isBlank()) {
+            return LocalTimestampAuthority.fromPkcs12(Files.readAllBytes(Path.of(localPkcs12)), localPassword);
+        }
+
+        if (generatedLocalAuthority) {
+            log.warn("Carimbo do tempo com TSA local de chave gerada na inicialização (signing.timestamp.local-authority=true): "
+                    + "os carimbos só são confiáveis para este processo, use somente em testes");
+            return LocalTimestampAuthority.generate();
+        }
+
+        if (enabled) {
+            throw new IllegalStateException("Carimbo do tempo habilitado sem TSA: configure TSA_URL ou TSA_PKCS12, "
+                    + "ou signing.timestamp.local-authority=true para uma TSA local de teste");
+        }
+
+        // Carimbo desabilitado: nenhuma chave é gerada e nenhum certificado de TSA local é aceito na verificação
+        return (digestAlgorithm, digest) -> {
+            throw new TSPException("Nenhuma TSA configurada");
+        };
+    }
+}
@@ -0,0 +1,15 @@
+package com.arthurwinck.assinador.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchSignResult {
+    private int index;
+    private String filename;
+    private String signature;
+    private String error;
+}
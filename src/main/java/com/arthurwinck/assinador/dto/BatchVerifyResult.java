@@ -0,0 +1,15 @@
+package com.arthurwinck.assinador.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchVerifyResult {
+    private int index;
+    private String filename;
+    private VerifyResponse response;
+    private String error;
+}
@@ -0,0 +1,18 @@
+package com.arthurwinck.assinador.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+// Última linha da resposta em lote, com totais e vazão do processamento
+@Getter
+@Setter
+public class BatchVerifySummary {
+    private long files;
+    private long valid;
+    private long invalid;
+    private long errors;
+    private long bytes;
+    private long elapsedMillis;
+    private double filesPerSecond;
+    private double megabytesPerSecond;
+}
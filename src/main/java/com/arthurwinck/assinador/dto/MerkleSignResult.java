@@ -0,0 +1,30 @@
+package com.arthurwinck.assinador.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+// Assinatura única sobre a raiz da árvore de Merkle do lote e a prova de inclusão de cada documento
+@Getter
+@Setter
+public class MerkleSignResult {
+
+    @Getter
+    @Setter
+    public static class DocumentProof {
+        private int index;
+        private String filename;
+        // Hash do documento (hex), a folha da árvore
+        private String hash;
+        // MerkleTree.InclusionProof em DER, codificada em Base64, enviada junto com o documento na verificação
+        private String proof;
+    }
+
+    // CMS attached (Base64) cujo conteúdo é a raiz assinada do lote
+    private String signature;
+    private String hashAlgorithm;
+    private int treeSize;
+    private String root;
+    private List<DocumentProof> documents;
+}
@@ -0,0 +1,43 @@
+package com.arthurwinck.assinador.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+// Resultado da verificação de um assinante do documento, na ordem em que aparecem nos signerInfos
+@Getter
+@Setter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SignerResult {
+
+    public enum RevocationStatusEnum {
+        NAO_REVOGADO,
+        REVOGADO,
+        // Nenhuma LCR vigente do emissor do certificado
+        DESCONHECIDO
+    }
+
+    private int index;
+    // Nulo quando o assinante não chegou a ser verificado (política FAIL_FAST)
+    private VerifyResponse.VerifyResponseStatusEnum status;
+    private String subject;
+    private String issuer;
+    private String signingTime;
+    private String encapContentInfoHash;
+    private String digestAlgorithm;
+    // Ex: SHA512WITHRSA, SHA256WITHECDSA, SHA256WITHRSAANDMGF1 (RSA-PSS), ED25519
+    private String signatureAlgorithm;
+    // Nulo quando a cadeia de certificação não foi validada
+    private Boolean chainValid;
+    // Nulo quando a consulta às LCRs está desabilitada
+    private RevocationStatusEnum revocationStatus;
+    // Data do carimbo do tempo (RFC 3161) e subject da TSA, nulos quando a assinatura não tem carimbo
+    private String timestampTime;
+    private String timestampAuthority;
+    private Boolean timestampValid;
+    // Contra-assinaturas deste assinante, nulo quando não há
+    private List<SignerResult> counterSigners;
+    private String error;
+}
@@ -0,0 +1,44 @@
+package com.arthurwinck.assinador.dto;
+
+import lombok.Getter;
+import lombok.Setter;
+
+// Opções da verificação, recebidas como parâmetros da requisição
+@Getter
+@Setter
+public class VerifyOptions {
+
+    public enum VerifyPolicy {
+        // Interrompe no primeiro assinante inválido, os demais não são verificados
+        FAIL_FAST,
+        // Verifica todos os assinantes e devolve o resultado de cada um
+        ALL
+    }
+
+    // Devolve o conteúdo assinado (em hex) na resposta
+    private boolean includeOriginalData = true;
+    // Limita quantos bytes do conteúdo assinado são devolvidos, 0 = sem limite
+    private long maxOriginalDataBytes;
+    private VerifyPolicy policy = VerifyPolicy.FAIL_FAST;
+    // Valida a cadeia de certificação dos assinantes, null = padrão configurado (verify.chain.enabled)
+    private Boolean validateChain;
+
+    public static VerifyOptions of(boolean includeOriginalData, long maxOriginalDataBytes) {
+        VerifyOptions options = new VerifyOptions();
+        options.setIncludeOriginalData(includeOriginalData);
+        options.setMaxOriginalDataBytes(maxOriginalDataBytes);
+        return options;
+    }
+
+    public static VerifyOptions of(boolean includeOriginalData, long maxOriginalDataBytes, VerifyPolicy policy) {
+        VerifyOptions options = VerifyOptions.of(includeOriginalData, maxOriginalDataBytes);
+        options.setPolicy(policy);
+        return options;
+    }
+
+    public static VerifyOptions of(boolean includeOriginalData, long maxOriginalDataBytes, VerifyPolicy policy, Boolean validateChain) {
+        VerifyOptions options = VerifyOptions.of(includeOriginalData, maxOriginalDataBytes, policy);
+        options.setValidateChain(validateChain);
+        return options;
+    }
+}
@@ -1,9 +1,11 @@
 package com.arthurwinck.assinador.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.util.Date;
+import java.util.List;
 
 @Getter
 @Setter
@@ -22,10 +24,25 @@ public class VerifyResponse {
     }
 
     private String originalData;
+    // Verdadeiro quando originalData contém somente o início do conteúdo assinado (maxOriginalDataBytes)
+    private Boolean originalDataTruncated;
     private String error;
     private VerifyResponseStatusEnum status;
     private String CNSignerName;
     private String signinTimeDate;
     private String encapContentInfoHash;
     private String digestAlgorithm;
+    // Resultado de cada assinante, os campos acima concatenam os valores de todos os assinantes válidos
+    private List<SignerResult> signers;
+    // Somente na verificação de documento de lote assinado pela raiz da árvore de Merkle
+    private String documentHash;
+    private Boolean inclusionProofValid;
+
+    // Fim da validade mais próximo entre os certificados dos assinantes, usado somente internamente (cache)
+    @JsonIgnore
+    private Date certificatesNotAfter;
+
+    // Próxima atualização mais próxima entre as LCRs consultadas para os assinantes, usado somente internamente (cache)
+    @JsonIgnore
+    private Date crlNextUpdate;
 }
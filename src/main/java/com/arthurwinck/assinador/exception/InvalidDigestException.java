@@ -0,0 +1,14 @@
+package com.arthurwinck.assinador.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class InvalidDigestException extends SigningValidationException {
+    public InvalidDigestException(String message, Throwable cause) {
+        super(HttpStatus.BAD_REQUEST, message, cause);
+    }
+
+    public InvalidDigestException(String message) {
+        super(message);
+        this.httpStatus = HttpStatus.BAD_REQUEST;
+    }
+}
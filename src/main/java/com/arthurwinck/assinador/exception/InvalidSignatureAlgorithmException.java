@@ -0,0 +1,10 @@
+package com.arthurwinck.assinador.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class InvalidSignatureAlgorithmException extends SigningValidationException {
+    public InvalidSignatureAlgorithmException(String message) {
+        super(message);
+        this.httpStatus = HttpStatus.BAD_REQUEST;
+    }
+}
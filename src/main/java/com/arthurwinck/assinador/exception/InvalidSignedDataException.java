@@ -0,0 +1,14 @@
+package com.arthurwinck.assinador.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class InvalidSignedDataException extends SigningValidationException {
+    public InvalidSignedDataException(String message, Throwable cause) {
+        super(HttpStatus.BAD_REQUEST, message, cause);
+    }
+
+    public InvalidSignedDataException(String message) {
+        super(message);
+        this.httpStatus = HttpStatus.BAD_REQUEST;
+    }
+}
@@ -0,0 +1,11 @@
+package com.arthurwinck.assinador.exception;
+
+import org.springframework.http.HttpStatus;
+
+// keyId já registrado: a troca da chave precisa ser pedida explicitamente (replace)
+public class SigningKeyConflictException extends SigningValidationException {
+    public SigningKeyConflictException(String message) {
+        super(message);
+        this.httpStatus = HttpStatus.CONFLICT;
+    }
+}
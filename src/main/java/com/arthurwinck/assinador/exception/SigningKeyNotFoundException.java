@@ -0,0 +1,14 @@
+package com.arthurwinck.assinador.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class SigningKeyNotFoundException extends SigningValidationException {
+    public SigningKeyNotFoundException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public SigningKeyNotFoundException(String message) {
+        super(message);
+        this.httpStatus = HttpStatus.NOT_FOUND;
+    }
+}
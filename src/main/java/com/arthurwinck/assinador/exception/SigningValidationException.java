@@ -16,6 +16,8 @@ import java.util.Map;
 @Getter
 public class SigningValidationException extends Exception {
     protected HttpStatus httpStatus;
+    // Preenchido quando a exceção vem de from(), nulo para as exceções específicas (subclasses)
+    protected ErrorType errorType;
 
     public SigningValidationException(HttpStatus status, String message, Throwable cause) {
         super(message, cause);
@@ -70,6 +72,8 @@ public class SigningValidationException extends Exception {
             type = ErrorType.GENERIC_EXCEPTION;
         }
 
-        return new SigningValidationException(type.getStatus(), type.getMessage(), cause);
+        SigningValidationException exception = new SigningValidationException(type.getStatus(), type.getMessage(), cause);
+        exception.errorType = type;
+        return exception;
     }
 }
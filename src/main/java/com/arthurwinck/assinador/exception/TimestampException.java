@@ -0,0 +1,11 @@
+package com.arthurwinck.assinador.exception;
+
+import org.springframework.http.HttpStatus;
+
+// TSA indisponível ou resposta inválida: a assinatura foi gerada, mas não pode ser devolvida sem o carimbo do tempo
+public class TimestampException extends SigningValidationException {
+    public TimestampException(String message, Throwable cause) {
+        super(message, cause);
+        this.httpStatus = HttpStatus.BAD_GATEWAY;
+    }
+}
@@ -8,6 +8,8 @@ import java.util.Map;
 @Getter
 public class VerifyValidationException extends Exception {
     protected HttpStatus httpStatus;
+    // Preenchido quando a exceção vem de from(), nulo para as exceções específicas (subclasses)
+    protected ErrorType errorType;
 
     public VerifyValidationException(HttpStatus httpStatus, String message, Throwable cause) {
         super(message, cause);
@@ -50,6 +52,8 @@ public class VerifyValidationException extends Exception {
             type = VerifyValidationException.ErrorType.GENERIC_EXCEPTION;
         }
 
-        return new VerifyValidationException(type.getStatus(), type.getMessage(), cause);
+        VerifyValidationException exception = new VerifyValidationException(type.getStatus(), type.getMessage(), cause);
+        exception.errorType = type;
+        return exception;
     }
 }
@@ -7,6 +7,9 @@ import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 @RestController
 @RequestMapping("/hash")
 public class HashResource {
@@ -19,14 +22,24 @@ public class HashResource {
     }
 
     @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-    public String generateHash(@RequestBody TextPayload textPayload) {
+    public String generateHash(@RequestBody TextPayload textPayload,
+                               @RequestParam(defaultValue = "SHA256") HashService.HashAlgorithm algorithm) {
         // Criar validações para payload
-        return this.hashService.generateHexEncodedHash(textPayload.getText());
+        return this.hashService.generateHexEncodedHash(textPayload.getText(), algorithm);
     }
 
     @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public String generateHashUpload(@RequestParam MultipartFile file) throws Exception {
-        String fileContent = new String(file.getBytes());
-        return this.hashService.generateHexEncodedHash(fileContent);
+    public String generateHashUpload(@RequestParam MultipartFile file,
+                                     @RequestParam(defaultValue = "SHA256") HashService.HashAlgorithm algorithm) throws IOException {
+        try (InputStream inputStream = file.getInputStream()) {
+            return this.hashService.generateHexEncodedHash(inputStream, algorithm);
+        }
+    }
+
+    // Corpo da requisição é o próprio arquivo, sem o overhead do multipart
+    @PostMapping(value = "/upload", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public String generateHashStream(InputStream body,
+                                     @RequestParam(defaultValue = "SHA256") HashService.HashAlgorithm algorithm) throws IOException {
+        return this.hashService.generateHexEncodedHash(body, algorithm);
     }
-}
\ No newline at end of file
+}
@@ -1,16 +1,34 @@
 package com.arthurwinck.assinador.resource;
 
+import com.arthurwinck.assinador.dto.MerkleSignResult;
+import com.arthurwinck.assinador.dto.SigningInfo;
 import com.arthurwinck.assinador.exception.SigningValidationException;
 import com.arthurwinck.assinador.exception.VerifyValidationException;
+import com.arthurwinck.assinador.service.BatchSigningService;
+import com.arthurwinck.assinador.service.HashService;
+import com.arthurwinck.assinador.service.MappedFile;
+import com.arthurwinck.assinador.service.MappedUploadService;
+import com.arthurwinck.assinador.service.MerkleSigningService;
+import com.arthurwinck.assinador.service.RegisteredSigningKey;
+import com.arthurwinck.assinador.service.SignedDataAppender;
+import com.arthurwinck.assinador.service.SigningKeyRegistry;
 import com.arthurwinck.assinador.service.SigningService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import static com.arthurwinck.assinador.exception.SigningValidationException.ErrorType.CERTIFICATE_EXCEPTION;
 
@@ -18,34 +36,406 @@ import static com.arthurwinck.assinador.exception.SigningValidationException.Err
 @RequestMapping("/signature")
 public class SigningResource {
 
+    private static final MediaType PKCS7_MIME = MediaType.parseMediaType("application/pkcs7-mime");
+    private static final MediaType PKCS7_SIGNATURE = MediaType.parseMediaType("application/pkcs7-signature");
+
     private final SigningService signingService;
+    private final SigningKeyRegistry keyRegistry;
+    private final BatchSigningService batchSigningService;
+    private final MerkleSigningService merkleSigningService;
+    private final MappedUploadService mappedUploadService;
 
     @Autowired
-    public SigningResource(SigningService signingService) {
+    public SigningResource(SigningService signingService, SigningKeyRegistry keyRegistry, BatchSigningService batchSigningService,
+                           MerkleSigningService merkleSigningService, MappedUploadService mappedUploadService) {
         this.signingService = signingService;
+        this.keyRegistry = keyRegistry;
+        this.batchSigningService = batchSigningService;
+        this.merkleSigningService = merkleSigningService;
+        this.mappedUploadService = mappedUploadService;
     }
 
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<String> signUpload(@RequestParam MultipartFile file,
                                              @RequestParam MultipartFile pkcs12,
-                                             @RequestHeader("X-password") String password) {
+                                             @RequestHeader("X-password") String password,
+                                             @RequestParam(required = false) SigningService.SignatureAlgorithm signatureAlgorithm) {
         if (file.isEmpty() || pkcs12.isEmpty()) {
             return ResponseEntity.badRequest().body("Arquivo a ser assinado ou arquivo pkcs12 não podem ser vazios.");
         }
 
+        // Uploads grandes são assinados a partir do mapeamento em memória, sem getBytes()
+        try (MappedFile mappedFile = this.mappedUploadService.tryMap(file)) {
+            if (mappedFile != null) {
+                SigningInfo signingInfo = this.signingService.getSigningInfo(pkcs12.getResource(), password);
+                return ResponseEntity.ok(this.signingService.signAttached(mappedFile, signingInfo, signatureAlgorithm));
+            }
+
+            String result = this.signingService.signAttached(file.getBytes(), pkcs12.getResource(), password, signatureAlgorithm);
+            return ResponseEntity.ok(result);
+        } catch (SigningValidationException | IOException e) {
+            return SigningResource.errorResponse(e);
+        }
+    }
+
+    // Arquivos grandes: o documento é assinado à medida que é lido e a assinatura é transmitida à medida
+    // que é gerada (DER por padrão ou Base64), attached ou detached
+    @PostMapping(value = "/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> signUploadStream(@RequestParam MultipartFile file,
+                                                                  @RequestParam MultipartFile pkcs12,
+                                                                  @RequestHeader("X-password") String password,
+                                                                  @RequestParam(defaultValue = "true") boolean attached,
+                                                                  @RequestParam(defaultValue = "DER") SigningService.SignatureEncoding encoding,
+                                                                  @RequestParam(required = false) SigningService.SignatureAlgorithm signatureAlgorithm) {
+        if (file.isEmpty() || pkcs12.isEmpty()) {
+            return SigningResource.streamingErrorResponse(HttpStatus.BAD_REQUEST, "Arquivo a ser assinado ou arquivo pkcs12 não podem ser vazios.");
+        }
+
+        try {
+            SigningInfo signingInfo = this.signingService.getSigningInfo(pkcs12.getResource(), password);
+
+            // Algoritmo incompatível com a chave é recusado antes de iniciar a resposta
+            if (signatureAlgorithm != null) {
+                SigningService.SignatureAlgorithm.resolve(signatureAlgorithm, signingInfo.getPrivateKey());
+            }
+
+            // Uploads grandes são mapeados em memória e a assinatura é enviada a partir de um arquivo
+            MappedFile mappedFile = this.mappedUploadService.tryMap(file);
+
+            if (mappedFile != null) {
+                StreamingResponseBody body = outputStream -> {
+                    try (mappedFile) {
+                        this.signingService.signMapped(mappedFile, signingInfo, attached, encoding, signatureAlgorithm, outputStream);
+                    } catch (SigningValidationException e) {
+                        throw new IOException(e.getMessage(), e);
+                    }
+                };
+
+                return SigningResource.streamingSignatureResponse(body, attached, encoding);
+            }
+
+            StreamingResponseBody body = outputStream -> {
+                try (InputStream inputStream = file.getInputStream()) {
+                    this.signingService.signStream(inputStream, signingInfo, attached, encoding, signatureAlgorithm, outputStream);
+                } catch (SigningValidationException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            };
+
+            return SigningResource.streamingSignatureResponse(body, attached, encoding);
+        } catch (SigningValidationException e) {
+            return SigningResource.streamingErrorResponse(e.getHttpStatus(), e.getMessage());
+        } catch (IOException e) {
+            return SigningResource.streamingErrorResponse(HttpStatus.BAD_REQUEST, "Não foi possível ler o arquivo a ser assinado.");
+        }
+    }
+
+    // Somente o hash do documento (hex, SHA256 ou SHA512) é enviado, a assinatura devolvida é detached.
+    // Assina com a chave registrada (keyId) ou com o pkcs12 enviado
+    @PostMapping("/digest")
+    public ResponseEntity<String> signDigest(@RequestParam String digest,
+                                             @RequestParam(defaultValue = "SHA256") HashService.HashAlgorithm algorithm,
+                                             @RequestParam(required = false) MultipartFile pkcs12,
+                                             @RequestHeader(value = "X-password", required = false) String password,
+                                             @RequestParam(required = false) String keyId,
+                                             @RequestParam(required = false) SigningService.SignatureAlgorithm signatureAlgorithm) {
+        if (keyId == null && (pkcs12 == null || pkcs12.isEmpty() || password == null)) {
+            return ResponseEntity.badRequest().body("Informe o keyId de uma chave registrada ou o arquivo pkcs12 e a senha.");
+        }
+
+        try {
+            String result = (keyId != null)
+                    ? this.signingService.signDigest(digest, algorithm, keyId, signatureAlgorithm)
+                    : this.signingService.signDigest(digest, algorithm, pkcs12.getResource(), password, signatureAlgorithm);
+
+            return ResponseEntity.ok(result);
+        } catch (SigningValidationException e) {
+            return SigningResource.errorResponse(e);
+        }
+    }
+
+    // Vários documentos em uma requisição, assinados com a chave registrada (keyId) ou com o pkcs12 enviado.
+    // Resposta em NDJSON: uma linha por documento, na ordem em que terminam
+    @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> signBatch(@RequestParam List<MultipartFile> files,
+                                                           @RequestParam(required = false) MultipartFile pkcs12,
+                                                           @RequestHeader(value = "X-password", required = false) String password,
+                                                           @RequestParam(required = false) String keyId,
+                                                           @RequestParam(required = false) SigningService.SignatureAlgorithm signatureAlgorithm) {
+        if (files.isEmpty()) {
+            return SigningResource.streamingErrorResponse(HttpStatus.BAD_REQUEST, "Nenhum arquivo enviado para assinatura.");
+        }
+
+        if (keyId == null && (pkcs12 == null || pkcs12.isEmpty() || password == null)) {
+            return SigningResource.streamingErrorResponse(HttpStatus.BAD_REQUEST, "Informe o keyId de uma chave registrada ou o arquivo pkcs12 e a senha.");
+        }
+
         try {
-            String fileContent = new String(file.getBytes());
-            String result = this.signingService.signAttached(fileContent, pkcs12.getResource(), password);
+            BatchSigningService.DocumentSigner signer = (keyId != null)
+                    ? this.batchSigningService.createSigner(keyId, signatureAlgorithm)
+                    : this.batchSigningService.createSigner(pkcs12.getResource(), password, signatureAlgorithm);
+
+            List<Resource> documents = files.stream().map(MultipartFile::getResource).toList();
+
+            StreamingResponseBody body = outputStream -> this.batchSigningService.signBatch(documents, signer, outputStream);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+        } catch (SigningValidationException e) {
+            return SigningResource.streamingErrorResponse(e.getHttpStatus(), e.getMessage());
+        }
+    }
+
+    // Alto volume: uma única assinatura sobre a raiz da árvore de Merkle dos documentos, cada documento
+    // recebe a prova de inclusão que deve acompanhá-lo na verificação (/verify/merkle)
+    @PostMapping(value = "/merkle", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> signMerkle(@RequestParam List<MultipartFile> files,
+                                        @RequestParam(defaultValue = "SHA256") HashService.HashAlgorithm hashAlgorithm,
+                                        @RequestParam(required = false) MultipartFile pkcs12,
+                                        @RequestHeader(value = "X-password", required = false) String password,
+                                        @RequestParam(required = false) String keyId,
+                                        @RequestParam(required = false) SigningService.SignatureAlgorithm signatureAlgorithm) {
+        if (files.isEmpty()) {
+            return ResponseEntity.badRequest().body("Nenhum arquivo enviado para assinatura.");
+        }
+
+        if (keyId == null && (pkcs12 == null || pkcs12.isEmpty() || password == null)) {
+            return ResponseEntity.badRequest().body("Informe o keyId de uma chave registrada ou o arquivo pkcs12 e a senha.");
+        }
+
+        try {
+            List<Resource> documents = files.stream().map(MultipartFile::getResource).toList();
+
+            MerkleSignResult result = (keyId != null)
+                    ? this.merkleSigningService.sign(documents, hashAlgorithm, keyId, signatureAlgorithm)
+                    : this.merkleSigningService.sign(documents, hashAlgorithm, this.signingService.getSigningInfo(pkcs12.getResource(), password), signatureAlgorithm);
+
             return ResponseEntity.ok(result);
+        } catch (SigningValidationException e) {
+            return SigningResource.errorResponse(e);
+        }
+    }
+
+    // Acrescenta um assinante (co-assinatura) a uma assinatura existente (.p7m ou .p7s) sem reenviar o documento.
+    // O conteúdo encapsulado é copiado para a resposta sem ser recodificado, somente o novo SignerInfo é gerado
+    @PostMapping(value = "/cosign", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> coSign(@RequestParam MultipartFile signature,
+                                                        @RequestParam(required = false) MultipartFile pkcs12,
+                                                        @RequestHeader(value = "X-password", required = false) String password,
+                                                        @RequestParam(required = false) String keyId,
+                                                        @RequestParam(required = false) SigningService.SignatureAlgorithm signatureAlgorithm,
+                                                        @RequestParam(defaultValue = "DER") SigningService.SignatureEncoding encoding) {
+        return this.appendSigner(signature, pkcs12, password, keyId, encoding, signedData -> (keyId != null)
+                ? this.signingService.coSign(signedData, keyId, signatureAlgorithm)
+                : this.signingService.coSign(signedData, this.signingService.getSigningInfo(pkcs12.getResource(), password), signatureAlgorithm));
+    }
+
+    // Contra-assina o assinante signerIndex (ordem dos signerInfos) de uma assinatura existente
+    @PostMapping(value = "/countersign", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> counterSign(@RequestParam MultipartFile signature,
+                                                             @RequestParam(defaultValue = "0") int signerIndex,
+                                                             @RequestParam(required = false) MultipartFile pkcs12,
+                                                             @RequestHeader(value = "X-password", required = false) String password,
+                                                             @RequestParam(required = false) String keyId,
+                                                             @RequestParam(required = false) SigningService.SignatureAlgorithm signatureAlgorithm,
+                                                             @RequestParam(defaultValue = "DER") SigningService.SignatureEncoding encoding) {
+        return this.appendSigner(signature, pkcs12, password, keyId, encoding, signedData -> (keyId != null)
+                ? this.signingService.counterSign(signedData, signerIndex, keyId, signatureAlgorithm)
+                : this.signingService.counterSign(signedData, signerIndex, this.signingService.getSigningInfo(pkcs12.getResource(), password), signatureAlgorithm));
+    }
+
+    // Registra o PKCS#12 uma única vez, as próximas assinaturas enviam somente o conteúdo.
+    // Um keyId existente só é substituído com replace=true
+    @PostMapping(value = "/keys", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<String> registerKey(@RequestParam MultipartFile pkcs12,
+                                              @RequestHeader("X-password") String password,
+                                              @RequestParam(required = false) String keyId,
+                                              @RequestParam(defaultValue = "false") boolean replace) {
+        if (pkcs12.isEmpty()) {
+            return ResponseEntity.badRequest().body("Arquivo pkcs12 não pode ser vazio.");
+        }
+
+        try {
+            String registeredKeyId = replace
+                    ? this.keyRegistry.replace(keyId, pkcs12.getBytes(), password)
+                    : this.keyRegistry.register(keyId, pkcs12.getBytes(), password);
+            return ResponseEntity.status(HttpStatus.CREATED).body(registeredKeyId);
         } catch (SigningValidationException | IOException e) {
+            return SigningResource.errorResponse(e);
+        }
+    }
+
+    @GetMapping("/keys")
+    public List<String> listKeys() {
+        return this.keyRegistry.getKeyIds();
+    }
+
+    @DeleteMapping("/keys/{keyId}")
+    public ResponseEntity<Void> removeKey(@PathVariable String keyId) {
+        return this.keyRegistry.remove(keyId)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    @PostMapping(value = "/{keyId}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<String> signUploadWithKey(@PathVariable String keyId, @RequestParam MultipartFile file,
+                                                    @RequestParam(required = false) SigningService.SignatureAlgorithm signatureAlgorithm) {
+        if (file.isEmpty()) {
+            return ResponseEntity.badRequest().body("Arquivo a ser assinado não pode ser vazio.");
+        }
+
+        try (MappedFile mappedFile = this.mappedUploadService.tryMap(file)) {
+            if (mappedFile != null) {
+                return ResponseEntity.ok(this.signingService.signAttached(mappedFile, keyId, signatureAlgorithm));
+            }
+
+            return ResponseEntity.ok(this.signingService.signAttached(file.getBytes(), keyId, signatureAlgorithm));
+        } catch (SigningValidationException | IOException e) {
+            return SigningResource.errorResponse(e);
+        }
+    }
+
+    @PostMapping(value = "/{keyId}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<String> signBodyWithKey(@PathVariable String keyId, @RequestBody byte[] content,
+                                                  @RequestParam(required = false) SigningService.SignatureAlgorithm signatureAlgorithm) {
+        try {
+            return ResponseEntity.ok(this.signingService.signAttached(content, keyId, signatureAlgorithm));
+        } catch (SigningValidationException e) {
+            return SigningResource.errorResponse(e);
+        }
+    }
+
+    // Corpo da requisição é o próprio documento, repassado para a assinatura sem ser carregado em memória
+    @PostMapping(value = "/{keyId}/stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> signBodyStreamWithKey(@PathVariable String keyId,
+                                                                       InputStream body,
+                                                                       @RequestParam(defaultValue = "true") boolean attached,
+                                                                       @RequestParam(defaultValue = "DER") SigningService.SignatureEncoding encoding,
+                                                                       @RequestParam(required = false) SigningService.SignatureAlgorithm signatureAlgorithm) {
+        try {
+            // Falha antes de iniciar a resposta caso a chave não exista ou o algoritmo não seja compatível
+            RegisteredSigningKey registeredKey = this.keyRegistry.get(keyId);
+
+            if (signatureAlgorithm != null) {
+                SigningService.SignatureAlgorithm.resolve(signatureAlgorithm, registeredKey.getSigningInfo().getPrivateKey());
+            }
+        } catch (SigningValidationException e) {
+            return SigningResource.streamingErrorResponse(e.getHttpStatus(), e.getMessage());
+        }
+
+        StreamingResponseBody responseBody = outputStream -> {
+            try {
+                this.signingService.signStream(body, keyId, attached, encoding, signatureAlgorithm, outputStream);
+            } catch (SigningValidationException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        };
+
+        return SigningResource.streamingSignatureResponse(responseBody, attached, encoding);
+    }
+
+    // Descarta as credenciais decodificadas em memória, ex: após troca ou revogação de certificado
+    @DeleteMapping("/credentials")
+    public ResponseEntity<Void> invalidateCredentials() {
+        this.signingService.invalidateAllCredentials();
+        return ResponseEntity.noContent().build();
+    }
+
+    private interface SignerAppender {
+        SignedDataAppender.Additions append(SignedDataAppender signedData) throws SigningValidationException;
+    }
+
+    // A assinatura é gerada antes do início da resposta, erros ainda são devolvidos com o status da exceção
+    private ResponseEntity<StreamingResponseBody> appendSigner(MultipartFile signature, MultipartFile pkcs12, String password, String keyId,
+                                                               SigningService.SignatureEncoding encoding, SignerAppender signerAppender) {
+        if (signature.isEmpty()) {
+            return SigningResource.streamingErrorResponse(HttpStatus.BAD_REQUEST, "Arquivo de assinatura não pode ser vazio.");
+        }
+
+        if (keyId == null && (pkcs12 == null || pkcs12.isEmpty() || password == null)) {
+            return SigningResource.streamingErrorResponse(HttpStatus.BAD_REQUEST, "Informe o keyId de uma chave registrada ou o arquivo pkcs12 e a senha.");
+        }
+
+        // Assinatura attached grande: o conteúdo encapsulado é copiado do mapeamento para a resposta sem passar
+        // por um byte[] do tamanho do arquivo. O mapeamento é liberado depois que a resposta é escrita
+        MappedFile mappedFile = null;
+
+        try {
+            ByteBuffer encodedSignature;
+
+            mappedFile = this.mappedUploadService.tryMap(signature);
 
-            String errorMessage = (e instanceof SigningValidationException) ? e.getMessage() : CERTIFICATE_EXCEPTION.getMessage();
+            if (mappedFile != null) {
+                encodedSignature = mappedFile.getBuffer();
+            } else {
+                encodedSignature = ByteBuffer.wrap(signature.getBytes());
+            }
 
-            HttpStatus status = (e instanceof SigningValidationException)
-                    ? ((SigningValidationException) e).getHttpStatus()
-                    : HttpStatus.BAD_REQUEST;
+            SignedDataAppender signedData = this.signingService.openSignedData(encodedSignature);
+            SignedDataAppender.Additions additions = signerAppender.append(signedData);
 
-            return ResponseEntity.status(status).body(errorMessage);
+            MappedFile releasedFile = mappedFile;
+            StreamingResponseBody body = outputStream -> {
+                try {
+                    this.signingService.writeSignedData(signedData, additions, encoding, outputStream);
+                } finally {
+                    if (releasedFile != null) {
+                        releasedFile.close();
+                    }
+                }
+            };
+
+            // A partir daqui o arquivo é liberado pela resposta
+            mappedFile = null;
+            return SigningResource.streamingSignatureResponse(body, signedData.hasContent(), encoding);
+        } catch (SigningValidationException e) {
+            return SigningResource.streamingErrorResponse(e.getHttpStatus(), e.getMessage());
+        } catch (IOException e) {
+            return SigningResource.streamingErrorResponse(HttpStatus.BAD_REQUEST, "Não foi possível ler o arquivo de assinatura.");
+        } finally {
+            SigningResource.closeQuietly(mappedFile);
         }
     }
+
+    private static void closeQuietly(MappedFile mappedFile) {
+        if (mappedFile == null) {
+            return;
+        }
+
+        try {
+            mappedFile.close();
+        } catch (IOException ignored) {
+            // Arquivo temporário, removido pelo sistema caso a exclusão falhe
+        }
+    }
+
+    private static ResponseEntity<String> errorResponse(Exception e) {
+        String errorMessage = (e instanceof SigningValidationException) ? e.getMessage() : CERTIFICATE_EXCEPTION.getMessage();
+
+        HttpStatus status = (e instanceof SigningValidationException)
+                ? ((SigningValidationException) e).getHttpStatus()
+                : HttpStatus.BAD_REQUEST;
+
+        return ResponseEntity.status(status).body(errorMessage);
+    }
+
+    private static ResponseEntity<StreamingResponseBody> streamingSignatureResponse(StreamingResponseBody body, boolean attached,
+                                                                                  SigningService.SignatureEncoding encoding) {
+        if (encoding == SigningService.SignatureEncoding.BASE64) {
+            return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(body);
+        }
+
+        // .p7m contém o documento, .p7s somente a assinatura
+        String filename = "assinatura" + (attached ? SigningService.SIGNATURE_FILE_EXTENSION : SigningService.DETACHED_SIGNATURE_FILE_EXTENSION);
+
+        return ResponseEntity.ok()
+                .contentType(attached ? PKCS7_MIME : PKCS7_SIGNATURE)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
+
+    // Erros anteriores ao início da transmissão, devolvidos da mesma forma que nos demais endpoints
+    private static ResponseEntity<StreamingResponseBody> streamingErrorResponse(HttpStatus status, String errorMessage) {
+        return ResponseEntity.status(status)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(outputStream -> outputStream.write(errorMessage.getBytes(StandardCharsets.UTF_8)));
+    }
 }
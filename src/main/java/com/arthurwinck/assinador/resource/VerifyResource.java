@@ -1,18 +1,29 @@
 package com.arthurwinck.assinador.resource;
 
+import com.arthurwinck.assinador.dto.VerifyOptions;
 import com.arthurwinck.assinador.dto.VerifyResponse;
 import com.arthurwinck.assinador.exception.VerifyValidationException;
+import com.arthurwinck.assinador.service.BatchVerifyService;
+import com.arthurwinck.assinador.service.HashService;
+import com.arthurwinck.assinador.service.MappedFile;
+import com.arthurwinck.assinador.service.MappedUploadService;
 import com.arthurwinck.assinador.service.VerifyService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 
 import static com.arthurwinck.assinador.exception.VerifyValidationException.ErrorType.INVALID_FILE_EXCEPTION;
 
@@ -20,26 +31,141 @@ import static com.arthurwinck.assinador.exception.VerifyValidationException.Erro
 @RequestMapping("/verify")
 public class VerifyResource {
 
+    public static final String APPLICATION_ZIP_VALUE = "application/zip";
+
     private final VerifyService verifyService;
+    private final BatchVerifyService batchVerifyService;
+    private final MappedUploadService mappedUploadService;
 
     @Autowired
-    public VerifyResource(VerifyService verifyService)  { this.verifyService = verifyService; };
+    public VerifyResource(VerifyService verifyService, BatchVerifyService batchVerifyService, MappedUploadService mappedUploadService) {
+        this.verifyService = verifyService;
+        this.batchVerifyService = batchVerifyService;
+        this.mappedUploadService = mappedUploadService;
+    }
 
     @PostMapping
-    public ResponseEntity<VerifyResponse> verify(@RequestParam MultipartFile file) {
+    public ResponseEntity<VerifyResponse> verify(@RequestParam MultipartFile file,
+                                                 @RequestParam(defaultValue = "true") boolean includeOriginalData,
+                                                 @RequestParam(defaultValue = "0") long maxOriginalDataBytes,
+                                                 @RequestParam(defaultValue = "FAIL_FAST") VerifyOptions.VerifyPolicy policy,
+                                                 @RequestParam(required = false) Boolean validateChain) {
+        try {
+            VerifyOptions options = VerifyOptions.of(includeOriginalData, maxOriginalDataBytes, policy, validateChain);
+
+            // Arquivos grandes são verificados sobre o mapeamento em memória, sem getBytes()
+            try (MappedFile mappedFile = this.mappedUploadService.tryMap(file)) {
+                if (mappedFile != null) {
+                    return ResponseEntity.ok(this.verifyService.verify(mappedFile.getBuffer(), options));
+                }
+            }
+
+            return ResponseEntity.ok(this.verifyService.verify(file.getBytes(), options));
+        } catch (VerifyValidationException | IOException e) {
+            return VerifyResource.errorResponse(e);
+        }
+    }
+
+    // Assinatura detached verificada contra o hash do documento (hex), o documento não é enviado. Sem o
+    // conteúdo a assinatura tem poucos KB, por isso não passa pelo MappedUploadService
+    @PostMapping(value = "/digest", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<VerifyResponse> verifyDigest(@RequestParam MultipartFile file,
+                                                       @RequestParam String digest,
+                                                       @RequestParam(defaultValue = "SHA256") HashService.HashAlgorithm algorithm,
+                                                       @RequestParam(defaultValue = "FAIL_FAST") VerifyOptions.VerifyPolicy policy,
+                                                       @RequestParam(required = false) Boolean validateChain) {
         try {
-            return ResponseEntity.ok(this.verifyService.verify(file.getBytes()));
+            VerifyOptions options = VerifyOptions.of(false, 0, policy, validateChain);
+            return ResponseEntity.ok(this.verifyService.verifyDigest(file.getBytes(), digest, algorithm, options));
+        } catch (VerifyValidationException | IOException e) {
+            return VerifyResource.errorResponse(e);
+        }
+    }
+
+    // Documento de um lote assinado pela raiz da árvore de Merkle: o documento, a assinatura do lote e a
+    // prova de inclusão (Base64) devolvida para o documento em /signature/merkle. O documento é lido em
+    // streaming; a assinatura do lote só encapsula a raiz e é lida com getBytes()
+    @PostMapping(value = "/merkle", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<VerifyResponse> verifyMerkle(@RequestParam MultipartFile file,
+                                                       @RequestParam MultipartFile signature,
+                                                       @RequestParam String proof) {
+        try (InputStream inputStream = file.getInputStream()) {
+            return ResponseEntity.ok(this.verifyService.verifyMerkle(inputStream, signature.getBytes(), proof));
         } catch (VerifyValidationException | IOException e) {
-            VerifyResponse response = new VerifyResponse();
+            return VerifyResource.errorResponse(e);
+        }
+    }
 
-            String errorMessage = (e instanceof VerifyValidationException) ? e.getMessage() : INVALID_FILE_EXCEPTION.getMessage();
-            response.setError(errorMessage);
+    // Verificação em streaming para assinaturas attached grandes: o arquivo não é carregado em memória
+    // e, por padrão, o conteúdo assinado não é devolvido na resposta
+    @PostMapping(value = "/stream", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<VerifyResponse> verifyStream(InputStream body,
+                                                       @RequestParam(defaultValue = "false") boolean includeOriginalData,
+                                                       @RequestParam(defaultValue = "0") long maxOriginalDataBytes,
+                                                       @RequestParam(defaultValue = "FAIL_FAST") VerifyOptions.VerifyPolicy policy,
+                                                       @RequestParam(required = false) Boolean validateChain) {
+        try {
+            VerifyOptions options = VerifyOptions.of(includeOriginalData, maxOriginalDataBytes, policy, validateChain);
+            return ResponseEntity.ok(this.verifyService.verify(body, options));
+        } catch (VerifyValidationException e) {
+            return VerifyResource.errorResponse(e);
+        }
+    }
 
-            HttpStatus status = (e instanceof VerifyValidationException)
-                    ? ((VerifyValidationException) e).getHttpStatus()
-                    : HttpStatus.BAD_REQUEST;
+    @PostMapping(value = "/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<VerifyResponse> verifyStreamUpload(@RequestParam MultipartFile file,
+                                                             @RequestParam(defaultValue = "false") boolean includeOriginalData,
+                                                             @RequestParam(defaultValue = "0") long maxOriginalDataBytes,
+                                                             @RequestParam(defaultValue = "FAIL_FAST") VerifyOptions.VerifyPolicy policy,
+                                                             @RequestParam(required = false) Boolean validateChain) {
+        try (InputStream inputStream = file.getInputStream()) {
+            VerifyOptions options = VerifyOptions.of(includeOriginalData, maxOriginalDataBytes, policy, validateChain);
+            return ResponseEntity.ok(this.verifyService.verify(inputStream, options));
+        } catch (VerifyValidationException | IOException e) {
+            return VerifyResource.errorResponse(e);
+        }
+    }
 
-            return ResponseEntity.status(status).body(response);
+    // Vários arquivos de assinatura verificados em paralelo. Resposta em NDJSON: uma linha por arquivo,
+    // na ordem em que terminam, e uma última linha com o resumo do lote
+    @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> verifyBatch(@RequestParam List<MultipartFile> files,
+                                                             @RequestParam(defaultValue = "false") boolean includeOriginalData) {
+        if (files.isEmpty()) {
+            return VerifyResource.streamingErrorResponse(HttpStatus.BAD_REQUEST, "Nenhum arquivo enviado para verificação.");
         }
+
+        List<Resource> signatureFiles = files.stream().map(MultipartFile::getResource).toList();
+
+        StreamingResponseBody body = outputStream -> this.batchVerifyService.verifyBatch(signatureFiles, includeOriginalData, outputStream);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    // Mesmo resultado, a partir de um ZIP enviado no corpo e lido à medida que chega
+    @PostMapping(value = "/batch", consumes = APPLICATION_ZIP_VALUE)
+    public ResponseEntity<StreamingResponseBody> verifyZip(InputStream zipStream,
+                                                           @RequestParam(defaultValue = "false") boolean includeOriginalData) {
+        StreamingResponseBody body = outputStream -> this.batchVerifyService.verifyZip(zipStream, includeOriginalData, outputStream);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    private static ResponseEntity<VerifyResponse> errorResponse(Exception e) {
+        VerifyResponse response = new VerifyResponse();
+
+        String errorMessage = (e instanceof VerifyValidationException) ? e.getMessage() : INVALID_FILE_EXCEPTION.getMessage();
+        response.setError(errorMessage);
+
+        HttpStatus status = (e instanceof VerifyValidationException)
+                ? ((VerifyValidationException) e).getHttpStatus()
+                : HttpStatus.BAD_REQUEST;
+
+        return ResponseEntity.status(status).body(response);
+    }
+
+    // Erros anteriores ao início da transmissão
+    private static ResponseEntity<StreamingResponseBody> streamingErrorResponse(HttpStatus status, String errorMessage) {
+        return ResponseEntity.status(status)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(outputStream -> outputStream.write(errorMessage.getBytes(StandardCharsets.UTF_8)));
     }
 }
@@ -0,0 +1,124 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.config.ExecutorConfiguration;
+import com.arthurwinck.assinador.dto.BatchSignResult;
+import com.arthurwinck.assinador.dto.SigningInfo;
+import com.arthurwinck.assinador.exception.SigningValidationException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Assina vários documentos com uma única credencial, em paralelo, devolvendo um JSON por linha (NDJSON)
+// à medida que cada documento termina. Erros de um documento não interrompem o restante do lote.
+@Component
+public class BatchSigningService {
+
+    @FunctionalInterface
+    public interface DocumentSigner {
+        String sign(byte[] content) throws SigningValidationException;
+    }
+
+    private final SigningService signingService;
+    private final SigningKeyRegistry keyRegistry;
+    private final ExecutorService batchExecutor;
+    private final ObjectMapper objectMapper;
+    private final int maxInFlight;
+
+    @Autowired
+    public BatchSigningService(SigningService signingService,
+                               SigningKeyRegistry keyRegistry,
+                               @Qualifier(ExecutorConfiguration.BATCH_EXECUTOR) ExecutorService batchExecutor,
+                               ObjectMapper objectMapper,
+                               @Value("${batch.max-in-flight:16}") int maxInFlight) {
+        this.signingService = signingService;
+        this.keyRegistry = keyRegistry;
+        this.batchExecutor = batchExecutor;
+        this.objectMapper = objectMapper;
+        this.maxInFlight = maxInFlight;
+    }
+
+    // KeyStore aberto uma única vez para o lote inteiro
+    public DocumentSigner createSigner(Resource pkcs12File, String password) throws SigningValidationException {
+        return this.createSigner(pkcs12File, password, null);
+    }
+
+    // Algoritmo nulo: escolhido pelo tipo da chave
+    public DocumentSigner createSigner(Resource pkcs12File, String password, SigningService.SignatureAlgorithm signatureAlgorithm) throws SigningValidationException {
+        SigningInfo signingInfo = this.signingService.getSigningInfo(pkcs12File, password);
+        SigningService.SignatureAlgorithm resolvedAlgorithm = SigningService.SignatureAlgorithm.resolve(signatureAlgorithm, signingInfo.getPrivateKey());
+
+        return content -> this.signingService.signAttached(content, signingInfo, resolvedAlgorithm);
+    }
+
+    public DocumentSigner createSigner(String keyId) throws SigningValidationException {
+        return this.createSigner(keyId, null);
+    }
+
+    public DocumentSigner createSigner(String keyId, SigningService.SignatureAlgorithm signatureAlgorithm) throws SigningValidationException {
+        // Falha antes de iniciar a resposta caso a chave não exista ou o algoritmo não seja compatível
+        RegisteredSigningKey registeredKey = this.keyRegistry.get(keyId);
+        SigningService.SignatureAlgorithm resolvedAlgorithm = SigningService.SignatureAlgorithm.resolve(signatureAlgorithm, registeredKey.getSigningInfo().getPrivateKey());
+
+        return content -> this.signingService.signAttached(content, keyId, resolvedAlgorithm);
+    }
+
+    public void signBatch(List<Resource> documents, DocumentSigner signer, OutputStream outputStream) throws IOException {
+        NdjsonWriter writer = new NdjsonWriter(this.objectMapper, outputStream);
+        CompletionService<BatchSignResult> completionService = new ExecutorCompletionService<>(this.batchExecutor);
+        List<Future<BatchSignResult>> futures = new ArrayList<>(documents.size());
+        int completed = 0;
+
+        try {
+            for (int index = 0; index < documents.size(); index++) {
+                // Limita quantos documentos ficam em memória ao mesmo tempo
+                while (futures.size() - completed >= this.maxInFlight) {
+                    writer.write(completionService.take().get());
+                    completed++;
+                }
+
+                Resource document = documents.get(index);
+                int documentIndex = index;
+                futures.add(completionService.submit(() -> BatchSigningService.signDocument(documentIndex, document, signer)));
+            }
+
+            while (completed < futures.size()) {
+                writer.write(completionService.take().get());
+                completed++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Assinatura em lote interrompida", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Erro inesperado na assinatura em lote", e.getCause());
+        } finally {
+            // Cliente desconectado ou erro de escrita: não há por que continuar assinando
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private static BatchSignResult signDocument(int index, Resource document, DocumentSigner signer) {
+        BatchSignResult result = new BatchSignResult();
+        result.setIndex(index);
+        result.setFilename(document.getFilename());
+
+        try (InputStream inputStream = document.getInputStream()) {
+            result.setSignature(signer.sign(inputStream.readAllBytes()));
+        } catch (SigningValidationException e) {
+            result.setError(e.getMessage());
+        } catch (Exception e) {
+            result.setError(SigningValidationException.ErrorType.GENERIC_EXCEPTION.getMessage());
+        }
+
+        return result;
+    }
+}
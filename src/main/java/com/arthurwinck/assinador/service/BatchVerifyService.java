@@ -0,0 +1,224 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.config.ExecutorConfiguration;
+import com.arthurwinck.assinador.dto.BatchVerifyResult;
+import com.arthurwinck.assinador.dto.BatchVerifySummary;
+import com.arthurwinck.assinador.dto.VerifyOptions;
+import com.arthurwinck.assinador.dto.VerifyResponse;
+import com.arthurwinck.assinador.exception.VerifyValidationException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+// Verifica vários arquivos de assinatura em paralelo (executor limitado), devolvendo um JSON por linha
+// (NDJSON) à medida que cada arquivo termina e, na última linha, o resumo com a vazão do lote.
+// A memória por requisição é limitada pelo número de arquivos em andamento (max-in-flight) e pelo total de
+// bytes em andamento (max-in-flight-bytes): o próximo arquivo só é lido quando ambos estão abaixo do limite,
+// então uma requisição retém no máximo max-in-flight-bytes mais uma entrada (max-entry-size)
+@Component
+public class BatchVerifyService {
+
+    @FunctionalInterface
+    private interface SignatureFileContent {
+        byte[] read() throws IOException;
+    }
+
+    // size: bytes que o arquivo ocupa no heap enquanto está em andamento
+    private record SignatureFile(String filename, long size, SignatureFileContent content) {}
+
+    @FunctionalInterface
+    private interface SignatureFileSource {
+        // Retorna null quando não há mais arquivos
+        SignatureFile next() throws IOException;
+    }
+
+    private final VerifyService verifyService;
+    private final ExecutorService batchExecutor;
+    private final ObjectMapper objectMapper;
+    private final int maxInFlight;
+    private final long maxEntrySize;
+    private final long maxInFlightBytes;
+
+    @Autowired
+    public BatchVerifyService(VerifyService verifyService,
+                              @Qualifier(ExecutorConfiguration.BATCH_EXECUTOR) ExecutorService batchExecutor,
+                              ObjectMapper objectMapper,
+                              @Value("${batch.max-in-flight:16}") int maxInFlight,
+                              @Value("${batch.max-entry-size:16777216}") long maxEntrySize,
+                              @Value("${batch.max-in-flight-bytes:67108864}") long maxInFlightBytes) {
+        this.verifyService = verifyService;
+        this.batchExecutor = batchExecutor;
+        this.objectMapper = objectMapper;
+        this.maxInFlight = maxInFlight;
+        this.maxEntrySize = maxEntrySize;
+        this.maxInFlightBytes = maxInFlightBytes;
+    }
+
+    public void verifyBatch(List<Resource> files, boolean includeOriginalData, OutputStream outputStream) throws IOException {
+        Iterator<Resource> iterator = files.iterator();
+
+        // Cada arquivo é lido somente dentro da tarefa que o verifica
+        this.verifyAll(() -> {
+            if (!iterator.hasNext()) {
+                return null;
+            }
+
+            Resource file = iterator.next();
+            return new SignatureFile(file.getFilename(), BatchVerifyService.contentLength(file), () -> {
+                try (InputStream inputStream = file.getInputStream()) {
+                    return inputStream.readAllBytes();
+                }
+            });
+        }, includeOriginalData, outputStream);
+    }
+
+    // ZIP lido sequencialmente do corpo da requisição, cada entrada é verificada assim que extraída
+    public void verifyZip(InputStream zipStream, boolean includeOriginalData, OutputStream outputStream) throws IOException {
+        try (ZipInputStream zipInputStream = new ZipInputStream(zipStream)) {
+            this.verifyAll(() -> {
+                ZipEntry entry;
+
+                while ((entry = zipInputStream.getNextEntry()) != null && entry.isDirectory()) {
+                    // Diretórios não são arquivos de assinatura
+                }
+
+                if (entry == null) {
+                    return null;
+                }
+
+                byte[] content = zipInputStream.readNBytes((int) Math.min(this.maxEntrySize + 1, Integer.MAX_VALUE - 8));
+
+                if (content.length > this.maxEntrySize) {
+                    return new SignatureFile(entry.getName(), 0, () -> {
+                        throw new IOException("Entrada maior que o limite de " + this.maxEntrySize + " bytes");
+                    });
+                }
+
+                return new SignatureFile(entry.getName(), content.length, () -> content);
+            }, includeOriginalData, outputStream);
+        }
+    }
+
+    private void verifyAll(SignatureFileSource source, boolean includeOriginalData, OutputStream outputStream) throws IOException {
+        NdjsonWriter writer = new NdjsonWriter(this.objectMapper, outputStream);
+        CompletionService<BatchVerifyResult> completionService = new ExecutorCompletionService<>(this.batchExecutor);
+        List<Future<BatchVerifyResult>> futures = new ArrayList<>();
+        Map<Future<BatchVerifyResult>, Long> inFlightSizes = new HashMap<>();
+        long inFlightBytes = 0;
+
+        BatchVerifySummary summary = new BatchVerifySummary();
+        AtomicLong bytes = new AtomicLong();
+        long start = System.nanoTime();
+        int completed = 0;
+
+        try {
+            SignatureFile signatureFile;
+            int index = 0;
+
+            while (true) {
+                // Limita quantos arquivos e quantos bytes ficam em memória ao mesmo tempo, antes de ler o próximo
+                while (futures.size() - completed >= this.maxInFlight
+                        || (futures.size() > completed && inFlightBytes >= this.maxInFlightBytes)) {
+                    Future<BatchVerifyResult> future = completionService.take();
+                    inFlightBytes -= inFlightSizes.remove(future);
+                    this.writeResult(future.get(), summary, writer);
+                    completed++;
+                }
+
+                if ((signatureFile = source.next()) == null) {
+                    break;
+                }
+
+                SignatureFile file = signatureFile;
+                int fileIndex = index++;
+                Future<BatchVerifyResult> future = completionService.submit(() -> this.verifyFile(fileIndex, file, includeOriginalData, bytes));
+                futures.add(future);
+                inFlightSizes.put(future, file.size());
+                inFlightBytes += file.size();
+            }
+
+            while (completed < futures.size()) {
+                this.writeResult(completionService.take().get(), summary, writer);
+                completed++;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Verificação em lote interrompida", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Erro inesperado na verificação em lote", e.getCause());
+        } finally {
+            // Cliente desconectado ou erro de leitura: não há por que continuar verificando
+            futures.forEach(future -> future.cancel(true));
+        }
+
+        long elapsedNanos = Math.max(System.nanoTime() - start, 1);
+        double elapsedSeconds = elapsedNanos / 1_000_000_000d;
+
+        summary.setBytes(bytes.get());
+        summary.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        summary.setFilesPerSecond(summary.getFiles() / elapsedSeconds);
+        summary.setMegabytesPerSecond(bytes.get() / (1024d * 1024d) / elapsedSeconds);
+
+        writer.write(Map.of("summary", summary));
+    }
+
+    private BatchVerifyResult verifyFile(int index, SignatureFile file, boolean includeOriginalData, AtomicLong bytes) {
+        BatchVerifyResult result = new BatchVerifyResult();
+        result.setIndex(index);
+        result.setFilename(file.filename());
+
+        try {
+            byte[] content = file.content().read();
+            bytes.addAndGet(content.length);
+
+            result.setResponse(this.verifyService.verify(content, VerifyOptions.of(includeOriginalData, 0)));
+        } catch (VerifyValidationException e) {
+            result.setError(e.getMessage());
+        } catch (IOException e) {
+            result.setError(VerifyValidationException.ErrorType.INVALID_FILE_EXCEPTION.getMessage());
+        } catch (Exception e) {
+            result.setError(VerifyValidationException.ErrorType.GENERIC_EXCEPTION.getMessage());
+        }
+
+        return result;
+    }
+
+    // Tamanho desconhecido conta como zero, o arquivo continua limitado por max-in-flight
+    private static long contentLength(Resource file) {
+        try {
+            return file.contentLength();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private void writeResult(BatchVerifyResult result, BatchVerifySummary summary, NdjsonWriter writer) throws IOException {
+        summary.setFiles(summary.getFiles() + 1);
+
+        if (result.getError() != null) {
+            summary.setErrors(summary.getErrors() + 1);
+        } else if (result.getResponse().getStatus() == VerifyResponse.VerifyResponseStatusEnum.VALIDO) {
+            summary.setValid(summary.getValid() + 1);
+        } else {
+            summary.setInvalid(summary.getInvalid() + 1);
+        }
+
+        writer.write(result);
+    }
+}
@@ -0,0 +1,54 @@
+package com.arthurwinck.assinador.service;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+// Leitura de um trecho do buffer por posições absolutas: a posição do buffer não é alterada, então o mesmo
+// buffer (ex: arquivo mapeado em memória) pode ser lido por mais de um stream sem cópia para o heap
+public final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+    private int position;
+    private final int end;
+
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this(buffer, buffer.position(), buffer.limit());
+    }
+
+    public ByteBufferInputStream(ByteBuffer buffer, int start, int end) {
+        this.buffer = buffer;
+        this.position = start;
+        this.end = end;
+    }
+
+    @Override
+    public int read() {
+        return (this.position < this.end) ? this.buffer.get(this.position++) & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if (this.position >= this.end) {
+            return -1;
+        }
+
+        int read = Math.min(length, this.end - this.position);
+        this.buffer.get(this.position, bytes, offset, read);
+        this.position += read;
+
+        return read;
+    }
+
+    @Override
+    public long skip(long count) {
+        long skipped = Math.max(0, Math.min(count, this.end - this.position));
+        this.position += (int) skipped;
+
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return this.end - this.position;
+    }
+}
@@ -0,0 +1,276 @@
+package com.arthurwinck.assinador.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.util.Store;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.cert.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Valida a cadeia de certificação do assinante até uma das âncoras de confiança (ex: raízes ICP-Brasil)
+// carregadas do diretório configurado. Caminhos já validados ficam em cache pelo fingerprint do certificado
+// do assinante, e as intermediárias desses caminhos são reaproveitadas para documentos que não as incluem.
+// Revogação não é verificada aqui
+@Slf4j
+@Component
+public class CertificateChainValidator {
+
+    private static final Set<String> CERTIFICATE_FILE_EXTENSIONS = Set.of(".cer", ".crt", ".pem", ".der");
+
+    public record ChainValidationResult(boolean valid, String error) {
+
+        static ChainValidationResult ofValid() {
+            return new ChainValidationResult(true, null);
+        }
+
+        static ChainValidationResult ofInvalid(String error) {
+            return new ChainValidationResult(false, error);
+        }
+    }
+
+    public record ChainCacheStats(long hits, long misses, long evictions, int size, int maxSize, int trustAnchors, int intermediates) {}
+
+    // Caminho válido até o menor notAfter entre os certificados do caminho, limitado pelo TTL
+    private record ValidatedPath(long expiresAtMillis) {}
+
+    private final JcaX509CertificateConverter certificateConverter = new JcaX509CertificateConverter();
+
+    private final String trustStoreDirectory;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final int maxIntermediates;
+
+    private final Map<String, ValidatedPath> validatedPaths;
+    private final Map<String, X509Certificate> intermediates;
+
+    private volatile Set<TrustAnchor> trustAnchors = Set.of();
+    private volatile Set<String> trustAnchorFingerprints = Set.of();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CertificateChainValidator(@Value("${verify.chain.trust-store-directory:}") String trustStoreDirectory,
+                                     @Value("${verify.chain.cache.max-size:4096}") int maxSize,
+                                     @Value("${verify.chain.cache.ttl-seconds:3600}") long ttlSeconds,
+                                     @Value("${verify.chain.max-intermediates:1024}") int maxIntermediates) {
+        this.trustStoreDirectory = trustStoreDirectory;
+        this.maxSize = maxSize;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.maxIntermediates = maxIntermediates;
+
+        // Ordem de acesso para que a entrada removida ao atingir o limite seja a menos usada
+        this.validatedPaths = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ValidatedPath> eldest) {
+                boolean evict = size() > CertificateChainValidator.this.maxSize;
+
+                if (evict) {
+                    CertificateChainValidator.this.evictions.incrementAndGet();
+                }
+
+                return evict;
+            }
+        };
+
+        this.intermediates = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, X509Certificate> eldest) {
+                return size() > CertificateChainValidator.this.maxIntermediates;
+            }
+        };
+    }
+
+    @PostConstruct
+    public void loadTrustAnchors() throws IOException, CertificateException {
+        if (this.trustStoreDirectory == null || this.trustStoreDirectory.isBlank()) {
+            log.info("Nenhum diretório de âncoras de confiança configurado, cadeias de certificação não serão aceitas");
+            return;
+        }
+
+        List<X509Certificate> certificates = CertificateChainValidator.readCertificates(Path.of(this.trustStoreDirectory));
+
+        this.setTrustAnchors(certificates);
+        log.info("{} âncoras de confiança carregadas de {}", certificates.size(), this.trustStoreDirectory);
+    }
+
+    void setTrustAnchors(Collection<X509Certificate> certificates) throws CertificateEncodingException {
+        Set<TrustAnchor> anchors = new HashSet<>();
+        Set<String> fingerprints = new HashSet<>();
+
+        for (X509Certificate certificate : certificates) {
+            anchors.add(new TrustAnchor(certificate, null));
+            fingerprints.add(CertificateChainValidator.getFingerprint(certificate));
+        }
+
+        this.trustAnchors = Set.copyOf(anchors);
+        this.trustAnchorFingerprints = Set.copyOf(fingerprints);
+
+        // Caminhos validados com as âncoras anteriores deixam de valer
+        this.invalidateAll();
+    }
+
+    public ChainValidationResult validate(X509CertificateHolder signerCertificate, Store<X509CertificateHolder> documentCertificates) {
+        Set<TrustAnchor> anchors = this.trustAnchors;
+
+        if (anchors.isEmpty()) {
+            return ChainValidationResult.ofInvalid("Nenhuma âncora de confiança configurada para validar a cadeia de certificação");
+        }
+
+        try {
+            String fingerprint = SignerVerifierCache.getFingerprint(signerCertificate);
+            long now = System.currentTimeMillis();
+
+            ValidatedPath cached;
+            synchronized (this.validatedPaths) {
+                cached = this.validatedPaths.get(fingerprint);
+            }
+
+            if (cached != null && cached.expiresAtMillis() > now) {
+                this.hits.incrementAndGet();
+                return ChainValidationResult.ofValid();
+            }
+
+            this.misses.incrementAndGet();
+            X509Certificate target = this.certificateConverter.getCertificate(signerCertificate);
+
+            // O próprio certificado do assinante é uma âncora de confiança, não há caminho a construir
+            if (this.trustAnchorFingerprints.contains(fingerprint)) {
+                target.checkValidity();
+                this.putValidatedPath(fingerprint, Math.min(now + this.ttlMillis, target.getNotAfter().getTime()));
+                return ChainValidationResult.ofValid();
+            }
+
+            PKIXCertPathBuilderResult result = this.buildPath(target, anchors, documentCertificates);
+
+            long expiresAt = Math.min(now + this.ttlMillis, target.getNotAfter().getTime());
+            X509Certificate anchorCertificate = result.getTrustAnchor().getTrustedCert();
+            if (anchorCertificate != null) {
+                expiresAt = Math.min(expiresAt, anchorCertificate.getNotAfter().getTime());
+            }
+
+            for (Certificate certificate : result.getCertPath().getCertificates()) {
+                X509Certificate pathCertificate = (X509Certificate) certificate;
+                expiresAt = Math.min(expiresAt, pathCertificate.getNotAfter().getTime());
+
+                if (!pathCertificate.equals(target)) {
+                    this.putIntermediate(pathCertificate);
+                }
+            }
+
+            this.putValidatedPath(fingerprint, expiresAt);
+            return ChainValidationResult.ofValid();
+        } catch (CertPathBuilderException | CertificateExpiredException | CertificateNotYetValidException e) {
+            return ChainValidationResult.ofInvalid("Cadeia de certificação inválida: " + e.getMessage());
+        } catch (GeneralSecurityException | IOException e) {
+            log.warn("Não foi possível validar a cadeia de certificação", e);
+            return ChainValidationResult.ofInvalid("Não foi possível validar a cadeia de certificação");
+        }
+    }
+
+    private PKIXCertPathBuilderResult buildPath(X509Certificate target, Set<TrustAnchor> anchors,
+                                                Store<X509CertificateHolder> documentCertificates) throws GeneralSecurityException {
+        // Intermediárias do documento mais as já vistas em caminhos válidos anteriores
+        List<X509Certificate> candidates = new ArrayList<>();
+        candidates.add(target);
+
+        for (X509CertificateHolder holder : documentCertificates.getMatches(null)) {
+            candidates.add(this.certificateConverter.getCertificate(holder));
+        }
+
+        synchronized (this.intermediates) {
+            candidates.addAll(this.intermediates.values());
+        }
+
+        X509CertSelector selector = new X509CertSelector();
+        selector.setCertificate(target);
+
+        PKIXBuilderParameters parameters = new PKIXBuilderParameters(anchors, selector);
+        parameters.setRevocationEnabled(false);
+        parameters.addCertStore(CertStore.getInstance("Collection", new CollectionCertStoreParameters(candidates)));
+
+        return (PKIXCertPathBuilderResult) CertPathBuilder.getInstance("PKIX").build(parameters);
+    }
+
+    private void putValidatedPath(String fingerprint, long expiresAtMillis) {
+        synchronized (this.validatedPaths) {
+            this.validatedPaths.put(fingerprint, new ValidatedPath(expiresAtMillis));
+        }
+    }
+
+    private void putIntermediate(X509Certificate certificate) throws CertificateEncodingException {
+        String fingerprint = CertificateChainValidator.getFingerprint(certificate);
+
+        synchronized (this.intermediates) {
+            this.intermediates.putIfAbsent(fingerprint, certificate);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (this.validatedPaths) {
+            this.validatedPaths.clear();
+        }
+
+        synchronized (this.intermediates) {
+            this.intermediates.clear();
+        }
+    }
+
+    public ChainCacheStats getStats() {
+        int size;
+        synchronized (this.validatedPaths) {
+            size = this.validatedPaths.size();
+        }
+
+        int intermediateCount;
+        synchronized (this.intermediates) {
+            intermediateCount = this.intermediates.size();
+        }
+
+        return new ChainCacheStats(this.hits.get(), this.misses.get(), this.evictions.get(), size, this.maxSize,
+                this.trustAnchors.size(), intermediateCount);
+    }
+
+    // Aceita DER ou PEM, inclusive vários certificados no mesmo arquivo
+    static List<X509Certificate> readCertificates(Path directory) throws IOException, CertificateException {
+        CertificateFactory certificateFactory = CertificateFactory.getInstance("X.509");
+        List<X509Certificate> certificates = new ArrayList<>();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(CertificateChainValidator::isCertificateFile).toList()) {
+                try (InputStream inputStream = Files.newInputStream(file)) {
+                    for (Certificate certificate : certificateFactory.generateCertificates(inputStream)) {
+                        certificates.add((X509Certificate) certificate);
+                    }
+                }
+            }
+        }
+
+        return certificates;
+    }
+
+    private static boolean isCertificateFile(Path file) {
+        String filename = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return Files.isRegularFile(file) && CERTIFICATE_FILE_EXTENSIONS.stream().anyMatch(filename::endsWith);
+    }
+
+    private static String getFingerprint(X509Certificate certificate) throws CertificateEncodingException {
+        try {
+            return SignerVerifierCache.getFingerprint(new X509CertificateHolder(certificate.getEncoded()));
+        } catch (IOException e) {
+            throw new CertificateEncodingException(e);
+        }
+    }
+}
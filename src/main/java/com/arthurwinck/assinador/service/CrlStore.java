@@ -0,0 +1,257 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.SignerResult;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.TBSCertList;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.util.io.pem.PemObject;
+import org.bouncycastle.util.io.pem.PemReader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+// Consulta de revogação offline: as LCRs do diretório configurado são carregadas e indexadas por emissor,
+// e a consulta de um certificado é uma busca binária no índice da LCR do seu emissor, sem rede na
+// verificação. Uma thread em segundo plano recarrega apenas os arquivos novos ou alterados.
+// As LCRs do diretório são consideradas confiáveis (fornecidas pelo operador), a assinatura delas não é verificada
+@Slf4j
+@Component
+public class CrlStore {
+
+    private static final Set<String> CRL_FILE_EXTENSIONS = Set.of(".crl", ".pem");
+    private static final String PEM_HEADER = "-----BEGIN";
+
+    public record CrlStoreStats(int files, int issuers, long revokedSerials, long reloads, long failedFiles) {}
+
+    private record LoadedCrl(long lastModified, long fileSize, X500Name issuer, Date nextUpdate, RevokedSerialIndex revokedSerials) {}
+
+    private final boolean enabled;
+    private final boolean required;
+    private final String directory;
+    private final long reloadIntervalSeconds;
+
+    private final List<Runnable> reloadListeners = new CopyOnWriteArrayList<>();
+
+    // Substituídos por inteiro a cada recarga, consultas nunca veem um índice parcial
+    private volatile Map<Path, LoadedCrl> loadedFiles = Map.of();
+    private volatile Map<X500Name, List<LoadedCrl>> crlsByIssuer = Map.of();
+
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong failedFiles = new AtomicLong();
+
+    private ScheduledExecutorService reloadScheduler;
+
+    public CrlStore(@Value("${verify.crl.enabled:false}") boolean enabled,
+                    @Value("${verify.crl.required:false}") boolean required,
+                    @Value("${verify.crl.directory:}") String directory,
+                    @Value("${verify.crl.reload-interval-seconds:300}") long reloadIntervalSeconds) {
+        this.enabled = enabled;
+        this.required = required;
+        this.directory = directory;
+        this.reloadIntervalSeconds = reloadIntervalSeconds;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!this.enabled || this.directory == null || this.directory.isBlank()) {
+            return;
+        }
+
+        this.reload();
+
+        this.reloadScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "crl-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reloadScheduler.scheduleWithFixedDelay(this::reloadQuietly, this.reloadIntervalSeconds, this.reloadIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (this.reloadScheduler != null) {
+            this.reloadScheduler.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    // Quando exigida, a falta de uma LCR vigente para o emissor invalida o assinante
+    public boolean isRequired() {
+        return this.required;
+    }
+
+    // Chamados quando alguma LCR muda, ex: para descartar resultados de verificação em cache
+    public void addReloadListener(Runnable listener) {
+        this.reloadListeners.add(listener);
+    }
+
+    public SignerResult.RevocationStatusEnum check(X509CertificateHolder certificate) {
+        List<LoadedCrl> crls = this.crlsByIssuer.get(certificate.getIssuer());
+
+        if (crls == null) {
+            return SignerResult.RevocationStatusEnum.DESCONHECIDO;
+        }
+
+        BigInteger serialNumber = certificate.getSerialNumber();
+        Date now = new Date();
+        boolean current = false;
+
+        for (LoadedCrl crl : crls) {
+            // Revogação consta mesmo em uma LCR já vencida
+            if (crl.revokedSerials().contains(serialNumber)) {
+                return SignerResult.RevocationStatusEnum.REVOGADO;
+            }
+
+            current |= crl.nextUpdate() == null || crl.nextUpdate().after(now);
+        }
+
+        return current ? SignerResult.RevocationStatusEnum.NAO_REVOGADO : SignerResult.RevocationStatusEnum.DESCONHECIDO;
+    }
+
+    // Próxima atualização mais próxima entre as LCRs vigentes do emissor, após ela o resultado de check pode mudar
+    // mesmo sem recarga (LCR vencida deixa de contar). Nulo quando nenhuma LCR vigente informa a data
+    public Date getNextUpdate(X509CertificateHolder certificate) {
+        List<LoadedCrl> crls = this.crlsByIssuer.get(certificate.getIssuer());
+
+        if (crls == null) {
+            return null;
+        }
+
+        Date now = new Date();
+        Date earliest = null;
+
+        for (LoadedCrl crl : crls) {
+            Date nextUpdate = crl.nextUpdate();
+
+            if (nextUpdate != null && nextUpdate.after(now) && (earliest == null || nextUpdate.before(earliest))) {
+                earliest = nextUpdate;
+            }
+        }
+
+        return earliest;
+    }
+
+    // Apenas arquivos novos ou com data/tamanho alterados são lidos novamente. Um arquivo que falha ao
+    // ser lido mantém a versão carregada anteriormente
+    public synchronized void reload() throws IOException {
+        Map<Path, LoadedCrl> previous = this.loadedFiles;
+        Map<Path, LoadedCrl> current = new HashMap<>();
+        boolean changed = false;
+
+        try (Stream<Path> files = Files.list(Path.of(this.directory))) {
+            for (Path file : files.filter(CrlStore::isCrlFile).toList()) {
+                long lastModified = Files.getLastModifiedTime(file).toMillis();
+                long fileSize = Files.size(file);
+                LoadedCrl loaded = previous.get(file);
+
+                if (loaded != null && loaded.lastModified() == lastModified && loaded.fileSize() == fileSize) {
+                    current.put(file, loaded);
+                    continue;
+                }
+
+                try {
+                    current.put(file, CrlStore.loadCrl(file, lastModified, fileSize));
+                    changed = true;
+                } catch (Exception e) {
+                    this.failedFiles.incrementAndGet();
+                    log.error("Não foi possível carregar a LCR {}", file, e);
+
+                    if (loaded != null) {
+                        current.put(file, loaded);
+                    }
+                }
+            }
+        }
+
+        // Sem arquivos novos, alterados ou removidos
+        if (!changed && current.size() == previous.size()) {
+            return;
+        }
+
+        Map<X500Name, List<LoadedCrl>> crlsByIssuer = new HashMap<>();
+        current.values().forEach(crl -> crlsByIssuer.computeIfAbsent(crl.issuer(), issuer -> new ArrayList<>()).add(crl));
+        crlsByIssuer.replaceAll((issuer, crls) -> List.copyOf(crls));
+
+        this.crlsByIssuer = Map.copyOf(crlsByIssuer);
+        this.loadedFiles = Map.copyOf(current);
+        this.reloads.incrementAndGet();
+
+        log.info("{} LCRs carregadas de {} ({} emissores)", current.size(), this.directory, crlsByIssuer.size());
+        this.reloadListeners.forEach(Runnable::run);
+    }
+
+    private void reloadQuietly() {
+        try {
+            this.reload();
+        } catch (Exception e) {
+            log.error("Não foi possível recarregar as LCRs de {}", this.directory, e);
+        }
+    }
+
+    public CrlStoreStats getStats() {
+        Map<Path, LoadedCrl> files = this.loadedFiles;
+        long revokedSerials = files.values().stream().mapToLong(crl -> crl.revokedSerials().size()).sum();
+
+        return new CrlStoreStats(files.size(), this.crlsByIssuer.size(), revokedSerials, this.reloads.get(), this.failedFiles.get());
+    }
+
+    private static LoadedCrl loadCrl(Path file, long lastModified, long fileSize) throws IOException {
+        X509CRLHolder crlHolder = new X509CRLHolder(CrlStore.readEncoded(file));
+        TBSCertList tbsCertList = crlHolder.toASN1Structure().getTBSCertList();
+
+        // Enumeração direta da estrutura ASN.1, sem um X509CRLEntryHolder por entrada
+        List<BigInteger> revokedSerials = new ArrayList<>();
+        Enumeration<?> entries = tbsCertList.getRevokedCertificateEnumeration();
+        while (entries.hasMoreElements()) {
+            revokedSerials.add(((TBSCertList.CRLEntry) entries.nextElement()).getUserCertificate().getValue());
+        }
+
+        return new LoadedCrl(lastModified, fileSize, crlHolder.getIssuer(), crlHolder.getNextUpdate(), RevokedSerialIndex.of(revokedSerials));
+    }
+
+    // Aceita LCRs em DER ou PEM
+    private static byte[] readEncoded(Path file) throws IOException {
+        byte[] content = Files.readAllBytes(file);
+
+        if (!new String(content, 0, Math.min(content.length, 64), StandardCharsets.US_ASCII).contains(PEM_HEADER)) {
+            return content;
+        }
+
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.US_ASCII);
+             PemReader pemReader = new PemReader(reader)) {
+            PemObject pemObject = pemReader.readPemObject();
+
+            if (pemObject == null) {
+                throw new IOException("Arquivo PEM sem conteúdo: " + file);
+            }
+
+            return pemObject.getContent();
+        }
+    }
+
+    private static boolean isCrlFile(Path file) {
+        String filename = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return Files.isRegularFile(file) && CRL_FILE_EXTENSIONS.stream().anyMatch(filename::endsWith);
+    }
+}
@@ -0,0 +1,58 @@
+package com.arthurwinck.assinador.service;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+// Executa a geração da assinatura (operação com a chave privada) no pool limitado de threads de plataforma.
+// Com as requisições em virtual threads, a leitura do upload, o KeyStore e a escrita do .p7m continuam na
+// virtual thread e somente o cálculo vai para o pool, enquanto a virtual thread aguarda sem ocupar a
+// carregadora. Desabilitado (threads de plataforma), a tarefa roda direto na thread da requisição.
+// Registrado em ExecutorConfiguration, que só o habilita em Java 21+
+public class CryptoExecutor {
+
+    @FunctionalInterface
+    public interface CryptoTask<T> {
+        T call() throws Exception;
+    }
+
+    private final ExecutorService cryptoExecutor;
+    private final boolean enabled;
+
+    public CryptoExecutor(ExecutorService cryptoExecutor, boolean enabled) {
+        this.cryptoExecutor = cryptoExecutor;
+        this.enabled = enabled;
+    }
+
+    // Usado fora do contexto Spring (ex: benchmarks)
+    public static CryptoExecutor direct() {
+        return new CryptoExecutor(null, false);
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    // Exceções da tarefa são relançadas como foram lançadas, sem o ExecutionException
+    public <T> T execute(CryptoTask<T> task) throws Exception {
+        if (!this.enabled) {
+            return task.call();
+        }
+
+        Future<T> future = this.cryptoExecutor.submit(task::call);
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.config.ExecutorConfiguration;
+import com.arthurwinck.assinador.exception.SigningValidationException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Ingestão por diretório: arquivos depositados por outros sistemas em um volume compartilhado são assinados
+// com uma chave registrada, sem passar pelo HTTP. Cada arquivo percorre inbox -> processing -> outbox (ou
+// error) somente com movimentos atômicos, então o diretório em que ele está é o próprio checkpoint:
+//  - inbox: aguardando; o movimento para processing é a reserva do arquivo (uma única instância o obtém)
+//  - processing: em assinatura; o .p7m é gravado como .part ao lado do original e publicado quando completo
+//  - outbox: .p7m publicado = assinatura concluída, o original em processing é então removido
+// Na inicialização, arquivos que ficaram em processing são retomados (ou só removidos, se o .p7m já existe)
+// e saídas .part incompletas são descartadas. Várias instâncias podem ler o mesmo inbox desde que cada uma
+// tenha o seu processing-directory: a retomada considera tudo o que está nele como seu
+@Slf4j
+@Component
+public class DirectoryIngestionService {
+
+    private static final String PARTIAL_FILE_SUFFIX = ".part";
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+    private static final String ERROR_FILE_SUFFIX = ".erro.txt";
+
+    public record IngestionStats(long signed, long failed, long resumed, int inFlight) {}
+
+    private final SigningService signingService;
+    private final SigningKeyRegistry keyRegistry;
+
+    private final boolean enabled;
+    private final Path inboxDirectory;
+    private final Path processingDirectory;
+    private final Path outboxDirectory;
+    private final Path errorDirectory;
+    private final String keyId;
+    private final SigningService.SignatureAlgorithm signatureAlgorithm;
+    private final int parallelism;
+    private final long minFileAgeMillis;
+    private final long rescanIntervalMillis;
+    private final boolean fsync;
+    private final boolean archive;
+
+    // Nomes enviados aos workers e ainda não concluídos: novas listagens do inbox não os reenviam
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong signed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong resumed = new AtomicLong();
+
+    private volatile boolean running;
+    private Semaphore slots;
+    private ExecutorService workers;
+    private WatchService watchService;
+    private Thread watcherThread;
+
+    @Autowired
+    public DirectoryIngestionService(SigningService signingService,
+                                     SigningKeyRegistry keyRegistry,
+                                     @Value("${ingestion.enabled:false}") boolean enabled,
+                                     @Value("${ingestion.directory:ingestion}") String directory,
+                                     @Value("${ingestion.processing-directory:}") String processingDirectory,
+                                     @Value("${ingestion.key-id:}") String keyId,
+                                     @Value("${ingestion.signature-algorithm:}") String signatureAlgorithm,
+                                     @Value("${ingestion.parallelism:0}") int parallelism,
+                                     @Value("${ingestion.min-file-age-ms:1000}") long minFileAgeMillis,
+                                     @Value("${ingestion.rescan-interval-ms:5000}") long rescanIntervalMillis,
+                                     @Value("${ingestion.fsync:true}") boolean fsync,
+                                     @Value("${ingestion.archive:false}") boolean archive) {
+        this.signingService = signingService;
+        this.keyRegistry = keyRegistry;
+        this.enabled = enabled;
+        this.inboxDirectory = Path.of(directory, "inbox");
+        this.processingDirectory = processingDirectory.isBlank() ? Path.of(directory, "processing") : Path.of(processingDirectory);
+        this.outboxDirectory = Path.of(directory, "outbox");
+        this.errorDirectory = Path.of(directory, "error");
+        this.keyId = keyId;
+        this.signatureAlgorithm = signatureAlgorithm.isBlank() ? null : SigningService.SignatureAlgorithm.valueOf(signatureAlgorithm);
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.minFileAgeMillis = minFileAgeMillis;
+        this.rescanIntervalMillis = rescanIntervalMillis;
+        this.fsync = fsync;
+        this.archive = archive;
+    }
+
+    @PostConstruct
+    public void start() throws IOException, InterruptedException {
+        if (!this.enabled) {
+            return;
+        }
+
+        // Sem a chave os arquivos permanecem no inbox, em vez de irem todos para error
+        try {
+            this.keyRegistry.get(this.keyId);
+        } catch (SigningValidationException e) {
+            log.error("Ingestão por diretório desabilitada: chave de assinatura '{}' não registrada", this.keyId);
+            return;
+        }
+
+        for (Path directory : new Path[]{this.inboxDirectory, this.processingDirectory, this.outboxDirectory, this.errorDirectory}) {
+            Files.createDirectories(directory);
+        }
+
+        this.slots = new Semaphore(this.parallelism * 2);
+        this.workers = Executors.newFixedThreadPool(this.parallelism, ExecutorConfiguration.namedThreadFactory("ingestion-worker"));
+        this.running = true;
+
+        this.resume();
+
+        this.watchService = this.inboxDirectory.getFileSystem().newWatchService();
+        this.inboxDirectory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE);
+
+        this.watcherThread = new Thread(this::watchLoop, "ingestion-watcher");
+        this.watcherThread.setDaemon(true);
+        this.watcherThread.start();
+
+        log.info("Ingestão por diretório iniciada em {} com a chave '{}'", this.inboxDirectory.toAbsolutePath(), this.keyId);
+    }
+
+    // Arquivos em andamento terminam; os que não começaram continuam no inbox ou em processing e são
+    // retomados na próxima inicialização
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (this.watcherThread == null) {
+            return;
+        }
+
+        this.running = false;
+        this.watchService.close();
+        this.watcherThread.join(TimeUnit.SECONDS.toMillis(30));
+
+        this.workers.shutdown();
+        this.workers.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    public IngestionStats getStats() {
+        return new IngestionStats(this.signed.get(), this.failed.get(), this.resumed.get(), this.inFlight.size());
+    }
+
+    // Somente o processing desta instância é percorrido: .part e originais de outras instâncias não são tocados
+    private void resume() throws IOException, InterruptedException {
+        try (DirectoryStream<Path> partialFiles = Files.newDirectoryStream(this.processingDirectory, "*" + PARTIAL_FILE_SUFFIX)) {
+            for (Path partialFile : partialFiles) {
+                Files.deleteIfExists(partialFile);
+            }
+        }
+
+        try (DirectoryStream<Path> claimedFiles = Files.newDirectoryStream(this.processingDirectory,
+                file -> !file.getFileName().toString().endsWith(PARTIAL_FILE_SUFFIX))) {
+            for (Path claimedFile : claimedFiles) {
+                this.resumed.incrementAndGet();
+
+                // Interrompido depois de renomear o .p7m: só falta remover o original
+                if (Files.exists(this.outputFile(claimedFile))) {
+                    Files.deleteIfExists(claimedFile);
+                    this.signed.incrementAndGet();
+                    continue;
+                }
+
+                this.submit(claimedFile, () -> this.sign(claimedFile));
+            }
+        }
+    }
+
+    // Eventos do WatchService (inclusive OVERFLOW) só disparam uma nova listagem do inbox. A listagem
+    // periódica cobre volumes de rede, que não entregam eventos, e arquivos que ainda eram recentes demais
+    private void watchLoop() {
+        while (this.running) {
+            try {
+                this.scanInbox();
+
+                WatchKey watchKey = this.watchService.poll(this.rescanIntervalMillis, TimeUnit.MILLISECONDS);
+
+                if (watchKey != null) {
+                    watchKey.pollEvents();
+
+                    if (!watchKey.reset()) {
+                        log.error("Diretório {} não está mais acessível, ingestão interrompida", this.inboxDirectory.toAbsolutePath());
+                        return;
+                    }
+                }
+            } catch (ClosedWatchServiceException e) {
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                log.error("Não foi possível listar o diretório {}", this.inboxDirectory.toAbsolutePath(), e);
+            }
+        }
+    }
+
+    private void scanInbox() throws IOException, InterruptedException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.inboxDirectory, this::isReady)) {
+            for (Path file : files) {
+                if (!this.running) {
+                    return;
+                }
+
+                this.submit(file, () -> this.claimAndSign(file));
+            }
+        }
+    }
+
+    // Produtores devem gravar com outro nome (oculto, .part ou .tmp) e renomear ao final. Arquivos mais
+    // novos que min-file-age-ms ficam para a próxima listagem, caso ainda estejam sendo escritos
+    private boolean isReady(Path file) throws IOException {
+        String filename = file.getFileName().toString();
+
+        if (filename.startsWith(".") || filename.endsWith(PARTIAL_FILE_SUFFIX) || filename.endsWith(TEMPORARY_FILE_SUFFIX)
+                || !Files.isRegularFile(file) || this.inFlight.contains(filename)) {
+            return false;
+        }
+
+        try {
+            return Files.getLastModifiedTime(file).toMillis() <= System.currentTimeMillis() - this.minFileAgeMillis;
+        } catch (NoSuchFileException e) {
+            // Reservado por outra instância depois da listagem
+            return false;
+        }
+    }
+
+    // Limita os arquivos em andamento: com todos os slots ocupados a listagem espera um worker terminar
+    private void submit(Path file, Runnable task) throws InterruptedException {
+        String filename = file.getFileName().toString();
+
+        if (!this.inFlight.add(filename)) {
+            return;
+        }
+
+        try {
+            this.slots.acquire();
+        } catch (InterruptedException e) {
+            this.inFlight.remove(filename);
+            throw e;
+        }
+
+        try {
+            this.workers.execute(() -> {
+                try {
+                    // Parando: o arquivo fica onde está para a próxima inicialização
+                    if (this.running) {
+                        task.run();
+                    }
+                } finally {
+                    this.inFlight.remove(filename);
+                    this.slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.inFlight.remove(filename);
+            this.slots.release();
+        }
+    }
+
+    private void claimAndSign(Path file) {
+        Path claimedFile = this.processingDirectory.resolve(file.getFileName());
+
+        // No Linux o rename substitui o destino sem erro. O processing é só desta instância e inFlight impede
+        // dois workers com o mesmo nome, então verificar antes basta
+        if (Files.exists(claimedFile)) {
+            return;
+        }
+
+        try {
+            Files.move(file, claimedFile, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException | FileAlreadyExistsException e) {
+            // Reservado por outra instância
+            return;
+        } catch (IOException e) {
+            log.error("Não foi possível reservar o arquivo {}", file.toAbsolutePath(), e);
+            return;
+        }
+
+        // Um .p7m já existente seria tomado como concluído na retomada, o arquivo não o substitui
+        if (Files.exists(this.outputFile(claimedFile))) {
+            this.fail(claimedFile, "Já existe uma assinatura com o nome " + this.outputFile(claimedFile).getFileName() + " na saída");
+            return;
+        }
+
+        this.sign(claimedFile);
+    }
+
+    private void sign(Path claimedFile) {
+        Path outputFile = this.outputFile(claimedFile);
+        Path partialFile = this.processingDirectory.resolve(outputFile.getFileName() + PARTIAL_FILE_SUFFIX);
+
+        try {
+            try (InputStream inputStream = Files.newInputStream(claimedFile);
+                 FileChannel channel = FileChannel.open(partialFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                // O .p7m do outbox já é a saída durável; a cópia em signing.archive.directory é opcional (ingestion.archive)
+                this.signingService.signStream(inputStream, this.keyId, true, SigningService.SignatureEncoding.DER,
+                        this.signatureAlgorithm, this.archive, Channels.newOutputStream(channel));
+
+                // O rename é o ponto de conclusão, o conteúdo precisa estar em disco antes dele
+                if (this.fsync) {
+                    channel.force(true);
+                }
+            }
+
+            DirectoryIngestionService.publish(partialFile, outputFile);
+
+            // A publicação também precisa estar em disco antes de o original sumir de processing
+            if (this.fsync) {
+                SignatureArchiveService.forceDirectory(this.outboxDirectory);
+            }
+
+            Files.delete(claimedFile);
+            this.signed.incrementAndGet();
+        } catch (SigningValidationException | IOException e) {
+            DirectoryIngestionService.deleteQuietly(partialFile);
+            this.fail(claimedFile, e.getMessage());
+        } catch (RuntimeException e) {
+            // Ex: RuntimeOperatorException do BouncyCastle; sem isso o arquivo ficaria em processing até reiniciar
+            log.error("Erro inesperado ao assinar o arquivo {}", claimedFile.getFileName(), e);
+            DirectoryIngestionService.deleteQuietly(partialFile);
+            this.fail(claimedFile, e.toString());
+        }
+    }
+
+    // O original vai para error junto com um arquivo texto com o motivo da falha
+    private void fail(Path claimedFile, String message) {
+        this.failed.incrementAndGet();
+        log.warn("Não foi possível assinar o arquivo {}: {}", claimedFile.getFileName(), message);
+
+        Path errorFile = this.errorDirectory.resolve(claimedFile.getFileName());
+
+        try {
+            Files.move(claimedFile, errorFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.writeString(this.errorDirectory.resolve(claimedFile.getFileName() + ERROR_FILE_SUFFIX),
+                    String.valueOf(message), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.error("Não foi possível mover o arquivo {} para {}", claimedFile.toAbsolutePath(), this.errorDirectory.toAbsolutePath(), e);
+        }
+    }
+
+    // Files.move substituiria sem erro (rename no Linux) um .p7m com o mesmo nome publicado por outra
+    // instância. O hard link é atômico e falha se o destino já existe; sem suporte a hard links resta
+    // verificar antes do rename, com uma janela pequena entre instâncias
+    private static void publish(Path partialFile, Path outputFile) throws IOException {
+        try {
+            Files.createLink(outputFile, partialFile);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            if (Files.exists(outputFile)) {
+                throw new FileAlreadyExistsException(outputFile.toString());
+            }
+
+            Files.move(partialFile, outputFile, StandardCopyOption.ATOMIC_MOVE);
+            return;
+        }
+
+        Files.delete(partialFile);
+    }
+
+    private Path outputFile(Path claimedFile) {
+        return this.outboxDirectory.resolve(claimedFile.getFileName() + SigningService.SIGNATURE_FILE_EXTENSION);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Não foi possível remover o arquivo parcial {}", file.toAbsolutePath(), e);
+        }
+    }
+}
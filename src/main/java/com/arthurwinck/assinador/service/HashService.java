@@ -1,19 +1,145 @@
 package com.arthurwinck.assinador.service;
 
+import lombok.Getter;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.crypto.Digest;
 import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.digests.SHA512Digest;
 import org.bouncycastle.util.encoders.Hex;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
 
 @Component
 public class HashService {
 
+    // Tamanho do bloco lido a cada iteração, o buffer é reaproveitado durante todo o cálculo
+    public final static int STREAM_BUFFER_SIZE = 8192;
+
+    // Algoritmos aceitos também para assinatura detached a partir do hash (o cliente calcula no mesmo formato)
+    @Getter
+    public enum HashAlgorithm {
+        SHA256(NISTObjectIdentifiers.id_sha256, 32, SHA256Digest::new),
+        SHA512(NISTObjectIdentifiers.id_sha512, 64, SHA512Digest::new);
+
+        private final ASN1ObjectIdentifier oid;
+        private final int digestLength;
+
+        @Getter(lombok.AccessLevel.NONE)
+        private final Supplier<Digest> digestFactory;
+
+        HashAlgorithm(ASN1ObjectIdentifier oid, int digestLength, Supplier<Digest> digestFactory) {
+            this.oid = oid;
+            this.digestLength = digestLength;
+            this.digestFactory = digestFactory;
+        }
+
+        public Digest newDigest() {
+            return this.digestFactory.get();
+        }
+    }
+
     public String generateHexEncodedHash(String string) {
-        SHA256Digest digest = new SHA256Digest();
+        return this.generateHexEncodedHash(string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String generateHexEncodedHash(String string, HashAlgorithm algorithm) {
+        return this.generateHexEncodedHash(string.getBytes(StandardCharsets.UTF_8), algorithm);
+    }
+
+    public String generateHexEncodedHash(byte[] bytes) {
+        return this.generateHexEncodedHash(bytes, HashAlgorithm.SHA256);
+    }
+
+    public String generateHexEncodedHash(byte[] bytes, HashAlgorithm algorithm) {
+        Digest digest = algorithm.newDigest();
+
+        digest.update(bytes, 0, bytes.length);
+
+        return HashService.hexEncodedDigest(digest);
+    }
+
+    // Calcula o hash sem carregar o conteúdo inteiro em memória, funciona também para arquivos binários
+    public String generateHexEncodedHash(InputStream inputStream) throws IOException {
+        return this.generateHexEncodedHash(inputStream, HashAlgorithm.SHA256);
+    }
+
+    public String generateHexEncodedHash(InputStream inputStream, HashAlgorithm algorithm) throws IOException {
+        return Hex.toHexString(HashService.digest(inputStream, algorithm));
+    }
+
+    public String generateHexEncodedHash(ByteBuffer buffer, HashAlgorithm algorithm) {
+        return Hex.toHexString(HashService.digest(buffer, algorithm));
+    }
+
+    // Hash em bytes, usado onde o valor entra em outra estrutura (ex: folhas da árvore de Merkle)
+    public static byte[] digest(InputStream inputStream, HashAlgorithm algorithm) throws IOException {
+        Digest digest = algorithm.newDigest();
+        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+
+        byte[] hash = new byte[digest.getDigestSize()];
+        digest.doFinal(hash, 0);
+
+        return hash;
+    }
+
+    // Buffer mapeado em memória: lido em blocos a partir do page cache, sem o arquivo inteiro no heap
+    public static byte[] digest(ByteBuffer buffer, HashAlgorithm algorithm) {
+        Digest digest = algorithm.newDigest();
+        ByteBuffer source = buffer.duplicate();
+
+        if (source.hasArray()) {
+            digest.update(source.array(), source.arrayOffset() + source.position(), source.remaining());
+        } else {
+            byte[] chunk = new byte[STREAM_BUFFER_SIZE];
+
+            while (source.hasRemaining()) {
+                int length = Math.min(chunk.length, source.remaining());
+                source.get(chunk, 0, length);
+                digest.update(chunk, 0, length);
+            }
+        }
 
-        digest.update(string.getBytes(StandardCharsets.UTF_8), 0, string.length());
+        byte[] hash = new byte[digest.getDigestSize()];
+        digest.doFinal(hash, 0);
+
+        return hash;
+    }
+
+    public static HashAlgorithm forOid(ASN1ObjectIdentifier oid) {
+        for (HashAlgorithm algorithm : HashAlgorithm.values()) {
+            if (algorithm.getOid().equals(oid)) {
+                return algorithm;
+            }
+        }
+
+        throw new IllegalArgumentException("Algoritmo de hash não suportado: " + oid);
+    }
+
+    // Converte um hash em hex (formato devolvido por este serviço) de volta para bytes, validando o tamanho
+    public static byte[] decodeHexEncodedHash(String hexEncodedHash, HashAlgorithm algorithm) {
+        if (hexEncodedHash == null || hexEncodedHash.length() != algorithm.getDigestLength() * 2) {
+            throw new IllegalArgumentException("Hash " + algorithm + " deve possuir " + algorithm.getDigestLength() * 2 + " caracteres hexadecimais");
+        }
+
+        try {
+            return Hex.decodeStrict(hexEncodedHash);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Hash deve estar codificado em hexadecimal", e);
+        }
+    }
 
+    private static String hexEncodedDigest(Digest digest) {
         byte[] hash = new byte[digest.getDigestSize()];
         digest.doFinal(hash, 0);
 
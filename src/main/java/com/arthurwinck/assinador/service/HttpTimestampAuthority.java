@@ -0,0 +1,62 @@
+package com.arthurwinck.assinador.service;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.tsp.TSPException;
+import org.bouncycastle.tsp.TimeStampRequest;
+import org.bouncycastle.tsp.TimeStampResponse;
+import org.bouncycastle.tsp.TimeStampToken;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.SecureRandom;
+import java.time.Duration;
+
+// TSA remota acessada pelo transporte HTTP do RFC 3161 (seção 3.4): POST da requisição DER com
+// application/timestamp-query, resposta DER em application/timestamp-reply
+public class HttpTimestampAuthority implements TimestampAuthority {
+
+    private static final String REQUEST_CONTENT_TYPE = "application/timestamp-query";
+
+    private final URI uri;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+    private final SecureRandom random = new SecureRandom();
+
+    public HttpTimestampAuthority(URI uri, Duration timeout) {
+        this.uri = uri;
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    @Override
+    public TimeStampToken timestamp(ASN1ObjectIdentifier digestAlgorithm, byte[] digest) throws IOException, TSPException {
+        TimeStampRequest request = TimestampAuthority.createRequest(digestAlgorithm, digest, this.random);
+
+        HttpRequest httpRequest = HttpRequest.newBuilder(this.uri)
+                .timeout(this.timeout)
+                .header("Content-Type", REQUEST_CONTENT_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(request.getEncoded()))
+                .build();
+
+        HttpResponse<byte[]> httpResponse;
+
+        try {
+            httpResponse = this.httpClient.send(httpRequest, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Requisição à TSA interrompida", e);
+        }
+
+        if (httpResponse.statusCode() != 200) {
+            throw new IOException("TSA respondeu com HTTP " + httpResponse.statusCode() + " (" + this.uri + ")");
+        }
+
+        return TimestampAuthority.getToken(new TimeStampResponse(httpResponse.body()), request);
+    }
+}
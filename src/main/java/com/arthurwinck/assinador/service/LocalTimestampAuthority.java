@@ -0,0 +1,109 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.SigningInfo;
+import com.arthurwinck.assinador.exception.InvalidSignatureAlgorithmException;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.*;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.tsp.*;
+import org.bouncycastle.util.CollectionStore;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.SecureRandom;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+// TSA executada no próprio processo, para testes e uso offline: a resposta é gerada e validada pelo mesmo
+// caminho de uma TSA remota (requisição e resposta RFC 3161), sem a ida à rede. Usa a chave de um PKCS#12
+// (o certificado precisa do uso estendido timeStamping, crítico) ou, sem PKCS#12, uma chave EC P-256 e um
+// certificado autoassinado gerados na inicialização, que não são confiáveis fora desta instância
+public class LocalTimestampAuthority implements TimestampAuthority {
+
+    // Política da TSA local, no arco de OIDs do assinador (TimestampService.OID_ARC)
+    public static final ASN1ObjectIdentifier POLICY = TimestampService.OID_ARC.branch("2");
+
+    private static final String GENERATED_SUBJECT = "CN=Assinador TSA local";
+    private static final Duration GENERATED_VALIDITY = Duration.ofDays(3650);
+
+    private final SecureRandom random = new SecureRandom();
+    private final TimeStampResponseGenerator responseGenerator;
+    private final X509CertificateHolder certificate;
+
+    public LocalTimestampAuthority(SigningInfo signingInfo) throws OperatorCreationException, TSPException, InvalidSignatureAlgorithmException {
+        this.certificate = signingInfo.getCertificateHolderList().get(0);
+
+        DigestCalculatorProvider digestCalculatorProvider = new JcaDigestCalculatorProviderBuilder().build();
+        ContentSigner contentSigner = new JcaContentSignerBuilder(SigningService.SignatureAlgorithm.forKey(signingInfo.getPrivateKey()).getName())
+                .build(signingInfo.getPrivateKey());
+
+        // ESSCertIDv2 com SHA-256 identifica o certificado da TSA dentro do token
+        TimeStampTokenGenerator tokenGenerator = new TimeStampTokenGenerator(
+                new JcaSignerInfoGeneratorBuilder(digestCalculatorProvider).build(contentSigner, this.certificate),
+                digestCalculatorProvider.get(new AlgorithmIdentifier(NISTObjectIdentifiers.id_sha256)),
+                POLICY);
+        tokenGenerator.addCertificates(new CollectionStore<>(signingInfo.getCertificateHolderList()));
+
+        this.responseGenerator = new TimeStampResponseGenerator(tokenGenerator, TSPAlgorithms.ALLOWED);
+    }
+
+    public static LocalTimestampAuthority fromPkcs12(byte[] pkcs12Bytes, String password) throws Exception {
+        return new LocalTimestampAuthority(SigningService.loadSigningInfo(pkcs12Bytes, password));
+    }
+
+    public static LocalTimestampAuthority generate() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+
+        X500Name subject = new X500Name(GENERATED_SUBJECT);
+        Instant now = Instant.now();
+
+        X509CertificateHolder certificate = new JcaX509v3CertificateBuilder(
+                subject,
+                new BigInteger(64, new SecureRandom()),
+                Date.from(now.minus(Duration.ofMinutes(5))),
+                Date.from(now.plus(GENERATED_VALIDITY)),
+                subject,
+                keyPair.getPublic())
+                .addExtension(Extension.extendedKeyUsage, true, new ExtendedKeyUsage(KeyPurposeId.id_kp_timeStamping))
+                .addExtension(Extension.keyUsage, true, new KeyUsage(KeyUsage.digitalSignature))
+                .build(new JcaContentSignerBuilder(SigningService.SignatureAlgorithm.SHA256_WITH_ECDSA.getName()).build(keyPair.getPrivate()));
+
+        SigningInfo signingInfo = new SigningInfo();
+        signingInfo.setPrivateKey(keyPair.getPrivate());
+        signingInfo.setX509Certificate(new JcaX509CertificateConverter().getCertificate(certificate));
+        signingInfo.setCertificateHolderList(List.of(certificate));
+
+        return new LocalTimestampAuthority(signingInfo);
+    }
+
+    @Override
+    public X509CertificateHolder getCertificate() {
+        return this.certificate;
+    }
+
+    // O ContentSigner do gerador não é thread-safe. Em lote há uma única chamada por lote, vinda da
+    // thread que agrupa as assinaturas
+    @Override
+    public synchronized TimeStampToken timestamp(ASN1ObjectIdentifier digestAlgorithm, byte[] digest) throws TSPException {
+        TimeStampRequest request = TimestampAuthority.createRequest(digestAlgorithm, digest, this.random);
+        TimeStampResponse response = this.responseGenerator.generate(request, new BigInteger(64, this.random), new Date());
+
+        return TimestampAuthority.getToken(response, request);
+    }
+}
@@ -0,0 +1,55 @@
+package com.arthurwinck.assinador.service;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.cms.CMSObjectIdentifiers;
+import org.bouncycastle.cms.CMSTypedData;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+// Conteúdo a ser assinado lido direto de um ByteBuffer (ex: MappedFile). Diferente do CMSProcessableByteArray,
+// o documento não precisa existir como byte[]: é escrito no digest/saída em blocos de tamanho fixo
+public final class MappedContent implements CMSTypedData {
+
+    private final ASN1ObjectIdentifier contentType;
+    private final ByteBuffer buffer;
+
+    public MappedContent(ByteBuffer buffer) {
+        this(CMSObjectIdentifiers.data, buffer);
+    }
+
+    public MappedContent(ASN1ObjectIdentifier contentType, ByteBuffer buffer) {
+        this.contentType = contentType;
+        this.buffer = buffer;
+    }
+
+    @Override
+    public ASN1ObjectIdentifier getContentType() {
+        return this.contentType;
+    }
+
+    @Override
+    public void write(OutputStream outputStream) throws IOException {
+        ByteBuffer source = this.buffer.duplicate();
+
+        if (source.hasArray()) {
+            outputStream.write(source.array(), source.arrayOffset() + source.position(), source.remaining());
+            return;
+        }
+
+        byte[] chunk = new byte[HashService.STREAM_BUFFER_SIZE];
+
+        while (source.hasRemaining()) {
+            int length = Math.min(chunk.length, source.remaining());
+            source.get(chunk, 0, length);
+            outputStream.write(chunk, 0, length);
+        }
+    }
+
+    // Visão somente leitura do buffer, não uma cópia
+    @Override
+    public Object getContent() {
+        return this.buffer.asReadOnlyBuffer();
+    }
+}
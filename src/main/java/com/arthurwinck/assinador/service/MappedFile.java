@@ -0,0 +1,100 @@
+package com.arthurwinck.assinador.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Arquivo temporário mapeado em memória (somente leitura). O conteúdo fica no page cache do sistema
+// operacional e é lido pelo ByteBuffer sem cópia para o heap; o arquivo é removido no close
+public final class MappedFile implements Closeable {
+
+    private static final Cleaner UNMAP_CLEANER = Cleaner.create();
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+
+    private MappedFile(Path path, FileChannel channel, ByteBuffer buffer) {
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    // Um ByteBuffer endereça até Integer.MAX_VALUE bytes, arquivos maiores seguem pelos caminhos em streaming
+    public static MappedFile map(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+            long size = channel.size();
+
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Arquivo com " + size + " bytes excede o limite para mapeamento em memória");
+            }
+
+            return new MappedFile(path, channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    public long size() {
+        return this.buffer.capacity();
+    }
+
+    // Cada chamada devolve uma visão independente (posição e limite próprios) do mesmo mapeamento
+    public ByteBuffer getBuffer() {
+        return this.buffer.duplicate();
+    }
+
+    // Executa a ação quando o mapeamento (e todas as visões de getBuffer()) for coletado, que é quando o
+    // Java 17 desfaz o mapeamento. A ação não pode referenciar este MappedFile nem o ByteBuffer
+    void onUnmapped(Runnable action) {
+        UNMAP_CLEANER.register(this.buffer, action);
+    }
+
+    public InputStream getInputStream() {
+        return new ByteBufferInputStream(this.getBuffer());
+    }
+
+    // Envia o arquivo inteiro com FileChannel.transferTo: para outro arquivo ou socket a cópia é feita pelo
+    // kernel, para um OutputStream qualquer passa por um buffer de tamanho fixo
+    public void transferTo(OutputStream outputStream) throws IOException {
+        MappedFile.transferTo(this.channel, Channels.newChannel(outputStream));
+    }
+
+    public static void transferTo(FileChannel source, WritableByteChannel target) throws IOException {
+        long size = source.size();
+        long position = 0;
+
+        while (position < size) {
+            position += source.transferTo(position, size - position, target);
+        }
+    }
+
+    // O Java 17 não tem como desfazer o mapeamento explicitamente: ele continua válido até o ByteBuffer ser
+    // coletado. O arquivo já pode ser removido (Linux/macOS), mas o espaço em disco só é liberado depois da
+    // coleta. Por isso o MappedUploadService limita os bytes mapeados ainda não coletados
+    @Override
+    public void close() throws IOException {
+        try {
+            this.channel.close();
+        } finally {
+            Files.deleteIfExists(this.path);
+        }
+    }
+}
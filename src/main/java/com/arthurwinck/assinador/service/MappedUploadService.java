@@ -0,0 +1,108 @@
+package com.arthurwinck.assinador.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Uploads grandes já gravados em disco pelo container são movidos (não copiados, quando no mesmo sistema
+// de arquivos) para o diretório de trabalho e mapeados em memória, em vez de lidos com getBytes().
+// Abaixo de min-size-bytes a cópia para o heap é mais barata que o mapeamento e o upload segue como antes.
+// Como o mapeamento só é desfeito na coleta do ByteBuffer (ver MappedFile.close), os arquivos removidos
+// continuam ocupando o disco até lá. A soma dos mapeamentos ainda não coletados é limitada a
+// max-live-bytes; acima disso o upload segue pelo caminho em streaming até o GC liberar espaço
+@Component
+public class MappedUploadService {
+
+    private static final String UPLOAD_FILE_PREFIX = "upload-";
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long minSize;
+    private final long maxLiveBytes;
+
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final AtomicLong mapped = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    public record MappedUploadStats(long mapped, long fallbacks, long liveBytes, long maxLiveBytes) {
+    }
+
+    public MappedUploadService(@Value("${upload.mapped.enabled:true}") boolean enabled,
+                               @Value("${upload.mapped.directory:${java.io.tmpdir}}") String directory,
+                               @Value("${upload.mapped.min-size-bytes:1048576}") long minSize,
+                               @Value("${upload.mapped.max-live-bytes:4294967296}") long maxLiveBytes) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.minSize = minSize;
+        this.maxLiveBytes = maxLiveBytes;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (this.enabled) {
+            Files.createDirectories(this.directory);
+        }
+    }
+
+    public boolean shouldMap(MultipartFile file) {
+        return this.enabled && file.getSize() >= this.minSize && file.getSize() <= Integer.MAX_VALUE;
+    }
+
+    // Devolve null quando o upload não deve ser mapeado ou o limite de bytes mapeados foi atingido; nesse
+    // caso o chamador segue pelo caminho em streaming ou em byte[]
+    public MappedFile tryMap(MultipartFile file) throws IOException {
+        if (!this.shouldMap(file)) {
+            return null;
+        }
+
+        long size = file.getSize();
+
+        if (!this.reserve(size)) {
+            this.fallbacks.incrementAndGet();
+            return null;
+        }
+
+        Path path = this.directory.resolve(UPLOAD_FILE_PREFIX + UUID.randomUUID()).toAbsolutePath();
+        MappedFile mappedFile;
+
+        try {
+            // Com o Tomcat, transferTo(File) renomeia o arquivo temporário do multipart quando possível
+            file.transferTo(path.toFile());
+            mappedFile = MappedFile.map(path);
+        } catch (IOException | RuntimeException e) {
+            this.liveBytes.addAndGet(-size);
+            Files.deleteIfExists(path);
+            throw e;
+        }
+
+        AtomicLong liveBytes = this.liveBytes;
+        mappedFile.onUnmapped(() -> liveBytes.addAndGet(-size));
+        this.mapped.incrementAndGet();
+        return mappedFile;
+    }
+
+    private boolean reserve(long size) {
+        long current;
+
+        do {
+            current = this.liveBytes.get();
+
+            if (current + size > this.maxLiveBytes) {
+                return false;
+            }
+        } while (!this.liveBytes.compareAndSet(current, current + size));
+
+        return true;
+    }
+
+    public MappedUploadStats getStats() {
+        return new MappedUploadStats(this.mapped.get(), this.fallbacks.get(), this.liveBytes.get(), this.maxLiveBytes);
+    }
+}
@@ -0,0 +1,142 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.MerkleSignResult;
+import com.arthurwinck.assinador.dto.SigningInfo;
+import com.arthurwinck.assinador.exception.InvalidSignedContentException;
+import com.arthurwinck.assinador.exception.SigningValidationException;
+import org.bouncycastle.asn1.*;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.util.encoders.Base64;
+import org.bouncycastle.util.encoders.Hex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Assinatura de alto volume: os documentos do lote são resumidos (HashService), os hashes formam as folhas de
+// uma árvore de Merkle (RFC 6962) e somente a raiz é assinada, em um CMS com eContentType próprio. N documentos
+// custam uma única operação com a chave privada; cada documento recebe a prova de inclusão que, junto com a
+// assinatura da raiz, permite verificá-lo isoladamente (VerifyService.verifyMerkle)
+@Component
+public class MerkleSigningService {
+
+    // eContentType do CMS cujo conteúdo é uma SignedRoot
+    public static final ASN1ObjectIdentifier SIGNED_ROOT_CONTENT_TYPE = TimestampService.OID_ARC.branch("3");
+
+    @FunctionalInterface
+    private interface RootSigner {
+        String sign(byte[] encodedRoot) throws SigningValidationException;
+    }
+
+    // SignedRoot ::= SEQUENCE { hashAlgorithm AlgorithmIdentifier, treeSize INTEGER, root OCTET STRING }
+    // O algoritmo das folhas e o tamanho da árvore são assinados junto com a raiz: a prova de inclusão sozinha
+    // não fixa o tamanho, e caminhos de mesmo formato em árvores de tamanhos diferentes levariam à mesma raiz
+    public record SignedRoot(HashService.HashAlgorithm hashAlgorithm, int treeSize, byte[] root) {
+
+        public ASN1Primitive toASN1Primitive() {
+            return new DERSequence(new ASN1Encodable[] {
+                    new AlgorithmIdentifier(this.hashAlgorithm.getOid()),
+                    new ASN1Integer(this.treeSize),
+                    new DEROctetString(this.root)
+            });
+        }
+
+        public static SignedRoot getInstance(byte[] encoded) throws InvalidSignedContentException {
+            try {
+                ASN1Sequence sequence = ASN1Sequence.getInstance(encoded);
+
+                if (sequence.size() != 3) {
+                    throw new IllegalArgumentException("Esperados 3 elementos, encontrados " + sequence.size());
+                }
+
+                HashService.HashAlgorithm hashAlgorithm = HashService.forOid(AlgorithmIdentifier.getInstance(sequence.getObjectAt(0)).getAlgorithm());
+                int treeSize = ASN1Integer.getInstance(sequence.getObjectAt(1)).intValueExact();
+                byte[] root = ASN1OctetString.getInstance(sequence.getObjectAt(2)).getOctets();
+
+                return new SignedRoot(hashAlgorithm, treeSize, root);
+            } catch (RuntimeException e) {
+                throw new InvalidSignedContentException("Raiz assinada do lote malformada: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private final SigningService signingService;
+
+    @Autowired
+    public MerkleSigningService(SigningService signingService) {
+        this.signingService = signingService;
+    }
+
+    // Algoritmo de assinatura nulo: escolhido pelo tipo da chave
+    public MerkleSignResult sign(List<Resource> documents, HashService.HashAlgorithm hashAlgorithm, SigningInfo signingInfo,
+                                 SigningService.SignatureAlgorithm signatureAlgorithm) throws SigningValidationException {
+        return this.sign(documents, hashAlgorithm,
+                encodedRoot -> this.signingService.signAttached(SIGNED_ROOT_CONTENT_TYPE, encodedRoot, signingInfo, signatureAlgorithm));
+    }
+
+    public MerkleSignResult sign(List<Resource> documents, HashService.HashAlgorithm hashAlgorithm, String keyId,
+                                 SigningService.SignatureAlgorithm signatureAlgorithm) throws SigningValidationException {
+        return this.sign(documents, hashAlgorithm,
+                encodedRoot -> this.signingService.signAttached(SIGNED_ROOT_CONTENT_TYPE, encodedRoot, keyId, signatureAlgorithm));
+    }
+
+    private MerkleSignResult sign(List<Resource> documents, HashService.HashAlgorithm hashAlgorithm, RootSigner rootSigner) throws SigningValidationException {
+        if (documents.isEmpty()) {
+            throw new SigningValidationException(HttpStatus.BAD_REQUEST, "Nenhum documento enviado para assinatura.", null);
+        }
+
+        List<byte[]> hashes = new ArrayList<>(documents.size());
+
+        for (Resource document : documents) {
+            try (InputStream inputStream = document.getInputStream()) {
+                hashes.add(HashService.digest(inputStream, hashAlgorithm));
+            } catch (IOException e) {
+                throw new SigningValidationException(HttpStatus.BAD_REQUEST, "Não foi possível ler o documento " + document.getFilename(), e);
+            }
+        }
+
+        MerkleTree merkleTree = new MerkleTree(hashes);
+        SignedRoot signedRoot = new SignedRoot(hashAlgorithm, merkleTree.size(), merkleTree.getRoot());
+
+        String signature;
+
+        try {
+            signature = rootSigner.sign(signedRoot.toASN1Primitive().getEncoded(ASN1Encoding.DER));
+        } catch (IOException e) {
+            throw SigningValidationException.from(e);
+        }
+
+        List<MerkleSignResult.DocumentProof> proofs = new ArrayList<>(documents.size());
+
+        for (int index = 0; index < documents.size(); index++) {
+            MerkleSignResult.DocumentProof proof = new MerkleSignResult.DocumentProof();
+            proof.setIndex(index);
+            proof.setFilename(documents.get(index).getFilename());
+            proof.setHash(Hex.toHexString(hashes.get(index)));
+            proof.setProof(MerkleSigningService.encodeProof(merkleTree.getInclusionProof(index)));
+            proofs.add(proof);
+        }
+
+        MerkleSignResult result = new MerkleSignResult();
+        result.setSignature(signature);
+        result.setHashAlgorithm(hashAlgorithm.name());
+        result.setTreeSize(signedRoot.treeSize());
+        result.setRoot(Hex.toHexString(signedRoot.root()));
+        result.setDocuments(proofs);
+
+        return result;
+    }
+
+    static String encodeProof(MerkleTree.InclusionProof proof) {
+        try {
+            return Base64.toBase64String(proof.toASN1Primitive().getEncoded(ASN1Encoding.DER));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
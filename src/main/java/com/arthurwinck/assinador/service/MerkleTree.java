@@ -0,0 +1,179 @@
+package com.arthurwinck.assinador.service;
+
+import org.bouncycastle.asn1.*;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Árvore de Merkle do RFC 6962 (Certificate Transparency) com SHA-256: folha = H(0x00 || dado) e
+// nó = H(0x01 || esquerda || direita). Os prefixos distintos impedem que um nó interno seja apresentado
+// como folha. Montada por níveis, o último nó de um nível ímpar sobe sem hash, o que resulta na mesma
+// raiz da definição recursiva do RFC (divisão na maior potência de 2 menor que o número de folhas)
+public final class MerkleTree {
+
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    // Prova de que uma folha faz parte da árvore: posição, número de folhas e os hashes irmãos até a raiz.
+    // MerkleInclusionProof ::= SEQUENCE { leafIndex INTEGER, treeSize INTEGER, auditPath SEQUENCE OF OCTET STRING }
+    public record InclusionProof(int leafIndex, int treeSize, List<byte[]> auditPath) {
+
+        public ASN1Primitive toASN1Primitive() {
+            ASN1EncodableVector path = new ASN1EncodableVector();
+            this.auditPath.forEach(hash -> path.add(new DEROctetString(hash)));
+
+            return new DERSequence(new ASN1Encodable[] {
+                    new ASN1Integer(this.leafIndex),
+                    new ASN1Integer(this.treeSize),
+                    new DERSequence(path)
+            });
+        }
+
+        public static InclusionProof getInstance(ASN1Encodable encodable) {
+            ASN1Sequence sequence = ASN1Sequence.getInstance(encodable);
+
+            if (sequence.size() != 3) {
+                throw new IllegalArgumentException("Prova de inclusão malformada");
+            }
+
+            List<byte[]> auditPath = new ArrayList<>();
+            for (ASN1Encodable hash : ASN1Sequence.getInstance(sequence.getObjectAt(2))) {
+                auditPath.add(ASN1OctetString.getInstance(hash).getOctets());
+            }
+
+            return new InclusionProof(
+                    ASN1Integer.getInstance(sequence.getObjectAt(0)).intValueExact(),
+                    ASN1Integer.getInstance(sequence.getObjectAt(1)).intValueExact(),
+                    auditPath);
+        }
+    }
+
+    // levels[0] são os hashes das folhas, o último nível contém somente a raiz
+    private final List<byte[][]> levels = new ArrayList<>();
+
+    public MerkleTree(List<byte[]> leaves) {
+        if (leaves.isEmpty()) {
+            throw new IllegalArgumentException("Árvore de Merkle sem folhas");
+        }
+
+        MessageDigest messageDigest = MerkleTree.sha256();
+        byte[][] level = new byte[leaves.size()][];
+
+        for (int index = 0; index < level.length; index++) {
+            level[index] = MerkleTree.leafHash(messageDigest, leaves.get(index));
+        }
+        this.levels.add(level);
+
+        while (level.length > 1) {
+            byte[][] parent = new byte[(level.length + 1) / 2][];
+
+            for (int index = 0; index < parent.length; index++) {
+                int left = 2 * index;
+                parent[index] = (left + 1 < level.length)
+                        ? MerkleTree.nodeHash(messageDigest, level[left], level[left + 1])
+                        : level[left];
+            }
+
+            this.levels.add(parent);
+            level = parent;
+        }
+    }
+
+    public int size() {
+        return this.levels.get(0).length;
+    }
+
+    public byte[] getRoot() {
+        return this.levels.get(this.levels.size() - 1)[0].clone();
+    }
+
+    // Irmãos da folha do nível mais baixo até a raiz, nós promovidos sem irmão não entram na prova
+    public InclusionProof getInclusionProof(int leafIndex) {
+        if (leafIndex < 0 || leafIndex >= this.size()) {
+            throw new IndexOutOfBoundsException(leafIndex);
+        }
+
+        List<byte[]> auditPath = new ArrayList<>();
+        int index = leafIndex;
+
+        for (int depth = 0; depth < this.levels.size() - 1; depth++) {
+            byte[][] level = this.levels.get(depth);
+            int sibling = index ^ 1;
+
+            if (sibling < level.length) {
+                auditPath.add(level[sibling].clone());
+            }
+
+            index /= 2;
+        }
+
+        return new InclusionProof(leafIndex, this.size(), auditPath);
+    }
+
+    public static byte[] leafHash(byte[] leaf) {
+        return MerkleTree.leafHash(MerkleTree.sha256(), leaf);
+    }
+
+    // Recalcula a raiz a partir da folha e da prova (RFC 9162, seção 2.1.3.2), nulo quando a prova não é
+    // coerente com a posição e o tamanho da árvore
+    public static byte[] rootFromInclusionProof(byte[] leaf, InclusionProof proof) {
+        if (proof.leafIndex() < 0 || proof.leafIndex() >= proof.treeSize()) {
+            return null;
+        }
+
+        MessageDigest messageDigest = MerkleTree.sha256();
+        long index = proof.leafIndex();
+        long lastIndex = proof.treeSize() - 1L;
+        byte[] hash = MerkleTree.leafHash(messageDigest, leaf);
+
+        for (byte[] sibling : proof.auditPath()) {
+            if (lastIndex == 0) {
+                return null;
+            }
+
+            if ((index & 1) == 1 || index == lastIndex) {
+                hash = MerkleTree.nodeHash(messageDigest, sibling, hash);
+
+                // Níveis em que o nó subiu sem irmão não têm hash na prova
+                while ((index & 1) == 0 && index != 0) {
+                    index >>= 1;
+                    lastIndex >>= 1;
+                }
+            } else {
+                hash = MerkleTree.nodeHash(messageDigest, hash, sibling);
+            }
+
+            index >>= 1;
+            lastIndex >>= 1;
+        }
+
+        return (lastIndex == 0) ? hash : null;
+    }
+
+    public static boolean verifyInclusion(byte[] leaf, InclusionProof proof, byte[] root) {
+        byte[] computedRoot = MerkleTree.rootFromInclusionProof(leaf, proof);
+
+        return computedRoot != null && MessageDigest.isEqual(computedRoot, root);
+    }
+
+    private static byte[] leafHash(MessageDigest messageDigest, byte[] leaf) {
+        messageDigest.update(LEAF_PREFIX);
+        return messageDigest.digest(leaf);
+    }
+
+    private static byte[] nodeHash(MessageDigest messageDigest, byte[] left, byte[] right) {
+        messageDigest.update(NODE_PREFIX);
+        messageDigest.update(left);
+        return messageDigest.digest(right);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.arthurwinck.assinador.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Escreve um objeto JSON por linha (NDJSON) e envia imediatamente ao cliente
+class NdjsonWriter {
+
+    private static final byte[] LINE_SEPARATOR = {'\n'};
+
+    private final ObjectMapper objectMapper;
+    private final OutputStream outputStream;
+
+    NdjsonWriter(ObjectMapper objectMapper, OutputStream outputStream) {
+        this.objectMapper = objectMapper;
+        this.outputStream = outputStream;
+    }
+
+    void write(Object value) throws IOException {
+        this.outputStream.write(this.objectMapper.writeValueAsBytes(value));
+        this.outputStream.write(LINE_SEPARATOR);
+        this.outputStream.flush();
+    }
+}
@@ -0,0 +1,151 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.exception.SigningValidationException;
+import com.arthurwinck.assinador.exception.VerifyValidationException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Tempo de cada etapa da assinatura/verificação, tamanho dos documentos recebidos e erros por ErrorType,
+// expostos pelo Actuator (/actuator/prometheus). Timers e distribuições são registrados uma única vez,
+// a medição de uma etapa é um System.nanoTime no início e um record no fim. Desabilitado, nenhuma
+// métrica é registrada e start/stop não leem o relógio
+@Component
+public class PipelineMetrics {
+
+    static final String STAGE_TIMER = "assinador.pipeline.stage";
+    static final String PAYLOAD_SUMMARY = "assinador.pipeline.payload.size";
+    static final String ERROR_COUNTER = "assinador.pipeline.errors";
+
+    private static final PipelineMetrics DISABLED = new PipelineMetrics(null, false, false);
+
+    public enum Operation {
+        SIGN("sign"),
+        VERIFY("verify");
+
+        private final String tag;
+
+        Operation(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    public enum Stage {
+        KEYSTORE_LOAD(Operation.SIGN, "keystore_load"),
+        KEY_UNLOCK(Operation.SIGN, "key_unlock"),
+        CHAIN_CONVERSION(Operation.SIGN, "chain_conversion"),
+        CMS_GENERATION(Operation.SIGN, "cms_generation"),
+        // Hash do conteúdo de uma assinatura existente, na co-assinatura sem assinante de hash compatível
+        CONTENT_DIGEST(Operation.SIGN, "content_digest"),
+        TIMESTAMP(Operation.SIGN, "timestamp"),
+        ENCODING(Operation.SIGN, "encoding"),
+        ARCHIVE(Operation.SIGN, "archive"),
+        PARSE(Operation.VERIFY, "parse"),
+        BASE64_FALLBACK(Operation.VERIFY, "base64_fallback"),
+        SIGNER_LOOKUP(Operation.VERIFY, "signer_lookup"),
+        CRYPTO_VERIFY(Operation.VERIFY, "crypto_verify"),
+        TIMESTAMP_VERIFY(Operation.VERIFY, "timestamp_verify"),
+        ATTRIBUTE_EXTRACTION(Operation.VERIFY, "attribute_extraction");
+
+        private final Operation operation;
+        private final String tag;
+
+        Stage(Operation operation, String tag) {
+            this.operation = operation;
+            this.tag = tag;
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<Operation, DistributionSummary> payloadSummaries = new EnumMap<>(Operation.class);
+
+    @Autowired
+    public PipelineMetrics(MeterRegistry meterRegistry,
+                           @Value("${metrics.pipeline.enabled:true}") boolean enabled,
+                           @Value("${metrics.pipeline.percentile-histogram:false}") boolean percentileHistogram) {
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled && meterRegistry != null;
+
+        if (!this.enabled) {
+            return;
+        }
+
+        for (Stage stage : Stage.values()) {
+            this.stageTimers.put(stage, Timer.builder(STAGE_TIMER)
+                    .description("Tempo de cada etapa da assinatura e da verificação")
+                    .tag("operation", stage.operation.tag)
+                    .tag("stage", stage.tag)
+                    .publishPercentileHistogram(percentileHistogram)
+                    .register(meterRegistry));
+        }
+
+        for (Operation operation : Operation.values()) {
+            this.payloadSummaries.put(operation, DistributionSummary.builder(PAYLOAD_SUMMARY)
+                    .description("Tamanho dos documentos e assinaturas recebidos")
+                    .baseUnit("bytes")
+                    .tag("operation", operation.tag)
+                    .publishPercentileHistogram(percentileHistogram)
+                    .register(meterRegistry));
+        }
+    }
+
+    // Usado fora do contexto Spring (ex: registro de chaves na inicialização, benchmarks)
+    public static PipelineMetrics disabled() {
+        return DISABLED;
+    }
+
+    public long start() {
+        return this.enabled ? System.nanoTime() : 0L;
+    }
+
+    public void stop(Stage stage, long startNanos) {
+        if (this.enabled) {
+            this.stageTimers.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordPayloadSize(Operation operation, long bytes) {
+        if (this.enabled) {
+            this.payloadSummaries.get(operation).record(bytes);
+        }
+    }
+
+    // Devolvem a própria exceção para uso em "throw metrics.recordError(...)"
+    public <E extends SigningValidationException> E recordError(E exception) {
+        if (this.enabled) {
+            String errorType = (exception.getErrorType() != null) ? exception.getErrorType().name() : exception.getClass().getSimpleName();
+            this.countError(Operation.SIGN, errorType);
+        }
+
+        return exception;
+    }
+
+    public <E extends VerifyValidationException> E recordError(E exception) {
+        if (this.enabled) {
+            String errorType = (exception.getErrorType() != null) ? exception.getErrorType().name() : exception.getClass().getSimpleName();
+            this.countError(Operation.VERIFY, errorType);
+        }
+
+        return exception;
+    }
+
+    private void countError(Operation operation, String errorType) {
+        // Somente no caminho de erro, o registry devolve o mesmo contador para as mesmas tags
+        Counter.builder(ERROR_COUNTER)
+                .description("Erros da assinatura e da verificação por ErrorType")
+                .tag("operation", operation.tag)
+                .tag("errorType", errorType)
+                .register(this.meterRegistry)
+                .increment();
+    }
+}
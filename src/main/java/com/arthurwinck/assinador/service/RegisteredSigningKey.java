@@ -0,0 +1,85 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.SigningInfo;
+import com.arthurwinck.assinador.exception.InvalidSignatureAlgorithmException;
+import lombok.Getter;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.SignerInfoGenerator;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.util.CollectionStore;
+import org.bouncycastle.util.Store;
+
+import java.security.cert.CertificateEncodingException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Chave registrada no servidor: KeyStore já aberto, cadeia convertida e geradores de assinatura prontos
+@Getter
+public class RegisteredSigningKey {
+
+    @FunctionalInterface
+    public interface SignerInfoGeneratorTask<T> {
+        T apply(SignerInfoGenerator signerInfoGenerator) throws Exception;
+    }
+
+    private final String keyId;
+    private final SigningInfo signingInfo;
+    private final Store<X509CertificateHolder> certificateStore;
+    // Algoritmo usado quando a requisição não informa outro, escolhido pelo tipo da chave
+    private final SigningService.SignatureAlgorithm signatureAlgorithm;
+
+    @Getter(lombok.AccessLevel.NONE)
+    private final SigningEngine signingEngine;
+
+    // ContentSigner/SignerInfoGenerator guardam estado durante a assinatura, então cada instância é emprestada
+    // a uma assinatura de cada vez. Pool limitado por algoritmo (SigningEngine.INSTANCE_POOL_SIZE) em vez de
+    // uma instância por thread, que com virtual threads seria criada a cada requisição e nunca reaproveitada
+    @Getter(lombok.AccessLevel.NONE)
+    private final Map<SigningService.SignatureAlgorithm, BlockingQueue<SignerInfoGenerator>> signerInfoGenerators =
+            new EnumMap<>(SigningService.SignatureAlgorithm.class);
+
+    public RegisteredSigningKey(String keyId, SigningInfo signingInfo, SigningEngine signingEngine) throws InvalidSignatureAlgorithmException {
+        this.keyId = keyId;
+        this.signingInfo = signingInfo;
+        this.certificateStore = new CollectionStore<>(signingInfo.getCertificateHolderList());
+        this.signatureAlgorithm = SigningService.SignatureAlgorithm.forKey(signingInfo.getPrivateKey());
+        this.signingEngine = signingEngine;
+
+        // Mapa preenchido aqui e somente lido depois, as filas é que são concorrentes
+        for (SigningService.SignatureAlgorithm algorithm : SigningService.SignatureAlgorithm.values()) {
+            this.signerInfoGenerators.put(algorithm, new ArrayBlockingQueue<>(SigningEngine.INSTANCE_POOL_SIZE));
+        }
+    }
+
+    // Executa a tarefa com um gerador emprestado do pool, criado se o pool estiver vazio. O algoritmo deve ser
+    // compatível com a chave (SigningService.SignatureAlgorithm.resolve). Somente para conteúdo já em memória,
+    // que é escrito inteiro no digest; streaming usa createSignerInfoGenerator. Um gerador cuja tarefa falhou
+    // pode ter ficado com parte de um digest e não volta para o pool
+    public <T> T withSignerInfoGenerator(SigningService.SignatureAlgorithm signatureAlgorithm, SignerInfoGeneratorTask<T> task) throws Exception {
+        BlockingQueue<SignerInfoGenerator> pool = this.signerInfoGenerators.get(signatureAlgorithm);
+        SignerInfoGenerator signerInfoGenerator = pool.poll();
+
+        if (signerInfoGenerator == null) {
+            signerInfoGenerator = this.signingEngine.createSignerInfoGenerator(this.signingInfo, signatureAlgorithm);
+        }
+
+        T result = task.apply(signerInfoGenerator);
+        pool.offer(signerInfoGenerator);
+
+        return result;
+    }
+
+    // Gerador exclusivo de uma assinatura em streaming. O digest do SignerInfoGenerator só é reiniciado ao final
+    // da geração, então um conteúdo interrompido (cliente desconectado, falha de leitura) deixaria o gerador da
+    // thread com parte do documento e a próxima assinatura sairia com messageDigest errado
+    public SignerInfoGenerator createSignerInfoGenerator(SigningService.SignatureAlgorithm signatureAlgorithm,
+                                                         CryptoExecutor cryptoExecutor) throws OperatorCreationException, CertificateEncodingException {
+        return this.signingEngine.createSignerInfoGenerator(this.signingInfo, signatureAlgorithm, cryptoExecutor);
+    }
+
+    public String getSubject() {
+        return this.signingInfo.getX509Certificate().getSubjectX500Principal().getName();
+    }
+}
@@ -0,0 +1,120 @@
+package com.arthurwinck.assinador.service;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+// Números de série revogados de uma LCR em um único byte[] ordenado, com largura fixa por registro
+// (o maior número de série da LCR, até 20 bytes pela RFC 5280). LCRs de ACs grandes chegam a milhões
+// de entradas: aqui cada uma ocupa só os seus bytes, sem um BigInteger/objeto por entrada, e a
+// consulta é uma busca binária
+final class RevokedSerialIndex {
+
+    // Mesma ordem numérica dos valores: primeiro o tamanho da magnitude, depois os bytes sem sinal
+    private static final Comparator<byte[]> MAGNITUDE_ORDER = Comparator.<byte[]>comparingInt(magnitude -> magnitude.length)
+            .thenComparing(Arrays::compareUnsigned);
+
+    private final byte[] serials;
+    private final int width;
+    private final int size;
+
+    // Números de série negativos não são permitidos pela RFC 5280, mas existem em LCRs antigas
+    private final Set<BigInteger> negativeSerials;
+
+    private RevokedSerialIndex(byte[] serials, int width, int size, Set<BigInteger> negativeSerials) {
+        this.serials = serials;
+        this.width = width;
+        this.size = size;
+        this.negativeSerials = negativeSerials;
+    }
+
+    static RevokedSerialIndex of(Collection<BigInteger> revokedSerials) {
+        List<byte[]> magnitudes = new ArrayList<>(revokedSerials.size());
+        List<BigInteger> negativeSerials = new ArrayList<>();
+        int width = 1;
+
+        for (BigInteger serial : revokedSerials) {
+            if (serial.signum() < 0) {
+                negativeSerials.add(serial);
+                continue;
+            }
+
+            byte[] magnitude = RevokedSerialIndex.magnitude(serial);
+            magnitudes.add(magnitude);
+            width = Math.max(width, magnitude.length);
+        }
+
+        magnitudes.sort(MAGNITUDE_ORDER);
+
+        byte[] serials = new byte[magnitudes.size() * width];
+        int size = 0;
+        byte[] previous = null;
+
+        for (byte[] magnitude : magnitudes) {
+            // Mesma série repetida na LCR ocupa um único registro
+            if (previous != null && Arrays.equals(previous, magnitude)) {
+                continue;
+            }
+
+            // Alinhado à direita, os zeros à esquerda mantêm a ordem numérica na comparação sem sinal
+            System.arraycopy(magnitude, 0, serials, (size + 1) * width - magnitude.length, magnitude.length);
+            previous = magnitude;
+            size++;
+        }
+
+        return new RevokedSerialIndex(Arrays.copyOf(serials, size * width), width, size, Set.copyOf(negativeSerials));
+    }
+
+    boolean contains(BigInteger serial) {
+        if (serial.signum() < 0) {
+            return this.negativeSerials.contains(serial);
+        }
+
+        byte[] magnitude = RevokedSerialIndex.magnitude(serial);
+
+        if (magnitude.length > this.width) {
+            return false;
+        }
+
+        byte[] key = new byte[this.width];
+        System.arraycopy(magnitude, 0, key, this.width - magnitude.length, magnitude.length);
+
+        int low = 0;
+        int high = this.size - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int offset = middle * this.width;
+            int comparison = Arrays.compareUnsigned(this.serials, offset, offset + this.width, key, 0, this.width);
+
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    int size() {
+        return this.size + this.negativeSerials.size();
+    }
+
+    private static byte[] magnitude(BigInteger serial) {
+        byte[] bytes = serial.toByteArray();
+
+        // toByteArray inclui um byte 0x00 de sinal quando o bit mais alto está ligado
+        if (bytes.length > 1 && bytes[0] == 0) {
+            return Arrays.copyOfRange(bytes, 1, bytes.length);
+        }
+
+        return bytes;
+    }
+}
@@ -0,0 +1,159 @@
+package com.arthurwinck.assinador.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.function.ToDoubleFunction;
+
+// Contadores internos dos caches, da LCR, do arquivamento, do carimbo do tempo, dos uploads mapeados e da ingestão por diretório
+// expostos pelo Actuator junto das métricas da PipelineMetrics. Os valores são lidos de getStats() somente
+// quando o registry é consultado (ex: coleta do Prometheus), nada é feito no caminho da requisição
+@Component
+public class ServiceStatsMetrics implements MeterBinder {
+
+    static final String CACHE_HITS = "assinador.cache.hits";
+    static final String CACHE_MISSES = "assinador.cache.misses";
+    static final String CACHE_EVICTIONS = "assinador.cache.evictions";
+    static final String CACHE_SIZE = "assinador.cache.size";
+
+    private final SignerVerifierCache signerVerifierCache;
+    private final VerifyResultCache verifyResultCache;
+    private final CertificateChainValidator chainValidator;
+    private final CrlStore crlStore;
+    private final SignatureArchiveService archiveService;
+    private final TimestampService timestampService;
+    private final MappedUploadService mappedUploadService;
+    private final DirectoryIngestionService ingestionService;
+    private final boolean enabled;
+
+    public ServiceStatsMetrics(SignerVerifierCache signerVerifierCache,
+                               VerifyResultCache verifyResultCache,
+                               CertificateChainValidator chainValidator,
+                               CrlStore crlStore,
+                               SignatureArchiveService archiveService,
+                               TimestampService timestampService,
+                               MappedUploadService mappedUploadService,
+                               DirectoryIngestionService ingestionService,
+                               @Value("${metrics.pipeline.enabled:true}") boolean enabled) {
+        this.signerVerifierCache = signerVerifierCache;
+        this.verifyResultCache = verifyResultCache;
+        this.chainValidator = chainValidator;
+        this.crlStore = crlStore;
+        this.archiveService = archiveService;
+        this.timestampService = timestampService;
+        this.mappedUploadService = mappedUploadService;
+        this.ingestionService = ingestionService;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (!this.enabled) {
+            return;
+        }
+
+        this.bindCache(registry, "signer_verifier", this.signerVerifierCache,
+                cache -> cache.getStats().hits(), cache -> cache.getStats().misses(),
+                cache -> cache.getStats().evictions(), cache -> cache.getStats().size());
+        this.bindCache(registry, "verify_result", this.verifyResultCache,
+                cache -> cache.getStats().hits(), cache -> cache.getStats().misses(),
+                cache -> cache.getStats().evictions(), cache -> cache.getStats().size());
+        this.bindCache(registry, "certificate_chain", this.chainValidator,
+                validator -> validator.getStats().hits(), validator -> validator.getStats().misses(),
+                validator -> validator.getStats().evictions(), validator -> validator.getStats().size());
+
+        Gauge.builder("assinador.chain.trust_anchors", this.chainValidator, validator -> validator.getStats().trustAnchors())
+                .description("Âncoras de confiança carregadas para a validação de cadeia")
+                .register(registry);
+
+        Gauge.builder("assinador.crl.files", this.crlStore, store -> store.getStats().files())
+                .description("Arquivos de LCR carregados")
+                .register(registry);
+        Gauge.builder("assinador.crl.revoked_serials", this.crlStore, store -> store.getStats().revokedSerials())
+                .description("Números de série revogados indexados")
+                .register(registry);
+        FunctionCounter.builder("assinador.crl.reloads", this.crlStore, store -> store.getStats().reloads())
+                .description("Recargas das LCRs com arquivos novos, alterados ou removidos")
+                .register(registry);
+        FunctionCounter.builder("assinador.crl.failed_files", this.crlStore, store -> store.getStats().failedFiles())
+                .description("Arquivos de LCR que não puderam ser carregados")
+                .register(registry);
+
+        FunctionCounter.builder("assinador.archive.written", this.archiveService, archive -> archive.getStats().written())
+                .description("Assinaturas gravadas no diretório de arquivamento")
+                .register(registry);
+        FunctionCounter.builder("assinador.archive.failed", this.archiveService, archive -> archive.getStats().failed())
+                .description("Assinaturas que não puderam ser arquivadas")
+                .register(registry);
+        FunctionCounter.builder("assinador.archive.synchronous_writes", this.archiveService, archive -> archive.getStats().synchronousWrites())
+                .description("Assinaturas gravadas na thread da requisição com a fila cheia")
+                .register(registry);
+        Gauge.builder("assinador.archive.queue.size", this.archiveService, archive -> archive.getStats().queueSize())
+                .description("Assinaturas aguardando gravação")
+                .register(registry);
+        Gauge.builder("assinador.archive.queue.bytes", this.archiveService, archive -> archive.getStats().queueBytes())
+                .description("Bytes das assinaturas aguardando gravação")
+                .register(registry);
+        Gauge.builder("assinador.archive.writer.alive", this.archiveService, archive -> archive.getStats().writerAlive() ? 1 : 0)
+                .description("1 enquanto a thread de gravação do arquivamento estiver ativa")
+                .register(registry);
+
+        // Tamanho médio do lote = signatures / tsa_requests
+        FunctionCounter.builder("assinador.timestamp.signatures", this.timestampService, timestamp -> timestamp.getStats().signatures())
+                .description("Assinaturas carimbadas")
+                .register(registry);
+        FunctionCounter.builder("assinador.timestamp.tsa_requests", this.timestampService, timestamp -> timestamp.getStats().tsaRequests())
+                .description("Requisições feitas à TSA")
+                .register(registry);
+        Gauge.builder("assinador.timestamp.queue.size", this.timestampService, timestamp -> timestamp.getStats().queueSize())
+                .description("Assinaturas aguardando o próximo lote de carimbo do tempo")
+                .register(registry);
+
+        FunctionCounter.builder("assinador.upload.mapped", this.mappedUploadService, upload -> upload.getStats().mapped())
+                .description("Uploads mapeados em memória")
+                .register(registry);
+        FunctionCounter.builder("assinador.upload.mapped.fallbacks", this.mappedUploadService, upload -> upload.getStats().fallbacks())
+                .description("Uploads lidos sem mapeamento por atingir upload.mapped.max-live-bytes")
+                .register(registry);
+        Gauge.builder("assinador.upload.mapped.live_bytes", this.mappedUploadService, upload -> upload.getStats().liveBytes())
+                .description("Bytes mapeados ainda não coletados (ocupam disco mesmo com o arquivo removido)")
+                .register(registry);
+
+        FunctionCounter.builder("assinador.ingestion.signed", this.ingestionService, ingestion -> ingestion.getStats().signed())
+                .description("Arquivos do inbox assinados")
+                .register(registry);
+        FunctionCounter.builder("assinador.ingestion.failed", this.ingestionService, ingestion -> ingestion.getStats().failed())
+                .description("Arquivos do inbox movidos para error")
+                .register(registry);
+        FunctionCounter.builder("assinador.ingestion.resumed", this.ingestionService, ingestion -> ingestion.getStats().resumed())
+                .description("Arquivos retomados de processing na inicialização")
+                .register(registry);
+        Gauge.builder("assinador.ingestion.in_flight", this.ingestionService, ingestion -> ingestion.getStats().inFlight())
+                .description("Arquivos sendo assinados")
+                .register(registry);
+    }
+
+    private <T> void bindCache(MeterRegistry registry, String cache, T source, ToDoubleFunction<T> hits, ToDoubleFunction<T> misses,
+                               ToDoubleFunction<T> evictions, ToDoubleFunction<T> size) {
+        FunctionCounter.builder(CACHE_HITS, source, hits)
+                .description("Consultas atendidas pelo cache")
+                .tag("cache", cache)
+                .register(registry);
+        FunctionCounter.builder(CACHE_MISSES, source, misses)
+                .description("Consultas não encontradas no cache")
+                .tag("cache", cache)
+                .register(registry);
+        FunctionCounter.builder(CACHE_EVICTIONS, source, evictions)
+                .description("Entradas removidas ao atingir o tamanho máximo")
+                .tag("cache", cache)
+                .register(registry);
+        Gauge.builder(CACHE_SIZE, source, size)
+                .description("Entradas no cache")
+                .tag("cache", cache)
+                .register(registry);
+    }
+}
@@ -0,0 +1,41 @@
+package com.arthurwinck.assinador.service;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+// Expõe em /actuator/health a thread de arquivamento parada ou gravações falhando (ex: disco cheio)
+@Component
+public class SignatureArchiveHealthIndicator implements HealthIndicator {
+
+    private final SignatureArchiveService archiveService;
+
+    public SignatureArchiveHealthIndicator(SignatureArchiveService archiveService) {
+        this.archiveService = archiveService;
+    }
+
+    @Override
+    public Health health() {
+        if (!this.archiveService.isEnabled()) {
+            return Health.unknown().withDetail("enabled", false).build();
+        }
+
+        SignatureArchiveService.ArchiveStats stats = this.archiveService.getStats();
+        Health.Builder builder = (stats.writerAlive() && stats.lastError() == null) ? Health.up() : Health.down();
+
+        builder.withDetail("writerAlive", stats.writerAlive())
+                .withDetail("queueSize", stats.queueSize())
+                .withDetail("queueCapacity", stats.queueCapacity())
+                .withDetail("queueBytes", stats.queueBytes())
+                .withDetail("queueMaxBytes", stats.queueMaxBytes())
+                .withDetail("written", stats.written())
+                .withDetail("failed", stats.failed())
+                .withDetail("synchronousWrites", stats.synchronousWrites());
+
+        if (stats.lastError() != null) {
+            builder.withDetail("lastError", stats.lastError());
+        }
+
+        return builder.build();
+    }
+}
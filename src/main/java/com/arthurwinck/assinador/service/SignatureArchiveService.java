@@ -0,0 +1,535 @@
+package com.arthurwinck.assinador.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Salva as assinaturas geradas em formato .p7m (arquivo + assinatura) ou .p7s (detached) fora da thread da requisição.
+// Uma fila limitada alimenta uma única thread de escrita que grava em lotes: todo o lote é escrito,
+// sincronizado com o disco de uma vez e só então contado como gravado (group commit). Quando a fila está
+// cheia a requisição espera até offer-timeout-ms e, se ainda assim não houver espaço, grava ela mesma
+// (nenhuma assinatura é descartada e a contagem de gravações síncronas indica a pressão na fila).
+// A fila é limitada também pelo total de bytes (queue-max-bytes): assinaturas attached de documentos
+// grandes não ficam retidas no heap depois da resposta, a requisição grava direto quando não cabem
+@Slf4j
+@Component
+public class SignatureArchiveService {
+
+    private static final DateTimeFormatter FILENAME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmssSSS");
+    private static final String PARTIAL_FILE_SUFFIX = ".part";
+
+    public record ArchiveStats(long enqueued, long written, long failed, long synchronousWrites, int queueSize, int queueCapacity,
+                               long queueBytes, long queueMaxBytes, boolean writerAlive, String lastError) {}
+
+    private record ArchiveEntry(String filename, byte[] encodedSignature) {
+
+        // Assinatura inválida (nula) falha somente na gravação, como qualquer outro erro de um lote
+        long size() {
+            return (this.encodedSignature == null) ? 0 : this.encodedSignature.length;
+        }
+    }
+
+    // Arquivo do lote já escrito, aguardando a sincronização do lote inteiro
+    private record PendingWrite(Path target, FileChannel channel) {}
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int queueCapacity;
+    private final long queueMaxBytes;
+    private final int batchSize;
+    private final boolean fsync;
+    private final long offerTimeoutMillis;
+
+    private final BlockingQueue<ArchiveEntry> queue;
+
+    // Bytes das assinaturas na fila ou no lote em gravação, liberados depois que o lote é gravado
+    private final AtomicLong queueBytes = new AtomicLong();
+
+    // Componente aleatório por processo + sequência garantem nomes únicos mesmo no mesmo milissegundo
+    private final String instanceId = HexFormat.of().toHexDigits(ThreadLocalRandom.current().nextInt());
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong synchronousWrites = new AtomicLong();
+
+    // Último erro de gravação, limpo pelo próximo lote gravado com sucesso (exposto no health)
+    private volatile String lastError;
+    private volatile boolean running;
+    // Após o início do encerramento nenhuma assinatura entra na fila, que já pode ter sido esvaziada por stop().
+    // O offer acontece sob a leitura, então as requisições não esperam umas pelas outras; a transição sob a escrita
+    private boolean stopping;
+    private final ReadWriteLock offerLock = new ReentrantReadWriteLock();
+    private Thread writerThread;
+
+    public SignatureArchiveService(@Value("${signing.archive.enabled:true}") boolean enabled,
+                                   @Value("${signing.archive.directory:.}") String directory,
+                                   @Value("${signing.archive.queue-capacity:1000}") int queueCapacity,
+                                   @Value("${signing.archive.queue-max-bytes:67108864}") long queueMaxBytes,
+                                   @Value("${signing.archive.batch-size:64}") int batchSize,
+                                   @Value("${signing.archive.fsync:false}") boolean fsync,
+                                   @Value("${signing.archive.offer-timeout-ms:50}") long offerTimeoutMillis) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.queueCapacity = queueCapacity;
+        this.queueMaxBytes = queueMaxBytes;
+        this.batchSize = batchSize;
+        this.fsync = fsync;
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!this.enabled) {
+            return;
+        }
+
+        Files.createDirectories(this.directory);
+
+        this.running = true;
+        this.writerThread = new Thread(this::writeLoop, "p7m-archive-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    // Recebe a assinatura já codificada, não há um segundo getEncoded() para arquivar
+    public String archive(byte[] encodedSignature) {
+        return this.archive(encodedSignature, true);
+    }
+
+    public String archive(byte[] encodedSignature, boolean attached) {
+        if (!this.enabled) {
+            return null;
+        }
+
+        ArchiveEntry entry = new ArchiveEntry(this.nextFilename(attached), encodedSignature);
+
+        if (this.offer(entry)) {
+            this.enqueued.incrementAndGet();
+            return entry.filename();
+        }
+
+        // Fila cheia, sem espaço em bytes (ou serviço parando): grava na própria thread para não perder a assinatura
+        this.synchronousWrites.incrementAndGet();
+        this.writeBatch(List.of(entry));
+        return entry.filename();
+    }
+
+    private boolean offer(ArchiveEntry entry) {
+        this.offerLock.readLock().lock();
+
+        try {
+            if (this.stopping || !this.running || !this.reserveQueueBytes(entry.size())) {
+                return false;
+            }
+
+            try {
+                if (this.queue.offer(entry, this.offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            this.queueBytes.addAndGet(-entry.size());
+            return false;
+        } finally {
+            this.offerLock.readLock().unlock();
+        }
+    }
+
+    // Espera os offers em andamento; depois disso o que está na fila é tudo o que o flush precisa gravar
+    private void markStopping() {
+        this.offerLock.writeLock().lock();
+
+        try {
+            this.stopping = true;
+        } finally {
+            this.offerLock.writeLock().unlock();
+        }
+    }
+
+    private boolean reserveQueueBytes(long size) {
+        long current;
+
+        do {
+            current = this.queueBytes.get();
+
+            if (current + size > this.queueMaxBytes) {
+                return false;
+            }
+        } while (!this.queueBytes.compareAndSet(current, current + size));
+
+        return true;
+    }
+
+    // Assinaturas geradas em streaming são gravadas à medida que são produzidas, na thread da requisição,
+    // já que não existem como byte[] para entrar na fila. O arquivo só recebe o nome final (.p7m/.p7s) se
+    // complete() for chamado antes do close, assinaturas interrompidas são descartadas
+    public ArchiveOutputStream openArchiveStream() throws IOException {
+        return this.openArchiveStream(true);
+    }
+
+    public ArchiveOutputStream openArchiveStream(boolean attached) throws IOException {
+        if (!this.enabled) {
+            return this.discardingArchiveStream();
+        }
+
+        String filename = this.nextFilename(attached);
+        Path target = this.directory.resolve(filename);
+        Path partial = this.directory.resolve(filename + PARTIAL_FILE_SUFFIX);
+        FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+
+        return new ArchiveOutputStream(Channels.newOutputStream(channel), channel, partial, target);
+    }
+
+    // Mesmo contrato de openArchiveStream, sem gravar nada (arquivamento desabilitado ou não desejado)
+    public ArchiveOutputStream discardingArchiveStream() {
+        return new ArchiveOutputStream(OutputStream.nullOutputStream(), null, null, null);
+    }
+
+    // Assinatura já gravada em um arquivo (ex: caminho mapeado em memória): movida para o diretório de
+    // arquivamento, sem cópia no mesmo sistema de arquivos; em outro, copiada com FileChannel.transferTo.
+    // O arquivo de origem deixa de existir em ambos os casos
+    public String archive(Path signedFile, boolean attached) {
+        if (!this.enabled) {
+            return null;
+        }
+
+        String filename = this.nextFilename(attached);
+        Path target = this.directory.resolve(filename);
+        Path partial = this.directory.resolve(filename + PARTIAL_FILE_SUFFIX);
+
+        try {
+            try {
+                if (this.fsync) {
+                    try (FileChannel channel = FileChannel.open(signedFile, StandardOpenOption.WRITE)) {
+                        channel.force(true);
+                    }
+                }
+
+                Files.move(signedFile, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                try (FileChannel source = FileChannel.open(signedFile, StandardOpenOption.READ);
+                     FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                    MappedFile.transferTo(source, channel);
+
+                    if (this.fsync) {
+                        channel.force(true);
+                    }
+                }
+
+                Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+                Files.deleteIfExists(signedFile);
+            }
+
+            // Mesma garantia dos lotes: o rename só é durável com a entrada do diretório sincronizada
+            if (this.fsync) {
+                SignatureArchiveService.forceDirectory(this.directory);
+            }
+
+            this.written.incrementAndGet();
+            return filename;
+        } catch (IOException e) {
+            this.failed.incrementAndGet();
+            log.error("Não foi possível salvar a assinatura em {}", target, e);
+
+            try {
+                Files.deleteIfExists(partial);
+                Files.deleteIfExists(signedFile);
+            } catch (IOException ignored) {
+                // Já registrado acima, o arquivo temporário fica para limpeza do sistema
+            }
+
+            return null;
+        }
+    }
+
+    public class ArchiveOutputStream extends FilterOutputStream {
+
+        private final FileChannel channel;
+        private final Path partial;
+        private final Path target;
+        private boolean completed;
+        private boolean broken;
+
+        private ArchiveOutputStream(OutputStream outputStream, FileChannel channel, Path partial, Path target) {
+            super(outputStream);
+            this.channel = channel;
+            this.partial = partial;
+            this.target = target;
+        }
+
+        // Nome do arquivo final, null quando o arquivamento está desabilitado
+        public String getFilename() {
+            return (this.target == null) ? null : this.target.getFileName().toString();
+        }
+
+        // Falha ao arquivar não interrompe a assinatura que está sendo devolvida ao cliente
+        @Override
+        public void write(int b) {
+            this.write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            if (this.broken) {
+                return;
+            }
+
+            try {
+                this.out.write(bytes, offset, length);
+            } catch (IOException e) {
+                this.broken = true;
+                log.error("Não foi possível salvar a assinatura em {}", this.target, e);
+            }
+        }
+
+        public void complete() {
+            this.completed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.channel == null) {
+                return;
+            }
+
+            try {
+                if (this.completed && SignatureArchiveService.this.fsync) {
+                    this.channel.force(true);
+                }
+                super.close();
+
+                if (this.broken) {
+                    SignatureArchiveService.this.failed.incrementAndGet();
+                    Files.deleteIfExists(this.partial);
+                } else if (this.completed) {
+                    Files.move(this.partial, this.target, StandardCopyOption.ATOMIC_MOVE);
+
+                    if (SignatureArchiveService.this.fsync) {
+                        SignatureArchiveService.forceDirectory(SignatureArchiveService.this.directory);
+                    }
+
+                    SignatureArchiveService.this.written.incrementAndGet();
+                } else {
+                    Files.deleteIfExists(this.partial);
+                }
+            } catch (IOException e) {
+                SignatureArchiveService.this.failed.incrementAndGet();
+                Files.deleteIfExists(this.partial);
+                log.error("Não foi possível salvar a assinatura em {}", this.target, e);
+            }
+        }
+    }
+
+    public ArchiveStats getStats() {
+        boolean writerAlive = !this.enabled || (this.writerThread != null && this.writerThread.isAlive());
+
+        return new ArchiveStats(this.enqueued.get(), this.written.get(), this.failed.get(),
+                this.synchronousWrites.get(), this.queue.size(), this.queueCapacity, this.queueBytes.get(), this.queueMaxBytes,
+                writerAlive, this.lastError);
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (this.writerThread == null) {
+            return;
+        }
+
+        this.markStopping();
+
+        // Sem interrupt: um FileChannel interrompido no meio da escrita é fechado e o arquivo se perde
+        this.running = false;
+        this.writerThread.join(TimeUnit.SECONDS.toMillis(30));
+
+        // Garante que o que ficou na fila seja gravado antes de encerrar
+        this.flushPending();
+    }
+
+    private void writeLoop() {
+        List<ArchiveEntry> batch = new ArrayList<>(this.batchSize);
+
+        try {
+            while (this.running) {
+                try {
+                    ArchiveEntry first = this.queue.poll(200, TimeUnit.MILLISECONDS);
+
+                    if (first == null) {
+                        continue;
+                    }
+
+                    batch.add(first);
+                    this.queue.drainTo(batch, this.batchSize - 1);
+
+                    this.writeQueuedBatch(batch);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (RuntimeException e) {
+                    // writeBatch já trata as falhas por arquivo, aqui só chega erro inesperado do próprio loop
+                    this.lastError = e.toString();
+                    log.error("Erro inesperado na thread de arquivamento, o lote atual foi descartado", e);
+                } finally {
+                    batch.clear();
+                }
+            }
+        } finally {
+            if (this.running) {
+                // Thread encerrada por um Error: as requisições passam a gravar na própria thread e a fila é esvaziada
+                this.running = false;
+                this.lastError = "Thread de arquivamento encerrada inesperadamente";
+                log.error("Thread de arquivamento encerrada inesperadamente, gravando as assinaturas na thread da requisição");
+                this.markStopping();
+                this.flushPending();
+            }
+        }
+    }
+
+    private void flushPending() {
+        List<ArchiveEntry> pending = new ArrayList<>();
+        this.queue.drainTo(pending);
+
+        if (!pending.isEmpty()) {
+            this.writeQueuedBatch(pending);
+        }
+    }
+
+    private void writeQueuedBatch(List<ArchiveEntry> batch) {
+        try {
+            this.writeBatch(batch);
+        } finally {
+            this.queueBytes.addAndGet(-batch.stream().mapToLong(ArchiveEntry::size).sum());
+        }
+    }
+
+    // Escreve todos os arquivos do lote, sincroniza o lote e o diretório e só então conta as gravações.
+    // Cada assinatura continua em seu próprio .p7m, então os dados ainda são sincronizados por arquivo,
+    // mas em sequência depois de todas as escritas; as entradas de diretório são sincronizadas uma única vez
+    private void writeBatch(List<ArchiveEntry> batch) {
+        List<PendingWrite> pending = new ArrayList<>(batch.size());
+
+        for (ArchiveEntry entry : batch) {
+            Path target = this.directory.resolve(entry.filename());
+            FileChannel channel = null;
+
+            try {
+                channel = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                ByteBuffer buffer = ByteBuffer.wrap(entry.encodedSignature());
+
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+
+                pending.add(new PendingWrite(target, channel));
+            } catch (IOException | RuntimeException e) {
+                this.discard(target, channel, e);
+            }
+        }
+
+        List<PendingWrite> completed = new ArrayList<>(pending.size());
+
+        for (PendingWrite pendingWrite : pending) {
+            try (FileChannel channel = pendingWrite.channel()) {
+                if (this.fsync) {
+                    channel.force(true);
+                }
+
+                completed.add(pendingWrite);
+            } catch (IOException | RuntimeException e) {
+                this.discard(pendingWrite.target(), null, e);
+            }
+        }
+
+        if (completed.isEmpty()) {
+            return;
+        }
+
+        if (this.fsync) {
+            try {
+                SignatureArchiveService.forceDirectory(this.directory);
+            } catch (IOException e) {
+                this.failed.addAndGet(completed.size());
+                this.lastError = e.toString();
+                log.error("Não foi possível sincronizar o diretório de arquivamento {}, {} assinaturas podem não ter sido persistidas",
+                        this.directory, completed.size(), e);
+                return;
+            }
+        }
+
+        this.written.addAndGet(completed.size());
+        this.lastError = null;
+    }
+
+    private void discard(Path target, FileChannel channel, Exception cause) {
+        this.failed.incrementAndGet();
+        this.lastError = cause.toString();
+        log.error("Não foi possível salvar a assinatura em {}", target, cause);
+
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+
+            Files.deleteIfExists(target);
+        } catch (IOException ignored) {
+            // Já registrado acima
+        }
+    }
+
+    // Sincroniza as entradas do diretório (arquivos criados ou renomeados). Sistemas de arquivos que não
+    // permitem abrir diretórios (ex: Windows) não têm esse passo
+    static void forceDirectory(Path directory) throws IOException {
+        FileChannel channel;
+
+        try {
+            channel = FileChannel.open(directory, StandardOpenOption.READ);
+        } catch (IOException | UnsupportedOperationException e) {
+            log.debug("Diretório {} não pode ser sincronizado neste sistema de arquivos", directory);
+            return;
+        }
+
+        try (channel) {
+            channel.force(true);
+        }
+    }
+
+    private String nextFilename(boolean attached) {
+        return FILENAME_FORMATTER.format(LocalDateTime.now())
+                + "-" + this.instanceId
+                + "-" + this.sequence.incrementAndGet()
+                + (attached ? SigningService.SIGNATURE_FILE_EXTENSION : SigningService.DETACHED_SIGNATURE_FILE_EXTENSION);
+    }
+}
@@ -0,0 +1,412 @@
+package com.arthurwinck.assinador.service;
+
+import org.bouncycastle.asn1.*;
+import org.bouncycastle.asn1.cms.CMSObjectIdentifiers;
+import org.bouncycastle.asn1.cms.ContentInfoParser;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+// Acrescenta assinantes (co-assinatura) e contra-assinaturas a um SignedData existente sem decodificar nem
+// recodificar o conteúdo encapsulado. Somente os cabeçalhos TLV do ContentInfo e do SignedData são lidos (BER
+// ou DER), o encapContentInfo é copiado byte a byte para a saída e apenas os conjuntos pequenos (digestAlgorithms,
+// certificates e signerInfos) são remontados, mantendo os elementos existentes como estavam. Acrescentar um
+// assinante a um documento de 200 MB custa o parse da parte de assinatura e uma cópia do conteúdo
+public final class SignedDataAppender {
+
+    private static final int TAG_INTEGER = 0x02;
+    private static final int TAG_OBJECT_IDENTIFIER = 0x06;
+    private static final int TAG_SEQUENCE = 0x30;
+    private static final int TAG_SET = 0x31;
+    // [0] explícito do ContentInfo e [0] IMPLICIT SET dos certificados usam o mesmo octeto
+    private static final int TAG_CONTEXT_0 = 0xA0;
+    private static final int TAG_CONTEXT_1 = 0xA1;
+
+    // Assinantes a substituir (pelo índice nos signerInfos, ex: com contra-assinatura), assinantes e
+    // certificados a acrescentar. Certificados e algoritmos de digest já presentes não são repetidos
+    public record Additions(Map<Integer, SignerInformation> replacedSigners, List<SignerInformation> addedSigners,
+                            Collection<X509CertificateHolder> addedCertificates) {}
+
+    // Posição de um elemento: início do cabeçalho, início e fim do conteúdo e fim do elemento (inclui o
+    // fim de conteúdo 00 00 nos elementos BER de tamanho indefinido)
+    private record Tlv(int tag, int start, int contentStart, int contentEnd, int end) {}
+
+    private final ByteBuffer encoded;
+    private final Tlv contentType;
+    private final Tlv version;
+    private final List<Tlv> digestAlgorithms;
+    private final Tlv encapContentInfo;
+    private final Tlv encapContentType;
+    private final boolean contentPresent;
+    private final List<Tlv> certificates;
+    private final Tlv crls;
+    private final List<Tlv> signerInfos;
+    private final CMSSignedData signerData;
+
+    private SignedDataAppender(ByteBuffer encoded) throws IOException, CMSException {
+        this.encoded = encoded;
+
+        Tlv contentInfo = this.read(0, encoded.limit());
+        SignedDataAppender.expect(contentInfo, TAG_SEQUENCE, "ContentInfo");
+
+        List<Tlv> contentInfoFields = this.children(contentInfo);
+        if (contentInfoFields.size() != 2 || !Arrays.equals(this.bytes(contentInfoFields.get(0)), CMSObjectIdentifiers.signedData.getEncoded())) {
+            throw new IOException("Arquivo não contém um SignedData");
+        }
+
+        this.contentType = contentInfoFields.get(0);
+        Tlv explicitContent = contentInfoFields.get(1);
+        SignedDataAppender.expect(explicitContent, TAG_CONTEXT_0, "ContentInfo.content");
+
+        Tlv signedData = this.read(explicitContent.contentStart(), explicitContent.contentEnd());
+        SignedDataAppender.expect(signedData, TAG_SEQUENCE, "SignedData");
+
+        Iterator<Tlv> fields = this.children(signedData).iterator();
+        this.version = SignedDataAppender.expect(SignedDataAppender.next(fields), TAG_INTEGER, "SignedData.version");
+        this.digestAlgorithms = this.children(SignedDataAppender.expect(SignedDataAppender.next(fields), TAG_SET, "SignedData.digestAlgorithms"));
+        this.encapContentInfo = SignedDataAppender.expect(SignedDataAppender.next(fields), TAG_SEQUENCE, "SignedData.encapContentInfo");
+
+        List<Tlv> encapFields = this.children(this.encapContentInfo);
+        this.encapContentType = SignedDataAppender.expect(encapFields.get(0), TAG_OBJECT_IDENTIFIER, "EncapsulatedContentInfo.eContentType");
+        this.contentPresent = encapFields.size() > 1;
+
+        Tlv field = SignedDataAppender.next(fields);
+        List<Tlv> certificateList = List.of();
+        Tlv crlField = null;
+
+        if (field.tag() == TAG_CONTEXT_0) {
+            certificateList = this.children(field);
+            field = SignedDataAppender.next(fields);
+        }
+
+        if (field.tag() == TAG_CONTEXT_1) {
+            crlField = field;
+            field = SignedDataAppender.next(fields);
+        }
+
+        this.certificates = certificateList;
+        this.crls = crlField;
+        this.signerInfos = this.children(SignedDataAppender.expect(field, TAG_SET, "SignedData.signerInfos"));
+
+        // Mesmo SignedData com o conteúdo omitido: assinantes e certificados lidos pelo BouncyCastle sem o documento
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        this.write(outputStream, new Additions(Map.of(), List.of(), List.of()), false);
+        this.signerData = new CMSSignedData(outputStream.toByteArray());
+    }
+
+    // Aceita DER/BER ou o mesmo conteúdo codificado em Base64, como devolvido por /signature
+    public static SignedDataAppender parse(ByteBuffer encoded) throws IOException, CMSException {
+        ByteBuffer buffer = encoded.slice();
+
+        if (buffer.remaining() > 0 && (buffer.get(0) & 0xFF) != TAG_SEQUENCE) {
+            byte[] base64 = new byte[buffer.remaining()];
+            buffer.get(base64);
+            buffer = ByteBuffer.wrap(java.util.Base64.getMimeDecoder().decode(base64));
+        }
+
+        try {
+            return new SignedDataAppender(buffer);
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("Estrutura ASN.1 truncada ou malformada", e);
+        }
+    }
+
+    // SignedData sem o conteúdo encapsulado, para leitura dos assinantes e certificados existentes
+    public CMSSignedData getSignerData() {
+        return this.signerData;
+    }
+
+    public ASN1ObjectIdentifier getContentType() {
+        return ASN1ObjectIdentifier.getInstance(this.bytes(this.encapContentType));
+    }
+
+    public boolean hasContent() {
+        return this.contentPresent;
+    }
+
+    // Octetos do conteúdo encapsulado, lidos à medida que são consumidos (OCTET STRING em partes, no BER)
+    public InputStream openContent() throws IOException {
+        ASN1StreamParser streamParser = new ASN1StreamParser(new ByteBufferInputStream(this.encoded, this.encapContentInfo.start(), this.encapContentInfo.end()));
+        ContentInfoParser contentInfoParser = new ContentInfoParser((ASN1SequenceParser) streamParser.readObject());
+        ASN1OctetStringParser octetStringParser = (ASN1OctetStringParser) contentInfoParser.getContent(BERTags.OCTET_STRING);
+
+        return octetStringParser.getOctetStream();
+    }
+
+    public void write(OutputStream outputStream, Additions additions) throws IOException {
+        this.write(outputStream, additions, true);
+    }
+
+    private void write(OutputStream outputStream, Additions additions, boolean includeContent) throws IOException {
+        List<Part> digestAlgorithmParts = this.raw(this.digestAlgorithms);
+        Set<ASN1ObjectIdentifier> digestAlgorithmOids = new HashSet<>();
+
+        for (Tlv digestAlgorithm : this.digestAlgorithms) {
+            digestAlgorithmOids.add(AlgorithmIdentifier.getInstance(this.bytes(digestAlgorithm)).getAlgorithm());
+        }
+
+        for (SignerInformation signer : additions.addedSigners()) {
+            if (digestAlgorithmOids.add(signer.getDigestAlgorithmID().getAlgorithm())) {
+                digestAlgorithmParts.add(new EncodedPart(signer.getDigestAlgorithmID().getEncoded(ASN1Encoding.DER)));
+            }
+        }
+
+        List<Part> certificateParts = this.raw(this.certificates);
+        Set<ByteBuffer> certificateEncodings = new HashSet<>();
+
+        for (Tlv certificate : this.certificates) {
+            certificateEncodings.add(ByteBuffer.wrap(this.bytes(certificate)));
+        }
+
+        for (X509CertificateHolder certificate : additions.addedCertificates()) {
+            byte[] certificateEncoding = certificate.getEncoded();
+
+            if (certificateEncodings.add(ByteBuffer.wrap(certificateEncoding))) {
+                certificateParts.add(new EncodedPart(certificateEncoding));
+            }
+        }
+
+        List<Part> signerInfoParts = new ArrayList<>(this.signerInfos.size() + additions.addedSigners().size());
+
+        for (int index = 0; index < this.signerInfos.size(); index++) {
+            SignerInformation replacement = additions.replacedSigners().get(index);
+
+            signerInfoParts.add((replacement == null)
+                    ? new RawPart(this.encoded, this.signerInfos.get(index))
+                    : new EncodedPart(replacement.toASN1Structure().getEncoded(ASN1Encoding.DER)));
+        }
+
+        for (SignerInformation signer : additions.addedSigners()) {
+            signerInfoParts.add(new EncodedPart(signer.toASN1Structure().getEncoded(ASN1Encoding.DER)));
+        }
+
+        // A versão é mantida: os assinantes gerados aqui usam issuerAndSerialNumber (SignerInfo v1)
+        List<Part> signedDataFields = new ArrayList<>();
+        signedDataFields.add(new RawPart(this.encoded, this.version));
+        signedDataFields.add(new ConstructedPart(TAG_SET, digestAlgorithmParts));
+        signedDataFields.add(includeContent
+                ? new RawPart(this.encoded, this.encapContentInfo)
+                : new ConstructedPart(TAG_SEQUENCE, List.of(new RawPart(this.encoded, this.encapContentType))));
+
+        if (!certificateParts.isEmpty()) {
+            signedDataFields.add(new ConstructedPart(TAG_CONTEXT_0, certificateParts));
+        }
+
+        if (this.crls != null) {
+            signedDataFields.add(new RawPart(this.encoded, this.crls));
+        }
+
+        signedDataFields.add(new ConstructedPart(TAG_SET, signerInfoParts));
+
+        Part contentInfo = new ConstructedPart(TAG_SEQUENCE, List.of(
+                new RawPart(this.encoded, this.contentType),
+                new ConstructedPart(TAG_CONTEXT_0, List.of(new ConstructedPart(TAG_SEQUENCE, signedDataFields)))
+        ));
+
+        contentInfo.writeTo(outputStream);
+    }
+
+    private Tlv read(int position, int limit) throws IOException {
+        int start = position;
+        int tag = this.encoded.get(position++) & 0xFF;
+
+        // Número de tag em vários octetos, não usado no SignedData mas válido dentro dos elementos
+        if ((tag & 0x1F) == 0x1F) {
+            while ((this.encoded.get(position++) & 0x80) != 0) {
+                // continua até o último octeto do número da tag
+            }
+        }
+
+        int lengthOctet = this.encoded.get(position++) & 0xFF;
+
+        if (lengthOctet == 0x80) {
+            if ((tag & 0x20) == 0) {
+                throw new IOException("Tamanho indefinido em elemento primitivo");
+            }
+
+            // BER de tamanho indefinido (ex: assinaturas em streaming): os filhos são percorridos até o 00 00
+            int contentStart = position;
+
+            while (true) {
+                if (position + 2 > limit) {
+                    throw new IOException("Fim de conteúdo não encontrado");
+                }
+
+                if (this.encoded.get(position) == 0 && this.encoded.get(position + 1) == 0) {
+                    return new Tlv(tag, start, contentStart, position, position + 2);
+                }
+
+                position = this.read(position, limit).end();
+            }
+        }
+
+        long length = lengthOctet;
+
+        if ((lengthOctet & 0x80) != 0) {
+            int lengthSize = lengthOctet & 0x7F;
+
+            if (lengthSize > 4) {
+                throw new IOException("Tamanho de elemento ASN.1 não suportado");
+            }
+
+            length = 0;
+            for (int index = 0; index < lengthSize; index++) {
+                length = (length << 8) | (this.encoded.get(position++) & 0xFF);
+            }
+        }
+
+        if (position + length > limit) {
+            throw new IOException("Elemento ASN.1 excede o tamanho do arquivo");
+        }
+
+        int end = position + (int) length;
+        return new Tlv(tag, start, position, end, end);
+    }
+
+    private List<Tlv> children(Tlv parent) throws IOException {
+        List<Tlv> children = new ArrayList<>();
+        int position = parent.contentStart();
+
+        while (position < parent.contentEnd()) {
+            Tlv child = this.read(position, parent.contentEnd());
+            children.add(child);
+            position = child.end();
+        }
+
+        return children;
+    }
+
+    private List<Part> raw(List<Tlv> elements) {
+        List<Part> parts = new ArrayList<>(elements.size());
+
+        for (Tlv element : elements) {
+            parts.add(new RawPart(this.encoded, element));
+        }
+
+        return parts;
+    }
+
+    private byte[] bytes(Tlv element) {
+        byte[] bytes = new byte[element.end() - element.start()];
+        this.encoded.get(element.start(), bytes);
+        return bytes;
+    }
+
+    private static Tlv expect(Tlv element, int tag, String name) throws IOException {
+        if (element.tag() != tag) {
+            throw new IOException(name + " com tag inesperada: " + Integer.toHexString(element.tag()));
+        }
+
+        return element;
+    }
+
+    private static Tlv next(Iterator<Tlv> fields) throws IOException {
+        if (!fields.hasNext()) {
+            throw new IOException("SignedData incompleto");
+        }
+
+        return fields.next();
+    }
+
+    // Elemento da saída: copiado da entrada, já codificado ou montado com os filhos (DER, tamanho definido)
+    private sealed interface Part permits RawPart, EncodedPart, ConstructedPart {
+        long length();
+
+        void writeTo(OutputStream outputStream) throws IOException;
+    }
+
+    private record RawPart(ByteBuffer buffer, Tlv element) implements Part {
+
+        @Override
+        public long length() {
+            return this.element.end() - this.element.start();
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            if (this.buffer.hasArray()) {
+                outputStream.write(this.buffer.array(), this.buffer.arrayOffset() + this.element.start(), (int) this.length());
+                return;
+            }
+
+            byte[] chunk = new byte[HashService.STREAM_BUFFER_SIZE];
+            int position = this.element.start();
+
+            while (position < this.element.end()) {
+                int length = Math.min(chunk.length, this.element.end() - position);
+                this.buffer.get(position, chunk, 0, length);
+                outputStream.write(chunk, 0, length);
+                position += length;
+            }
+        }
+    }
+
+    private record EncodedPart(byte[] encoded) implements Part {
+
+        @Override
+        public long length() {
+            return this.encoded.length;
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            outputStream.write(this.encoded);
+        }
+    }
+
+    private record ConstructedPart(int tag, List<Part> children) implements Part {
+
+        private long contentLength() {
+            return this.children.stream().mapToLong(Part::length).sum();
+        }
+
+        @Override
+        public long length() {
+            long contentLength = this.contentLength();
+            return 1 + ConstructedPart.lengthOctets(contentLength) + contentLength;
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream) throws IOException {
+            long contentLength = this.contentLength();
+            outputStream.write(this.tag);
+
+            if (contentLength < 0x80) {
+                outputStream.write((int) contentLength);
+            } else {
+                int size = ConstructedPart.lengthOctets(contentLength) - 1;
+                outputStream.write(0x80 | size);
+
+                for (int shift = (size - 1) * 8; shift >= 0; shift -= 8) {
+                    outputStream.write((int) (contentLength >>> shift));
+                }
+            }
+
+            for (Part child : this.children) {
+                child.writeTo(outputStream);
+            }
+        }
+
+        private static int lengthOctets(long length) {
+            if (length < 0x80) {
+                return 1;
+            }
+
+            int size = 1;
+            while ((length >>>= 8) != 0) {
+                size++;
+            }
+
+            return 1 + size;
+        }
+    }
+}
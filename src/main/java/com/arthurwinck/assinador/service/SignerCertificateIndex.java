@@ -0,0 +1,62 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.exception.InvalidSignatureFileException;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.SignerId;
+import org.bouncycastle.util.Store;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+// Índice dos certificados de um documento, montado uma única vez por CMSSignedData e usado tanto na
+// verificação quanto na busca do nome de cada assinante, no lugar de percorrer o store a cada signer
+public class SignerCertificateIndex {
+
+    private record IssuerAndSerial(X500Name issuer, BigInteger serialNumber) {}
+
+    private final Map<IssuerAndSerial, X509CertificateHolder> byIssuerAndSerial = new HashMap<>();
+    private final Map<ByteBuffer, X509CertificateHolder> bySubjectKeyIdentifier = new HashMap<>();
+
+    public SignerCertificateIndex(Store<X509CertificateHolder> certStore) throws InvalidSignatureFileException {
+        Collection<?> certificates = certStore.getMatches(null);
+
+        for (Object obj : certificates) {
+            if (!(obj instanceof X509CertificateHolder holder)) {
+                throw new InvalidSignatureFileException("Tipo de objeto para certificado inesperado: " + obj.getClass());
+            }
+
+            // Em caso de certificados repetidos no documento o primeiro é mantido, como na busca linear
+            this.byIssuerAndSerial.putIfAbsent(new IssuerAndSerial(holder.getIssuer(), holder.getSerialNumber()), holder);
+
+            // Mesma regra do SignerId.match: somente certificados com a extensão SubjectKeyIdentifier
+            Extension subjectKeyIdentifier = holder.getExtension(Extension.subjectKeyIdentifier);
+            if (subjectKeyIdentifier != null) {
+                byte[] keyIdentifier = ASN1OctetString.getInstance(subjectKeyIdentifier.getParsedValue()).getOctets();
+                this.bySubjectKeyIdentifier.putIfAbsent(ByteBuffer.wrap(keyIdentifier), holder);
+            }
+        }
+    }
+
+    // Retorna null quando o certificado do assinante não está no documento
+    public X509CertificateHolder find(SignerId signerId) {
+        if (signerId.getIssuer() != null && signerId.getSerialNumber() != null) {
+            return this.byIssuerAndSerial.get(new IssuerAndSerial(signerId.getIssuer(), signerId.getSerialNumber()));
+        }
+
+        if (signerId.getSubjectKeyIdentifier() != null) {
+            return this.bySubjectKeyIdentifier.get(ByteBuffer.wrap(signerId.getSubjectKeyIdentifier()));
+        }
+
+        return null;
+    }
+
+    public int size() {
+        return this.byIssuerAndSerial.size();
+    }
+}
@@ -0,0 +1,132 @@
+package com.arthurwinck.assinador.service;
+
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.CMSSignatureAlgorithmNameGenerator;
+import org.bouncycastle.cms.DefaultCMSSignatureAlgorithmNameGenerator;
+import org.bouncycastle.cms.SignerInformationVerifier;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.DefaultSignatureAlgorithmIdentifierFinder;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.SignatureAlgorithmIdentifierFinder;
+import org.bouncycastle.operator.bc.BcDigestCalculatorProvider;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.bouncycastle.util.encoders.Hex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.security.cert.CertificateException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Os documentos verificados vêm de um conjunto pequeno de certificados, então o verificador de cada
+// certificado (chave pública já decodificada) é montado uma única vez e reaproveitado entre requisições.
+// SignerInformationVerifier não guarda estado entre verificações: cada verify cria a sua Signature/digest
+@Component
+public class SignerVerifierCache {
+
+    public record VerifierCacheStats(long hits, long misses, long evictions, int size, int maxSize) {}
+
+    // Sem estado, compartilhados por todos os verificadores
+    private final CMSSignatureAlgorithmNameGenerator signatureNameGenerator = new DefaultCMSSignatureAlgorithmNameGenerator();
+    private final SignatureAlgorithmIdentifierFinder signatureAlgorithmFinder = new DefaultSignatureAlgorithmIdentifierFinder();
+    private final DigestCalculatorProvider digestCalculatorProvider = new BcDigestCalculatorProvider();
+    private final JcaContentVerifierProviderBuilder contentVerifierProviderBuilder = new JcaContentVerifierProviderBuilder()
+            .setProvider(BouncyCastleProvider.PROVIDER_NAME);
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final Map<String, SignerInformationVerifier> verifiers;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public SignerVerifierCache(@Value("${verify.verifier-cache.enabled:true}") boolean enabled,
+                               @Value("${verify.verifier-cache.max-size:4096}") int maxSize) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+
+        // Ordem de acesso para que a entrada removida ao atingir o limite seja a menos usada
+        this.verifiers = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SignerInformationVerifier> eldest) {
+                boolean evict = size() > SignerVerifierCache.this.maxSize;
+
+                if (evict) {
+                    SignerVerifierCache.this.evictions.incrementAndGet();
+                }
+
+                return evict;
+            }
+        };
+    }
+
+    public SignerInformationVerifier get(X509CertificateHolder certificate) throws OperatorCreationException, CertificateException, IOException {
+        if (!this.enabled) {
+            return this.createVerifier(certificate);
+        }
+
+        String fingerprint = SignerVerifierCache.getFingerprint(certificate);
+        SignerInformationVerifier cached;
+
+        synchronized (this.verifiers) {
+            cached = this.verifiers.get(fingerprint);
+        }
+
+        if (cached != null) {
+            this.hits.incrementAndGet();
+            return cached;
+        }
+
+        this.misses.incrementAndGet();
+
+        // Montagem fora do lock, certificados com chave inválida não são armazenados
+        SignerInformationVerifier verifier = this.createVerifier(certificate);
+
+        synchronized (this.verifiers) {
+            this.verifiers.put(fingerprint, verifier);
+        }
+
+        return verifier;
+    }
+
+    public void invalidateAll() {
+        synchronized (this.verifiers) {
+            this.verifiers.clear();
+        }
+    }
+
+    public VerifierCacheStats getStats() {
+        int size;
+        synchronized (this.verifiers) {
+            size = this.verifiers.size();
+        }
+
+        return new VerifierCacheStats(this.hits.get(), this.misses.get(), this.evictions.get(), size, this.maxSize);
+    }
+
+    private SignerInformationVerifier createVerifier(X509CertificateHolder certificate) throws OperatorCreationException, CertificateException {
+        return new SignerInformationVerifier(
+                this.signatureNameGenerator,
+                this.signatureAlgorithmFinder,
+                this.contentVerifierProviderBuilder.build(certificate),
+                this.digestCalculatorProvider
+        );
+    }
+
+    // SHA-256 do certificado codificado, o mesmo certificado em documentos diferentes gera a mesma chave
+    static String getFingerprint(X509CertificateHolder certificate) throws IOException {
+        byte[] encoded = certificate.getEncoded();
+
+        SHA256Digest digest = new SHA256Digest();
+        byte[] hash = new byte[digest.getDigestSize()];
+        digest.update(encoded, 0, encoded.length);
+        digest.doFinal(hash, 0);
+
+        return Hex.toHexString(hash);
+    }
+}
@@ -0,0 +1,132 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.SigningInfo;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.util.encoders.Hex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Guarda chave privada e cadeia já decodificadas para que assinaturas repetidas com o mesmo
+// PKCS#12 não precisem abrir o KeyStore novamente. A senha nunca é armazenada, somente o hash
+// dela junto com o conteúdo do arquivo compõe a chave do cache.
+@Component
+public class SigningCredentialCache {
+
+    @FunctionalInterface
+    public interface CredentialLoader {
+        SigningInfo load() throws Exception;
+    }
+
+    private record CachedCredential(SigningInfo signingInfo, long expiresAt) {}
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Map<String, CachedCredential> credentials;
+
+    public SigningCredentialCache(@Value("${signing.credential-cache.enabled:true}") boolean enabled,
+                                  @Value("${signing.credential-cache.max-size:100}") int maxSize,
+                                  @Value("${signing.credential-cache.ttl-seconds:600}") long ttlSeconds) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+
+        // Ordem de acesso para que a entrada removida ao atingir o limite seja a menos usada
+        this.credentials = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedCredential> eldest) {
+                return size() > SigningCredentialCache.this.maxSize;
+            }
+        };
+    }
+
+    public SigningInfo get(byte[] pkcs12Bytes, String password, CredentialLoader loader) throws Exception {
+        if (!this.enabled) {
+            return loader.load();
+        }
+
+        String key = SigningCredentialCache.getCacheKey(pkcs12Bytes, password);
+        SigningInfo cached = this.getIfPresent(key);
+
+        if (cached != null) {
+            return SigningCredentialCache.copyOf(cached);
+        }
+
+        // Carregamento fora do lock, falhas (ex: senha incorreta) não são armazenadas
+        SigningInfo loaded = loader.load();
+
+        synchronized (this.credentials) {
+            this.credentials.put(key, new CachedCredential(SigningCredentialCache.copyOf(loaded), System.currentTimeMillis() + this.ttlMillis));
+        }
+
+        return loaded;
+    }
+
+    public void invalidate(byte[] pkcs12Bytes, String password) {
+        synchronized (this.credentials) {
+            this.credentials.remove(SigningCredentialCache.getCacheKey(pkcs12Bytes, password));
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (this.credentials) {
+            this.credentials.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (this.credentials) {
+            return this.credentials.size();
+        }
+    }
+
+    private SigningInfo getIfPresent(String key) {
+        synchronized (this.credentials) {
+            CachedCredential cachedCredential = this.credentials.get(key);
+
+            if (cachedCredential == null) {
+                return null;
+            }
+
+            if (cachedCredential.expiresAt() <= System.currentTimeMillis()) {
+                this.credentials.remove(key);
+                return null;
+            }
+
+            return cachedCredential.signingInfo();
+        }
+    }
+
+    // SigningInfo é mutável (isSigningAttached), cada requisição recebe a sua própria instância
+    private static SigningInfo copyOf(SigningInfo signingInfo) {
+        SigningInfo copy = new SigningInfo();
+        copy.setPrivateKey(signingInfo.getPrivateKey());
+        copy.setX509Certificate(signingInfo.getX509Certificate());
+        copy.setCertificateHolderList(List.copyOf(signingInfo.getCertificateHolderList()));
+        copy.setSigningAttached(signingInfo.isSigningAttached());
+        return copy;
+    }
+
+    private static String getCacheKey(byte[] pkcs12Bytes, String password) {
+        byte[] passwordBytes = password.getBytes(StandardCharsets.UTF_8);
+
+        // Hash da senha tem tamanho fixo, então conteúdo + senha diferentes não geram a mesma sequência de bytes
+        SHA256Digest digest = new SHA256Digest();
+        byte[] passwordHash = new byte[digest.getDigestSize()];
+        digest.update(passwordBytes, 0, passwordBytes.length);
+        digest.doFinal(passwordHash, 0);
+
+        digest.update(pkcs12Bytes, 0, pkcs12Bytes.length);
+        digest.update(passwordHash, 0, passwordHash.length);
+
+        byte[] hash = new byte[digest.getDigestSize()];
+        digest.doFinal(hash, 0);
+
+        return Hex.toHexString(hash);
+    }
+}
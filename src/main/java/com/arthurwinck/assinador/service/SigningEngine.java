@@ -0,0 +1,361 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.SigningInfo;
+import com.arthurwinck.assinador.exception.InvalidSignatureAlgorithmException;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.cms.CMSObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.*;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.*;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.bouncycastle.util.CollectionStore;
+import org.bouncycastle.util.Store;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.*;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Estruturas de assinatura que não dependem da requisição são resolvidas uma única vez:
+// provider de digest, identificadores de algoritmo e instâncias de Signature (em um pool limitado por algoritmo).
+// A cada assinatura somente ContentSigner, SignerInfoGenerator e CMSSignedDataGenerator são criados.
+@Component
+public class SigningEngine {
+
+    private final DigestCalculatorProvider digestCalculatorProvider;
+    private final SignatureAlgorithmIdentifierFinder signatureAlgorithmFinder = new DefaultSignatureAlgorithmIdentifierFinder();
+    private final Map<String, AlgorithmIdentifier> signatureAlgorithmIdentifiers = new ConcurrentHashMap<>();
+
+    // Instâncias reaproveitadas mantidas em pools (Signature aqui, SignerInfoGenerator em RegisteredSigningKey).
+    // Um ThreadLocal criaria uma instância por virtual thread que nunca seria reaproveitada, o pool limita a
+    // quantidade retida independente do número de threads
+    static final int INSTANCE_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+    // Signature não é thread-safe, mas pode ser reinicializada com outra chave a cada uso. Cada instância
+    // é emprestada a um ContentSigner durante uma assinatura e devolvida ao final
+    private final Map<String, BlockingQueue<Signature>> signatures = new ConcurrentHashMap<>();
+
+    public SigningEngine() throws OperatorCreationException {
+        this.digestCalculatorProvider = new JcaDigestCalculatorProviderBuilder()
+                .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .build();
+    }
+
+    public CMSSignedData sign(byte[] content, SigningInfo signingInfo) throws CMSException, OperatorCreationException, CertificateEncodingException {
+        return this.sign(content, signingInfo, SigningEngine.getDefaultSignatureAlgorithm(signingInfo.getPrivateKey()));
+    }
+
+    public CMSSignedData sign(byte[] content, SigningInfo signingInfo, SigningService.SignatureAlgorithm signatureAlgorithm) throws CMSException, OperatorCreationException, CertificateEncodingException {
+        return this.sign(CMSObjectIdentifiers.data, content, signingInfo, signatureAlgorithm);
+    }
+
+    public CMSSignedData sign(ASN1ObjectIdentifier contentType, byte[] content, SigningInfo signingInfo,
+                              SigningService.SignatureAlgorithm signatureAlgorithm) throws CMSException, OperatorCreationException, CertificateEncodingException {
+        // Cria a estrutura que contém os certificados que serão utilizados
+        Store<X509CertificateHolder> certificateStore = new CollectionStore<>(signingInfo.getCertificateHolderList());
+
+        return SigningEngine.generate(contentType, content, this.createSignerInfoGenerator(signingInfo, signatureAlgorithm), certificateStore, signingInfo.isSigningAttached());
+    }
+
+    // Assinatura detached sobre o hash calculado pelo cliente: o atributo messageDigest recebe o hash enviado
+    // e os atributos assinados são assinados normalmente, sem que o documento passe pelo servidor.
+    // O algoritmo de assinatura deve usar o mesmo hash do digest, ex: SHA256 -> SHA256WITHECDSA
+    public CMSSignedData signDigest(byte[] digest, HashService.HashAlgorithm hashAlgorithm, SigningService.SignatureAlgorithm signatureAlgorithm,
+                                    SigningInfo signingInfo, Store<X509CertificateHolder> certificateStore) throws CMSException, OperatorCreationException, CertificateEncodingException {
+        ContentSigner contentSigner = this.createContentSigner(signatureAlgorithm.getName(), signingInfo.getPrivateKey());
+
+        SignerInfoGenerator signerInfoGenerator = new SignerInfoGeneratorBuilder(
+                new PrecomputedDigestCalculatorProvider(hashAlgorithm.getOid(), hashAlgorithm.name(), digest))
+                .build(contentSigner, SigningEngine.getSignerCertificateHolder(signingInfo));
+
+        CMSSignedDataGenerator cmsSignedDataGenerator = new CMSSignedDataGenerator();
+        cmsSignedDataGenerator.addSignerInfoGenerator(signerInfoGenerator);
+        cmsSignedDataGenerator.addCertificates(certificateStore);
+
+        return cmsSignedDataGenerator.generate(new CMSAbsentContent(), false);
+    }
+
+    // Co-assinatura: SignerInfo sobre o hash do conteúdo de um SignedData existente, com o mesmo eContentType
+    // no atributo contentType. Somente o SignerInfo é devolvido, o restante da estrutura já existe
+    public SignerInformation signContentDigest(ASN1ObjectIdentifier contentType, AlgorithmIdentifier digestAlgorithm, byte[] digest,
+                                               SigningService.SignatureAlgorithm signatureAlgorithm, SigningInfo signingInfo) throws CMSException, OperatorCreationException, CertificateEncodingException {
+        ContentSigner contentSigner = this.createContentSigner(signatureAlgorithm.getName(), signingInfo.getPrivateKey());
+
+        SignerInfoGenerator signerInfoGenerator = new SignerInfoGeneratorBuilder(
+                new PrecomputedDigestCalculatorProvider(digestAlgorithm.getAlgorithm(), digestAlgorithm.getAlgorithm().getId(), digest))
+                .build(contentSigner, SigningEngine.getSignerCertificateHolder(signingInfo));
+
+        CMSSignedDataGenerator cmsSignedDataGenerator = new CMSSignedDataGenerator();
+        cmsSignedDataGenerator.addSignerInfoGenerator(signerInfoGenerator);
+
+        return cmsSignedDataGenerator.generate(new CMSAbsentContent(contentType), false).getSignerInfos().iterator().next();
+    }
+
+    // Contra-assinatura (RFC 5652, 11.4): assina o valor da assinatura do assinante, devolvido com o novo
+    // atributo não assinado countersignature
+    public static SignerInformation counterSign(SignerInformation signer, SignerInfoGenerator signerInfoGenerator) throws CMSException {
+        CMSSignedDataGenerator cmsSignedDataGenerator = new CMSSignedDataGenerator();
+        cmsSignedDataGenerator.addSignerInfoGenerator(signerInfoGenerator);
+
+        return SignerInformation.addCounterSigners(signer, cmsSignedDataGenerator.generateCounterSigners(signer));
+    }
+
+    public SignerInfoGenerator createSignerInfoGenerator(SigningInfo signingInfo) throws OperatorCreationException, CertificateEncodingException {
+        return this.createSignerInfoGenerator(signingInfo, SigningEngine.getDefaultSignatureAlgorithm(signingInfo.getPrivateKey()));
+    }
+
+    public SignerInfoGenerator createSignerInfoGenerator(SigningInfo signingInfo, SigningService.SignatureAlgorithm signatureAlgorithm) throws OperatorCreationException, CertificateEncodingException {
+        return this.createSignerInfoGenerator(signingInfo, signatureAlgorithm, CryptoExecutor.direct());
+    }
+
+    // Assinatura em streaming: o digest acompanha a leitura do conteúdo na thread da requisição e somente a
+    // operação com a chave privada, ao final, é executada pelo cryptoExecutor
+    public SignerInfoGenerator createSignerInfoGenerator(SigningInfo signingInfo, SigningService.SignatureAlgorithm signatureAlgorithm,
+                                                         CryptoExecutor cryptoExecutor) throws OperatorCreationException, CertificateEncodingException {
+        ContentSigner contentSigner = this.createContentSigner(signatureAlgorithm.getName(), signingInfo.getPrivateKey(), cryptoExecutor);
+
+        return new SignerInfoGeneratorBuilder(this.digestCalculatorProvider)
+                .build(contentSigner, SigningEngine.getSignerCertificateHolder(signingInfo));
+    }
+
+    static SigningService.SignatureAlgorithm getDefaultSignatureAlgorithm(PrivateKey privateKey) throws OperatorCreationException {
+        try {
+            return SigningService.SignatureAlgorithm.forKey(privateKey);
+        } catch (InvalidSignatureAlgorithmException e) {
+            throw new OperatorCreationException(e.getMessage(), e);
+        }
+    }
+
+    public ContentSigner createContentSigner(String signatureAlgorithm, PrivateKey privateKey) throws OperatorCreationException {
+        return this.createContentSigner(signatureAlgorithm, privateKey, CryptoExecutor.direct());
+    }
+
+    private ContentSigner createContentSigner(String signatureAlgorithm, PrivateKey privateKey, CryptoExecutor cryptoExecutor) throws OperatorCreationException {
+        AlgorithmIdentifier algorithmIdentifier = this.signatureAlgorithmIdentifiers
+                .computeIfAbsent(signatureAlgorithm, this.signatureAlgorithmFinder::find);
+
+        return new PooledContentSigner(signatureAlgorithm, algorithmIdentifier, privateKey, cryptoExecutor);
+    }
+
+    public DigestCalculatorProvider getDigestCalculatorProvider() {
+        return this.digestCalculatorProvider;
+    }
+
+    public static CMSSignedData generate(byte[] content, SignerInfoGenerator signerInfoGenerator, Store<X509CertificateHolder> certificateStore, boolean attached) throws CMSException {
+        return SigningEngine.generate(CMSObjectIdentifiers.data, content, signerInfoGenerator, certificateStore, attached);
+    }
+
+    public static CMSSignedData generate(ASN1ObjectIdentifier contentType, byte[] content, SignerInfoGenerator signerInfoGenerator,
+                                         Store<X509CertificateHolder> certificateStore, boolean attached) throws CMSException {
+        CMSSignedDataGenerator cmsSignedDataGenerator = new CMSSignedDataGenerator();
+        cmsSignedDataGenerator.addSignerInfoGenerator(signerInfoGenerator);
+        cmsSignedDataGenerator.addCertificates(certificateStore);
+
+        CMSTypedData cmsData = new CMSProcessableByteArray(contentType, content);
+
+        return cmsSignedDataGenerator.generate(cmsData, attached);
+    }
+
+    // Versão em streaming: o conteúdo passa pelo digest e, se attached, segue direto para a saída (BER de
+    // tamanho indefinido), sem que o documento ou a assinatura fiquem inteiros em memória
+    public static void generate(InputStream content, OutputStream outputStream, SignerInfoGenerator signerInfoGenerator,
+                                Store<X509CertificateHolder> certificateStore, boolean attached) throws CMSException, IOException {
+        CMSSignedDataStreamGenerator cmsSignedDataStreamGenerator = new CMSSignedDataStreamGenerator();
+        cmsSignedDataStreamGenerator.addSignerInfoGenerator(signerInfoGenerator);
+        cmsSignedDataStreamGenerator.addCertificates(certificateStore);
+        cmsSignedDataStreamGenerator.setBufferSize(HashService.STREAM_BUFFER_SIZE);
+
+        try (OutputStream signedOutputStream = cmsSignedDataStreamGenerator.open(outputStream, attached)) {
+            byte[] buffer = new byte[HashService.STREAM_BUFFER_SIZE];
+
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                signedOutputStream.write(buffer, 0, read);
+            }
+        }
+    }
+
+    // Mesmo formato a partir de um conteúdo que sabe se escrever (ex: MappedContent), sem o buffer de leitura
+    public static void generate(CMSTypedData content, OutputStream outputStream, SignerInfoGenerator signerInfoGenerator,
+                                Store<X509CertificateHolder> certificateStore, boolean attached) throws CMSException, IOException {
+        CMSSignedDataStreamGenerator cmsSignedDataStreamGenerator = new CMSSignedDataStreamGenerator();
+        cmsSignedDataStreamGenerator.addSignerInfoGenerator(signerInfoGenerator);
+        cmsSignedDataStreamGenerator.addCertificates(certificateStore);
+        cmsSignedDataStreamGenerator.setBufferSize(HashService.STREAM_BUFFER_SIZE);
+
+        try (OutputStream signedOutputStream = cmsSignedDataStreamGenerator.open(content.getContentType(), outputStream, attached)) {
+            content.write(signedOutputStream);
+        }
+    }
+
+    // A cadeia convertida já contém o certificado do assinante na primeira posição, evita um novo parse
+    private static X509CertificateHolder getSignerCertificateHolder(SigningInfo signingInfo) throws CertificateEncodingException {
+        X509Certificate certificate = signingInfo.getX509Certificate();
+        List<X509CertificateHolder> certificateHolderList = signingInfo.getCertificateHolderList();
+
+        if (certificateHolderList != null && !certificateHolderList.isEmpty()) {
+            X509CertificateHolder firstHolder = certificateHolderList.get(0);
+
+            if (firstHolder.getSerialNumber().equals(certificate.getSerialNumber())
+                    && firstHolder.getIssuer().equals(X500Name.getInstance(certificate.getIssuerX500Principal().getEncoded()))) {
+                return firstHolder;
+            }
+        }
+
+        try {
+            return new X509CertificateHolder(certificate.getEncoded());
+        } catch (IOException e) {
+            throw new CertificateEncodingException(e);
+        }
+    }
+
+    private Signature borrowSignature(String signatureAlgorithm) throws NoSuchAlgorithmException, NoSuchProviderException {
+        Signature signature = this.getSignaturePool(signatureAlgorithm).poll();
+
+        return (signature != null) ? signature : Signature.getInstance(signatureAlgorithm, BouncyCastleProvider.PROVIDER_NAME);
+    }
+
+    // Com o pool cheio a instância é descartada
+    private void releaseSignature(String signatureAlgorithm, Signature signature) {
+        this.getSignaturePool(signatureAlgorithm).offer(signature);
+    }
+
+    private BlockingQueue<Signature> getSignaturePool(String signatureAlgorithm) {
+        return this.signatures.computeIfAbsent(signatureAlgorithm, algorithm -> new ArrayBlockingQueue<>(INSTANCE_POOL_SIZE));
+    }
+
+    // Devolve o hash recebido no lugar de calcular sobre o conteúdo, que está ausente
+    private static class PrecomputedDigestCalculatorProvider implements DigestCalculatorProvider {
+
+        private final ASN1ObjectIdentifier digestAlgorithm;
+        private final String digestName;
+        private final byte[] digest;
+
+        private PrecomputedDigestCalculatorProvider(ASN1ObjectIdentifier digestAlgorithm, String digestName, byte[] digest) {
+            this.digestAlgorithm = digestAlgorithm;
+            this.digestName = digestName;
+            this.digest = digest;
+        }
+
+        @Override
+        public DigestCalculator get(AlgorithmIdentifier digestAlgorithmIdentifier) throws OperatorCreationException {
+            if (!this.digestAlgorithm.equals(digestAlgorithmIdentifier.getAlgorithm())) {
+                throw new OperatorCreationException("Algoritmo de digest " + digestAlgorithmIdentifier.getAlgorithm()
+                        + " não corresponde ao hash informado (" + this.digestName + ")");
+            }
+
+            return new DigestCalculator() {
+                @Override
+                public AlgorithmIdentifier getAlgorithmIdentifier() {
+                    return digestAlgorithmIdentifier;
+                }
+
+                @Override
+                public OutputStream getOutputStream() {
+                    return OutputStream.nullOutputStream();
+                }
+
+                @Override
+                public byte[] getDigest() {
+                    return PrecomputedDigestCalculatorProvider.this.digest.clone();
+                }
+            };
+        }
+    }
+
+    // ContentSigner que empresta uma Signature do pool, usado por uma assinatura de cada vez. A Signature é
+    // compartilhada entre chaves e por isso é reinicializada com a chave deste signer a cada getOutputStream,
+    // o que também descarta assinaturas interrompidas. Devolvida ao pool somente após uma assinatura concluída
+    private class PooledContentSigner implements ContentSigner {
+
+        private final String signatureAlgorithm;
+        private final AlgorithmIdentifier algorithmIdentifier;
+        private final PrivateKey privateKey;
+        private final CryptoExecutor cryptoExecutor;
+        private Signature signature;
+
+        private PooledContentSigner(String signatureAlgorithm, AlgorithmIdentifier algorithmIdentifier, PrivateKey privateKey,
+                                    CryptoExecutor cryptoExecutor) throws OperatorCreationException {
+            this.signatureAlgorithm = signatureAlgorithm;
+            this.algorithmIdentifier = algorithmIdentifier;
+            this.privateKey = privateKey;
+            this.cryptoExecutor = cryptoExecutor;
+
+            // Falha já na criação caso a chave não seja compatível com o algoritmo
+            this.initSignature();
+        }
+
+        private void initSignature() throws OperatorCreationException {
+            try {
+                if (this.signature == null) {
+                    this.signature = SigningEngine.this.borrowSignature(this.signatureAlgorithm);
+                }
+
+                this.signature.initSign(this.privateKey);
+            } catch (GeneralSecurityException e) {
+                throw new OperatorCreationException("Não foi possível inicializar " + this.signatureAlgorithm + ": " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        public AlgorithmIdentifier getAlgorithmIdentifier() {
+            return this.algorithmIdentifier;
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            try {
+                this.initSignature();
+            } catch (OperatorCreationException e) {
+                throw new RuntimeOperatorException(e.getMessage(), e);
+            }
+
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    try {
+                        PooledContentSigner.this.signature.update((byte) b);
+                    } catch (SignatureException e) {
+                        throw new IOException(e.getMessage(), e);
+                    }
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) throws IOException {
+                    try {
+                        PooledContentSigner.this.signature.update(bytes, offset, length);
+                    } catch (SignatureException e) {
+                        throw new IOException(e.getMessage(), e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public byte[] getSignature() {
+            Signature signature = this.signature;
+
+            try {
+                byte[] signatureValue = this.cryptoExecutor.execute(signature::sign);
+
+                this.signature = null;
+                SigningEngine.this.releaseSignature(this.signatureAlgorithm, signature);
+
+                return signatureValue;
+            } catch (Exception e) {
+                throw new RuntimeOperatorException("Não foi possível gerar a assinatura: " + e.getMessage(), e);
+            }
+        }
+    }
+}
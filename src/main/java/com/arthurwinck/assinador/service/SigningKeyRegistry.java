@@ -0,0 +1,151 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.SigningInfo;
+import com.arthurwinck.assinador.exception.InvalidCertificateException;
+import com.arthurwinck.assinador.exception.SigningKeyConflictException;
+import com.arthurwinck.assinador.exception.SigningKeyNotFoundException;
+import com.arthurwinck.assinador.exception.SigningValidationException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+// Chaves carregadas uma única vez e reutilizadas por POST /signature/{keyId}
+@Slf4j
+@Component
+public class SigningKeyRegistry {
+
+    private static final Pattern KEY_ID_PATTERN = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+    private static final String KEYSTORE_GLOB = "*.{pfx,p12}";
+    // Segmentos de /signature/... que seriam confundidos com POST /signature/{keyId}
+    private static final Set<String> RESERVED_KEY_IDS = Set.of("keys", "stream", "digest", "batch", "merkle", "cosign",
+            "countersign", "credentials");
+
+    private final SigningEngine signingEngine;
+    private final String keysDirectory;
+    private final String keyPassword;
+    private final Map<String, RegisteredSigningKey> keys = new ConcurrentHashMap<>();
+
+    public SigningKeyRegistry(SigningEngine signingEngine,
+                              @Value("${signing.keys-directory:}") String keysDirectory,
+                              @Value("${signing.key-password:}") String keyPassword) {
+        this.signingEngine = signingEngine;
+        this.keysDirectory = keysDirectory;
+        this.keyPassword = keyPassword;
+    }
+
+    // Cada arquivo .pfx/.p12 do diretório é registrado com o nome do arquivo (sem extensão) como keyId
+    @PostConstruct
+    public void loadKeysDirectory() {
+        if (this.keysDirectory == null || this.keysDirectory.isBlank()) {
+            return;
+        }
+
+        Path directory = Path.of(this.keysDirectory);
+
+        if (!Files.isDirectory(directory)) {
+            log.warn("Diretório de chaves {} não encontrado, nenhuma chave foi registrada", directory.toAbsolutePath());
+            return;
+        }
+
+        try (DirectoryStream<Path> keystoreFiles = Files.newDirectoryStream(directory, KEYSTORE_GLOB)) {
+            for (Path keystoreFile : keystoreFiles) {
+                String fileName = keystoreFile.getFileName().toString();
+                String keyId = fileName.substring(0, fileName.lastIndexOf('.'));
+
+                try {
+                    this.register(keyId, Files.readAllBytes(keystoreFile), this.keyPassword);
+                    log.info("Chave {} registrada a partir de {}", keyId, keystoreFile);
+                } catch (SigningValidationException | IOException e) {
+                    log.error("Não foi possível registrar a chave {}: {}", keystoreFile, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.error("Não foi possível listar o diretório de chaves {}", directory, e);
+        }
+    }
+
+    // Um keyId já registrado (inclusive pelo diretório de chaves) não é substituído, retorna 409
+    public String register(String keyId, byte[] pkcs12Bytes, String password) throws SigningValidationException {
+        return this.register(keyId, pkcs12Bytes, password, false);
+    }
+
+    // Troca explícita da chave de um keyId, ex: renovação do certificado
+    public String replace(String keyId, byte[] pkcs12Bytes, String password) throws SigningValidationException {
+        return this.register(keyId, pkcs12Bytes, password, true);
+    }
+
+    private String register(String keyId, byte[] pkcs12Bytes, String password, boolean replace) throws SigningValidationException {
+        String resolvedKeyId = (keyId == null || keyId.isBlank()) ? UUID.randomUUID().toString() : keyId;
+
+        if (!KEY_ID_PATTERN.matcher(resolvedKeyId).matches()) {
+            throw new InvalidCertificateException("Identificador de chave inválido, utilize somente letras, números, '.', '_' ou '-'");
+        }
+
+        if (RESERVED_KEY_IDS.contains(resolvedKeyId.toLowerCase())) {
+            throw new InvalidCertificateException("Identificador de chave reservado: " + resolvedKeyId);
+        }
+
+        if (!replace && this.keys.containsKey(resolvedKeyId)) {
+            throw SigningKeyRegistry.conflict(resolvedKeyId);
+        }
+
+        RegisteredSigningKey registeredKey;
+
+        try {
+            SigningInfo signingInfo = SigningService.loadSigningInfo(pkcs12Bytes, password);
+            signingInfo.setSigningAttached(true);
+
+            registeredKey = new RegisteredSigningKey(resolvedKeyId, signingInfo, this.signingEngine);
+
+            // Valida já no registro que é possível montar o gerador de assinatura com a chave
+            registeredKey.withSignerInfoGenerator(registeredKey.getSignatureAlgorithm(), signerInfoGenerator -> signerInfoGenerator);
+        } catch (SigningValidationException e) {
+            throw e;
+        } catch (Exception e) {
+            throw SigningValidationException.from(e);
+        }
+
+        if (replace) {
+            this.keys.put(resolvedKeyId, registeredKey);
+        } else if (this.keys.putIfAbsent(resolvedKeyId, registeredKey) != null) {
+            // Registrado por outra requisição enquanto o PKCS#12 era aberto
+            throw SigningKeyRegistry.conflict(resolvedKeyId);
+        }
+
+        return resolvedKeyId;
+    }
+
+    public RegisteredSigningKey get(String keyId) throws SigningKeyNotFoundException {
+        RegisteredSigningKey registeredKey = this.keys.get(keyId);
+
+        if (registeredKey == null) {
+            throw new SigningKeyNotFoundException("Chave de assinatura não registrada: " + keyId);
+        }
+
+        return registeredKey;
+    }
+
+    public boolean remove(String keyId) {
+        return this.keys.remove(keyId) != null;
+    }
+
+    public List<String> getKeyIds() {
+        return this.keys.keySet().stream().sorted().toList();
+    }
+
+    private static SigningKeyConflictException conflict(String keyId) {
+        return new SigningKeyConflictException("Chave de assinatura já registrada: " + keyId + ", utilize replace=true para substituí-la");
+    }
+}
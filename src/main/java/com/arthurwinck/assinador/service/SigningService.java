@@ -2,97 +2,817 @@ package com.arthurwinck.assinador.service;
 
 import com.arthurwinck.assinador.dto.SigningInfo;
 import com.arthurwinck.assinador.exception.InvalidCertificateException;
+import com.arthurwinck.assinador.exception.InvalidDigestException;
+import com.arthurwinck.assinador.exception.InvalidSignatureAlgorithmException;
+import com.arthurwinck.assinador.exception.InvalidSignedDataException;
 import com.arthurwinck.assinador.exception.SigningValidationException;
+import com.arthurwinck.assinador.exception.TimestampException;
+import lombok.Getter;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.cms.Attribute;
+import org.bouncycastle.asn1.cms.AttributeTable;
+import org.bouncycastle.asn1.cms.CMSAttributes;
 import org.bouncycastle.asn1.cms.CMSObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cms.*;
-import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.bouncycastle.operator.ContentSigner;
-import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.DefaultDigestAlgorithmIdentifierFinder;
+import org.bouncycastle.operator.DigestAlgorithmIdentifierFinder;
+import org.bouncycastle.operator.DigestCalculator;
 import org.bouncycastle.operator.OperatorCreationException;
-import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
-import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
 import org.bouncycastle.util.CollectionStore;
 import org.bouncycastle.util.Store;
 import org.bouncycastle.util.encoders.Base64;
+import org.bouncycastle.util.io.TeeOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
 
-import java.io.FileOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.security.*;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
-import java.text.SimpleDateFormat;
+import java.security.interfaces.ECKey;
+import java.security.interfaces.EdECKey;
+import java.security.spec.NamedParameterSpec;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Component
 public class SigningService {
 
+    private static final DigestAlgorithmIdentifierFinder DIGEST_ALGORITHM_FINDER = new DefaultDigestAlgorithmIdentifierFinder();
+
+    // Algoritmo da co-assinatura e o hash do conteúdo que ele assina
+    private record ContentDigest(SignatureAlgorithm signatureAlgorithm, AlgorithmIdentifier digestAlgorithm, byte[] digest) {}
+
+    // Gera a contra-assinatura de um assinante, com um gerador novo (PKCS#12) ou emprestado da chave registrada
+    @FunctionalInterface
+    private interface CounterSigner {
+        SignerInformation counterSign(SignerInformation signer) throws Exception;
+    }
+
     public final static String SIGNATURE_FILE_EXTENSION = ".p7m";
+    // Assinatura detached, sem o documento
+    public final static String DETACHED_SIGNATURE_FILE_EXTENSION = ".p7s";
     public final static String CERT_KEY_FILE_FORMAT = "PKCS12";
+    // Padrão para chaves RSA, mantido para que as assinaturas existentes não mudem de algoritmo
     public final static String SIGNATURE_ALGORITHM = "SHA512WITHRSA";
 
+    // Formato da assinatura devolvida em streaming, o arquivo .p7m é sempre salvo em DER
+    public enum SignatureEncoding {
+        DER,
+        BASE64
+    }
+
+    // Algoritmos de assinatura aceitos. Quando a requisição não informa o algoritmo, ele é escolhido pelo
+    // tipo da chave do PKCS#12: RSA -> SHA512WITHRSA, EC -> ECDSA com o hash do tamanho da curva
+    // (P-256 -> SHA256, P-384 -> SHA384) e Ed25519 -> Ed25519
+    @Getter
+    public enum SignatureAlgorithm {
+        SHA256_WITH_RSA("SHA256WITHRSA", KeyType.RSA, "SHA256"),
+        SHA512_WITH_RSA(SIGNATURE_ALGORITHM, KeyType.RSA, "SHA512"),
+        SHA256_WITH_RSA_PSS("SHA256WITHRSAANDMGF1", KeyType.RSA, "SHA256"),
+        SHA512_WITH_RSA_PSS("SHA512WITHRSAANDMGF1", KeyType.RSA, "SHA512"),
+        SHA256_WITH_ECDSA("SHA256WITHECDSA", KeyType.EC, "SHA256"),
+        SHA384_WITH_ECDSA("SHA384WITHECDSA", KeyType.EC, "SHA384"),
+        SHA512_WITH_ECDSA("SHA512WITHECDSA", KeyType.EC, "SHA512"),
+        // RFC 8419: os atributos assinados usam SHA-512
+        ED25519("Ed25519", KeyType.ED25519, "SHA512");
+
+        private enum KeyType {
+            RSA,
+            EC,
+            ED25519
+        }
+
+        private final String name;
+        private final KeyType keyType;
+        private final String digestName;
+
+        SignatureAlgorithm(String name, KeyType keyType, String digestName) {
+            this.name = name;
+            this.keyType = keyType;
+            this.digestName = digestName;
+        }
+
+        // Algoritmo escolhido pelo tipo da chave
+        public static SignatureAlgorithm forKey(PrivateKey privateKey) throws InvalidSignatureAlgorithmException {
+            return switch (SignatureAlgorithm.keyTypeOf(privateKey)) {
+                case RSA -> SHA512_WITH_RSA;
+                case EC -> SignatureAlgorithm.forCurveSize(((ECKey) privateKey).getParams().getCurve().getField().getFieldSize());
+                case ED25519 -> ED25519;
+            };
+        }
+
+        // Algoritmo da chave cujo hash é o informado, usado na assinatura a partir do hash do documento
+        public static SignatureAlgorithm forKey(PrivateKey privateKey, HashService.HashAlgorithm hashAlgorithm) throws InvalidSignatureAlgorithmException {
+            KeyType keyType = SignatureAlgorithm.keyTypeOf(privateKey);
+            SignatureAlgorithm defaultAlgorithm = SignatureAlgorithm.forKey(privateKey);
+
+            if (defaultAlgorithm.digestName.equals(hashAlgorithm.name())) {
+                return defaultAlgorithm;
+            }
+
+            for (SignatureAlgorithm algorithm : SignatureAlgorithm.values()) {
+                // Somente PKCS#1 v1.5 para RSA, como as assinaturas sem algoritmo informado
+                if (algorithm.keyType == keyType && algorithm.digestName.equals(hashAlgorithm.name())
+                        && algorithm != SHA256_WITH_RSA_PSS && algorithm != SHA512_WITH_RSA_PSS) {
+                    return algorithm;
+                }
+            }
+
+            throw new InvalidSignatureAlgorithmException("Não há algoritmo de assinatura com " + hashAlgorithm
+                    + " para chaves " + privateKey.getAlgorithm());
+        }
+
+        // Algoritmo informado na requisição (validado com a chave) ou o padrão da chave
+        public static SignatureAlgorithm resolve(SignatureAlgorithm requested, PrivateKey privateKey) throws InvalidSignatureAlgorithmException {
+            if (requested == null) {
+                return SignatureAlgorithm.forKey(privateKey);
+            }
+
+            if (requested.keyType != SignatureAlgorithm.keyTypeOf(privateKey)) {
+                throw new InvalidSignatureAlgorithmException("Algoritmo de assinatura " + requested
+                        + " não é compatível com a chave " + privateKey.getAlgorithm());
+            }
+
+            return requested;
+        }
+
+        private static SignatureAlgorithm forCurveSize(int fieldSize) {
+            if (fieldSize <= 256) {
+                return SHA256_WITH_ECDSA;
+            }
+
+            return (fieldSize <= 384) ? SHA384_WITH_ECDSA : SHA512_WITH_ECDSA;
+        }
+
+        // Nomes variam entre providers: SunEC devolve "EC"/"EdDSA", o BouncyCastle "ECDSA"/"Ed25519"
+        private static KeyType keyTypeOf(PrivateKey privateKey) throws InvalidSignatureAlgorithmException {
+            String keyAlgorithm = privateKey.getAlgorithm();
+
+            if ("RSA".equalsIgnoreCase(keyAlgorithm) || "RSASSA-PSS".equalsIgnoreCase(keyAlgorithm)) {
+                return KeyType.RSA;
+            }
+
+            if (privateKey instanceof ECKey) {
+                return KeyType.EC;
+            }
+
+            if ("Ed25519".equalsIgnoreCase(keyAlgorithm)
+                    || ("EdDSA".equalsIgnoreCase(keyAlgorithm) && privateKey instanceof EdECKey edECKey
+                        && NamedParameterSpec.ED25519.getName().equalsIgnoreCase(edECKey.getParams().getName()))) {
+                return KeyType.ED25519;
+            }
+
+            throw new InvalidSignatureAlgorithmException("Tipo de chave não suportado para assinatura: " + keyAlgorithm);
+        }
+    }
+
+    private final SigningCredentialCache credentialCache;
+    private final SigningKeyRegistry keyRegistry;
+    private final SigningEngine signingEngine;
+    private final SignatureArchiveService archiveService;
+    private final PipelineMetrics metrics;
+    private final CryptoExecutor cryptoExecutor;
+    private final TimestampService timestampService;
+
+    @Autowired
+    public SigningService(SigningCredentialCache credentialCache, SigningKeyRegistry keyRegistry, SigningEngine signingEngine,
+                          SignatureArchiveService archiveService, PipelineMetrics metrics, CryptoExecutor cryptoExecutor,
+                          TimestampService timestampService) {
+        this.credentialCache = credentialCache;
+        this.keyRegistry = keyRegistry;
+        this.signingEngine = signingEngine;
+        this.archiveService = archiveService;
+        this.metrics = metrics;
+        this.cryptoExecutor = cryptoExecutor;
+        this.timestampService = timestampService;
+    }
+
     // Documento ou conteúdo assinado deve estar anexado na estrutura da própria assinatura
     public String signAttached(String string, Resource pkcs12File, String password) throws SigningValidationException {
+        SigningInfo signingInfo = this.getSigningInfo(pkcs12File, password);
+        SignatureAlgorithm signatureAlgorithm = this.resolveSignatureAlgorithm(null, signingInfo.getPrivateKey());
+
         try {
-            SigningInfo signingInfo = SigningService.getSigningInfo(pkcs12File, password);
-            signingInfo.setSigningAttached(true);
+            CMSSignedData signedString = this.cryptoExecutor.execute(() ->
+                    this.sign(string.getBytes(StandardCharsets.UTF_8), signingInfo, signatureAlgorithm));
+
+            return this.encodeAndArchive(signedString);
+        } catch (SigningValidationException e) {
+            throw this.metrics.recordError(e);
+        } catch (Exception e) {
+            throw this.metrics.recordError(SigningValidationException.from(e));
+        }
+    }
+
+    // Conteúdo binário assinado como recebido, sem conversão para String
+    public String signAttached(byte[] content, Resource pkcs12File, String password) throws SigningValidationException {
+        return this.signAttached(content, pkcs12File, password, null);
+    }
+
+    // Algoritmo nulo: escolhido pelo tipo da chave
+    public String signAttached(byte[] content, Resource pkcs12File, String password, SignatureAlgorithm signatureAlgorithm) throws SigningValidationException {
+        return this.signAttached(content, this.getSigningInfo(pkcs12File, password), signatureAlgorithm);
+    }
+
+    // Usado quando o mesmo SigningInfo (já carregado) assina vários documentos
+    public String signAttached(byte[] content, SigningInfo signingInfo) throws SigningValidationException {
+        return this.signAttached(content, signingInfo, null);
+    }
+
+    public String signAttached(byte[] content, SigningInfo signingInfo, SignatureAlgorithm signatureAlgorithm) throws SigningValidationException {
+        return this.signAttached(CMSObjectIdentifiers.data, content, signingInfo, signatureAlgorithm);
+    }
 
-            CMSSignedData signedString = this.sign(string, signingInfo);
+    // Conteúdo com tipo próprio no eContentType (ex: raiz de um lote de Merkle), coberto pelo atributo contentType
+    public String signAttached(ASN1ObjectIdentifier contentType, byte[] content, SigningInfo signingInfo,
+                               SignatureAlgorithm signatureAlgorithm) throws SigningValidationException {
+        SignatureAlgorithm resolvedAlgorithm = this.resolveSignatureAlgorithm(signatureAlgorithm, signingInfo.getPrivateKey());
 
-            SigningService.saveAsP7M(signedString, SigningService.getNowDateTimeFilename());
+        try {
+            CMSSignedData signedContent = this.cryptoExecutor.execute(() -> this.sign(contentType, content, signingInfo, resolvedAlgorithm));
 
-            byte[] bytes = signedString.getEncoded();
-            return Base64.toBase64String(bytes);
+            return this.encodeAndArchive(signedContent);
+        } catch (SigningValidationException e) {
+            throw this.metrics.recordError(e);
         } catch (Exception e) {
-            throw SigningValidationException.from(e);
+            throw this.metrics.recordError(SigningValidationException.from(e));
         }
     }
 
-    public CMSSignedData sign(String string, SigningInfo signingInfo) throws CMSException, OperatorCreationException, CertificateEncodingException {
-        // Cria a estrutura que contém os certificados que serão utilizados
-        Store<X509CertificateHolder> jcaCertificateHolderStore = new CollectionStore<>(signingInfo.getCertificateHolderList());
+    // Assina com uma chave previamente registrada, sem multipart do PKCS#12 nem abertura do KeyStore
+    public String signAttached(byte[] content, String keyId) throws SigningValidationException {
+        return this.signAttached(content, keyId, null);
+    }
 
-        // Engine de assinatura, usando SHA512withRSA
-        ContentSigner contentSigner = new JcaContentSignerBuilder(SIGNATURE_ALGORITHM)
-                .setProvider(BouncyCastleProvider.PROVIDER_NAME)
-                .build(signingInfo.getPrivateKey());
+    public String signAttached(byte[] content, String keyId, SignatureAlgorithm signatureAlgorithm) throws SigningValidationException {
+        return this.signAttached(CMSObjectIdentifiers.data, content, keyId, signatureAlgorithm);
+    }
 
-        DigestCalculatorProvider digestCalcProvider = new JcaDigestCalculatorProviderBuilder()
-                .setProvider(BouncyCastleProvider.PROVIDER_NAME)
-                .build();
+    public String signAttached(ASN1ObjectIdentifier contentType, byte[] content, String keyId,
+                               SignatureAlgorithm signatureAlgorithm) throws SigningValidationException {
+        try {
+            RegisteredSigningKey registeredKey = this.keyRegistry.get(keyId);
+            SignatureAlgorithm resolvedAlgorithm = SignatureAlgorithm.resolve(signatureAlgorithm, registeredKey.getSigningInfo().getPrivateKey());
+            this.metrics.recordPayloadSize(PipelineMetrics.Operation.SIGN, content.length);
 
-        SignerInfoGenerator signerInfoGenerator = new JcaSignerInfoGeneratorBuilder(digestCalcProvider)
-                .build(contentSigner, signingInfo.getX509Certificate());
+            // O SignerInfoGenerator é emprestado do pool da chave pela thread que gera a assinatura
+            CMSSignedData signedContent = this.cryptoExecutor.execute(() -> {
+                long start = this.metrics.start();
+                CMSSignedData signedData = registeredKey.withSignerInfoGenerator(resolvedAlgorithm, signerInfoGenerator -> SigningEngine.generate(
+                        contentType,
+                        content,
+                        signerInfoGenerator,
+                        registeredKey.getCertificateStore(),
+                        true
+                ));
+                this.metrics.stop(PipelineMetrics.Stage.CMS_GENERATION, start);
 
-        CMSSignedDataGenerator cmsSignedDataGenerator = new CMSSignedDataGenerator();
-        cmsSignedDataGenerator.addSignerInfoGenerator(signerInfoGenerator);
-        cmsSignedDataGenerator.addCertificates(jcaCertificateHolderStore);
+                return signedData;
+            });
 
-        CMSTypedData cmsData = new CMSProcessableByteArray(
-                CMSObjectIdentifiers.data,
-                string.getBytes(StandardCharsets.UTF_8)
-        );
+            return this.encodeAndArchive(signedContent);
+        } catch (SigningValidationException e) {
+            throw this.metrics.recordError(e);
+        } catch (Exception e) {
+            throw this.metrics.recordError(SigningValidationException.from(e));
+        }
+    }
 
-        return cmsSignedDataGenerator.generate(cmsData, signingInfo.isSigningAttached());
+    // Assinatura em streaming para arquivos grandes: o conteúdo é lido, assinado e escrito na saída aos poucos,
+    // com memória limitada ao buffer. Attached devolve o conteúdo dentro da assinatura, detached somente a assinatura
+    public void signStream(InputStream content, SigningInfo signingInfo, boolean attached, SignatureEncoding encoding,
+                           OutputStream outputStream) throws SigningValidationException, IOException {
+        this.signStream(content, signingInfo, attached, encoding, null, outputStream);
     }
 
-    private static SigningInfo getSigningInfo(Resource pkcs12File, String password) throws KeyStoreException, IOException, CertificateException, UnrecoverableKeyException, NoSuchAlgorithmException, InvalidCertificateException {
+    public void signStream(InputStream content, SigningInfo signingInfo, boolean attached, SignatureEncoding encoding,
+                           SignatureAlgorithm signatureAlgorithm, OutputStream outputStream) throws SigningValidationException, IOException {
+        SignatureAlgorithm resolvedAlgorithm = this.resolveSignatureAlgorithm(signatureAlgorithm, signingInfo.getPrivateKey());
+        SignerInfoGenerator signerInfoGenerator;
+
+        try {
+            signerInfoGenerator = this.signingEngine.createSignerInfoGenerator(signingInfo, resolvedAlgorithm, this.cryptoExecutor);
+        } catch (Exception e) {
+            throw this.metrics.recordError(SigningValidationException.from(e));
+        }
+
+        this.signStream(content, signerInfoGenerator, new CollectionStore<>(signingInfo.getCertificateHolderList()),
+                attached, encoding, true, outputStream);
+    }
+
+    public void signStream(InputStream content, String keyId, boolean attached, SignatureEncoding encoding,
+                           OutputStream outputStream) throws SigningValidationException, IOException {
+        this.signStream(content, keyId, attached, encoding, null, outputStream);
+    }
+
+    public void signStream(InputStream content, String keyId, boolean attached, SignatureEncoding encoding,
+                           SignatureAlgorithm signatureAlgorithm, OutputStream outputStream) throws SigningValidationException, IOException {
+        this.signStream(content, keyId, attached, encoding, signatureAlgorithm, true, outputStream);
+    }
+
+    // archive = false quando a saída já é o destino durável da assinatura (ex: outbox da ingestão por diretório)
+    public void signStream(InputStream content, String keyId, boolean attached, SignatureEncoding encoding,
+                           SignatureAlgorithm signatureAlgorithm, boolean archive, OutputStream outputStream) throws SigningValidationException, IOException {
+        RegisteredSigningKey registeredKey = this.keyRegistry.get(keyId);
+        SignatureAlgorithm resolvedAlgorithm = this.resolveSignatureAlgorithm(signatureAlgorithm, registeredKey.getSigningInfo().getPrivateKey());
+
+        this.signStream(content, this.createSignerInfoGenerator(registeredKey, resolvedAlgorithm), registeredKey.getCertificateStore(),
+                attached, encoding, archive, outputStream);
+    }
+
+    // Conteúdo lido aos poucos pode falhar no meio, então o streaming não usa o gerador reaproveitado da chave
+    private SignerInfoGenerator createSignerInfoGenerator(RegisteredSigningKey registeredKey, SignatureAlgorithm signatureAlgorithm) throws SigningValidationException {
+        try {
+            return registeredKey.createSignerInfoGenerator(signatureAlgorithm, this.cryptoExecutor);
+        } catch (Exception e) {
+            throw this.metrics.recordError(SigningValidationException.from(e));
+        }
+    }
+
+    // A leitura do conteúdo e a escrita da resposta são intercaladas com o digest na thread da requisição,
+    // somente a assinatura final com a chave privada vai para o cryptoExecutor (gerador criado com ele)
+    private void signStream(InputStream content, SignerInfoGenerator signerInfoGenerator, Store<X509CertificateHolder> certificateStore,
+                            boolean attached, SignatureEncoding encoding, boolean archive, OutputStream outputStream) throws SigningValidationException, IOException {
+        try (SignatureArchiveService.ArchiveOutputStream archiveOutputStream = archive
+                ? this.archiveService.openArchiveStream(attached)
+                : this.archiveService.discardingArchiveStream()) {
+            // O encoder Base64 precisa ser fechado para escrever o final, sem fechar a resposta
+            OutputStream responseOutputStream = (encoding == SignatureEncoding.BASE64)
+                    ? java.util.Base64.getEncoder().wrap(StreamUtils.nonClosing(outputStream))
+                    : outputStream;
+
+            // Os mesmos bytes DER vão para a resposta e para o arquivo .p7m. O tempo inclui a leitura do
+            // conteúdo e a escrita da resposta, que acontecem junto com a geração, e o carimbo do tempo
+            long start = this.metrics.start();
+            SigningEngine.generate(content, new TeeOutputStream(responseOutputStream, archiveOutputStream),
+                    this.timestampService.withTimestamp(signerInfoGenerator), certificateStore, attached);
+            this.metrics.stop(PipelineMetrics.Stage.CMS_GENERATION, start);
+
+            if (responseOutputStream != outputStream) {
+                responseOutputStream.close();
+            }
+
+            archiveOutputStream.complete();
+        } catch (CMSException e) {
+            throw this.metrics.recordError(SigningValidationException.from(e));
+        }
+    }
+
+    // Documento mapeado em memória (MappedUploadService): o digest e o conteúdo attached são lidos do
+    // mapeamento, a assinatura é gerada em um arquivo ao lado do documento e enviada com transferTo.
+    // Concluído o envio, o arquivo é movido para o arquivamento em vez de ser gravado uma segunda vez
+    public void signMapped(MappedFile content, SigningInfo signingInfo, boolean attached, SignatureEncoding encoding,
+                           SignatureAlgorithm signatureAlgorithm, OutputStream outputStream) throws SigningValidationException, IOException {
+        SignatureAlgorithm resolvedAlgorithm = this.resolveSignatureAlgorithm(signatureAlgorithm, signingInfo.getPrivateKey());
+        SignerInfoGenerator signerInfoGenerator;
+
+        try {
+            signerInfoGenerator = this.signingEngine.createSignerInfoGenerator(signingInfo, resolvedAlgorithm, this.cryptoExecutor);
+        } catch (Exception e) {
+            throw this.metrics.recordError(SigningValidationException.from(e));
+        }
+
+        this.signMapped(content, signerInfoGenerator, new CollectionStore<>(signingInfo.getCertificateHolderList()),
+                attached, encoding, outputStream);
+    }
+
+    public void signMapped(MappedFile content, String keyId, boolean attached, SignatureEncoding encoding,
+                           SignatureAlgorithm signatureAlgorithm, OutputStream outputStream) throws SigningValidationException, IOException {
+        RegisteredSigningKey registeredKey = this.keyRegistry.get(keyId);
+        SignatureAlgorithm resolvedAlgorithm = this.resolveSignatureAlgorithm(signatureAlgorithm, registeredKey.getSigningInfo().getPrivateKey());
+
+        this.signMapped(content, this.createSignerInfoGenerator(registeredKey, resolvedAlgorithm), registeredKey.getCertificateStore(),
+                attached, encoding, outputStream);
+    }
+
+    // Assinatura attached em Base64 de um documento mapeado (POST /signature): o documento não passa por
+    // um byte[], somente a assinatura codificada, que a resposta em String exige de qualquer forma
+    public String signAttached(MappedFile content, SigningInfo signingInfo, SignatureAlgorithm signatureAlgorithm) throws SigningValidationException, IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        this.signMapped(content, signingInfo, true, SignatureEncoding.BASE64, signatureAlgorithm, outputStream);
+        return outputStream.toString(StandardCharsets.US_ASCII);
+    }
+
+    public String signAttached(MappedFile content, String keyId, SignatureAlgorithm signatureAlgorithm) throws SigningValidationException, IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        this.signMapped(content, keyId, true, SignatureEncoding.BASE64, signatureAlgorithm, outputStream);
+        return outputStream.toString(StandardCharsets.US_ASCII);
+    }
+
+    private void signMapped(MappedFile content, SignerInfoGenerator signerInfoGenerator, Store<X509CertificateHolder> certificateStore,
+                            boolean attached, SignatureEncoding encoding, OutputStream outputStream) throws SigningValidationException, IOException {
+        this.metrics.recordPayloadSize(PipelineMetrics.Operation.SIGN, content.size());
+
+        Path signedFile = Files.createTempFile(content.getPath().toAbsolutePath().getParent(), "assinatura-",
+                attached ? SIGNATURE_FILE_EXTENSION : DETACHED_SIGNATURE_FILE_EXTENSION);
+
+        try {
+            long start = this.metrics.start();
+            try (FileChannel channel = FileChannel.open(signedFile, StandardOpenOption.WRITE)) {
+                SigningEngine.generate(new MappedContent(content.getBuffer()), Channels.newOutputStream(channel),
+                        this.timestampService.withTimestamp(signerInfoGenerator), certificateStore, attached);
+            }
+            this.metrics.stop(PipelineMetrics.Stage.CMS_GENERATION, start);
+
+            start = this.metrics.start();
+            try (FileChannel channel = FileChannel.open(signedFile, StandardOpenOption.READ)) {
+                if (encoding == SignatureEncoding.BASE64) {
+                    // O encoder Base64 precisa ser fechado para escrever o final, sem fechar a resposta
+                    try (OutputStream base64OutputStream = java.util.Base64.getEncoder().wrap(StreamUtils.nonClosing(outputStream))) {
+                        MappedFile.transferTo(channel, Channels.newChannel(base64OutputStream));
+                    }
+                } else {
+                    MappedFile.transferTo(channel, Channels.newChannel(outputStream));
+                }
+            }
+            this.metrics.stop(PipelineMetrics.Stage.ENCODING, start);
+
+            this.archiveService.archive(signedFile, attached);
+        } catch (CMSException e) {
+            throw this.metrics.recordError(SigningValidationException.from(e));
+        } finally {
+            Files.deleteIfExists(signedFile);
+        }
+    }
+
+    // Assinatura existente (.p7m/.p7s, DER, BER ou Base64) preparada para receber novos assinantes
+    public SignedDataAppender openSignedData(ByteBuffer encodedSignature) throws InvalidSignedDataException {
+        try {
+            return SignedDataAppender.parse(encodedSignature);
+        } catch (IOException | CMSException | RuntimeException e) {
+            throw this.metrics.recordError(new InvalidSignedDataException("Não foi possível carregar o arquivo de assinatura: " + e.getMessage(), e));
+        }
+    }
+
+    // Co-assinatura: novo assinante, independente dos existentes, sobre o mesmo conteúdo. Algoritmo nulo:
+    // escolhido pelo tipo da chave e, se possível, com o hash de um assinante existente
+    public SignedDataAppender.Additions coSign(SignedDataAppender signedData, SigningInfo signingInfo,
+                                               SignatureAlgorithm signatureAlgorithm) throws SigningValidationException {
+        return this.coSign(signedData, signingInfo, signingInfo.getCertificateHolderList(), signatureAlgorithm);
+    }
+
+    public SignedDataAppender.Additions coSign(SignedDataAppender signedData, String keyId,
+                                               SignatureAlgorithm signatureAlgorithm) throws SigningValidationException {
+        RegisteredSigningKey registeredKey = this.keyRegistry.get(keyId);
+
+        return this.coSign(signedData, registeredKey.getSigningInfo(), registeredKey.getSigningInfo().getCertificateHolderList(), signatureAlgorithm);
+    }
+
+    private SignedDataAppender.Additions coSign(SignedDataAppender signedData, SigningInfo signingInfo, List<X509CertificateHolder> certificates,
+                                                SignatureAlgorithm signatureAlgorithm) throws SigningValidationException {
+        try {
+            ContentDigest contentDigest = this.resolveContentDigest(signedData, signatureAlgorithm, signingInfo.getPrivateKey());
+
+            SignerInformation signer = this.cryptoExecutor.execute(() -> {
+                long start = this.metrics.start();
+                SignerInformation signerInformation = this.signingEngine.signContentDigest(signedData.getContentType(),
+                        contentDigest.digestAlgorithm(), contentDigest.digest(), contentDigest.signatureAlgorithm(), signingInfo);
+                this.metrics.stop(PipelineMetrics.Stage.CMS_GENERATION, start);
+
+                return signerInformation;
+            });
+
+            return new SignedDataAppender.Additions(Map.of(), List.of(this.addTimestamp(signer)), certificates);
+        } catch (SigningValidationException e) {
+            throw this.metrics.recordError(e);
+        } catch (Exception e) {
+            throw this.metrics.recordError(SigningValidationException.from(e));
+        }
+    }
+
+    // Contra-assinatura do assinante na posição signerIndex dos signerInfos: assina o valor da assinatura
+    // dele, não o conteúdo, que nem é lido
+    public SignedDataAppender.Additions counterSign(SignedDataAppender signedData, int signerIndex, SigningInfo signingInfo,
+                                                    SignatureAlgorithm signatureAlgorithm) throws SigningValidationException {
+        SignatureAlgorithm resolvedAlgorithm = this.resolveSignatureAlgorithm(signatureAlgorithm, signingInfo.getPrivateKey());
+
+        return this.counterSign(signedData, signerIndex, signingInfo.getCertificateHolderList(),
+                signer -> SigningEngine.counterSign(signer, this.signingEngine.createSignerInfoGenerator(signingInfo, resolvedAlgorithm)));
+    }
+
+    public SignedDataAppender.Additions counterSign(SignedDataAppender signedData, int signerIndex, String keyId,
+                                                    SignatureAlgorithm signatureAlgorithm) throws SigningValidationException {
+        RegisteredSigningKey registeredKey = this.keyRegistry.get(keyId);
+        SignatureAlgorithm resolvedAlgorithm = this.resolveSignatureAlgorithm(signatureAlgorithm, registeredKey.getSigningInfo().getPrivateKey());
+
+        return this.counterSign(signedData, signerIndex, registeredKey.getSigningInfo().getCertificateHolderList(),
+                signer -> registeredKey.withSignerInfoGenerator(resolvedAlgorithm, signerInfoGenerator -> SigningEngine.counterSign(signer, signerInfoGenerator)));
+    }
+
+    private SignedDataAppender.Additions counterSign(SignedDataAppender signedData, int signerIndex, List<X509CertificateHolder> certificates,
+                                                     CounterSigner counterSigner) throws SigningValidationException {
+        List<SignerInformation> signers = new ArrayList<>(signedData.getSignerData().getSignerInfos().getSigners());
+
+        if (signerIndex < 0 || signerIndex >= signers.size()) {
+            throw this.metrics.recordError(new InvalidSignedDataException("Assinante " + signerIndex + " não encontrado, a assinatura possui "
+                    + signers.size() + " assinante(s)"));
+        }
+
+        try {
+            // O SignerInfoGenerator é obtido na thread que gera a assinatura, como nas demais assinaturas
+            SignerInformation counterSigned = this.cryptoExecutor.execute(() -> {
+                long start = this.metrics.start();
+                SignerInformation signerInformation = counterSigner.counterSign(signers.get(signerIndex));
+                this.metrics.stop(PipelineMetrics.Stage.CMS_GENERATION, start);
+
+                return signerInformation;
+            });
+
+            return new SignedDataAppender.Additions(Map.of(signerIndex, counterSigned), List.of(), certificates);
+        } catch (Exception e) {
+            throw this.metrics.recordError(SigningValidationException.from(e));
+        }
+    }
+
+    // Escreve a assinatura com os assinantes acrescentados na resposta e no arquivo .p7m/.p7s. Somente os
+    // conjuntos de assinantes, certificados e algoritmos são codificados, o conteúdo é copiado como está
+    public void writeSignedData(SignedDataAppender signedData, SignedDataAppender.Additions additions, SignatureEncoding encoding,
+                                OutputStream outputStream) throws IOException {
+        try (SignatureArchiveService.ArchiveOutputStream archiveOutputStream = this.archiveService.openArchiveStream(signedData.hasContent())) {
+            OutputStream responseOutputStream = (encoding == SignatureEncoding.BASE64)
+                    ? java.util.Base64.getEncoder().wrap(StreamUtils.nonClosing(outputStream))
+                    : outputStream;
+
+            long start = this.metrics.start();
+            signedData.write(new TeeOutputStream(responseOutputStream, archiveOutputStream), additions);
+            this.metrics.stop(PipelineMetrics.Stage.ENCODING, start);
+
+            if (responseOutputStream != outputStream) {
+                responseOutputStream.close();
+            }
+
+            archiveOutputStream.complete();
+        }
+    }
+
+    // O hash do conteúdo vem do messageDigest assinado por um assinante existente com o mesmo algoritmo de
+    // digest, sem ler o conteúdo. Como no signDigest, o hash recebido não é conferido com o documento: se não
+    // corresponder ao conteúdo, o novo assinante também é inválido na verificação. Sem assinante compatível
+    // o conteúdo encapsulado é lido uma vez para o hash, ainda sem ser recodificado
+    private ContentDigest resolveContentDigest(SignedDataAppender signedData, SignatureAlgorithm requested,
+                                               PrivateKey privateKey) throws SigningValidationException, IOException, OperatorCreationException {
+        SignatureAlgorithm preferred = this.resolveSignatureAlgorithm(requested, privateKey);
+        Collection<SignerInformation> signers = signedData.getSignerData().getSignerInfos().getSigners();
+        AlgorithmIdentifier preferredDigest = DIGEST_ALGORITHM_FINDER.find(preferred.getDigestName());
+
+        for (SignerInformation signer : signers) {
+            byte[] messageDigest = SigningService.getMessageDigest(signer);
+
+            if (messageDigest != null && signer.getDigestAlgorithmID().getAlgorithm().equals(preferredDigest.getAlgorithm())) {
+                return new ContentDigest(preferred, signer.getDigestAlgorithmID(), messageDigest);
+            }
+        }
+
+        // Sem algoritmo informado, outro algoritmo da mesma chave pode usar o hash de um assinante existente
+        if (requested == null) {
+            for (SignerInformation signer : signers) {
+                byte[] messageDigest = SigningService.getMessageDigest(signer);
+
+                try {
+                    HashService.HashAlgorithm hashAlgorithm = HashService.forOid(signer.getDigestAlgorithmID().getAlgorithm());
+
+                    if (messageDigest != null) {
+                        return new ContentDigest(SignatureAlgorithm.forKey(privateKey, hashAlgorithm), signer.getDigestAlgorithmID(), messageDigest);
+                    }
+                } catch (IllegalArgumentException | InvalidSignatureAlgorithmException e) {
+                    // algoritmo do assinante sem correspondente para esta chave, tenta o próximo
+                }
+            }
+        }
+
+        if (!signedData.hasContent()) {
+            throw new InvalidSignedDataException("Assinatura sem conteúdo encapsulado e sem assinante com hash "
+                    + preferred.getDigestName() + " para a co-assinatura");
+        }
+
+        long start = this.metrics.start();
+        DigestCalculator digestCalculator = this.signingEngine.getDigestCalculatorProvider().get(preferredDigest);
+
+        try (InputStream content = signedData.openContent(); OutputStream digestOutputStream = digestCalculator.getOutputStream()) {
+            content.transferTo(digestOutputStream);
+        }
+        this.metrics.stop(PipelineMetrics.Stage.CONTENT_DIGEST, start);
+
+        return new ContentDigest(preferred, preferredDigest, digestCalculator.getDigest());
+    }
+
+    private static byte[] getMessageDigest(SignerInformation signer) {
+        AttributeTable signedAttributes = signer.getSignedAttributes();
+        Attribute messageDigest = (signedAttributes == null) ? null : signedAttributes.get(CMSAttributes.messageDigest);
+
+        return (messageDigest == null) ? null : ASN1OctetString.getInstance(messageDigest.getAttrValues().getObjectAt(0)).getOctets();
+    }
+
+    private SignerInformation addTimestamp(SignerInformation signer) throws TimestampException {
+        if (!this.timestampService.isEnabled()) {
+            return signer;
+        }
+
+        long start = this.metrics.start();
+        SignerInformation timestampedSigner = this.timestampService.addTimestamps(new SignerInformationStore(signer)).iterator().next();
+        this.metrics.stop(PipelineMetrics.Stage.TIMESTAMP, start);
+
+        return timestampedSigner;
+    }
+
+    // Assinatura detached a partir do hash (em hex, mesmo formato do HashService) calculado pelo cliente
+    public String signDigest(String hexEncodedHash, HashService.HashAlgorithm hashAlgorithm, Resource pkcs12File, String password) throws SigningValidationException {
+        return this.signDigest(hexEncodedHash, hashAlgorithm, pkcs12File, password, null);
+    }
+
+    public String signDigest(String hexEncodedHash, HashService.HashAlgorithm hashAlgorithm, Resource pkcs12File, String password,
+                             SignatureAlgorithm signatureAlgorithm) throws SigningValidationException {
+        byte[] digest = SigningService.decodeDigest(hexEncodedHash, hashAlgorithm);
+        SigningInfo signingInfo = this.getSigningInfo(pkcs12File, password);
+        SignatureAlgorithm resolvedAlgorithm = this.resolveSignatureAlgorithm(signatureAlgorithm, hashAlgorithm, signingInfo.getPrivateKey());
+
+        try {
+            CMSSignedData signedDigest = this.cryptoExecutor.execute(() -> this.signDigest(digest, hashAlgorithm, resolvedAlgorithm, signingInfo,
+                    new CollectionStore<>(signingInfo.getCertificateHolderList())));
+
+            return this.encodeAndArchive(signedDigest);
+        } catch (SigningValidationException e) {
+            throw this.metrics.recordError(e);
+        } catch (Exception e) {
+            throw this.metrics.recordError(SigningValidationException.from(e));
+        }
+    }
+
+    public String signDigest(String hexEncodedHash, HashService.HashAlgorithm hashAlgorithm, String keyId) throws SigningValidationException {
+        return this.signDigest(hexEncodedHash, hashAlgorithm, keyId, null);
+    }
+
+    public String signDigest(String hexEncodedHash, HashService.HashAlgorithm hashAlgorithm, String keyId,
+                             SignatureAlgorithm signatureAlgorithm) throws SigningValidationException {
+        byte[] digest = SigningService.decodeDigest(hexEncodedHash, hashAlgorithm);
+        RegisteredSigningKey registeredKey = this.keyRegistry.get(keyId);
+        SignatureAlgorithm resolvedAlgorithm = this.resolveSignatureAlgorithm(signatureAlgorithm, hashAlgorithm, registeredKey.getSigningInfo().getPrivateKey());
+
+        try {
+            CMSSignedData signedDigest = this.cryptoExecutor.execute(() -> this.signDigest(digest, hashAlgorithm, resolvedAlgorithm, registeredKey.getSigningInfo(),
+                    registeredKey.getCertificateStore()));
+
+            return this.encodeAndArchive(signedDigest);
+        } catch (SigningValidationException e) {
+            throw this.metrics.recordError(e);
+        } catch (Exception e) {
+            throw this.metrics.recordError(SigningValidationException.from(e));
+        }
+    }
+
+    private CMSSignedData signDigest(byte[] digest, HashService.HashAlgorithm hashAlgorithm, SignatureAlgorithm signatureAlgorithm, SigningInfo signingInfo,
+                                     Store<X509CertificateHolder> certificateStore) throws CMSException, OperatorCreationException, CertificateEncodingException {
+        long start = this.metrics.start();
+        CMSSignedData signedDigest = this.signingEngine.signDigest(digest, hashAlgorithm, signatureAlgorithm, signingInfo, certificateStore);
+        this.metrics.stop(PipelineMetrics.Stage.CMS_GENERATION, start);
+
+        return signedDigest;
+    }
+
+    private SignatureAlgorithm resolveSignatureAlgorithm(SignatureAlgorithm requested, PrivateKey privateKey) throws InvalidSignatureAlgorithmException {
+        try {
+            return SignatureAlgorithm.resolve(requested, privateKey);
+        } catch (InvalidSignatureAlgorithmException e) {
+            throw this.metrics.recordError(e);
+        }
+    }
+
+    // O hash enviado e o do algoritmo de assinatura precisam ser o mesmo, ex: SHA256 -> SHA256WITHECDSA
+    private SignatureAlgorithm resolveSignatureAlgorithm(SignatureAlgorithm requested, HashService.HashAlgorithm hashAlgorithm,
+                                                         PrivateKey privateKey) throws InvalidSignatureAlgorithmException {
+        try {
+            if (requested == null) {
+                return SignatureAlgorithm.forKey(privateKey, hashAlgorithm);
+            }
+
+            SignatureAlgorithm resolved = SignatureAlgorithm.resolve(requested, privateKey);
+
+            if (!resolved.getDigestName().equals(hashAlgorithm.name())) {
+                throw new InvalidSignatureAlgorithmException("Algoritmo de assinatura " + resolved
+                        + " usa " + resolved.getDigestName() + ", mas o hash informado é " + hashAlgorithm);
+            }
+
+            return resolved;
+        } catch (InvalidSignatureAlgorithmException e) {
+            throw this.metrics.recordError(e);
+        }
+    }
+
+    private static byte[] decodeDigest(String hexEncodedHash, HashService.HashAlgorithm hashAlgorithm) throws InvalidDigestException {
+        try {
+            return HashService.decodeHexEncodedHash(hexEncodedHash, hashAlgorithm);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidDigestException(e.getMessage(), e);
+        }
+    }
+
+    public CMSSignedData sign(String string, SigningInfo signingInfo) throws CMSException, OperatorCreationException, CertificateEncodingException, InvalidSignatureAlgorithmException {
+        return this.sign(string.getBytes(StandardCharsets.UTF_8), signingInfo);
+    }
+
+    public CMSSignedData sign(byte[] content, SigningInfo signingInfo) throws CMSException, OperatorCreationException, CertificateEncodingException, InvalidSignatureAlgorithmException {
+        return this.sign(content, signingInfo, SignatureAlgorithm.forKey(signingInfo.getPrivateKey()));
+    }
+
+    public CMSSignedData sign(byte[] content, SigningInfo signingInfo, SignatureAlgorithm signatureAlgorithm) throws CMSException, OperatorCreationException, CertificateEncodingException {
+        return this.sign(CMSObjectIdentifiers.data, content, signingInfo, signatureAlgorithm);
+    }
+
+    public CMSSignedData sign(ASN1ObjectIdentifier contentType, byte[] content, SigningInfo signingInfo,
+                              SignatureAlgorithm signatureAlgorithm) throws CMSException, OperatorCreationException, CertificateEncodingException {
+        this.metrics.recordPayloadSize(PipelineMetrics.Operation.SIGN, content.length);
+
+        long start = this.metrics.start();
+        CMSSignedData signedData = this.signingEngine.sign(contentType, content, signingInfo, signatureAlgorithm);
+        this.metrics.stop(PipelineMetrics.Stage.CMS_GENERATION, start);
+
+        return signedData;
+    }
+
+    // Codifica uma única vez: os mesmos bytes são arquivados (.p7m, ou .p7s quando detached) e devolvidos em Base64. O carimbo do
+    // tempo é obtido aqui, na thread da requisição, para que a espera pela TSA não ocupe o pool de assinatura
+    private String encodeAndArchive(CMSSignedData cmsSignedData) throws IOException, TimestampException {
+        long start;
+
+        if (this.timestampService.isEnabled()) {
+            start = this.metrics.start();
+            cmsSignedData = this.timestampService.addTimestamps(cmsSignedData);
+            this.metrics.stop(PipelineMetrics.Stage.TIMESTAMP, start);
+        }
+
+        start = this.metrics.start();
+        byte[] encodedData = cmsSignedData.getEncoded();
+        String base64EncodedData = Base64.toBase64String(encodedData);
+        this.metrics.stop(PipelineMetrics.Stage.ENCODING, start);
+
+        start = this.metrics.start();
+        this.archiveService.archive(encodedData, cmsSignedData.getSignedContent() != null);
+        this.metrics.stop(PipelineMetrics.Stage.ARCHIVE, start);
+
+        return base64EncodedData;
+    }
+
+    public void invalidateCredentials(Resource pkcs12File, String password) throws IOException {
+        this.credentialCache.invalidate(pkcs12File.getContentAsByteArray(), password);
+    }
+
+    public void invalidateAllCredentials() {
+        this.credentialCache.invalidateAll();
+    }
+
+    // Retorna o SigningInfo configurado para assinatura "attached"
+    public SigningInfo getSigningInfo(Resource pkcs12File, String password) throws SigningValidationException {
+        try {
+            byte[] pkcs12Bytes = pkcs12File.getContentAsByteArray();
+
+            // Mesmo arquivo + mesma senha reaproveitam a chave já decodificada
+            SigningInfo signingInfo = this.credentialCache.get(pkcs12Bytes, password, () -> SigningService.loadSigningInfo(pkcs12Bytes, password, this.metrics));
+            signingInfo.setSigningAttached(true);
+
+            return signingInfo;
+        } catch (Exception e) {
+            throw this.metrics.recordError(SigningValidationException.from(e));
+        }
+    }
+
+    static SigningInfo loadSigningInfo(byte[] pkcs12Bytes, String password) throws KeyStoreException, IOException, CertificateException, UnrecoverableKeyException, NoSuchAlgorithmException, InvalidCertificateException {
+        return SigningService.loadSigningInfo(pkcs12Bytes, password, PipelineMetrics.disabled());
+    }
+
+    static SigningInfo loadSigningInfo(byte[] pkcs12Bytes, String password, PipelineMetrics metrics) throws KeyStoreException, IOException, CertificateException, UnrecoverableKeyException, NoSuchAlgorithmException, InvalidCertificateException {
+        long start = metrics.start();
         KeyStore keyStore = KeyStore.getInstance(CERT_KEY_FILE_FORMAT);
-        keyStore.load(pkcs12File.getInputStream(), password.toCharArray());
+        keyStore.load(new ByteArrayInputStream(pkcs12Bytes), password.toCharArray());
+        metrics.stop(PipelineMetrics.Stage.KEYSTORE_LOAD, start);
 
         String alias = keyStore.aliases().nextElement(); // Somente pega a primeira chave presente
 
         SigningInfo signingInfo = new SigningInfo();
 
+        start = metrics.start();
         PrivateKey privateKey = (PrivateKey) keyStore.getKey(alias, password.toCharArray());
+        metrics.stop(PipelineMetrics.Stage.KEY_UNLOCK, start);
 
         if (privateKey == null) {
             throw new InvalidCertificateException("No private key found for alias: " + alias);
@@ -102,25 +822,13 @@ public class SigningService {
         signingInfo.setX509Certificate((X509Certificate) keyStore.getCertificate(alias));
 
         // Gera cadeia de certificados a partir do que existe dentro da chave
+        start = metrics.start();
         signingInfo.setCertificateHolderList(SigningService.getBCCertificateChain(keyStore.getCertificateChain(alias), signingInfo.getX509Certificate()));
+        metrics.stop(PipelineMetrics.Stage.CHAIN_CONVERSION, start);
 
         return signingInfo;
     }
 
-    public static void saveAsP7M(CMSSignedData cmsSignedData, String filename) throws IOException {
-        byte[] encodedData = cmsSignedData.getEncoded();
-
-        // Salvando arquivo em formato .p7m (arquivo + assinatura)
-        try (FileOutputStream fos = new FileOutputStream(filename)) {
-            fos.write(encodedData);
-        }
-    }
-
-    public static String getNowDateTimeFilename() {
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMddHHmmss");
-        return formatter.format(new Date()) + SIGNATURE_FILE_EXTENSION;
-    }
-
     public static List<X509CertificateHolder> getBCCertificateChain(Certificate[] javaLikeCertificates, X509Certificate x509Certificate) throws CertificateEncodingException, IOException {
         List<X509CertificateHolder> bcCertificateList = new ArrayList<>();
 
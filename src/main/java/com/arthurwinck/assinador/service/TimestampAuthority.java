@@ -0,0 +1,46 @@
+package com.arthurwinck.assinador.service;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.cmp.PKIStatus;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.tsp.TSPException;
+import org.bouncycastle.tsp.TimeStampRequest;
+import org.bouncycastle.tsp.TimeStampRequestGenerator;
+import org.bouncycastle.tsp.TimeStampResponse;
+import org.bouncycastle.tsp.TimeStampToken;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+// Autoridade de carimbo do tempo (RFC 3161): recebe o hash de um dado e devolve o token assinado pela TSA
+// com a data/hora em que o hash foi apresentado. A implementação é escolhida em TimestampConfiguration
+public interface TimestampAuthority {
+
+    TimeStampToken timestamp(ASN1ObjectIdentifier digestAlgorithm, byte[] digest) throws IOException, TSPException;
+
+    // Certificado da TSA quando a chave é do próprio servidor (TSA local), aceito como confiável na verificação
+    // dos carimbos. Nulo para TSAs remotas, cujo certificado precisa de uma âncora ou da lista de TSAs confiáveis
+    default X509CertificateHolder getCertificate() {
+        return null;
+    }
+
+    // Nonce aleatório e certReq: o token traz o certificado da TSA, necessário para verificar sem consultas externas
+    static TimeStampRequest createRequest(ASN1ObjectIdentifier digestAlgorithm, byte[] digest, SecureRandom random) {
+        TimeStampRequestGenerator requestGenerator = new TimeStampRequestGenerator();
+        requestGenerator.setCertReq(true);
+
+        return requestGenerator.generate(digestAlgorithm, digest, new BigInteger(64, random));
+    }
+
+    // Confere status, nonce, hash e certificado da resposta com os da requisição
+    static TimeStampToken getToken(TimeStampResponse response, TimeStampRequest request) throws TSPException {
+        if (response.getStatus() != PKIStatus.GRANTED && response.getStatus() != PKIStatus.GRANTED_WITH_MODS) {
+            throw new TSPException("TSA recusou a requisição (status " + response.getStatus() + "): " + response.getStatusString());
+        }
+
+        response.validate(request);
+
+        return response.getTimeStampToken();
+    }
+}
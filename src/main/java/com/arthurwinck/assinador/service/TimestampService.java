@@ -0,0 +1,303 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.exception.TimestampException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERSet;
+import org.bouncycastle.asn1.cms.Attribute;
+import org.bouncycastle.asn1.cms.AttributeTable;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.cms.*;
+import org.bouncycastle.tsp.TimeStampToken;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Carimbo do tempo (CAdES-T) das assinaturas geradas: o token RFC 3161 da TSA vai no atributo não assinado
+// id-aa-signatureTimeStampToken do assinante e comprova que o valor da assinatura existia naquele momento.
+//
+// Para não pagar uma ida à TSA por assinatura, as assinaturas que chegam juntas são agrupadas por uma única
+// thread: a primeira assinatura abre o lote, que é fechado após max-delay-ms ou max-size assinaturas, e
+// somente a raiz da árvore de Merkle (RFC 6962) dos valores das assinaturas é carimbada. Cada assinante
+// recebe o mesmo token junto com a prova de inclusão da sua assinatura na raiz, em um atributo próprio
+// (BATCH_TIMESTAMP_ATTRIBUTE): o token do lote não é sobre o valor da assinatura e seria rejeitado por
+// verificadores CAdES no atributo padrão. Enquanto a TSA responde, as próximas assinaturas se acumulam para o
+// lote seguinte. Lotes de uma única assinatura (e max-size 1) carimbam o hash da própria assinatura, no
+// atributo padrão id-aa-signatureTimeStampToken que qualquer verificador CAdES aceita
+@Slf4j
+@Component
+public class TimestampService {
+
+    // Arco de OIDs do assinador (UUID, X.667), usado para os atributos e políticas sem OID padrão
+    public static final ASN1ObjectIdentifier OID_ARC = new ASN1ObjectIdentifier("2.25.40083229462342811724988193764227204339");
+    // Atributo não assinado do carimbo de lote (o arco .1 foi usado por uma versão anterior do formato):
+    // BatchTimestamp ::= SEQUENCE { timeStampToken ContentInfo, inclusionProof MerkleInclusionProof }
+    public static final ASN1ObjectIdentifier BATCH_TIMESTAMP_ATTRIBUTE = OID_ARC.branch("4");
+    public static final ASN1ObjectIdentifier DIGEST_ALGORITHM = NISTObjectIdentifiers.id_sha256;
+
+    // Token do lote e a prova de inclusão da assinatura, nula quando o token é sobre a própria assinatura
+    public record Timestamp(TimeStampToken token, MerkleTree.InclusionProof inclusionProof) {}
+
+    public record TimestampStats(long signatures, long tsaRequests, int queueSize) {}
+
+    private record PendingTimestamp(byte[] signature, CompletableFuture<Timestamp> future) {}
+
+    private final TimestampAuthority timestampAuthority;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final long timeoutMillis;
+
+    private final BlockingQueue<PendingTimestamp> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong signatures = new AtomicLong();
+    private final AtomicLong tsaRequests = new AtomicLong();
+
+    private volatile boolean running;
+    // Após o início do encerramento nenhuma assinatura entra na fila, que já pode ter sido esvaziada por stop()
+    private boolean stopping;
+    private final Object submitLock = new Object();
+    private Thread batcherThread;
+
+    @Autowired
+    public TimestampService(TimestampAuthority timestampAuthority,
+                            @Value("${signing.timestamp.enabled:false}") boolean enabled,
+                            @Value("${signing.timestamp.batch.max-size:256}") int maxBatchSize,
+                            @Value("${signing.timestamp.batch.max-delay-ms:10}") long maxDelayMillis,
+                            @Value("${signing.timestamp.timeout-ms:10000}") long timeoutMillis) {
+        this.timestampAuthority = timestampAuthority;
+        this.enabled = enabled;
+        this.maxBatchSize = Math.max(maxBatchSize, 1);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!this.enabled || this.maxBatchSize == 1) {
+            return;
+        }
+
+        this.running = true;
+        this.batcherThread = new Thread(this::batchLoop, "timestamp-batcher");
+        this.batcherThread.setDaemon(true);
+        this.batcherThread.start();
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    // Carimba os assinantes que ainda não têm token, todos no mesmo lote
+    public CMSSignedData addTimestamps(CMSSignedData cmsSignedData) throws TimestampException {
+        return CMSSignedData.replaceSigners(cmsSignedData, this.addTimestamps(cmsSignedData.getSignerInfos()));
+    }
+
+    public SignerInformationStore addTimestamps(SignerInformationStore signerInformationStore) throws TimestampException {
+        List<SignerInformation> signers = new ArrayList<>(signerInformationStore.getSigners());
+        List<CompletableFuture<Timestamp>> futures = new ArrayList<>(signers.size());
+
+        for (SignerInformation signer : signers) {
+            futures.add(TimestampService.hasTimestamp(signer) ? null : this.submit(signer.getSignature()));
+        }
+
+        List<SignerInformation> timestampedSigners = new ArrayList<>(signers.size());
+
+        for (int index = 0; index < signers.size(); index++) {
+            SignerInformation signer = signers.get(index);
+
+            if (futures.get(index) == null) {
+                timestampedSigners.add(signer);
+                continue;
+            }
+
+            Timestamp timestamp = this.await(futures.get(index));
+            timestampedSigners.add(SignerInformation.replaceUnsignedAttributes(signer,
+                    TimestampService.addTimestampAttributes(signer.getUnsignedAttributes(), timestamp)));
+        }
+
+        return new SignerInformationStore(timestampedSigners);
+    }
+
+    // Assinaturas em streaming: o valor da assinatura só existe quando o SignerInfo é gerado, no final do
+    // conteúdo, então o carimbo é obtido pelo gerador de atributos não assinados
+    public SignerInfoGenerator withTimestamp(SignerInfoGenerator signerInfoGenerator) {
+        if (!this.enabled) {
+            return signerInfoGenerator;
+        }
+
+        CMSAttributeTableGenerator unsignedAttributeGenerator = parameters -> {
+            try {
+                Timestamp timestamp = this.timestamp((byte[]) parameters.get(CMSAttributeTableGenerator.SIGNATURE));
+                return TimestampService.addTimestampAttributes(null, timestamp);
+            } catch (TimestampException e) {
+                throw new CMSAttributeTableGenerationException(e.getMessage(), e);
+            }
+        };
+
+        return new SignerInfoGenerator(signerInfoGenerator, signerInfoGenerator.getSignedAttributeTableGenerator(), unsignedAttributeGenerator);
+    }
+
+    public Timestamp timestamp(byte[] signature) throws TimestampException {
+        return this.await(this.submit(signature));
+    }
+
+    public TimestampStats getStats() {
+        return new TimestampStats(this.signatures.get(), this.tsaRequests.get(), this.queue.size());
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (this.batcherThread == null) {
+            return;
+        }
+
+        synchronized (this.submitLock) {
+            this.stopping = true;
+        }
+
+        this.running = false;
+        this.batcherThread.join(this.timeoutMillis);
+
+        // Assinaturas que entraram na fila antes do encerramento ainda recebem o carimbo
+        List<PendingTimestamp> pending = new ArrayList<>();
+        this.queue.drainTo(pending);
+
+        if (!pending.isEmpty()) {
+            this.timestampBatch(pending);
+        }
+    }
+
+    static boolean hasTimestamp(SignerInformation signer) {
+        AttributeTable unsignedAttributes = signer.getUnsignedAttributes();
+
+        return unsignedAttributes != null && (unsignedAttributes.get(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken) != null
+                || unsignedAttributes.get(BATCH_TIMESTAMP_ATTRIBUTE) != null);
+    }
+
+    static AttributeTable addTimestampAttributes(AttributeTable unsignedAttributes, Timestamp timestamp) {
+        ASN1EncodableVector attributes = (unsignedAttributes == null) ? new ASN1EncodableVector() : unsignedAttributes.toASN1EncodableVector();
+
+        if (timestamp.inclusionProof() == null) {
+            attributes.add(new Attribute(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken,
+                    new DERSet(timestamp.token().toCMSSignedData().toASN1Structure())));
+        } else {
+            attributes.add(new Attribute(BATCH_TIMESTAMP_ATTRIBUTE, new DERSet(new DERSequence(new ASN1Encodable[] {
+                    timestamp.token().toCMSSignedData().toASN1Structure(),
+                    timestamp.inclusionProof().toASN1Primitive()
+            }))));
+        }
+
+        return new AttributeTable(attributes);
+    }
+
+    private CompletableFuture<Timestamp> submit(byte[] signature) {
+        this.signatures.incrementAndGet();
+
+        if (this.batcherThread == null) {
+            // Sem agrupamento (max-size 1): carimbo direto na thread da requisição
+            return this.timestampBatch(List.of(new PendingTimestamp(signature, new CompletableFuture<>()))).get(0);
+        }
+
+        PendingTimestamp pending = new PendingTimestamp(signature, new CompletableFuture<>());
+
+        synchronized (this.submitLock) {
+            if (this.stopping) {
+                pending.future().completeExceptionally(new IllegalStateException("Serviço de carimbo do tempo em encerramento"));
+                return pending.future();
+            }
+
+            this.queue.add(pending);
+        }
+
+        return pending.future();
+    }
+
+    private Timestamp await(CompletableFuture<Timestamp> future) throws TimestampException {
+        try {
+            return future.get(this.timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TimestampException("Carimbo do tempo interrompido", e);
+        } catch (TimeoutException e) {
+            throw new TimestampException("TSA não respondeu em " + this.timeoutMillis + " ms", e);
+        } catch (ExecutionException e) {
+            throw new TimestampException("Não foi possível obter o carimbo do tempo da TSA: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private void batchLoop() {
+        List<PendingTimestamp> batch = new ArrayList<>(this.maxBatchSize);
+
+        while (this.running) {
+            try {
+                PendingTimestamp first = this.queue.poll(200, TimeUnit.MILLISECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                long deadline = System.nanoTime() + this.maxDelayNanos;
+
+                while (batch.size() < this.maxBatchSize) {
+                    // O que já está na fila entra sem esperar, o restante até o prazo do lote
+                    if (this.queue.drainTo(batch, this.maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+
+                    PendingTimestamp next = this.queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+                    if (next == null) {
+                        break;
+                    }
+
+                    batch.add(next);
+                }
+
+                this.timestampBatch(batch);
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Uma requisição à TSA para todo o lote. Falhas são repassadas a todas as assinaturas do lote
+    private List<CompletableFuture<Timestamp>> timestampBatch(List<PendingTimestamp> batch) {
+        try {
+            this.tsaRequests.incrementAndGet();
+
+            if (batch.size() == 1) {
+                PendingTimestamp pending = batch.get(0);
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(pending.signature());
+
+                pending.future().complete(new Timestamp(this.timestampAuthority.timestamp(DIGEST_ALGORITHM, digest), null));
+            } else {
+                MerkleTree merkleTree = new MerkleTree(batch.stream().map(PendingTimestamp::signature).toList());
+                TimeStampToken token = this.timestampAuthority.timestamp(DIGEST_ALGORITHM, merkleTree.getRoot());
+
+                for (int index = 0; index < batch.size(); index++) {
+                    batch.get(index).future().complete(new Timestamp(token, merkleTree.getInclusionProof(index)));
+                }
+            }
+        } catch (Exception e) {
+            log.error("Não foi possível obter o carimbo do tempo de {} assinatura(s)", batch.size(), e);
+            batch.forEach(pending -> pending.future().completeExceptionally(e));
+        }
+
+        return batch.stream().map(PendingTimestamp::future).toList();
+    }
+}
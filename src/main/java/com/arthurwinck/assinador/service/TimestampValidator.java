@@ -0,0 +1,195 @@
+package com.arthurwinck.assinador.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.cms.Attribute;
+import org.bouncycastle.asn1.cms.AttributeTable;
+import org.bouncycastle.asn1.cms.ContentInfo;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.operator.DigestCalculator;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.bc.BcDigestCalculatorProvider;
+import org.bouncycastle.tsp.TSPException;
+import org.bouncycastle.tsp.TimeStampToken;
+import org.bouncycastle.tsp.TimeStampTokenInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+// Valida o carimbo do tempo (CAdES-T) de um assinante: assinatura da TSA sobre o token, certificado da TSA
+// com uso estendido timeStamping e válido na data do carimbo, e o hash carimbado, que deve ser o do valor da
+// assinatura (atributo padrão) ou, em tokens de lote (TimestampService.BATCH_TIMESTAMP_ATTRIBUTE), a raiz da
+// árvore de Merkle obtida com a prova de inclusão do assinante.
+// O certificado da TSA precisa ser confiável em toda verificação, independente da validação de cadeia do
+// assinante: listado em verify.timestamp.trusted-tsa-directory, o da TSA local do servidor ou com cadeia até
+// uma das âncoras de confiança
+@Slf4j
+@Component
+public class TimestampValidator {
+
+    // genTime e authority nulos quando o token não pôde ser lido
+    public record TimestampValidationResult(boolean valid, Date genTime, String authority, String error) {
+
+        static TimestampValidationResult invalid(Date genTime, String authority, String error) {
+            return new TimestampValidationResult(false, genTime, authority, error);
+        }
+    }
+
+    private final SignerVerifierCache verifierCache;
+    private final CertificateChainValidator chainValidator;
+    private final TimestampAuthority timestampAuthority;
+    private final String trustedTsaDirectory;
+    private final DigestCalculatorProvider digestCalculatorProvider = new BcDigestCalculatorProvider();
+
+    // Fingerprints dos certificados de TSA aceitos sem validação de cadeia
+    private volatile Set<String> trustedTsaFingerprints = Set.of();
+
+    @Autowired
+    public TimestampValidator(SignerVerifierCache verifierCache,
+                              CertificateChainValidator chainValidator,
+                              TimestampAuthority timestampAuthority,
+                              @Value("${verify.timestamp.trusted-tsa-directory:}") String trustedTsaDirectory) {
+        this.verifierCache = verifierCache;
+        this.chainValidator = chainValidator;
+        this.timestampAuthority = timestampAuthority;
+        this.trustedTsaDirectory = trustedTsaDirectory;
+    }
+
+    @PostConstruct
+    public void loadTrustedTsaCertificates() throws IOException, CertificateException {
+        Set<String> fingerprints = new HashSet<>();
+
+        X509CertificateHolder localCertificate = (this.timestampAuthority == null) ? null : this.timestampAuthority.getCertificate();
+        if (localCertificate != null) {
+            fingerprints.add(SignerVerifierCache.getFingerprint(localCertificate));
+        }
+
+        if (this.trustedTsaDirectory != null && !this.trustedTsaDirectory.isBlank()) {
+            for (X509Certificate certificate : CertificateChainValidator.readCertificates(Path.of(this.trustedTsaDirectory))) {
+                fingerprints.add(SignerVerifierCache.getFingerprint(new X509CertificateHolder(certificate.getEncoded())));
+            }
+
+            log.info("{} certificados de TSA confiáveis carregados de {}", fingerprints.size(), this.trustedTsaDirectory);
+        }
+
+        this.trustedTsaFingerprints = Set.copyOf(fingerprints);
+    }
+
+    // Nulo quando o assinante não tem carimbo do tempo
+    public TimestampValidationResult validate(SignerInformation signer) {
+        AttributeTable unsignedAttributes = signer.getUnsignedAttributes();
+        Attribute tokenAttribute = (unsignedAttributes == null) ? null : unsignedAttributes.get(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken);
+        Attribute batchAttribute = (unsignedAttributes == null) ? null : unsignedAttributes.get(TimestampService.BATCH_TIMESTAMP_ATTRIBUTE);
+
+        if (tokenAttribute == null && batchAttribute == null) {
+            return null;
+        }
+
+        TimeStampToken token;
+        MerkleTree.InclusionProof inclusionProof = null;
+
+        try {
+            if (tokenAttribute != null) {
+                token = new TimeStampToken(ContentInfo.getInstance(tokenAttribute.getAttrValues().getObjectAt(0)));
+            } else {
+                ASN1Sequence batchTimestamp = ASN1Sequence.getInstance(batchAttribute.getAttrValues().getObjectAt(0));
+
+                if (batchTimestamp.size() != 2) {
+                    throw new IllegalArgumentException("Carimbo do tempo de lote malformado");
+                }
+
+                token = new TimeStampToken(ContentInfo.getInstance(batchTimestamp.getObjectAt(0)));
+                inclusionProof = MerkleTree.InclusionProof.getInstance(batchTimestamp.getObjectAt(1));
+            }
+        } catch (TSPException | IOException | RuntimeException e) {
+            return TimestampValidationResult.invalid(null, null, "Carimbo do tempo malformado");
+        }
+
+        TimeStampTokenInfo tokenInfo = token.getTimeStampInfo();
+        Date genTime = tokenInfo.getGenTime();
+        X509CertificateHolder tsaCertificate = TimestampValidator.findTsaCertificate(token);
+
+        if (tsaCertificate == null) {
+            return TimestampValidationResult.invalid(genTime, null, "Certificado da TSA não encontrado no carimbo do tempo");
+        }
+
+        String authority = tsaCertificate.getSubject().toString();
+
+        try {
+            // Confere a assinatura da TSA, o ESSCertID e o certificado (timeStamping crítico, válido em genTime)
+            token.validate(this.verifierCache.get(tsaCertificate));
+        } catch (Exception e) {
+            return TimestampValidationResult.invalid(genTime, authority, "Assinatura da TSA inválida no carimbo do tempo: " + e.getMessage());
+        }
+
+        if (!this.imprintMatches(signer, inclusionProof, tokenInfo)) {
+            return TimestampValidationResult.invalid(genTime, authority, "Carimbo do tempo não corresponde ao valor da assinatura");
+        }
+
+        // Sem esta verificação qualquer um poderia carimbar com um certificado próprio com uso timeStamping
+        if (!this.isTrustedTsa(tsaCertificate)) {
+            CertificateChainValidator.ChainValidationResult chainResult = this.chainValidator.validate(tsaCertificate, token.getCertificates());
+
+            if (!chainResult.valid()) {
+                return TimestampValidationResult.invalid(genTime, authority, "Certificado da TSA não confiável: " + chainResult.error());
+            }
+        }
+
+        return new TimestampValidationResult(true, genTime, authority, null);
+    }
+
+    private boolean imprintMatches(SignerInformation signer, MerkleTree.InclusionProof inclusionProof, TimeStampTokenInfo tokenInfo) {
+        byte[] imprint = tokenInfo.getMessageImprintDigest();
+
+        try {
+            if (inclusionProof != null) {
+                // A árvore de Merkle usa SHA-256, o token precisa ser sobre uma raiz do mesmo algoritmo
+                if (!TimestampService.DIGEST_ALGORITHM.equals(tokenInfo.getMessageImprintAlgOID())) {
+                    return false;
+                }
+
+                return MerkleTree.verifyInclusion(signer.getSignature(), inclusionProof, imprint);
+            }
+
+            DigestCalculator digestCalculator = this.digestCalculatorProvider.get(tokenInfo.getHashAlgorithm());
+            try (OutputStream outputStream = digestCalculator.getOutputStream()) {
+                outputStream.write(signer.getSignature());
+            }
+
+            return MessageDigest.isEqual(digestCalculator.getDigest(), imprint);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private boolean isTrustedTsa(X509CertificateHolder tsaCertificate) {
+        try {
+            return this.trustedTsaFingerprints.contains(SignerVerifierCache.getFingerprint(tsaCertificate));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static X509CertificateHolder findTsaCertificate(TimeStampToken token) {
+        try {
+            Collection<X509CertificateHolder> matches = VerifyService.getCertificateMatches(token.getCertificates(), token.getSID());
+            return matches.isEmpty() ? null : matches.iterator().next();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.SignerResult;
+import com.arthurwinck.assinador.dto.VerifyOptions;
+import com.arthurwinck.assinador.dto.VerifyResponse;
+import com.arthurwinck.assinador.exception.VerifyValidationException;
+import org.bouncycastle.util.encoders.Hex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Resultado de verificações já feitas, para arquivos reenviados (retentativas, vários consumidores do mesmo
+// documento). A chave é o SHA-256 dos bytes enviados junto com as opções da verificação e a validade da
+// entrada nunca passa do fim da validade dos certificados dos assinantes nem da próxima atualização das LCRs consultadas.
+// Erros de arquivo inválido não são armazenados.
+@Component
+public class VerifyResultCache {
+
+    @FunctionalInterface
+    public interface VerifyLoader {
+        VerifyResponse load() throws VerifyValidationException;
+    }
+
+    public record ResultCacheStats(long hits, long misses, long evictions, int size, int maxSize) {}
+
+    private record CachedResult(VerifyResponse response, long expiresAt) {}
+
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final int maxOriginalDataLength;
+    private final Map<String, CachedResult> results;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public VerifyResultCache(@Value("${verify.result-cache.enabled:true}") boolean enabled,
+                             @Value("${verify.result-cache.max-size:10000}") int maxSize,
+                             @Value("${verify.result-cache.ttl-seconds:300}") long ttlSeconds,
+                             @Value("${verify.result-cache.max-original-data-length:65536}") int maxOriginalDataLength) {
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.maxOriginalDataLength = maxOriginalDataLength;
+
+        // Ordem de acesso para que a entrada removida ao atingir o limite seja a menos usada
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+                boolean evict = size() > VerifyResultCache.this.maxSize;
+
+                if (evict) {
+                    VerifyResultCache.this.evictions.incrementAndGet();
+                }
+
+                return evict;
+            }
+        };
+    }
+
+    public VerifyResponse get(byte[] signedFileResource, VerifyOptions options, VerifyLoader loader) throws VerifyValidationException {
+        return this.get(ByteBuffer.wrap(signedFileResource), options, loader);
+    }
+
+    // Arquivo mapeado em memória: a chave é calculada lendo o mapeamento, sem cópia para o heap
+    public VerifyResponse get(ByteBuffer signedFileResource, VerifyOptions options, VerifyLoader loader) throws VerifyValidationException {
+        if (!this.enabled) {
+            return loader.load();
+        }
+
+        String key = VerifyResultCache.getCacheKey(signedFileResource, options);
+        VerifyResponse cached = this.getIfPresent(key);
+
+        if (cached != null) {
+            this.hits.incrementAndGet();
+            return VerifyResultCache.copyOf(cached);
+        }
+
+        this.misses.incrementAndGet();
+
+        // Verificação fora do lock, exceções não são armazenadas
+        VerifyResponse loaded = loader.load();
+        long expiresAt = this.getExpiresAt(loaded);
+
+        // Conteúdo original grande ocuparia o cache com poucos documentos, esses resultados não são guardados
+        boolean cacheable = loaded.getOriginalData() == null || loaded.getOriginalData().length() <= this.maxOriginalDataLength;
+
+        if (cacheable && expiresAt > System.currentTimeMillis()) {
+            synchronized (this.results) {
+                this.results.put(key, new CachedResult(VerifyResultCache.copyOf(loaded), expiresAt));
+            }
+        }
+
+        return loaded;
+    }
+
+    public void invalidateAll() {
+        synchronized (this.results) {
+            this.results.clear();
+        }
+    }
+
+    public ResultCacheStats getStats() {
+        int size;
+        synchronized (this.results) {
+            size = this.results.size();
+        }
+
+        return new ResultCacheStats(this.hits.get(), this.misses.get(), this.evictions.get(), size, this.maxSize);
+    }
+
+    private long getExpiresAt(VerifyResponse response) {
+        long expiresAt = System.currentTimeMillis() + this.ttlMillis;
+
+        if (response.getCertificatesNotAfter() != null) {
+            expiresAt = Math.min(expiresAt, response.getCertificatesNotAfter().getTime());
+        }
+
+        // Após a próxima atualização a LCR vence e o mesmo arquivo pode deixar de ser válido (LCR exigida)
+        if (response.getCrlNextUpdate() != null) {
+            expiresAt = Math.min(expiresAt, response.getCrlNextUpdate().getTime());
+        }
+
+        return expiresAt;
+    }
+
+    private VerifyResponse getIfPresent(String key) {
+        synchronized (this.results) {
+            CachedResult cachedResult = this.results.get(key);
+
+            if (cachedResult == null) {
+                return null;
+            }
+
+            if (cachedResult.expiresAt() <= System.currentTimeMillis()) {
+                this.results.remove(key);
+                return null;
+            }
+
+            return cachedResult.response();
+        }
+    }
+
+    // VerifyResponse e SignerResult são mutáveis (ex: lote remove originalData), cada requisição recebe a sua
+    // própria instância, inclusive dos assinantes e contra-assinantes, e o cache guarda uma cópia que ninguém altera
+    static VerifyResponse copyOf(VerifyResponse response) {
+        VerifyResponse copy = new VerifyResponse();
+        copy.setOriginalData(response.getOriginalData());
+        copy.setOriginalDataTruncated(response.getOriginalDataTruncated());
+        copy.setError(response.getError());
+        copy.setStatus(response.getStatus());
+        copy.setCNSignerName(response.getCNSignerName());
+        copy.setSigninTimeDate(response.getSigninTimeDate());
+        copy.setEncapContentInfoHash(response.getEncapContentInfoHash());
+        copy.setDigestAlgorithm(response.getDigestAlgorithm());
+        copy.setSigners(VerifyResultCache.copyOf(response.getSigners()));
+        copy.setDocumentHash(response.getDocumentHash());
+        copy.setInclusionProofValid(response.getInclusionProofValid());
+        copy.setCertificatesNotAfter((response.getCertificatesNotAfter() == null) ? null : new Date(response.getCertificatesNotAfter().getTime()));
+        copy.setCrlNextUpdate((response.getCrlNextUpdate() == null) ? null : new Date(response.getCrlNextUpdate().getTime()));
+        return copy;
+    }
+
+    private static List<SignerResult> copyOf(List<SignerResult> signerResults) {
+        if (signerResults == null) {
+            return null;
+        }
+
+        List<SignerResult> copies = new ArrayList<>(signerResults.size());
+
+        for (SignerResult signerResult : signerResults) {
+            copies.add(VerifyResultCache.copyOf(signerResult));
+        }
+
+        return copies;
+    }
+
+    private static SignerResult copyOf(SignerResult signerResult) {
+        SignerResult copy = new SignerResult();
+        copy.setIndex(signerResult.getIndex());
+        copy.setStatus(signerResult.getStatus());
+        copy.setSubject(signerResult.getSubject());
+        copy.setIssuer(signerResult.getIssuer());
+        copy.setSigningTime(signerResult.getSigningTime());
+        copy.setEncapContentInfoHash(signerResult.getEncapContentInfoHash());
+        copy.setDigestAlgorithm(signerResult.getDigestAlgorithm());
+        copy.setSignatureAlgorithm(signerResult.getSignatureAlgorithm());
+        copy.setChainValid(signerResult.getChainValid());
+        copy.setRevocationStatus(signerResult.getRevocationStatus());
+        copy.setTimestampTime(signerResult.getTimestampTime());
+        copy.setTimestampAuthority(signerResult.getTimestampAuthority());
+        copy.setTimestampValid(signerResult.getTimestampValid());
+        copy.setCounterSigners(VerifyResultCache.copyOf(signerResult.getCounterSigners()));
+        copy.setError(signerResult.getError());
+        return copy;
+    }
+
+    private static String getCacheKey(ByteBuffer signedFileResource, VerifyOptions options) {
+        byte[] hash = HashService.digest(signedFileResource, HashService.HashAlgorithm.SHA256);
+
+        // Mesmo arquivo com opções diferentes gera respostas diferentes
+        return Hex.toHexString(hash) + ":" + options.isIncludeOriginalData() + ":" + options.getMaxOriginalDataBytes() + ":" + options.getPolicy() + ":" + options.getValidateChain();
+    }
+}
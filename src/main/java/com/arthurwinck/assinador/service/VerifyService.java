@@ -1,11 +1,15 @@
 package com.arthurwinck.assinador.service;
 
+import com.arthurwinck.assinador.config.ExecutorConfiguration;
+import com.arthurwinck.assinador.dto.SignerResult;
+import com.arthurwinck.assinador.dto.VerifyOptions;
 import com.arthurwinck.assinador.dto.VerifyResponse;
 import com.arthurwinck.assinador.exception.InvalidSignatureFileException;
 import com.arthurwinck.assinador.exception.InvalidSignedContentException;
 import com.arthurwinck.assinador.exception.VerifyValidationException;
 import org.bouncycastle.asn1.ASN1Encodable;
 import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.ASN1Primitive;
 import org.bouncycastle.asn1.cms.Attribute;
 import org.bouncycastle.asn1.cms.AttributeTable;
 import org.bouncycastle.asn1.cms.CMSAttributes;
@@ -14,27 +18,81 @@ import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cms.*;
-import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.operator.*;
 import org.bouncycastle.operator.bc.BcDigestCalculatorProvider;
-import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
 import org.bouncycastle.util.Selector;
 import org.bouncycastle.util.Store;
 import org.bouncycastle.util.encoders.Base64;
 import org.bouncycastle.util.encoders.Hex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
 
 @Component
 public class VerifyService {
 
-    private final DefaultAlgorithmNameFinder algorithmNameFinder;
+    // DER de um ContentInfo sempre começa com SEQUENCE, qualquer outro primeiro byte é tratado como Base64
+    private static final int DER_SEQUENCE_TAG = 0x30;
 
-    public VerifyService() {
+    private final DefaultAlgorithmNameFinder algorithmNameFinder;
+    // Nome completo do algoritmo do assinante, ex: SHA256WITHECDSA, SHA256WITHRSAANDMGF1 (RSA-PSS), ED25519
+    private final CMSSignatureAlgorithmNameGenerator signatureNameGenerator = new DefaultCMSSignatureAlgorithmNameGenerator();
+    private final DigestCalculatorProvider digestCalculatorProvider;
+    private final SignerVerifierCache verifierCache;
+    private final VerifyResultCache resultCache;
+    private final ExecutorService signerVerifyExecutor;
+    private final int parallelSignersThreshold;
+    private final CryptoExecutor cryptoExecutor;
+    private final CertificateChainValidator chainValidator;
+    private final boolean validateChainByDefault;
+    private final CrlStore crlStore;
+    private final TimestampValidator timestampValidator;
+    private final boolean timestampRequired;
+    private final PipelineMetrics metrics;
+
+    @Autowired
+    public VerifyService(SignerVerifierCache verifierCache,
+                         VerifyResultCache resultCache,
+                         @Qualifier(ExecutorConfiguration.SIGNER_VERIFY_EXECUTOR) ExecutorService signerVerifyExecutor,
+                         @Value("${verify.parallel-signers-threshold:2}") int parallelSignersThreshold,
+                         CryptoExecutor cryptoExecutor,
+                         CertificateChainValidator chainValidator,
+                         @Value("${verify.chain.enabled:false}") boolean validateChainByDefault,
+                         CrlStore crlStore,
+                         TimestampValidator timestampValidator,
+                         @Value("${verify.timestamp.required:false}") boolean timestampRequired,
+                         PipelineMetrics metrics) {
         this.algorithmNameFinder = new DefaultAlgorithmNameFinder();
+        this.digestCalculatorProvider = new BcDigestCalculatorProvider();
+        this.verifierCache = verifierCache;
+        this.resultCache = resultCache;
+        this.signerVerifyExecutor = signerVerifyExecutor;
+        this.parallelSignersThreshold = parallelSignersThreshold;
+        this.cryptoExecutor = cryptoExecutor;
+        this.chainValidator = chainValidator;
+        this.validateChainByDefault = validateChainByDefault;
+        this.crlStore = crlStore;
+        this.timestampValidator = timestampValidator;
+        this.timestampRequired = timestampRequired;
+        this.metrics = metrics;
+
+        // Resultados em cache podem ter sido verificados antes de uma revogação
+        crlStore.addReloadListener(resultCache::invalidateAll);
     }
 
     private List<String> getDigestAlgorithmStringList(Collection<AlgorithmIdentifier> algorithmIdentifierSet) {
@@ -57,74 +115,124 @@ public class VerifyService {
         return digestAlgorithmStringList;
     }
 
-    private boolean verifySigner(SignerInformation signerInformation, Store<X509CertificateHolder> certStore) {
-        try {
-            // Busca todos os certificados para posteriormente procurar pelo que está sendo verificado
-            Collection<X509CertificateHolder> allCertificates = certStore.getMatches(null);
-
-            X509CertificateHolder signerCertificate = null;
-
-            for (X509CertificateHolder cert: allCertificates) {
-                if (signerInformation.getSID().match(cert)) {
-                    signerCertificate = cert;
-                    break;
-                }
-            }
-
-            if (signerCertificate == null) {
-                return false;
-            }
-
-            CMSSignatureAlgorithmNameGenerator sigNameGenerator = new DefaultCMSSignatureAlgorithmNameGenerator();
-            SignatureAlgorithmIdentifierFinder sigAlgorithmFinder = new DefaultSignatureAlgorithmIdentifierFinder();
-            ContentVerifierProvider verifierProvider = new JcaContentVerifierProviderBuilder()
-                    .setProvider(BouncyCastleProvider.PROVIDER_NAME)
-                    .build(signerCertificate);
-            DigestCalculatorProvider digestProvider = new BcDigestCalculatorProvider();
+    private boolean verifySigner(SignerInformation signerInformation, X509CertificateHolder signerCertificate) {
+        long start = this.metrics.start();
 
-            // Cria DTO com todas as infos relacionadas à assinatura
-            SignerInformationVerifier verifier = new SignerInformationVerifier(
-                    sigNameGenerator,
-                    sigAlgorithmFinder,
-                    verifierProvider,
-                    digestProvider
-            );
+        try {
+            // Verificador do certificado reaproveitado entre documentos assinados pelo mesmo certificado
+            SignerInformationVerifier verifier = this.verifierCache.get(signerCertificate);
 
             return signerInformation.verify(verifier);
 
         } catch (Exception exception) {
             return false;
+        } finally {
+            this.metrics.stop(PipelineMetrics.Stage.CRYPTO_VERIFY, start);
         }
     }
 
-    private static String getHexEncodedSignedContent(CMSTypedData cmsTypedData) throws InvalidSignedContentException {
+    private static void setOriginalData(VerifyResponse verifyResponse, CMSTypedData cmsTypedData, VerifyOptions options) throws InvalidSignedContentException {
         if (cmsTypedData == null) {
             throw new InvalidSignedContentException("Conteúdo não encontrado - Espera-se a assinatura e o conteúdo assinado presente no arquivo");
         }
+
+        if (!options.isIncludeOriginalData()) {
+            return;
+        }
+
         byte[] originalSignedData = (byte[]) cmsTypedData.getContent();
-        return Hex.toHexString(originalSignedData);
+        long limit = VerifyService.originalDataLimit(options);
+
+        if (originalSignedData.length > limit) {
+            verifyResponse.setOriginalData(Hex.toHexString(Arrays.copyOf(originalSignedData, (int) limit)));
+            verifyResponse.setOriginalDataTruncated(true);
+            return;
+        }
+
+        verifyResponse.setOriginalData(Hex.toHexString(originalSignedData));
+    }
+
+    private static long originalDataLimit(VerifyOptions options) {
+        if (!options.isIncludeOriginalData()) {
+            return 0;
+        }
+
+        return options.getMaxOriginalDataBytes() > 0 ? options.getMaxOriginalDataBytes() : Long.MAX_VALUE;
     }
 
-    private static CMSSignedData getSignedData(byte[] signedFileResource) throws InvalidSignatureFileException {
+    // Lê todo o conteúdo assinado (o parser calcula os digests enquanto ele passa), guardando somente
+    // o trecho que será devolvido na resposta
+    private static void drainSignedContent(VerifyResponse verifyResponse, CMSTypedStream signedContent, VerifyOptions options) throws IOException {
+        long limit = VerifyService.originalDataLimit(options);
+        ByteArrayOutputStream originalData = new ByteArrayOutputStream();
+        byte[] buffer = new byte[HashService.STREAM_BUFFER_SIZE];
+        long total = 0;
+
+        try (InputStream contentStream = signedContent.getContentStream()) {
+            int read;
+            while ((read = contentStream.read(buffer)) != -1) {
+                if (total < limit) {
+                    originalData.write(buffer, 0, (int) Math.min(read, limit - total));
+                }
+                total += read;
+            }
+        }
+
+        if (options.isIncludeOriginalData()) {
+            verifyResponse.setOriginalData(Hex.toHexString(originalData.toByteArray()));
+
+            if (total > limit) {
+                verifyResponse.setOriginalDataTruncated(true);
+            }
+        }
+    }
+
+    private static InputStream decodeIfBase64(InputStream inputStream) throws IOException {
+        BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream, HashService.STREAM_BUFFER_SIZE);
+
+        bufferedInputStream.mark(1);
+        int firstByte = bufferedInputStream.read();
+        bufferedInputStream.reset();
+
+        if (firstByte == DER_SEQUENCE_TAG) {
+            return bufferedInputStream;
+        }
+
+        // Decoder MIME ignora quebras de linha e é aplicado à medida que o conteúdo é lido
+        return java.util.Base64.getMimeDecoder().wrap(bufferedInputStream);
+    }
+
+    private CMSSignedData getSignedData(byte[] signedFileResource) throws InvalidSignatureFileException {
         CMSSignedData cmsSignedData;
+        long start = this.metrics.start();
 
         try {
             // É possível realizar o parse imediatamente
             cmsSignedData = new CMSSignedData(signedFileResource);
+            this.metrics.stop(PipelineMetrics.Stage.PARSE, start);
         } catch (CMSException e) {
+            this.metrics.stop(PipelineMetrics.Stage.PARSE, start);
+
             // Tentar realizar o parsing após o decode de Base64
+            start = this.metrics.start();
             try {
                 byte[] decodedData = Base64.decode(signedFileResource);
                 cmsSignedData = new CMSSignedData(decodedData);
             } catch (Exception e2) {
                 throw new InvalidSignatureFileException("Não foi possível carregar arquivo de assinatura.", e);
+            } finally {
+                this.metrics.stop(PipelineMetrics.Stage.BASE64_FALLBACK, start);
             }
         }
         return cmsSignedData;
     }
 
     public static Collection<X509CertificateHolder> getCertificateMatches(CMSSignedData cmsSignedData, Selector<X509CertificateHolder> signerId) throws InvalidSignatureFileException {
-        Collection<?> rawMatches = cmsSignedData.getCertificates().getMatches(signerId);
+        return VerifyService.getCertificateMatches(cmsSignedData.getCertificates(), signerId);
+    }
+
+    public static Collection<X509CertificateHolder> getCertificateMatches(Store<X509CertificateHolder> certStore, Selector<X509CertificateHolder> signerId) throws InvalidSignatureFileException {
+        Collection<?> rawMatches = certStore.getMatches(signerId);
         Collection<X509CertificateHolder> matches = new ArrayList<>();
 
         for (Object obj : rawMatches) {
@@ -138,18 +246,32 @@ public class VerifyService {
         return matches;
     }
 
-    public VerifyResponse verifySignature(CMSSignedData cmsSignedData) throws InvalidSignedContentException, InvalidSignatureFileException {
+    public VerifyResponse verifySignature(CMSSignedData cmsSignedData) throws VerifyValidationException {
+        return this.verifySignature(cmsSignedData, new VerifyOptions());
+    }
+
+    public VerifyResponse verifySignature(CMSSignedData cmsSignedData, VerifyOptions options) throws VerifyValidationException {
         VerifyResponse verifyResponse = new VerifyResponse();
 
         verifyResponse.setStatus(VerifyResponse.VerifyResponseStatusEnum.VALIDO);
+
+        long start = this.metrics.start();
         verifyResponse.setDigestAlgorithm(
                 String.join(", ", this.getDigestAlgorithmStringList(cmsSignedData.getDigestAlgorithmIDs())));
-        verifyResponse.setOriginalData(VerifyService.getHexEncodedSignedContent(cmsSignedData.getSignedContent()));
+        VerifyService.setOriginalData(verifyResponse, cmsSignedData.getSignedContent(), options);
+        this.metrics.stop(PipelineMetrics.Stage.ATTRIBUTE_EXTRACTION, start);
 
-        // Um documento pode ser assinado por múltiplos certificados, buscar todos os certificados e suas informações
-        Store<X509CertificateHolder> certStore = cmsSignedData.getCertificates();
+        return this.verifySigners(verifyResponse, cmsSignedData.getCertificates(), cmsSignedData.getSignerInfos(), options);
+    }
 
-        SignerInformationStore signers = cmsSignedData.getSignerInfos();
+    private VerifyResponse verifySigners(VerifyResponse verifyResponse, Store<X509CertificateHolder> certStore,
+                                         SignerInformationStore signers, VerifyOptions options) throws VerifyValidationException {
+        // Certificados indexados uma única vez para todos os assinantes do documento
+        long start = this.metrics.start();
+        SignerCertificateIndex certificateIndex = new SignerCertificateIndex(certStore);
+        this.metrics.stop(PipelineMetrics.Stage.SIGNER_LOOKUP, start);
+
+        // Um documento pode ser assinado por múltiplos certificados, buscar todos os certificados e suas informações
         Collection<SignerInformation> signerCollection = signers.getSigners();
 
         // Regra de negócio aqui, um documento nâo assinado é um documento inválido
@@ -158,44 +280,50 @@ public class VerifyService {
             return verifyResponse;
         }
 
-        StringBuilder signerNames = new StringBuilder();
-        StringBuilder encapContentInfoHashes = new StringBuilder();
-        StringBuilder signingTimes = new StringBuilder();
+        List<SignerInformation> signerList = new ArrayList<>(signerCollection);
+        boolean validateChain = (options.getValidateChain() != null) ? options.getValidateChain() : this.validateChainByDefault;
 
-        for (SignerInformation signer: signerCollection) {
-            if (!this.verifySigner(signer, certStore)) {
-                verifyResponse.setStatus(VerifyResponse.VerifyResponseStatusEnum.INVALIDO);
-                return verifyResponse;
-            }
+        // Certificados do documento só são necessários para montar a cadeia quando ela é validada
+        Store<X509CertificateHolder> chainCertificates = validateChain ? certStore : null;
+        List<SignerResult> signerResults = this.verifySignerList(signerList, certificateIndex, chainCertificates, options.getPolicy());
+        verifyResponse.setSigners(signerResults);
 
-            AttributeTable signedAttributes = signer.getSignedAttributes();
-            if (signedAttributes != null) {
-                Attribute messageDigestAttr = signedAttributes.get(CMSAttributes.messageDigest);
-                if (messageDigestAttr != null) {
-                    ASN1OctetString digest = (ASN1OctetString) messageDigestAttr
-                            .getAttrValues()
-                            .getObjectAt(0);
+        if (!signerResults.stream().allMatch(result -> result.getStatus() == VerifyResponse.VerifyResponseStatusEnum.VALIDO)) {
+            verifyResponse.setStatus(VerifyResponse.VerifyResponseStatusEnum.INVALIDO);
+            return verifyResponse;
+        }
 
-                    byte[] hashBytes = digest.getOctets();
-                    encapContentInfoHashes.append(Hex.toHexString(hashBytes));
-                }
+        // Campos anteriores à lista de assinantes, mantidos com os valores de todos os assinantes concatenados
+        StringBuilder signerNames = new StringBuilder();
+        StringBuilder encapContentInfoHashes = new StringBuilder();
+        StringBuilder signingTimes = new StringBuilder();
+        start = this.metrics.start();
 
-                Attribute signingTimeAttr = signedAttributes.get(CMSAttributes.signingTime);
-                if (signingTimeAttr != null) {
-                    ASN1Encodable attrValue = signingTimeAttr.getAttrValues().getObjectAt(0);
+        for (SignerInformation signer: signerList) {
+            // Mesmo certificado já localizado no índice para a verificação
+            X509CertificateHolder signerCertificate = certificateIndex.find(signer.getSID());
 
-                    Time time = Time.getInstance(attrValue);
-                    signingTimes.append(time.getDate()) ;
-                }
+            Date notAfter = signerCertificate.getNotAfter();
+            if (verifyResponse.getCertificatesNotAfter() == null || notAfter.before(verifyResponse.getCertificatesNotAfter())) {
+                verifyResponse.setCertificatesNotAfter(notAfter);
+            }
 
+            Date crlNextUpdate = this.crlStore.isEnabled() ? this.crlStore.getNextUpdate(signerCertificate) : null;
+            if (crlNextUpdate != null && (verifyResponse.getCrlNextUpdate() == null || crlNextUpdate.before(verifyResponse.getCrlNextUpdate()))) {
+                verifyResponse.setCrlNextUpdate(crlNextUpdate);
             }
 
-            SignerId signerId = signer.getSID();
+            byte[] messageDigest = VerifyService.getMessageDigest(signer);
+            if (messageDigest != null) {
+                encapContentInfoHashes.append(Hex.toHexString(messageDigest));
+            }
 
-            Collection<X509CertificateHolder> matches = VerifyService.getCertificateMatches(cmsSignedData, signerId);
+            Date signingTime = VerifyService.getSigningTime(signer);
+            if (signingTime != null) {
+                signingTimes.append(signingTime);
+            }
 
-            X509CertificateHolder certHolder = matches.iterator().next();
-            X500Name subject = certHolder.getSubject();
+            X500Name subject = signerCertificate.getSubject();
             String subjectStr = subject.toString();
 
             signerNames.append(subjectStr).append(",");
@@ -204,17 +332,414 @@ public class VerifyService {
         verifyResponse.setCNSignerName(signerNames.toString());
         verifyResponse.setEncapContentInfoHash(encapContentInfoHashes.toString());
         verifyResponse.setSigninTimeDate(signingTimes.toString());
+        this.metrics.stop(PipelineMetrics.Stage.ATTRIBUTE_EXTRACTION, start);
 
         return verifyResponse;
     }
 
+    // Documentos com vários assinantes (ex: contratos co-assinados) têm cada assinante verificado em paralelo.
+    // Com FAIL_FAST o primeiro assinante inválido cancela as verificações que ainda não terminaram
+    private List<SignerResult> verifySignerList(List<SignerInformation> signerList, SignerCertificateIndex certificateIndex,
+                                                Store<X509CertificateHolder> chainCertificates, VerifyOptions.VerifyPolicy policy) throws VerifyValidationException {
+        SignerResult[] results = new SignerResult[signerList.size()];
+        boolean failFast = policy == VerifyOptions.VerifyPolicy.FAIL_FAST;
+
+        if (signerList.size() < this.parallelSignersThreshold) {
+            // Sem o pool de assinantes, as operações de chave pública vão para o cryptoExecutor como na assinatura
+            // (virtual threads), ou rodam na própria thread da requisição
+            try {
+                for (int index = 0; index < signerList.size(); index++) {
+                    int signerIndex = index;
+                    results[index] = this.cryptoExecutor.execute(() -> this.verifySignerResult(signerIndex, signerList.get(signerIndex), certificateIndex, chainCertificates));
+
+                    if (failFast && results[index].getStatus() != VerifyResponse.VerifyResponseStatusEnum.VALIDO) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw VerifyValidationException.from(e);
+            } catch (Exception e) {
+                throw VerifyValidationException.from(e);
+            }
+        } else {
+            CompletionService<SignerResult> completionService = new ExecutorCompletionService<>(this.signerVerifyExecutor);
+            List<Future<SignerResult>> futures = new ArrayList<>(signerList.size());
+
+            try {
+                for (int index = 0; index < signerList.size(); index++) {
+                    int signerIndex = index;
+                    futures.add(completionService.submit(() -> this.verifySignerResult(signerIndex, signerList.get(signerIndex), certificateIndex, chainCertificates)));
+                }
+
+                for (int completed = 0; completed < futures.size(); completed++) {
+                    SignerResult result = completionService.take().get();
+                    results[result.getIndex()] = result;
+
+                    if (failFast && result.getStatus() != VerifyResponse.VerifyResponseStatusEnum.VALIDO) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw VerifyValidationException.from(e);
+            } catch (ExecutionException e) {
+                throw VerifyValidationException.from(e.getCause());
+            } finally {
+                futures.forEach(future -> future.cancel(true));
+            }
+        }
+
+        for (int index = 0; index < results.length; index++) {
+            if (results[index] == null) {
+                results[index] = new SignerResult();
+                results[index].setIndex(index);
+                results[index].setError("Assinante não verificado, verificação interrompida por assinante inválido");
+            }
+        }
+
+        return List.of(results);
+    }
+
+    private SignerResult verifySignerResult(int index, SignerInformation signer, SignerCertificateIndex certificateIndex,
+                                            Store<X509CertificateHolder> chainCertificates) {
+        SignerResult result = new SignerResult();
+        result.setIndex(index);
+
+        long start = this.metrics.start();
+        this.setAlgorithms(result, signer);
+
+        byte[] messageDigest = VerifyService.getMessageDigest(signer);
+        if (messageDigest != null) {
+            result.setEncapContentInfoHash(Hex.toHexString(messageDigest));
+        }
+
+        Date signingTime = VerifyService.getSigningTime(signer);
+        if (signingTime != null) {
+            result.setSigningTime(signingTime.toInstant().toString());
+        }
+        this.metrics.stop(PipelineMetrics.Stage.ATTRIBUTE_EXTRACTION, start);
+
+        start = this.metrics.start();
+        X509CertificateHolder signerCertificate = certificateIndex.find(signer.getSID());
+        this.metrics.stop(PipelineMetrics.Stage.SIGNER_LOOKUP, start);
+
+        if (signerCertificate == null) {
+            result.setStatus(VerifyResponse.VerifyResponseStatusEnum.INVALIDO);
+            result.setError("Certificado do assinante não encontrado no documento");
+            return result;
+        }
+
+        result.setSubject(signerCertificate.getSubject().toString());
+        result.setIssuer(signerCertificate.getIssuer().toString());
+
+        if (!this.verifySigner(signer, signerCertificate)) {
+            result.setStatus(VerifyResponse.VerifyResponseStatusEnum.INVALIDO);
+            result.setError("Assinatura não confere com o conteúdo ou com o certificado do assinante");
+            return result;
+        }
+
+        // Contra-assinaturas (RFC 5652, 11.4) assinam o valor desta assinatura e são verificadas junto com ela
+        List<SignerResult> counterSignerResults = this.verifyCounterSigners(signer, certificateIndex, chainCertificates);
+
+        if (!counterSignerResults.isEmpty()) {
+            result.setCounterSigners(counterSignerResults);
+
+            for (SignerResult counterSignerResult : counterSignerResults) {
+                if (counterSignerResult.getStatus() != VerifyResponse.VerifyResponseStatusEnum.VALIDO) {
+                    result.setStatus(VerifyResponse.VerifyResponseStatusEnum.INVALIDO);
+                    result.setError("Contra-assinatura " + counterSignerResult.getIndex() + " inválida: " + counterSignerResult.getError());
+                    return result;
+                }
+            }
+        }
+
+        // Carimbo do tempo (CAdES-T): data comprovada pela TSA, diferente do signingTime declarado pelo assinante
+        start = this.metrics.start();
+        TimestampValidator.TimestampValidationResult timestampResult = this.timestampValidator.validate(signer);
+        this.metrics.stop(PipelineMetrics.Stage.TIMESTAMP_VERIFY, start);
+
+        if (timestampResult != null) {
+            result.setTimestampValid(timestampResult.valid());
+            result.setTimestampAuthority(timestampResult.authority());
+
+            if (timestampResult.genTime() != null) {
+                result.setTimestampTime(timestampResult.genTime().toInstant().toString());
+            }
+
+            if (!timestampResult.valid()) {
+                result.setStatus(VerifyResponse.VerifyResponseStatusEnum.INVALIDO);
+                result.setError(timestampResult.error());
+                return result;
+            }
+        } else if (this.timestampRequired) {
+            result.setStatus(VerifyResponse.VerifyResponseStatusEnum.INVALIDO);
+            result.setError("Assinatura sem carimbo do tempo");
+            return result;
+        }
+
+        if (this.crlStore.isEnabled()) {
+            SignerResult.RevocationStatusEnum revocationStatus = this.crlStore.check(signerCertificate);
+            result.setRevocationStatus(revocationStatus);
+
+            if (revocationStatus == SignerResult.RevocationStatusEnum.REVOGADO) {
+                result.setStatus(VerifyResponse.VerifyResponseStatusEnum.INVALIDO);
+                result.setError("Certificado do assinante revogado");
+                return result;
+            }
+
+            if (revocationStatus == SignerResult.RevocationStatusEnum.DESCONHECIDO && this.crlStore.isRequired()) {
+                result.setStatus(VerifyResponse.VerifyResponseStatusEnum.INVALIDO);
+                result.setError("Nenhuma LCR vigente encontrada para o emissor do certificado do assinante");
+                return result;
+            }
+        }
+
+        if (chainCertificates != null) {
+            CertificateChainValidator.ChainValidationResult chainResult = this.chainValidator.validate(signerCertificate, chainCertificates);
+            result.setChainValid(chainResult.valid());
+
+            if (!chainResult.valid()) {
+                result.setStatus(VerifyResponse.VerifyResponseStatusEnum.INVALIDO);
+                result.setError(chainResult.error());
+                return result;
+            }
+        }
+
+        result.setStatus(VerifyResponse.VerifyResponseStatusEnum.VALIDO);
+        return result;
+    }
+
+    // Sem LCR nem carimbo do tempo: a contra-assinatura é conferida com o certificado do contra-assinante e,
+    // quando a cadeia é validada, com a cadeia dele
+    private List<SignerResult> verifyCounterSigners(SignerInformation signer, SignerCertificateIndex certificateIndex,
+                                                    Store<X509CertificateHolder> chainCertificates) {
+        List<SignerResult> results = new ArrayList<>();
+
+        for (SignerInformation counterSigner : signer.getCounterSignatures().getSigners()) {
+            SignerResult result = new SignerResult();
+            result.setIndex(results.size());
+            results.add(result);
+
+            this.setAlgorithms(result, counterSigner);
+
+            Date signingTime = VerifyService.getSigningTime(counterSigner);
+            if (signingTime != null) {
+                result.setSigningTime(signingTime.toInstant().toString());
+            }
+
+            X509CertificateHolder counterSignerCertificate = certificateIndex.find(counterSigner.getSID());
+
+            if (counterSignerCertificate == null) {
+                result.setStatus(VerifyResponse.VerifyResponseStatusEnum.INVALIDO);
+                result.setError("Certificado do contra-assinante não encontrado no documento");
+                continue;
+            }
+
+            result.setSubject(counterSignerCertificate.getSubject().toString());
+            result.setIssuer(counterSignerCertificate.getIssuer().toString());
+
+            if (!this.verifySigner(counterSigner, counterSignerCertificate)) {
+                result.setStatus(VerifyResponse.VerifyResponseStatusEnum.INVALIDO);
+                result.setError("Contra-assinatura não confere com a assinatura ou com o certificado do contra-assinante");
+                continue;
+            }
+
+            if (chainCertificates != null) {
+                CertificateChainValidator.ChainValidationResult chainResult = this.chainValidator.validate(counterSignerCertificate, chainCertificates);
+                result.setChainValid(chainResult.valid());
+
+                if (!chainResult.valid()) {
+                    result.setStatus(VerifyResponse.VerifyResponseStatusEnum.INVALIDO);
+                    result.setError(chainResult.error());
+                    continue;
+                }
+            }
+
+            result.setStatus(VerifyResponse.VerifyResponseStatusEnum.VALIDO);
+        }
+
+        return results;
+    }
+
+    private void setAlgorithms(SignerResult result, SignerInformation signer) {
+        result.setDigestAlgorithm(this.getDigestAlgorithmStringList(List.of(signer.getDigestAlgorithmID())).get(0));
+        result.setSignatureAlgorithm(this.signatureNameGenerator.getSignatureName(signer.getDigestAlgorithmID(),
+                signer.toASN1Structure().getDigestEncryptionAlgorithm()).toUpperCase(Locale.ROOT));
+    }
+
+    private static byte[] getMessageDigest(SignerInformation signer) {
+        AttributeTable signedAttributes = signer.getSignedAttributes();
+        Attribute messageDigestAttr = (signedAttributes == null) ? null : signedAttributes.get(CMSAttributes.messageDigest);
+
+        if (messageDigestAttr == null) {
+            return null;
+        }
+
+        ASN1OctetString digest = (ASN1OctetString) messageDigestAttr
+                .getAttrValues()
+                .getObjectAt(0);
+
+        return digest.getOctets();
+    }
+
+    private static Date getSigningTime(SignerInformation signer) {
+        AttributeTable signedAttributes = signer.getSignedAttributes();
+        Attribute signingTimeAttr = (signedAttributes == null) ? null : signedAttributes.get(CMSAttributes.signingTime);
+
+        if (signingTimeAttr == null) {
+            return null;
+        }
+
+        ASN1Encodable attrValue = signingTimeAttr.getAttrValues().getObjectAt(0);
+
+        return Time.getInstance(attrValue).getDate();
+    }
+
     public VerifyResponse verify(byte[] signedFileResource) throws VerifyValidationException {
+        return this.verify(signedFileResource, new VerifyOptions());
+    }
+
+    // Arquivos reenviados com as mesmas opções reaproveitam o resultado da primeira verificação
+    public VerifyResponse verify(byte[] signedFileResource, VerifyOptions options) throws VerifyValidationException {
+        this.metrics.recordPayloadSize(PipelineMetrics.Operation.VERIFY, signedFileResource.length);
+
+        return this.resultCache.get(signedFileResource, options, () -> this.verifyUncached(signedFileResource, options));
+    }
+
+    // Arquivo mapeado em memória (MappedUploadService): mesmo cache do byte[], com a verificação em streaming
+    // sobre o mapeamento, de modo que nem o arquivo nem o conteúdo assinado são copiados para o heap
+    public VerifyResponse verify(ByteBuffer signedFileResource, VerifyOptions options) throws VerifyValidationException {
+        this.metrics.recordPayloadSize(PipelineMetrics.Operation.VERIFY, signedFileResource.remaining());
+
+        return this.resultCache.get(signedFileResource, options,
+                () -> this.verify(new ByteBufferInputStream(signedFileResource), options));
+    }
+
+    private VerifyResponse verifyUncached(byte[] signedFileResource, VerifyOptions options) throws VerifyValidationException {
+
+        try {
+            CMSSignedData cmsSignedData = this.getSignedData(signedFileResource);
+            return this.verifySignature(cmsSignedData, options);
+        } catch (VerifyValidationException e) {
+            throw this.metrics.recordError(VerifyValidationException.from(e));
+        }
+    }
+
+    // Verificação de assinatura detached a partir do hash do documento (em hex), sem o documento em si
+    public VerifyResponse verifyDigest(byte[] signedFileResource, String hexEncodedHash, HashService.HashAlgorithm hashAlgorithm) throws VerifyValidationException {
+        return this.verifyDigest(signedFileResource, hexEncodedHash, hashAlgorithm, new VerifyOptions());
+    }
+
+    // Mesma política e validação de cadeia da verificação attached, somente o conteúdo original não se aplica
+    public VerifyResponse verifyDigest(byte[] signedFileResource, String hexEncodedHash, HashService.HashAlgorithm hashAlgorithm,
+                                       VerifyOptions options) throws VerifyValidationException {
+        try {
+            byte[] digest;
+
+            try {
+                digest = HashService.decodeHexEncodedHash(hexEncodedHash, hashAlgorithm);
+            } catch (IllegalArgumentException e) {
+                throw new InvalidSignedContentException(e.getMessage());
+            }
+
+            this.metrics.recordPayloadSize(PipelineMetrics.Operation.VERIFY, signedFileResource.length);
+
+            CMSSignedData cmsSignedData = this.getSignedData(signedFileResource);
+            CMSSignedData detachedSignedData = new CMSSignedData(Map.of(hashAlgorithm.getOid().getId(), digest), cmsSignedData.toASN1Structure());
+
+            VerifyResponse verifyResponse = new VerifyResponse();
+            verifyResponse.setStatus(VerifyResponse.VerifyResponseStatusEnum.VALIDO);
+            verifyResponse.setDigestAlgorithm(
+                    String.join(", ", this.getDigestAlgorithmStringList(detachedSignedData.getDigestAlgorithmIDs())));
+
+            return this.verifySigners(verifyResponse, detachedSignedData.getCertificates(), detachedSignedData.getSignerInfos(), options);
+        } catch (VerifyValidationException e) {
+            throw this.metrics.recordError(VerifyValidationException.from(e));
+        } catch (CMSException e) {
+            throw this.metrics.recordError(VerifyValidationException.from(new InvalidSignatureFileException("Não foi possível carregar arquivo de assinatura.", e)));
+        }
+    }
+
+    // Documento de um lote assinado somente pela raiz da árvore de Merkle (MerkleSigningService): além da
+    // assinatura da raiz, o hash do documento com a prova de inclusão (Base64) deve levar à raiz assinada
+    public VerifyResponse verifyMerkle(InputStream document, byte[] signedFileResource, String encodedProof) throws VerifyValidationException {
+        try {
+            MerkleTree.InclusionProof proof;
+
+            try {
+                proof = MerkleTree.InclusionProof.getInstance(ASN1Primitive.fromByteArray(Base64.decode(encodedProof)));
+            } catch (IOException | RuntimeException e) {
+                throw new InvalidSignedContentException("Prova de inclusão malformada", e);
+            }
+
+            this.metrics.recordPayloadSize(PipelineMetrics.Operation.VERIFY, signedFileResource.length);
+
+            CMSSignedData cmsSignedData = this.getSignedData(signedFileResource);
+            CMSProcessable signedContent = cmsSignedData.getSignedContent();
+
+            if (!MerkleSigningService.SIGNED_ROOT_CONTENT_TYPE.getId().equals(cmsSignedData.getSignedContentTypeOID()) || signedContent == null) {
+                throw new InvalidSignatureFileException("Arquivo não é a assinatura de um lote pela raiz da árvore de Merkle");
+            }
+
+            MerkleSigningService.SignedRoot signedRoot = MerkleSigningService.SignedRoot.getInstance((byte[]) signedContent.getContent());
+            byte[] documentHash;
+
+            try {
+                documentHash = HashService.digest(document, signedRoot.hashAlgorithm());
+            } catch (IOException e) {
+                throw new InvalidSignedContentException("Não foi possível ler o documento", e);
+            }
+
+            VerifyResponse verifyResponse = this.verifySignature(cmsSignedData, VerifyOptions.of(false, 0));
+
+            // O tamanho da árvore vem da raiz assinada, a prova não pode escolher outro
+            boolean included = proof.treeSize() == signedRoot.treeSize()
+                    && MerkleTree.verifyInclusion(documentHash, proof, signedRoot.root());
+
+            verifyResponse.setDocumentHash(Hex.toHexString(documentHash));
+            verifyResponse.setInclusionProofValid(included);
+
+            if (!included) {
+                verifyResponse.setStatus(VerifyResponse.VerifyResponseStatusEnum.INVALIDO);
+                verifyResponse.setError("Documento não pertence ao lote assinado: a prova de inclusão não leva à raiz assinada");
+            }
+
+            return verifyResponse;
+        } catch (VerifyValidationException e) {
+            throw this.metrics.recordError(VerifyValidationException.from(e));
+        }
+    }
 
+    // Verifica a assinatura à medida que ela é lida, sem manter o arquivo (nem o conteúdo assinado) em memória.
+    // Indicado para assinaturas attached grandes, originalData pode ser omitido ou limitado pelas opções
+    public VerifyResponse verify(InputStream signedFileStream, VerifyOptions options) throws VerifyValidationException {
         try {
-            CMSSignedData cmsSignedData = VerifyService.getSignedData(signedFileResource);
-            return this.verifySignature(cmsSignedData);
+            // Parse em streaming: o tempo inclui a leitura do conteúdo assinado, quando os digests são calculados
+            long start = this.metrics.start();
+            CMSSignedDataParser parser = new CMSSignedDataParser(this.digestCalculatorProvider, VerifyService.decodeIfBase64(signedFileStream));
+            CMSTypedStream signedContent = parser.getSignedContent();
+
+            if (signedContent == null) {
+                throw new InvalidSignedContentException("Conteúdo não encontrado - Espera-se a assinatura e o conteúdo assinado presente no arquivo");
+            }
+
+            VerifyResponse verifyResponse = new VerifyResponse();
+            verifyResponse.setStatus(VerifyResponse.VerifyResponseStatusEnum.VALIDO);
+
+            // O conteúdo precisa ser consumido antes de certificados e signerInfos, que vêm depois dele no arquivo
+            VerifyService.drainSignedContent(verifyResponse, signedContent, options);
+            this.metrics.stop(PipelineMetrics.Stage.PARSE, start);
+
+            verifyResponse.setDigestAlgorithm(
+                    String.join(", ", this.getDigestAlgorithmStringList(parser.getDigestAlgorithmIDs())));
+
+            return this.verifySigners(verifyResponse, parser.getCertificates(), parser.getSignerInfos(), options);
         } catch (VerifyValidationException e) {
-            throw VerifyValidationException.from(e);
+            throw this.metrics.recordError(VerifyValidationException.from(e));
+        } catch (CMSException | IOException | RuntimeException e) {
+            // Parser lança exceções de runtime do ASN.1 para estruturas malformadas
+            throw this.metrics.recordError(VerifyValidationException.from(new InvalidSignatureFileException("Não foi possível carregar arquivo de assinatura.", e)));
         }
     }
 }
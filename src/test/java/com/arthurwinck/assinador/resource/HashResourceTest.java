@@ -0,0 +1,74 @@
+package com.arthurwinck.assinador.resource;
+
+import com.arthurwinck.assinador.service.HashService;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(HashResource.class)
+@Import(HashService.class)
+public class HashResourceTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private static byte[] getBinaryContent() {
+        // Conteúdo maior que o buffer e com bytes que não formam UTF-8 válido
+        byte[] content = new byte[HashService.STREAM_BUFFER_SIZE * 3 + 17];
+        new Random(42).nextBytes(content);
+        return content;
+    }
+
+    private static String getExpectedHash(byte[] content) throws Exception {
+        return Hex.toHexString(MessageDigest.getInstance("SHA-256").digest(content));
+    }
+
+    @Test
+    @DisplayName("/hash/upload must hash binary multipart files byte by byte")
+    void hashUploadReturnsHashOfBinaryFile() throws Exception {
+        byte[] content = HashResourceTest.getBinaryContent();
+
+        this.mockMvc.perform(multipart("/hash/upload").file(new MockMultipartFile("file", content)))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(content().string(HashResourceTest.getExpectedHash(content)));
+    }
+
+    @Test
+    @DisplayName("/hash/upload must accept the raw file as an octet-stream body")
+    void hashUploadReturnsHashOfOctetStreamBody() throws Exception {
+        byte[] content = HashResourceTest.getBinaryContent();
+
+        this.mockMvc.perform(post("/hash/upload")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(content))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(content().string(HashResourceTest.getExpectedHash(content)));
+    }
+
+    @Test
+    @DisplayName("/hash/upload must support SHA512 for hash-only signing clients")
+    void hashUploadReturnsSha512WhenRequested() throws Exception {
+        byte[] content = HashResourceTest.getBinaryContent();
+
+        this.mockMvc.perform(post("/hash/upload")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .param("algorithm", "SHA512")
+                        .content(content))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(content().string(Hex.toHexString(MessageDigest.getInstance("SHA-512").digest(content))));
+    }
+}
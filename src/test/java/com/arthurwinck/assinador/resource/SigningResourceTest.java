@@ -1,20 +1,52 @@
 package com.arthurwinck.assinador.resource;
 
+import com.arthurwinck.assinador.dto.MerkleSignResult;
+import com.arthurwinck.assinador.dto.SigningInfo;
 import com.arthurwinck.assinador.exception.InvalidCertificateException;
+import com.arthurwinck.assinador.exception.InvalidDigestException;
 import com.arthurwinck.assinador.exception.InvalidSignatureFileException;
+import com.arthurwinck.assinador.exception.InvalidSignedDataException;
+import com.arthurwinck.assinador.exception.SigningKeyConflictException;
+import com.arthurwinck.assinador.exception.SigningKeyNotFoundException;
 import com.arthurwinck.assinador.exception.SigningValidationException;
+import com.arthurwinck.assinador.service.BatchSigningService;
+import com.arthurwinck.assinador.service.HashService;
+import com.arthurwinck.assinador.service.MappedFile;
+import com.arthurwinck.assinador.service.MappedUploadService;
+import com.arthurwinck.assinador.service.MerkleSigningService;
+import com.arthurwinck.assinador.service.SignedDataAppender;
+import com.arthurwinck.assinador.service.SigningKeyRegistry;
 import com.arthurwinck.assinador.service.SigningService;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(SigningResource.class)
@@ -26,6 +58,18 @@ public class SigningResourceTest {
     @MockitoBean
     private SigningService signingService;
 
+    @MockitoBean
+    private SigningKeyRegistry keyRegistry;
+
+    @MockitoBean
+    private BatchSigningService batchSigningService;
+
+    @MockitoBean
+    private MerkleSigningService merkleSigningService;
+
+    @MockitoBean
+    private MappedUploadService mappedUploadService;
+
     @Test
     @DisplayName("/signature must return exception thrown in service")
     void signatureResourceReturnsExceptionFromService() throws Exception {
@@ -33,7 +77,7 @@ public class SigningResourceTest {
         byte[] bytesArquivoAssinatura = "arquivo de certificado inválido".getBytes();
         byte[] bytesArquivoParaAssinar = "arquivo para assinar".getBytes();
 
-        when(signingService.signAttached(any(), any(), any())).thenThrow(new InvalidCertificateException(errorMessage));
+        when(signingService.signAttached(any(byte[].class), any(Resource.class), any(), isNull())).thenThrow(new InvalidCertificateException(errorMessage));
 
         this.mockMvc.perform(multipart("/signature")
                         .file(new MockMultipartFile("file", bytesArquivoParaAssinar))
@@ -50,7 +94,7 @@ public class SigningResourceTest {
         byte[] bytesArquivoParaAssinar = "arquivo para assinar".getBytes();
 
         String hexCodedSignature = "Assinatura codificada em hex";
-        when(signingService.signAttached(any(), any(), any())).thenReturn(hexCodedSignature);
+        when(signingService.signAttached(any(byte[].class), any(Resource.class), any(), isNull())).thenReturn(hexCodedSignature);
 
         this.mockMvc.perform(multipart("/signature")
                         .file(new MockMultipartFile("file", bytesArquivoParaAssinar))
@@ -59,4 +103,289 @@ public class SigningResourceTest {
                 .andExpect(status().is2xxSuccessful())
                 .andExpect(content().string(hexCodedSignature));
     }
+
+    @Test
+    @DisplayName("/signature/{keyId} must sign the content with the registered key")
+    void signatureWithKeyReturnsSignatureFromService() throws Exception {
+        byte[] bytesArquivoParaAssinar = "arquivo para assinar".getBytes();
+
+        String base64Signature = "Assinatura codificada em base64";
+        when(signingService.signAttached(eq(bytesArquivoParaAssinar), eq("chave-teste"), isNull())).thenReturn(base64Signature);
+
+        this.mockMvc.perform(multipart("/signature/chave-teste")
+                        .file(new MockMultipartFile("file", bytesArquivoParaAssinar)))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(content().string(base64Signature));
+
+        this.mockMvc.perform(post("/signature/chave-teste")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(bytesArquivoParaAssinar))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(content().string(base64Signature));
+    }
+
+    @Test
+    @DisplayName("/signature/{keyId} must sign large uploads from the memory-mapped file")
+    void signatureWithKeySignsMappedUpload() throws Exception {
+        MappedFile mappedFile = mock(MappedFile.class);
+        String base64Signature = "Assinatura do arquivo mapeado";
+
+        when(mappedUploadService.tryMap(any())).thenReturn(mappedFile);
+        when(signingService.signAttached(mappedFile, "chave-teste", null)).thenReturn(base64Signature);
+
+        this.mockMvc.perform(multipart("/signature/chave-teste")
+                        .file(new MockMultipartFile("file", "documento grande".getBytes())))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(content().string(base64Signature));
+
+        verify(signingService, never()).signAttached(any(byte[].class), anyString(), any());
+        verify(mappedFile).close();
+    }
+
+    @Test
+    @DisplayName("/signature/{keyId} must return not found for unknown keys")
+    void signatureWithUnknownKeyReturnsNotFound() throws Exception {
+        String errorMessage = "Chave de assinatura não registrada: desconhecida";
+        when(signingService.signAttached(any(byte[].class), eq("desconhecida"), isNull())).thenThrow(new SigningKeyNotFoundException(errorMessage));
+
+        this.mockMvc.perform(multipart("/signature/desconhecida")
+                        .file(new MockMultipartFile("file", "arquivo para assinar".getBytes())))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string(errorMessage));
+    }
+
+    @Test
+    @DisplayName("/signature/keys must register the keystore and return its id")
+    void registerKeyReturnsKeyId() throws Exception {
+        when(keyRegistry.register(eq("chave-teste"), any(), eq("senha"))).thenReturn("chave-teste");
+
+        this.mockMvc.perform(multipart("/signature/keys")
+                        .file(new MockMultipartFile("pkcs12", "arquivo de certificado válido".getBytes()))
+                        .param("keyId", "chave-teste")
+                        .header("X-password", "senha"))
+                .andExpect(status().isCreated())
+                .andExpect(content().string("chave-teste"));
+    }
+
+    @Test
+    @DisplayName("/signature/keys must return conflict for an existing key id unless replace is set")
+    void registerExistingKeyReturnsConflict() throws Exception {
+        String errorMessage = "Chave de assinatura já registrada: chave-teste, utilize replace=true para substituí-la";
+        when(keyRegistry.register(eq("chave-teste"), any(), eq("senha"))).thenThrow(new SigningKeyConflictException(errorMessage));
+        when(keyRegistry.replace(eq("chave-teste"), any(), eq("senha"))).thenReturn("chave-teste");
+
+        this.mockMvc.perform(multipart("/signature/keys")
+                        .file(new MockMultipartFile("pkcs12", "arquivo de certificado válido".getBytes()))
+                        .param("keyId", "chave-teste")
+                        .header("X-password", "senha"))
+                .andExpect(status().isConflict())
+                .andExpect(content().string(errorMessage));
+
+        this.mockMvc.perform(multipart("/signature/keys")
+                        .file(new MockMultipartFile("pkcs12", "arquivo de certificado válido".getBytes()))
+                        .param("keyId", "chave-teste")
+                        .param("replace", "true")
+                        .header("X-password", "senha"))
+                .andExpect(status().isCreated())
+                .andExpect(content().string("chave-teste"));
+    }
+
+    @Test
+    @DisplayName("/signature/merkle must return the root signature and one proof per document")
+    void signatureMerkleReturnsProofs() throws Exception {
+        MerkleSignResult.DocumentProof documentProof = new MerkleSignResult.DocumentProof();
+        documentProof.setIndex(0);
+        documentProof.setFilename("a.txt");
+        documentProof.setProof("prova");
+
+        MerkleSignResult result = new MerkleSignResult();
+        result.setSignature("assinatura da raiz");
+        result.setTreeSize(1);
+        result.setDocuments(List.of(documentProof));
+
+        when(merkleSigningService.sign(anyList(), eq(HashService.HashAlgorithm.SHA256), eq("chave-teste"), isNull())).thenReturn(result);
+
+        this.mockMvc.perform(multipart("/signature/merkle")
+                        .file(new MockMultipartFile("files", "a.txt", null, "primeiro".getBytes()))
+                        .param("keyId", "chave-teste"))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(jsonPath("$.signature").value("assinatura da raiz"))
+                .andExpect(jsonPath("$.documents[0].filename").value("a.txt"))
+                .andExpect(jsonPath("$.documents[0].proof").value("prova"));
+    }
+
+    @Test
+    @DisplayName("/signature/batch must stream one result line per document")
+    void signatureBatchStreamsResults() throws Exception {
+        BatchSigningService.DocumentSigner signer = content -> "assinatura";
+        when(batchSigningService.createSigner("chave-teste", null)).thenReturn(signer);
+
+        doAnswer(invocation -> {
+            OutputStream outputStream = invocation.getArgument(2);
+            outputStream.write("{\"index\":0}\n{\"index\":1}\n".getBytes());
+            return null;
+        }).when(batchSigningService).signBatch(anyList(), eq(signer), any());
+
+        MvcResult mvcResult = this.mockMvc.perform(multipart("/signature/batch")
+                        .file(new MockMultipartFile("files", "a.txt", null, "primeiro".getBytes()))
+                        .file(new MockMultipartFile("files", "b.txt", null, "segundo".getBytes()))
+                        .param("keyId", "chave-teste"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"index\":0}\n{\"index\":1}\n"));
+    }
+
+    @Test
+    @DisplayName("/signature/batch must require a key id or a pkcs12 file")
+    void signatureBatchRequiresCredentials() throws Exception {
+        this.mockMvc.perform(multipart("/signature/batch")
+                        .file(new MockMultipartFile("files", "a.txt", null, "primeiro".getBytes())))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("/signature/{keyId}/stream must stream the DER signature of the request body")
+    void signatureStreamWithKeyReturnsDer() throws Exception {
+        byte[] derSignature = new byte[]{0x30, (byte) 0x80, 0x01, 0x02};
+
+        doAnswer(invocation -> {
+            InputStream inputStream = invocation.getArgument(0);
+            inputStream.readAllBytes();
+
+            OutputStream outputStream = invocation.getArgument(5);
+            outputStream.write(derSignature);
+            return null;
+        }).when(signingService).signStream(any(InputStream.class), eq("chave-teste"), eq(false), eq(SigningService.SignatureEncoding.DER), isNull(), any());
+
+        MvcResult mvcResult = this.mockMvc.perform(post("/signature/chave-teste/stream")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content("documento grande".getBytes())
+                        .param("attached", "false"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(content().contentType("application/pkcs7-signature"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"assinatura.p7s\""))
+                .andExpect(content().bytes(derSignature));
+    }
+
+    @Test
+    @DisplayName("/signature/stream must sign large uploads from the memory-mapped file")
+    void signatureStreamSignsMappedUpload() throws Exception {
+        byte[] derSignature = new byte[]{0x30, (byte) 0x80, 0x01, 0x02};
+        MappedFile mappedFile = mock(MappedFile.class);
+
+        when(signingService.getSigningInfo(any(Resource.class), any())).thenReturn(new SigningInfo());
+        when(mappedUploadService.tryMap(any())).thenReturn(mappedFile);
+
+        doAnswer(invocation -> {
+            OutputStream outputStream = invocation.getArgument(5);
+            outputStream.write(derSignature);
+            return null;
+        }).when(signingService).signMapped(eq(mappedFile), any(SigningInfo.class), eq(true), eq(SigningService.SignatureEncoding.DER), isNull(), any());
+
+        MvcResult mvcResult = this.mockMvc.perform(multipart("/signature/stream")
+                        .file(new MockMultipartFile("file", "documento grande".getBytes()))
+                        .file(new MockMultipartFile("pkcs12", "arquivo de certificado".getBytes()))
+                        .header("X-password", "Senha para arquivo de assinatura"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(content().contentType("application/pkcs7-mime"))
+                .andExpect(content().bytes(derSignature));
+
+        verify(mappedFile).close();
+    }
+
+    @Test
+    @DisplayName("/signature/cosign must stream the signature with the added signer")
+    void signatureCoSignStreamsSignedData() throws Exception {
+        byte[] derSignature = new byte[]{0x30, 0x03, 0x01, 0x02, 0x03};
+        SignedDataAppender signedData = mock(SignedDataAppender.class);
+        SignedDataAppender.Additions additions = new SignedDataAppender.Additions(Map.of(), List.of(), List.of());
+
+        when(signedData.hasContent()).thenReturn(true);
+        when(signingService.openSignedData(any(ByteBuffer.class))).thenReturn(signedData);
+        when(signingService.coSign(signedData, "chave-teste", null)).thenReturn(additions);
+
+        doAnswer(invocation -> {
+            OutputStream outputStream = invocation.getArgument(3);
+            outputStream.write(derSignature);
+            return null;
+        }).when(signingService).writeSignedData(eq(signedData), eq(additions), eq(SigningService.SignatureEncoding.DER), any());
+
+        MvcResult mvcResult = this.mockMvc.perform(multipart("/signature/cosign")
+                        .file(new MockMultipartFile("signature", "assinatura existente".getBytes()))
+                        .param("keyId", "chave-teste"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(content().contentType("application/pkcs7-mime"))
+                .andExpect(content().bytes(derSignature));
+    }
+
+    @Test
+    @DisplayName("/signature/countersign must return the service error before streaming")
+    void signatureCounterSignReturnsError() throws Exception {
+        String errorMessage = "Assinante 3 não encontrado, a assinatura possui 1 assinante(s)";
+        SignedDataAppender signedData = mock(SignedDataAppender.class);
+
+        when(signingService.openSignedData(any(ByteBuffer.class))).thenReturn(signedData);
+        when(signingService.counterSign(signedData, 3, "chave-teste", null)).thenThrow(new InvalidSignedDataException(errorMessage));
+
+        this.mockMvc.perform(multipart("/signature/countersign")
+                        .file(new MockMultipartFile("signature", "assinatura existente".getBytes()))
+                        .param("signerIndex", "3")
+                        .param("keyId", "chave-teste"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("/signature/{keyId}/stream must return 404 before streaming for unknown keys")
+    void signatureStreamWithUnknownKeyReturnsNotFound() throws Exception {
+        String errorMessage = "Chave de assinatura não registrada: desconhecida";
+        when(keyRegistry.get("desconhecida")).thenThrow(new SigningKeyNotFoundException(errorMessage));
+
+        this.mockMvc.perform(post("/signature/desconhecida/stream")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content("documento".getBytes()))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("/signature/digest must sign the digest with a registered key")
+    void signatureDigestWithKeyReturnsSignature() throws Exception {
+        String digest = "a".repeat(128);
+        when(signingService.signDigest(digest, HashService.HashAlgorithm.SHA512, "chave-teste", null)).thenReturn("assinatura detached");
+
+        this.mockMvc.perform(post("/signature/digest")
+                        .param("digest", digest)
+                        .param("algorithm", "SHA512")
+                        .param("keyId", "chave-teste"))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(content().string("assinatura detached"));
+    }
+
+    @Test
+    @DisplayName("/signature/digest must return the invalid digest error from service")
+    void signatureDigestReturnsInvalidDigest() throws Exception {
+        String errorMessage = "Hash SHA256 deve possuir 64 caracteres hexadecimais";
+        when(signingService.signDigest(eq("abc"), any(), eq("chave-teste"), isNull())).thenThrow(new InvalidDigestException(errorMessage));
+
+        this.mockMvc.perform(post("/signature/digest")
+                        .param("digest", "abc")
+                        .param("keyId", "chave-teste"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(errorMessage));
+    }
 }
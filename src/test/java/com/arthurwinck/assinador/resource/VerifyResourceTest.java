@@ -1,22 +1,41 @@
 package com.arthurwinck.assinador.resource;
 
+import com.arthurwinck.assinador.dto.VerifyOptions;
 import com.arthurwinck.assinador.dto.VerifyResponse;
 import com.arthurwinck.assinador.exception.InvalidSignatureFileException;
+import com.arthurwinck.assinador.service.BatchVerifyService;
+import com.arthurwinck.assinador.service.HashService;
+import com.arthurwinck.assinador.service.MappedFile;
+import com.arthurwinck.assinador.service.MappedUploadService;
 import com.arthurwinck.assinador.service.VerifyService;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
 
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(VerifyResource.class)
@@ -28,13 +47,19 @@ public class VerifyResourceTest {
     @MockitoBean
     private VerifyService verifyService;
 
+    @MockitoBean
+    private BatchVerifyService batchVerifyService;
+
+    @MockitoBean
+    private MappedUploadService mappedUploadService;
+
     @Test
     @DisplayName("/verify must return exception thrown in service")
     void verifyResourceReturnsExceptionFromService() throws Exception {
         String errorMessage = "Não foi possível carregar arquivo de assinatura.";
         byte[] bytesArquivoAssinatura = "conteúdo inválido".getBytes();
 
-        when(verifyService.verify(any())).thenThrow(new InvalidSignatureFileException("Não foi possível carregar arquivo de assinatura."));
+        when(verifyService.verify(any(byte[].class), any())).thenThrow(new InvalidSignatureFileException("Não foi possível carregar arquivo de assinatura."));
 
         this.mockMvc.perform(multipart("/verify").file(new MockMultipartFile("file", bytesArquivoAssinatura)))
                 .andExpect(status().isBadRequest())
@@ -47,7 +72,7 @@ public class VerifyResourceTest {
         VerifyResponse verifyResponse = VerifyResourceTest.getValidResponseDTO();
         byte[] bytesArquivoAssinatura = "conteúdo válido".getBytes();
 
-        when(verifyService.verify(any())).thenReturn(verifyResponse);
+        when(verifyService.verify(any(byte[].class), any())).thenReturn(verifyResponse);
 
         this.mockMvc.perform(multipart("/verify").file(new MockMultipartFile("file", bytesArquivoAssinatura)))
                 .andExpect(status().is2xxSuccessful())
@@ -59,6 +84,138 @@ public class VerifyResourceTest {
                 .andExpect(jsonPath("$.digestAlgorithm").value(verifyResponse.getDigestAlgorithm()));
     }
 
+    @Test
+    @DisplayName("/verify must verify large uploads from the memory-mapped file")
+    void verifyResourceVerifiesMappedUpload() throws Exception {
+        VerifyResponse verifyResponse = VerifyResourceTest.getValidResponseDTO();
+        ByteBuffer mappedBuffer = ByteBuffer.wrap("assinatura grande".getBytes());
+        MappedFile mappedFile = mock(MappedFile.class);
+
+        when(mappedUploadService.tryMap(any())).thenReturn(mappedFile);
+        when(mappedFile.getBuffer()).thenReturn(mappedBuffer);
+        when(verifyService.verify(eq(mappedBuffer), any())).thenReturn(verifyResponse);
+
+        this.mockMvc.perform(multipart("/verify").file(new MockMultipartFile("file", "assinatura grande".getBytes())))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(jsonPath("$.originalData").value(verifyResponse.getOriginalData()));
+
+        verify(mappedFile).close();
+    }
+
+    @Test
+    @DisplayName("/verify/merkle must verify the document against the batch signature and proof")
+    void verifyMerkleReturnsVerifyInfo() throws Exception {
+        VerifyResponse verifyResponse = VerifyResourceTest.getValidResponseDTO();
+        verifyResponse.setInclusionProofValid(true);
+
+        when(verifyService.verifyMerkle(any(InputStream.class), eq("assinatura".getBytes()), eq("prova"))).thenReturn(verifyResponse);
+
+        this.mockMvc.perform(multipart("/verify/merkle")
+                        .file(new MockMultipartFile("file", "documento".getBytes()))
+                        .file(new MockMultipartFile("signature", "assinatura".getBytes()))
+                        .param("proof", "prova"))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(jsonPath("$.inclusionProofValid").value(true));
+    }
+
+    @Test
+    @DisplayName("/verify/stream must verify the request body without original data by default")
+    void verifyStreamOmitsOriginalDataByDefault() throws Exception {
+        VerifyResponse verifyResponse = VerifyResourceTest.getValidResponseDTO();
+        verifyResponse.setOriginalData(null);
+
+        when(verifyService.verify(any(InputStream.class), argThat(options -> !options.isIncludeOriginalData())))
+                .thenReturn(verifyResponse);
+
+        this.mockMvc.perform(post("/verify/stream")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content("conteúdo válido".getBytes()))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(jsonPath("$.status").value("VALIDO"))
+                .andExpect(jsonPath("$.originalData").isEmpty());
+    }
+
+    @Test
+    @DisplayName("/verify/stream must forward the original data limit")
+    void verifyStreamForwardsOriginalDataLimit() throws Exception {
+        VerifyResponse verifyResponse = VerifyResourceTest.getValidResponseDTO();
+        verifyResponse.setOriginalDataTruncated(true);
+
+        when(verifyService.verify(any(InputStream.class),
+                argThat(options -> options.isIncludeOriginalData() && options.getMaxOriginalDataBytes() == 16)))
+                .thenReturn(verifyResponse);
+
+        this.mockMvc.perform(multipart("/verify/stream")
+                        .file(new MockMultipartFile("file", "conteúdo válido".getBytes()))
+                        .param("includeOriginalData", "true")
+                        .param("maxOriginalDataBytes", "16"))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(jsonPath("$.originalData").value(verifyResponse.getOriginalData()))
+                .andExpect(jsonPath("$.originalDataTruncated").value(true));
+    }
+
+    @Test
+    @DisplayName("/verify/digest must verify a detached signature against the document hash")
+    void verifyDigestReturnsVerifyInfo() throws Exception {
+        VerifyResponse verifyResponse = VerifyResourceTest.getValidResponseDTO();
+        verifyResponse.setOriginalData(null);
+        String digest = "b".repeat(64);
+
+        when(verifyService.verifyDigest(any(), eq(digest), eq(HashService.HashAlgorithm.SHA256),
+                argThat(options -> options.getPolicy() == VerifyOptions.VerifyPolicy.ALL && Boolean.TRUE.equals(options.getValidateChain()))))
+                .thenReturn(verifyResponse);
+
+        this.mockMvc.perform(multipart("/verify/digest")
+                        .file(new MockMultipartFile("file", "assinatura detached".getBytes()))
+                        .param("digest", digest)
+                        .param("policy", "ALL")
+                        .param("validateChain", "true"))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(jsonPath("$.status").value("VALIDO"))
+                .andExpect(jsonPath("$.originalData").isEmpty());
+    }
+
+    @Test
+    @DisplayName("/verify/batch must stream one result line per signature file")
+    void verifyBatchStreamsResults() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream outputStream = invocation.getArgument(2);
+            outputStream.write("{\"index\":0}\n{\"summary\":{}}\n".getBytes());
+            return null;
+        }).when(batchVerifyService).verifyBatch(anyList(), eq(true), any());
+
+        MvcResult mvcResult = this.mockMvc.perform(multipart("/verify/batch")
+                        .file(new MockMultipartFile("files", "a.p7m", null, "assinatura".getBytes()))
+                        .param("includeOriginalData", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"index\":0}\n{\"summary\":{}}\n"));
+    }
+
+    @Test
+    @DisplayName("/verify/batch must accept a zip body")
+    void verifyBatchAcceptsZip() throws Exception {
+        doAnswer(invocation -> {
+            OutputStream outputStream = invocation.getArgument(2);
+            outputStream.write("{\"summary\":{}}\n".getBytes());
+            return null;
+        }).when(batchVerifyService).verifyZip(any(), eq(false), any());
+
+        MvcResult mvcResult = this.mockMvc.perform(post("/verify/batch")
+                        .contentType(VerifyResource.APPLICATION_ZIP_VALUE)
+                        .content(new byte[]{0x50, 0x4b}))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        this.mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().is2xxSuccessful())
+                .andExpect(content().string("{\"summary\":{}}\n"));
+    }
+
     public static VerifyResponse getValidResponseDTO() {
         VerifyResponse verifyResponse = new VerifyResponse();
         verifyResponse.setStatus(VerifyResponse.VerifyResponseStatusEnum.VALIDO);
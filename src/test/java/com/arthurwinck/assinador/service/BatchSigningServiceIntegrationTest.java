@@ -0,0 +1,97 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.BatchSignResult;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.util.encoders.Base64;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class BatchSigningServiceIntegrationTest {
+
+    @Value("${signing.test_certificate_name}")
+    private String testCertificateName;
+
+    @Value("${signing.key-password}")
+    private String keyPassword;
+
+    @Autowired
+    private BatchSigningService batchSigningService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private static Resource namedResource(String filename, String content) {
+        return new ByteArrayResource(content.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+        };
+    }
+
+    @Test
+    @DisplayName("Deve assinar todos os documentos do lote e reportar erros individualmente")
+    void testSignBatchWithIndividualErrors() throws Exception {
+        List<Resource> documents = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            documents.add(namedResource("documento-" + i + ".txt", "Conteúdo do documento " + i));
+        }
+
+        // Documento que não pode ser lido não deve interromper o restante do lote
+        documents.add(new ByteArrayResource(new byte[0]) {
+            @Override
+            public String getFilename() {
+                return "ilegivel.txt";
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                throw new IOException("arquivo indisponível");
+            }
+        });
+
+        BatchSigningService.DocumentSigner signer = batchSigningService.createSigner(
+                new ClassPathResource("/keys/" + testCertificateName + ".pfx"), keyPassword);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        batchSigningService.signBatch(documents, signer, outputStream);
+
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(documents.size(), lines.length, "Deve haver uma linha de resultado por documento");
+
+        int signed = 0;
+        for (String line : lines) {
+            BatchSignResult result = objectMapper.readValue(line, BatchSignResult.class);
+
+            if (result.getFilename().equals("ilegivel.txt")) {
+                assertNull(result.getSignature());
+                assertNotNull(result.getError(), "Documento com erro deve informar o motivo");
+                continue;
+            }
+
+            CMSSignedData signedData = new CMSSignedData(Base64.decode(result.getSignature()));
+            assertEquals("Conteúdo do documento " + result.getIndex(),
+                    new String((byte[]) signedData.getSignedContent().getContent(), StandardCharsets.UTF_8));
+            signed++;
+        }
+
+        assertEquals(20, signed);
+    }
+}
@@ -0,0 +1,172 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.config.ExecutorConfiguration;
+import com.arthurwinck.assinador.dto.BatchVerifyResult;
+import com.arthurwinck.assinador.dto.BatchVerifySummary;
+import com.arthurwinck.assinador.dto.SigningInfo;
+import com.arthurwinck.assinador.dto.VerifyResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class BatchVerifyServiceIntegrationTest {
+
+    private static final String INVALID_FILENAME = "corrompido.p7m";
+
+    @Value("${signing.test_certificate_name}")
+    private String testCertificateName;
+
+    @Value("${signing.key-password}")
+    private String keyPassword;
+
+    @Autowired
+    private SigningService signingService;
+
+    @Autowired
+    private BatchVerifyService batchVerifyService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private VerifyService verifyService;
+
+    @Autowired
+    @Qualifier(ExecutorConfiguration.BATCH_EXECUTOR)
+    private ExecutorService batchExecutor;
+
+    private Map<String, byte[]> signatureFiles;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        SigningInfo signingInfo = signingService.getSigningInfo(
+                new ClassPathResource("/keys/" + testCertificateName + ".pfx"), keyPassword);
+
+        signatureFiles = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            String signature = signingService.signAttached(("Conteúdo do documento " + i).getBytes(StandardCharsets.UTF_8), signingInfo);
+            signatureFiles.put("assinatura-" + i + ".p7m", signature.getBytes(StandardCharsets.UTF_8));
+        }
+
+        // Arquivo inválido não deve interromper o restante do lote
+        signatureFiles.put(INVALID_FILENAME, "não é uma assinatura".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Deve verificar todos os arquivos do lote e terminar com o resumo")
+    void testVerifyBatch() throws Exception {
+        List<Resource> files = new ArrayList<>();
+        signatureFiles.forEach((filename, content) -> files.add(new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+        }));
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        batchVerifyService.verifyBatch(files, false, outputStream);
+
+        assertBatchOutput(outputStream, false);
+    }
+
+    @Test
+    @DisplayName("Com o limite de bytes atingido, a próxima entrada do ZIP só deve ser lida depois da anterior terminar")
+    void testVerifyZipWithinByteBudget() throws Exception {
+        // Qualquer entrada atinge o limite: uma entrada em memória por vez, resultados na ordem do ZIP
+        BatchVerifyService limitedService = new BatchVerifyService(verifyService, batchExecutor, objectMapper, 16, 1_048_576, 1);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        limitedService.verifyZip(new ByteArrayInputStream(this.zip()), false, outputStream);
+
+        assertBatchOutput(outputStream, false);
+
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        for (int i = 0; i < lines.length - 1; i++) {
+            assertEquals(i, objectMapper.readValue(lines[i], BatchVerifyResult.class).getIndex());
+        }
+    }
+
+    @Test
+    @DisplayName("Deve verificar as entradas de um ZIP incluindo o conteúdo original quando solicitado")
+    void testVerifyZip() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        batchVerifyService.verifyZip(new ByteArrayInputStream(this.zip()), true, outputStream);
+
+        assertBatchOutput(outputStream, true);
+    }
+
+    private byte[] zip() throws Exception {
+        ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(zipBytes)) {
+            zipOutputStream.putNextEntry(new ZipEntry("assinaturas/"));
+            zipOutputStream.closeEntry();
+
+            for (Map.Entry<String, byte[]> file : signatureFiles.entrySet()) {
+                zipOutputStream.putNextEntry(new ZipEntry(file.getKey()));
+                zipOutputStream.write(file.getValue());
+                zipOutputStream.closeEntry();
+            }
+        }
+
+        return zipBytes.toByteArray();
+    }
+
+    private void assertBatchOutput(ByteArrayOutputStream outputStream, boolean includeOriginalData) throws Exception {
+        String[] lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(signatureFiles.size() + 1, lines.length, "Deve haver uma linha por arquivo e uma linha de resumo");
+
+        for (int i = 0; i < lines.length - 1; i++) {
+            BatchVerifyResult result = objectMapper.readValue(lines[i], BatchVerifyResult.class);
+
+            if (result.getFilename().equals(INVALID_FILENAME)) {
+                assertNull(result.getResponse());
+                assertNotNull(result.getError(), "Arquivo com erro deve informar o motivo");
+                continue;
+            }
+
+            assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO, result.getResponse().getStatus());
+
+            if (includeOriginalData) {
+                String index = result.getFilename().replaceAll("assinatura-(\\d+)\\.p7m", "$1");
+                byte[] originalContent = ("Conteúdo do documento " + index).getBytes(StandardCharsets.UTF_8);
+                assertEquals(HexFormat.of().formatHex(originalContent), result.getResponse().getOriginalData());
+            } else {
+                assertNull(result.getResponse().getOriginalData());
+            }
+        }
+
+        JsonNode summaryLine = objectMapper.readTree(lines[lines.length - 1]);
+        BatchVerifySummary summary = objectMapper.treeToValue(summaryLine.get("summary"), BatchVerifySummary.class);
+
+        assertEquals(signatureFiles.size(), summary.getFiles());
+        assertEquals(signatureFiles.size() - 1, summary.getValid());
+        assertEquals(0, summary.getInvalid());
+        assertEquals(1, summary.getErrors());
+        assertEquals(signatureFiles.values().stream().mapToLong(content -> content.length).sum(), summary.getBytes());
+        assertTrue(summary.getFilesPerSecond() > 0);
+    }
+}
@@ -0,0 +1,136 @@
+package com.arthurwinck.assinador.service;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.util.CollectionStore;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CertificateChainValidatorTest {
+
+    private static KeyPair rootKeyPair;
+    private static KeyPair intermediateKeyPair;
+    private static KeyPair signerKeyPair;
+
+    private static X509CertificateHolder root;
+    private static X509CertificateHolder intermediate;
+
+    private CertificateChainValidator chainValidator;
+
+    @BeforeAll
+    static void setUpCertificateAuthorities() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(256);
+        rootKeyPair = keyPairGenerator.generateKeyPair();
+        intermediateKeyPair = keyPairGenerator.generateKeyPair();
+        signerKeyPair = keyPairGenerator.generateKeyPair();
+
+        root = createCertificate("AC Raiz", "AC Raiz", 1, rootKeyPair.getPublic(), rootKeyPair.getPrivate(), true);
+        intermediate = createCertificate("AC Intermediária", "AC Raiz", 2, intermediateKeyPair.getPublic(), rootKeyPair.getPrivate(), true);
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        this.chainValidator = new CertificateChainValidator("", 100, 3600, 100);
+        this.chainValidator.setTrustAnchors(List.of(toCertificate(root)));
+    }
+
+    private static X509CertificateHolder createCertificate(String subject, String issuer, long serialNumber, PublicKey publicKey,
+                                                           PrivateKey issuerKey, boolean certificateAuthority) throws Exception {
+        Date notBefore = new Date(System.currentTimeMillis() - 60_000L);
+
+        X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(new X500Name("CN=" + issuer), BigInteger.valueOf(serialNumber),
+                notBefore, new Date(notBefore.getTime() + 86_400_000L), new X500Name("CN=" + subject), publicKey);
+
+        builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(certificateAuthority));
+        builder.addExtension(Extension.keyUsage, true, new KeyUsage(certificateAuthority
+                ? KeyUsage.keyCertSign | KeyUsage.cRLSign
+                : KeyUsage.digitalSignature | KeyUsage.nonRepudiation));
+
+        return builder.build(new JcaContentSignerBuilder("SHA256WITHECDSA").build(issuerKey));
+    }
+
+    private static X509CertificateHolder createSignerCertificate(String subject, long serialNumber) throws Exception {
+        return createCertificate(subject, "AC Intermediária", serialNumber, signerKeyPair.getPublic(), intermediateKeyPair.getPrivate(), false);
+    }
+
+    private static X509Certificate toCertificate(X509CertificateHolder holder) throws Exception {
+        return new JcaX509CertificateConverter().getCertificate(holder);
+    }
+
+    @Test
+    @DisplayName("Deve validar a cadeia com a intermediária incluída no documento e reaproveitar o caminho validado")
+    void testValidChainIsCached() throws Exception {
+        X509CertificateHolder signer = createSignerCertificate("Assinante", 10);
+        CollectionStore<X509CertificateHolder> documentCertificates = new CollectionStore<>(List.of(signer, intermediate));
+
+        assertTrue(this.chainValidator.validate(signer, documentCertificates).valid());
+        assertTrue(this.chainValidator.validate(signer, documentCertificates).valid());
+
+        CertificateChainValidator.ChainCacheStats stats = this.chainValidator.getStats();
+        assertEquals(1, stats.misses());
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.size());
+        assertEquals(1, stats.intermediates());
+    }
+
+    @Test
+    @DisplayName("Deve rejeitar a cadeia quando a intermediária não é conhecida")
+    void testMissingIntermediateIsInvalid() throws Exception {
+        X509CertificateHolder signer = createSignerCertificate("Assinante", 11);
+
+        CertificateChainValidator.ChainValidationResult result = this.chainValidator.validate(signer, new CollectionStore<>(List.of(signer)));
+
+        assertFalse(result.valid());
+        assertNotNull(result.error());
+        assertEquals(0, this.chainValidator.getStats().size(), "Cadeias inválidas não devem ser armazenadas");
+    }
+
+    @Test
+    @DisplayName("Deve reaproveitar intermediárias já validadas para documentos que não as incluem")
+    void testKnownIntermediateIsReused() throws Exception {
+        X509CertificateHolder firstSigner = createSignerCertificate("Primeiro assinante", 12);
+        X509CertificateHolder secondSigner = createSignerCertificate("Segundo assinante", 13);
+
+        assertTrue(this.chainValidator.validate(firstSigner, new CollectionStore<>(List.of(firstSigner, intermediate))).valid());
+        assertTrue(this.chainValidator.validate(secondSigner, new CollectionStore<>(List.of(secondSigner))).valid());
+    }
+
+    @Test
+    @DisplayName("Certificado do assinante que é uma âncora de confiança deve ser aceito")
+    void testTrustAnchorSigner() throws Exception {
+        assertTrue(this.chainValidator.validate(root, new CollectionStore<>(List.of(root))).valid());
+    }
+
+    @Test
+    @DisplayName("Sem âncoras de confiança nenhuma cadeia deve ser aceita")
+    void testNoTrustAnchors() throws Exception {
+        CertificateChainValidator emptyValidator = new CertificateChainValidator("", 100, 3600, 100);
+        X509CertificateHolder signer = createSignerCertificate("Assinante", 14);
+
+        CertificateChainValidator.ChainValidationResult result = emptyValidator.validate(signer, new CollectionStore<>(List.of(signer, intermediate)));
+
+        assertFalse(result.valid());
+        assertNotNull(result.error());
+    }
+}
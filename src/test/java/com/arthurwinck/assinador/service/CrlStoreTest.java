@@ -0,0 +1,166 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.SignerResult;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.util.io.pem.PemObject;
+import org.bouncycastle.util.io.pem.PemWriter;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrlStoreTest {
+
+    private static final X500Name ISSUER = new X500Name("CN=AC Teste");
+    private static final X500Name OTHER_ISSUER = new X500Name("CN=Outra AC");
+
+    private static KeyPair keyPair;
+    private static ContentSigner contentSigner;
+
+    @TempDir
+    Path crlDirectory;
+
+    @BeforeAll
+    static void setUpKeyPair() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(256);
+        keyPair = keyPairGenerator.generateKeyPair();
+        contentSigner = new JcaContentSignerBuilder("SHA256WITHECDSA").build(keyPair.getPrivate());
+    }
+
+    private static X509CertificateHolder createCertificate(X500Name issuer, long serialNumber) throws Exception {
+        Date notBefore = new Date();
+
+        return new JcaX509v3CertificateBuilder(issuer, BigInteger.valueOf(serialNumber), notBefore,
+                new Date(notBefore.getTime() + 86_400_000L), new X500Name("CN=Assinante " + serialNumber), keyPair.getPublic())
+                .build(contentSigner);
+    }
+
+    private static X509CRLHolder createCrl(X500Name issuer, Date nextUpdate, long... revokedSerials) {
+        Date now = new Date();
+        X509v2CRLBuilder builder = new X509v2CRLBuilder(issuer, now);
+        builder.setNextUpdate(nextUpdate);
+
+        for (long serial : revokedSerials) {
+            builder.addCRLEntry(BigInteger.valueOf(serial), now, CRLReason.keyCompromise);
+        }
+
+        return builder.build(contentSigner);
+    }
+
+    private static Date tomorrow() {
+        return new Date(System.currentTimeMillis() + 86_400_000L);
+    }
+
+    private CrlStore createStore() {
+        return new CrlStore(true, false, this.crlDirectory.toString(), 300);
+    }
+
+    @Test
+    @DisplayName("Deve indicar revogação pelo número de série e emissor do certificado")
+    void testCheckRevocation() throws Exception {
+        Files.write(this.crlDirectory.resolve("ac-teste.crl"), createCrl(ISSUER, tomorrow(), 2, 3, 5).getEncoded());
+
+        CrlStore crlStore = this.createStore();
+        crlStore.reload();
+
+        assertEquals(SignerResult.RevocationStatusEnum.REVOGADO, crlStore.check(createCertificate(ISSUER, 3)));
+        assertEquals(SignerResult.RevocationStatusEnum.NAO_REVOGADO, crlStore.check(createCertificate(ISSUER, 4)));
+        assertEquals(SignerResult.RevocationStatusEnum.DESCONHECIDO, crlStore.check(createCertificate(OTHER_ISSUER, 3)));
+        assertEquals(3, crlStore.getStats().revokedSerials());
+    }
+
+    @Test
+    @DisplayName("Deve informar a próxima atualização mais próxima entre as LCRs vigentes do emissor")
+    void testNextUpdate() throws Exception {
+        Date inOneHour = new Date((System.currentTimeMillis() / 1000 + 3600) * 1000);
+        Files.write(this.crlDirectory.resolve("ac-teste.crl"), createCrl(ISSUER, tomorrow(), 2).getEncoded());
+        Files.write(this.crlDirectory.resolve("ac-teste-delta.crl"), createCrl(ISSUER, inOneHour, 3).getEncoded());
+        Files.write(this.crlDirectory.resolve("ac-teste-vencida.crl"), createCrl(ISSUER, new Date(System.currentTimeMillis() - 86_400_000L)).getEncoded());
+
+        CrlStore crlStore = this.createStore();
+        crlStore.reload();
+
+        assertEquals(inOneHour, crlStore.getNextUpdate(createCertificate(ISSUER, 4)));
+        assertNull(crlStore.getNextUpdate(createCertificate(OTHER_ISSUER, 4)));
+    }
+
+    @Test
+    @DisplayName("LCR vencida não deve garantir que o certificado não foi revogado")
+    void testExpiredCrl() throws Exception {
+        Date yesterday = new Date(System.currentTimeMillis() - 86_400_000L);
+        Files.write(this.crlDirectory.resolve("ac-teste.crl"), createCrl(ISSUER, yesterday, 7).getEncoded());
+
+        CrlStore crlStore = this.createStore();
+        crlStore.reload();
+
+        assertEquals(SignerResult.RevocationStatusEnum.DESCONHECIDO, crlStore.check(createCertificate(ISSUER, 1)));
+        assertEquals(SignerResult.RevocationStatusEnum.REVOGADO, crlStore.check(createCertificate(ISSUER, 7)));
+    }
+
+    @Test
+    @DisplayName("Deve aceitar LCRs em PEM")
+    void testPemCrl() throws Exception {
+        StringWriter pem = new StringWriter();
+        try (PemWriter pemWriter = new PemWriter(pem)) {
+            pemWriter.writeObject(new PemObject("X509 CRL", createCrl(ISSUER, tomorrow(), 9).getEncoded()));
+        }
+        Files.writeString(this.crlDirectory.resolve("ac-teste.pem"), pem.toString());
+
+        CrlStore crlStore = this.createStore();
+        crlStore.reload();
+
+        assertEquals(SignerResult.RevocationStatusEnum.REVOGADO, crlStore.check(createCertificate(ISSUER, 9)));
+    }
+
+    @Test
+    @DisplayName("Deve recarregar apenas quando uma LCR é alterada, adicionada ou removida")
+    void testIncrementalReload() throws Exception {
+        Path crlFile = this.crlDirectory.resolve("ac-teste.crl");
+        Files.write(crlFile, createCrl(ISSUER, tomorrow(), 1).getEncoded());
+
+        CrlStore crlStore = this.createStore();
+        AtomicInteger notifications = new AtomicInteger();
+        crlStore.addReloadListener(notifications::incrementAndGet);
+
+        crlStore.reload();
+        crlStore.reload();
+        assertEquals(1, notifications.get(), "Sem alterações não deve haver nova carga");
+
+        Files.write(crlFile, createCrl(ISSUER, tomorrow(), 1, 8).getEncoded());
+        Files.setLastModifiedTime(crlFile, FileTime.fromMillis(System.currentTimeMillis() + 10_000L));
+        crlStore.reload();
+        assertEquals(2, notifications.get());
+        assertEquals(SignerResult.RevocationStatusEnum.REVOGADO, crlStore.check(createCertificate(ISSUER, 8)));
+
+        // Arquivo inválido mantém as LCRs já carregadas
+        Files.writeString(this.crlDirectory.resolve("corrompida.crl"), "não é uma LCR");
+        crlStore.reload();
+        assertEquals(1, crlStore.getStats().failedFiles());
+        assertEquals(SignerResult.RevocationStatusEnum.REVOGADO, crlStore.check(createCertificate(ISSUER, 8)));
+
+        Files.delete(crlFile);
+        crlStore.reload();
+        assertEquals(SignerResult.RevocationStatusEnum.DESCONHECIDO, crlStore.check(createCertificate(ISSUER, 8)));
+        assertEquals(3, notifications.get());
+    }
+}
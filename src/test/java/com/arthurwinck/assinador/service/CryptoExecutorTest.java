@@ -0,0 +1,109 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.SigningInfo;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.util.CollectionStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CryptoExecutorTest {
+
+    private final ExecutorService executorService = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "crypto-worker-teste"));
+
+    @AfterEach
+    void shutdown() {
+        this.executorService.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Habilitado deve executar a tarefa no pool de threads de plataforma")
+    void testExecutesOnCryptoPool() throws Exception {
+        CryptoExecutor cryptoExecutor = new CryptoExecutor(this.executorService, true);
+
+        assertEquals("crypto-worker-teste", cryptoExecutor.execute(() -> Thread.currentThread().getName()));
+    }
+
+    @Test
+    @DisplayName("Desabilitado deve executar a tarefa na própria thread")
+    void testExecutesInlineWhenDisabled() throws Exception {
+        CryptoExecutor cryptoExecutor = new CryptoExecutor(this.executorService, false);
+
+        assertEquals(Thread.currentThread().getName(), cryptoExecutor.execute(() -> Thread.currentThread().getName()));
+    }
+
+    @Test
+    @DisplayName("Deve relançar a exceção da tarefa sem o ExecutionException")
+    void testRethrowsTaskException() {
+        CryptoExecutor cryptoExecutor = new CryptoExecutor(this.executorService, true);
+
+        CMSException exception = assertThrows(CMSException.class, () -> cryptoExecutor.execute(() -> {
+            throw new CMSException("falha na assinatura");
+        }));
+        assertEquals("falha na assinatura", exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("Assinatura em streaming deve executar somente a operação com a chave privada no pool")
+    void testStreamingSignsOnCryptoPool() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        AtomicInteger tasks = new AtomicInteger();
+        CryptoExecutor cryptoExecutor = new CryptoExecutor(this.executorService, true) {
+            @Override
+            public <T> T execute(CryptoTask<T> task) throws Exception {
+                tasks.incrementAndGet();
+                return super.execute(() -> {
+                    assertEquals("crypto-worker-teste", Thread.currentThread().getName());
+                    return task.call();
+                });
+            }
+        };
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(256);
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+        Date notBefore = new Date();
+        X509CertificateHolder certificate = new JcaX509v3CertificateBuilder(new X500Name("CN=Assinante"), BigInteger.ONE, notBefore,
+                new Date(notBefore.getTime() + 86_400_000L), new X500Name("CN=Assinante"), keyPair.getPublic())
+                .build(new JcaContentSignerBuilder("SHA256WITHECDSA").build(keyPair.getPrivate()));
+
+        SigningInfo signingInfo = new SigningInfo();
+        signingInfo.setPrivateKey(keyPair.getPrivate());
+        signingInfo.setX509Certificate(new JcaX509CertificateConverter().getCertificate(certificate));
+        signingInfo.setCertificateHolderList(List.of(certificate));
+
+        byte[] content = new byte[256 * 1024];
+        ByteArrayOutputStream signedOutput = new ByteArrayOutputStream();
+        SigningEngine.generate(new ByteArrayInputStream(content), signedOutput,
+                new SigningEngine().createSignerInfoGenerator(signingInfo, SigningService.SignatureAlgorithm.SHA256_WITH_ECDSA, cryptoExecutor),
+                new CollectionStore<>(List.of(certificate)), true);
+
+        assertEquals(1, tasks.get(), "Somente a assinatura final deve ir para o pool, o digest acompanha a leitura");
+
+        SignerInformation signer = new CMSSignedData(signedOutput.toByteArray()).getSignerInfos().getSigners().iterator().next();
+        assertTrue(signer.verify(new JcaSimpleSignerInfoVerifierBuilder().setProvider(BouncyCastleProvider.PROVIDER_NAME).build(certificate)));
+    }
+}
@@ -0,0 +1,230 @@
+package com.arthurwinck.assinador.service;
+
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+@SpringBootTest
+class DirectoryIngestionServiceIntegrationTest {
+
+    private static final String KEY_ID = "chave-ingestao";
+
+    @Value("${signing.test_certificate_name}")
+    private String testCertificateName;
+
+    @Value("${signing.key-password}")
+    private String keyPassword;
+
+    @Autowired
+    private SigningService signingService;
+
+    @Autowired
+    private SigningKeyRegistry keyRegistry;
+
+    @Autowired
+    private SignatureArchiveService archiveService;
+
+    @TempDir
+    private Path directory;
+
+    private DirectoryIngestionService ingestionService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        try (InputStream keystoreStream = new ClassPathResource("/keys/" + testCertificateName + ".pfx").getInputStream()) {
+            keyRegistry.register(KEY_ID, keystoreStream.readAllBytes(), keyPassword);
+        }
+
+        this.ingestionService = new DirectoryIngestionService(signingService, keyRegistry, true, directory.toString(), "",
+                KEY_ID, "", 2, 0, 100, true, false);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        this.ingestionService.stop();
+        keyRegistry.remove(KEY_ID);
+    }
+
+    @Test
+    @DisplayName("Arquivos depositados no inbox devem ser assinados em .p7m no outbox e removidos do inbox")
+    void testSignsDroppedFiles() throws Exception {
+        long archived = archiveService.getStats().written() + archiveService.getStats().enqueued();
+        this.ingestionService.start();
+
+        for (int index = 0; index < 10; index++) {
+            this.drop("documento-" + index + ".txt", "Conteúdo do documento " + index);
+        }
+
+        this.awaitFiles("outbox", 10);
+
+        for (int index = 0; index < 10; index++) {
+            this.assertSigned("documento-" + index + ".txt", "Conteúdo do documento " + index);
+        }
+
+        assertEquals(List.of(), this.list("inbox"));
+        assertEquals(List.of(), this.list("processing"));
+        assertEquals(10, this.ingestionService.getStats().signed());
+        assertEquals(archived, archiveService.getStats().written() + archiveService.getStats().enqueued(),
+                "O .p7m do outbox não deve ser gravado de novo no arquivamento");
+    }
+
+    @Test
+    @DisplayName("Arquivos interrompidos em processing devem ser retomados e saídas parciais descartadas")
+    void testResumesInterruptedFiles() throws Exception {
+        Files.createDirectories(directory.resolve("processing"));
+        Files.createDirectories(directory.resolve("outbox"));
+
+        // a.txt: reservado mas não assinado; b.txt: .p7m já renomeado, faltou remover o original
+        Files.writeString(directory.resolve("processing/a.txt"), "Documento interrompido");
+        Files.writeString(directory.resolve("processing/b.txt"), "Documento concluído");
+        Files.writeString(directory.resolve("outbox/b.txt.p7m"), "assinatura já concluída");
+        Files.writeString(directory.resolve("processing/a.txt.p7m.part"), "assinatura incompleta");
+        // .part de outra instância que também publica neste outbox
+        Files.writeString(directory.resolve("outbox/c.txt.p7m.part"), "assinatura de outra instância");
+
+        this.ingestionService.start();
+        this.awaitFiles("outbox", 2);
+
+        this.assertSigned("a.txt", "Documento interrompido");
+        assertEquals("assinatura já concluída", Files.readString(directory.resolve("outbox/b.txt.p7m")));
+        assertEquals(List.of("a.txt.p7m", "b.txt.p7m"), this.list("outbox"));
+        assertEquals(List.of(), this.list("processing"));
+        assertFalse(Files.exists(directory.resolve("processing/a.txt.p7m.part")));
+        assertEquals("assinatura de outra instância", Files.readString(directory.resolve("outbox/c.txt.p7m.part")));
+        assertEquals(2, this.ingestionService.getStats().resumed());
+    }
+
+    @Test
+    @DisplayName("Arquivo cujo .p7m já existe deve ir para error, arquivos em escrita devem ser ignorados")
+    void testRejectsExistingOutputAndIgnoresPartialFiles() throws Exception {
+        Files.createDirectories(directory.resolve("inbox"));
+        Files.createDirectories(directory.resolve("outbox"));
+        Files.writeString(directory.resolve("outbox/repetido.txt.p7m"), "assinatura anterior");
+        Files.writeString(directory.resolve("inbox/em-escrita.txt.part"), "ainda sendo gravado");
+        Files.writeString(directory.resolve("inbox/.oculto"), "arquivo oculto");
+
+        this.ingestionService.start();
+        this.drop("repetido.txt", "Outro documento com o mesmo nome");
+
+        this.awaitFiles("error", 2);
+
+        assertEquals("Outro documento com o mesmo nome", Files.readString(directory.resolve("error/repetido.txt")));
+        assertTrue(Files.readString(directory.resolve("error/repetido.txt.erro.txt")).contains("repetido.txt.p7m"));
+        assertEquals("assinatura anterior", Files.readString(directory.resolve("outbox/repetido.txt.p7m")));
+        assertEquals(List.of(".oculto", "em-escrita.txt.part"), this.list("inbox"));
+        assertEquals(1, this.ingestionService.getStats().failed());
+    }
+
+    @Test
+    @DisplayName("Duas instâncias com processing próprio devem dividir o mesmo inbox sem assinar um arquivo duas vezes")
+    void testInstancesShareInbox() throws Exception {
+        DirectoryIngestionService otherInstance = new DirectoryIngestionService(signingService, keyRegistry, true, directory.toString(),
+                directory.resolve("processing-2").toString(), KEY_ID, "", 2, 0, 100, true, false);
+
+        try {
+            this.ingestionService.start();
+            otherInstance.start();
+
+            for (int index = 0; index < 20; index++) {
+                this.drop("documento-" + index + ".txt", "Conteúdo do documento " + index);
+            }
+
+            this.awaitFiles("outbox", 20);
+
+            for (int index = 0; index < 20; index++) {
+                this.assertSigned("documento-" + index + ".txt", "Conteúdo do documento " + index);
+            }
+        } finally {
+            this.ingestionService.stop();
+            otherInstance.stop();
+        }
+
+        assertEquals(List.of(), this.list("inbox"));
+        assertEquals(List.of(), this.list("processing"));
+        assertEquals(List.of(), this.list("processing-2"));
+        assertEquals(20, this.ingestionService.getStats().signed() + otherInstance.getStats().signed());
+        assertEquals(0, this.ingestionService.getStats().failed() + otherInstance.getStats().failed());
+    }
+
+    @Test
+    @DisplayName("Erro inesperado na assinatura deve mover o arquivo para error e descartar a saída parcial")
+    void testMovesFileToErrorOnRuntimeException() throws Exception {
+        SigningService failingSigningService = mock(SigningService.class);
+        doThrow(new IllegalStateException("Falha no provedor criptográfico"))
+                .when(failingSigningService).signStream(any(InputStream.class), anyString(), anyBoolean(), any(), any(), anyBoolean(), any());
+
+        this.ingestionService = new DirectoryIngestionService(failingSigningService, keyRegistry, true, directory.toString(), "",
+                KEY_ID, "", 2, 0, 100, false, false);
+        this.ingestionService.start();
+        this.drop("documento.txt", "Documento com falha");
+
+        this.awaitFiles("error", 2);
+
+        assertEquals("Documento com falha", Files.readString(directory.resolve("error/documento.txt")));
+        assertTrue(Files.readString(directory.resolve("error/documento.txt.erro.txt")).contains("Falha no provedor criptográfico"));
+        assertEquals(List.of(), this.list("processing"));
+        assertFalse(Files.exists(directory.resolve("processing/documento.txt.p7m.part")));
+        assertEquals(1, this.ingestionService.getStats().failed());
+    }
+
+    // Como um produtor deve fazer: grava com outro nome e renomeia no inbox
+    private void drop(String filename, String content) throws Exception {
+        Path temporary = directory.resolve("inbox/" + filename + ".tmp");
+        Files.writeString(temporary, content);
+        Files.move(temporary, directory.resolve("inbox/" + filename), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void assertSigned(String filename, String content) throws Exception {
+        CMSSignedData signedData = new CMSSignedData(Files.readAllBytes(directory.resolve("outbox/" + filename + ".p7m")));
+
+        assertEquals(content, new String((byte[]) signedData.getSignedContent().getContent(), StandardCharsets.UTF_8));
+
+        SignerInformation signerInfo = signedData.getSignerInfos().getSigners().iterator().next();
+        X509CertificateHolder signerCert = (X509CertificateHolder) signedData.getCertificates().getMatches(signerInfo.getSID()).iterator().next();
+        assertTrue(signerInfo.verify(new JcaSimpleSignerInfoVerifierBuilder()
+                .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .build(signerCert)), "Assinatura de " + filename + " deve ser válida");
+    }
+
+    private void awaitFiles(String subdirectory, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000L;
+
+        while (this.list(subdirectory).size() < count) {
+            assertTrue(System.currentTimeMillis() < deadline, "Esperados " + count + " arquivos em " + subdirectory + ": " + this.list(subdirectory));
+            Thread.sleep(20);
+        }
+    }
+
+    private List<String> list(String subdirectory) throws Exception {
+        try (Stream<Path> files = Files.list(directory.resolve(subdirectory))) {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(filename -> !filename.endsWith(".part") || subdirectory.equals("inbox"))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.SignerResult;
+import com.arthurwinck.assinador.dto.SigningInfo;
+import com.arthurwinck.assinador.dto.VerifyOptions;
+import com.arthurwinck.assinador.dto.VerifyResponse;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.CMSSignedDataParser;
+import org.bouncycastle.cms.CMSTypedStream;
+import org.bouncycastle.operator.bc.BcDigestCalculatorProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.util.encoders.Base64;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "upload.mapped.directory=" + MappedUploadIntegrationTest.UPLOAD_DIRECTORY,
+        "upload.mapped.min-size-bytes=0"
+})
+class MappedUploadIntegrationTest {
+
+    static final String UPLOAD_DIRECTORY = "target/mapped-uploads";
+
+    // Maior que o buffer dos streams, para passar por vários blocos do mapeamento
+    private static final byte[] CONTENT = new byte[3 * 1024 * 1024 + 17];
+
+    private static SigningInfo signingInfo;
+
+    @Autowired
+    private MappedUploadService mappedUploadService;
+
+    @Autowired
+    private SigningService signingService;
+
+    @Autowired
+    private VerifyService verifyService;
+
+    @Autowired
+    private VerifyResultCache resultCache;
+
+    @Autowired
+    private SignatureArchiveService archiveService;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        new Random(42).nextBytes(CONTENT);
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+
+        X500Name subject = new X500Name("CN=Teste upload mapeado, O=Teste, C=BR");
+        Date notBefore = new Date(System.currentTimeMillis() - 60_000L);
+        X509CertificateHolder certificateHolder = new JcaX509v3CertificateBuilder(subject, BigInteger.valueOf(System.nanoTime()),
+                notBefore, new Date(notBefore.getTime() + 86_400_000L), subject, keyPair.getPublic())
+                .build(new JcaContentSignerBuilder("SHA256WITHECDSA").build(keyPair.getPrivate()));
+
+        signingInfo = new SigningInfo();
+        signingInfo.setPrivateKey(keyPair.getPrivate());
+        signingInfo.setX509Certificate(new JcaX509CertificateConverter().getCertificate(certificateHolder));
+        signingInfo.setCertificateHolderList(List.of(certificateHolder));
+        signingInfo.setSigningAttached(true);
+    }
+
+    @AfterEach
+    void assertUploadsRemoved() throws Exception {
+        try (Stream<Path> files = Files.list(Path.of(UPLOAD_DIRECTORY))) {
+            assertEquals(List.of(), files.toList(), "Arquivos temporários devem ser removidos no close");
+        }
+    }
+
+    @Test
+    @DisplayName("Assinatura attached de upload mapeado deve conter o documento, ser válida e ir para o arquivamento")
+    void testSignMappedAttached() throws Exception {
+        long written = archiveService.getStats().written();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (MappedFile mappedFile = this.map(CONTENT)) {
+            assertArrayEquals(HashService.digest(new ByteArrayInputStream(CONTENT), HashService.HashAlgorithm.SHA512),
+                    HashService.digest(mappedFile.getBuffer(), HashService.HashAlgorithm.SHA512));
+
+            signingService.signMapped(mappedFile, signingInfo, true, SigningService.SignatureEncoding.DER, null, outputStream);
+        }
+
+        byte[] signature = outputStream.toByteArray();
+        CMSSignedDataParser parser = new CMSSignedDataParser(new BcDigestCalculatorProvider(), signature);
+        CMSTypedStream signedContent = parser.getSignedContent();
+
+        try (InputStream contentStream = signedContent.getContentStream()) {
+            assertArrayEquals(CONTENT, contentStream.readAllBytes());
+        }
+
+        assertValid(verifyService.verify(new ByteArrayInputStream(signature), VerifyOptions.of(false, 0)));
+        assertEquals(written + 1, archiveService.getStats().written(), "Assinatura deve ser movida para o arquivamento");
+    }
+
+    @Test
+    @DisplayName("Assinatura attached em Base64 de upload mapeado deve ter o formato de signAttached(byte[])")
+    void testSignAttachedMapped() throws Exception {
+        String signature;
+
+        try (MappedFile mappedFile = this.map(CONTENT)) {
+            signature = signingService.signAttached(mappedFile, signingInfo, null);
+        }
+
+        CMSSignedDataParser parser = new CMSSignedDataParser(new BcDigestCalculatorProvider(), Base64.decode(signature));
+
+        try (InputStream contentStream = parser.getSignedContent().getContentStream()) {
+            assertArrayEquals(CONTENT, contentStream.readAllBytes());
+        }
+
+        assertValid(verifyService.verify(new ByteArrayInputStream(signature.getBytes(StandardCharsets.US_ASCII)), VerifyOptions.of(false, 0)));
+    }
+
+    @Test
+    @DisplayName("Assinatura detached em Base64 de upload mapeado deve ser válida para o hash do documento")
+    void testSignMappedDetached() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (MappedFile mappedFile = this.map(CONTENT)) {
+            signingService.signMapped(mappedFile, signingInfo, false, SigningService.SignatureEncoding.BASE64, null, outputStream);
+        }
+
+        byte[] signature = Base64.decode(outputStream.toByteArray());
+        String digest = Hex.toHexString(HashService.digest(new ByteArrayInputStream(CONTENT), HashService.HashAlgorithm.SHA256));
+
+        assertNull(new CMSSignedData(signature).getSignedContent());
+        assertValid(verifyService.verifyDigest(signature, digest, HashService.HashAlgorithm.SHA256));
+    }
+
+    @Test
+    @DisplayName("Verificação sobre o mapeamento deve ter o resultado do byte[] e usar o mesmo cache")
+    void testVerifyMappedSignature() throws Exception {
+        byte[] content = "Documento verificado a partir do mapeamento".getBytes(StandardCharsets.UTF_8);
+        byte[] signature = Base64.decode(signingService.signAttached(content, signingInfo));
+        VerifyOptions options = VerifyOptions.of(true, 0);
+
+        try (MappedFile mappedFile = this.map(signature)) {
+            VerifyResponse verifyResponse = verifyService.verify(mappedFile.getBuffer(), options);
+
+            assertValid(verifyResponse);
+            assertEquals(Hex.toHexString(content), verifyResponse.getOriginalData());
+
+            long hits = resultCache.getStats().hits();
+            assertEquals(verifyResponse.getOriginalData(), verifyService.verify(signature, options).getOriginalData());
+            assertEquals(hits + 1, resultCache.getStats().hits(), "Mesmo arquivo mapeado ou em byte[] deve ter a mesma chave");
+        }
+    }
+
+    @Test
+    @DisplayName("Co-assinatura de assinatura mapeada deve copiar o conteúdo do mapeamento")
+    void testCoSignMappedSignature() throws Exception {
+        ByteArrayOutputStream original = new ByteArrayOutputStream();
+        signingService.signStream(new ByteArrayInputStream(CONTENT), signingInfo, true, SigningService.SignatureEncoding.DER, original);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (MappedFile mappedFile = this.map(original.toByteArray())) {
+            SignedDataAppender signedData = signingService.openSignedData(mappedFile.getBuffer());
+            signingService.writeSignedData(signedData, signingService.coSign(signedData, signingInfo, null),
+                    SigningService.SignatureEncoding.DER, outputStream);
+        }
+
+        VerifyResponse verifyResponse = verifyService.verify(new ByteArrayInputStream(outputStream.toByteArray()), VerifyOptions.of(false, 0));
+
+        assertValid(verifyResponse);
+        assertEquals(2, verifyResponse.getSigners().size());
+    }
+
+    @Test
+    @DisplayName("Acima do limite de bytes mapeados ainda não coletados o upload deve seguir sem mapeamento")
+    void testFallsBackAboveLiveBytesLimit() throws Exception {
+        MappedUploadService limitedService = new MappedUploadService(true, UPLOAD_DIRECTORY, 0, CONTENT.length);
+
+        try (MappedFile mappedFile = limitedService.tryMap(MappedUploadIntegrationTest.upload(CONTENT))) {
+            assertNotNull(mappedFile);
+            assertNull(limitedService.tryMap(MappedUploadIntegrationTest.upload(CONTENT)));
+
+            // O close remove o arquivo, mas o mapeamento segue contado até o ByteBuffer ser coletado
+            mappedFile.close();
+            assertEquals(CONTENT.length, limitedService.getStats().liveBytes());
+        }
+
+        assertEquals(1, limitedService.getStats().mapped());
+        assertEquals(1, limitedService.getStats().fallbacks());
+    }
+
+    private MappedFile map(byte[] content) throws Exception {
+        MappedFile mappedFile = mappedUploadService.tryMap(MappedUploadIntegrationTest.upload(content));
+        assertNotNull(mappedFile, "Upload deve ser mapeado");
+        return mappedFile;
+    }
+
+    private static MockMultipartFile upload(byte[] content) {
+        return new MockMultipartFile("file", "documento.bin", "application/octet-stream", content);
+    }
+
+    private static void assertValid(VerifyResponse verifyResponse) {
+        for (SignerResult signerResult : verifyResponse.getSigners()) {
+            assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO, signerResult.getStatus(), signerResult.getError());
+        }
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO, verifyResponse.getStatus());
+    }
+}
@@ -0,0 +1,155 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.MerkleSignResult;
+import com.arthurwinck.assinador.dto.SigningInfo;
+import com.arthurwinck.assinador.dto.VerifyResponse;
+import com.arthurwinck.assinador.exception.VerifyValidationException;
+import org.bouncycastle.asn1.ASN1Primitive;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.util.encoders.Base64;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class MerkleSigningServiceIntegrationTest {
+
+    @Autowired
+    private MerkleSigningService merkleSigningService;
+
+    @Autowired
+    private SigningService signingService;
+
+    @Autowired
+    private VerifyService verifyService;
+
+    private SigningInfo signingInfo;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+
+        X500Name subject = new X500Name("CN=Teste lote Merkle, O=Teste, C=BR");
+        Date notBefore = new Date(System.currentTimeMillis() - 60_000L);
+        X509CertificateHolder certificateHolder = new JcaX509v3CertificateBuilder(subject, BigInteger.valueOf(System.nanoTime()),
+                notBefore, new Date(notBefore.getTime() + 86_400_000L), subject, keyPair.getPublic())
+                .build(new JcaContentSignerBuilder("SHA256WITHECDSA").build(keyPair.getPrivate()));
+
+        this.signingInfo = new SigningInfo();
+        this.signingInfo.setPrivateKey(keyPair.getPrivate());
+        this.signingInfo.setX509Certificate(new JcaX509CertificateConverter().getCertificate(certificateHolder));
+        this.signingInfo.setCertificateHolderList(List.of(certificateHolder));
+        this.signingInfo.setSigningAttached(true);
+    }
+
+    @Test
+    @DisplayName("Cada documento do lote deve ser válido com a assinatura da raiz e a sua prova de inclusão")
+    void testEveryDocumentVerifies() throws Exception {
+        List<Resource> documents = MerkleSigningServiceIntegrationTest.createDocuments(7);
+
+        MerkleSignResult result = merkleSigningService.sign(documents, HashService.HashAlgorithm.SHA512, signingInfo, null);
+        byte[] signature = Base64.decode(result.getSignature());
+
+        assertEquals(7, result.getTreeSize());
+        assertEquals(1, new CMSSignedData(signature).getSignerInfos().size(), "Lote deve ter uma única assinatura");
+
+        for (MerkleSignResult.DocumentProof documentProof : result.getDocuments()) {
+            VerifyResponse verifyResponse = verifyService.verifyMerkle(documents.get(documentProof.getIndex()).getInputStream(),
+                    signature, documentProof.getProof());
+
+            assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO, verifyResponse.getStatus(), verifyResponse.getError());
+            assertEquals(Boolean.TRUE, verifyResponse.getInclusionProofValid());
+            assertEquals(documentProof.getHash(), verifyResponse.getDocumentHash());
+        }
+    }
+
+    @Test
+    @DisplayName("Documento alterado ou com a prova de outro documento deve ser inválido")
+    void testRejectsDocumentOutsideBatch() throws Exception {
+        List<Resource> documents = MerkleSigningServiceIntegrationTest.createDocuments(5);
+
+        MerkleSignResult result = merkleSigningService.sign(documents, HashService.HashAlgorithm.SHA256, signingInfo, null);
+        byte[] signature = Base64.decode(result.getSignature());
+        String proof = result.getDocuments().get(2).getProof();
+
+        VerifyResponse alteredDocument = verifyService.verifyMerkle(
+                new ByteArrayInputStream("Documento 2 alterado".getBytes(StandardCharsets.UTF_8)), signature, proof);
+        VerifyResponse otherProof = verifyService.verifyMerkle(documents.get(3).getInputStream(), signature, proof);
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.INVALIDO, alteredDocument.getStatus());
+        assertEquals(Boolean.FALSE, alteredDocument.getInclusionProofValid());
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.INVALIDO, otherProof.getStatus());
+        assertEquals(Boolean.FALSE, otherProof.getInclusionProofValid());
+    }
+
+    @Test
+    @DisplayName("Prova com tamanho de árvore diferente do assinado deve ser rejeitada")
+    void testRejectsProofForAnotherTreeSize() throws Exception {
+        List<Resource> documents = MerkleSigningServiceIntegrationTest.createDocuments(11);
+
+        MerkleSignResult result = merkleSigningService.sign(documents, HashService.HashAlgorithm.SHA256, signingInfo, null);
+        MerkleTree.InclusionProof proof = MerkleTree.InclusionProof.getInstance(
+                ASN1Primitive.fromByteArray(Base64.decode(result.getDocuments().get(6).getProof())));
+        String resizedProof = MerkleSigningService.encodeProof(new MerkleTree.InclusionProof(6, 12, proof.auditPath()));
+
+        VerifyResponse verifyResponse = verifyService.verifyMerkle(documents.get(6).getInputStream(),
+                Base64.decode(result.getSignature()), resizedProof);
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.INVALIDO, verifyResponse.getStatus());
+    }
+
+    @Test
+    @DisplayName("Assinatura comum não deve ser aceita como assinatura de lote")
+    void testRejectsRegularSignature() throws Exception {
+        byte[] content = "Documento assinado individualmente".getBytes(StandardCharsets.UTF_8);
+        byte[] signature = Base64.decode(signingService.signAttached(content, signingInfo));
+        String proof = MerkleSigningService.encodeProof(new MerkleTree(List.of(content)).getInclusionProof(0));
+
+        VerifyValidationException exception = assertThrows(VerifyValidationException.class,
+                () -> verifyService.verifyMerkle(new ByteArrayInputStream(content), signature, proof));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+    }
+
+    private static List<Resource> createDocuments(int count) {
+        List<Resource> documents = new ArrayList<>();
+
+        for (int index = 0; index < count; index++) {
+            byte[] content = ("Documento " + index).getBytes(StandardCharsets.UTF_8);
+            int documentIndex = index;
+
+            documents.add(new ByteArrayResource(content) {
+                @Override
+                public String getFilename() {
+                    return "documento-" + documentIndex + ".txt";
+                }
+            });
+        }
+
+        return documents;
+    }
+}
@@ -0,0 +1,100 @@
+package com.arthurwinck.assinador.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MerkleTreeTest {
+
+    @Test
+    @DisplayName("Raiz deve ser a mesma da definição recursiva do RFC 6962")
+    void testRootMatchesRfc6962() throws Exception {
+        for (int size = 1; size <= 33; size++) {
+            List<byte[]> leaves = MerkleTreeTest.createLeaves(size);
+
+            assertArrayEquals(MerkleTreeTest.referenceRoot(leaves), new MerkleTree(leaves).getRoot(), "Árvore com " + size + " folhas");
+        }
+    }
+
+    @Test
+    @DisplayName("Prova de inclusão de cada folha deve levar à raiz")
+    void testInclusionProofs() {
+        for (int size = 1; size <= 33; size++) {
+            List<byte[]> leaves = MerkleTreeTest.createLeaves(size);
+            MerkleTree merkleTree = new MerkleTree(leaves);
+
+            for (int index = 0; index < size; index++) {
+                MerkleTree.InclusionProof proof = merkleTree.getInclusionProof(index);
+
+                assertTrue(MerkleTree.verifyInclusion(leaves.get(index), proof, merkleTree.getRoot()),
+                        "Folha " + index + " de " + size);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Prova adulterada, de outra folha ou com outro tamanho de árvore deve ser rejeitada")
+    void testRejectsTamperedProof() {
+        List<byte[]> leaves = MerkleTreeTest.createLeaves(11);
+        MerkleTree merkleTree = new MerkleTree(leaves);
+        byte[] root = merkleTree.getRoot();
+        MerkleTree.InclusionProof proof = merkleTree.getInclusionProof(6);
+
+        assertFalse(MerkleTree.verifyInclusion(leaves.get(5), proof, root));
+        assertFalse(MerkleTree.verifyInclusion(leaves.get(6), new MerkleTree.InclusionProof(7, 11, proof.auditPath()), root));
+        assertFalse(MerkleTree.verifyInclusion(leaves.get(6), new MerkleTree.InclusionProof(6, 7, proof.auditPath()), root));
+        assertFalse(MerkleTree.verifyInclusion(leaves.get(6), new MerkleTree.InclusionProof(11, 11, proof.auditPath()), root));
+
+        List<byte[]> tamperedPath = new ArrayList<>(proof.auditPath());
+        byte[] tamperedHash = tamperedPath.get(1).clone();
+        tamperedHash[0] ^= 1;
+        tamperedPath.set(1, tamperedHash);
+
+        assertFalse(MerkleTree.verifyInclusion(leaves.get(6), new MerkleTree.InclusionProof(6, 11, tamperedPath), root));
+    }
+
+    @Test
+    @DisplayName("Prova deve ser preservada na codificação ASN.1")
+    void testInclusionProofEncoding() {
+        List<byte[]> leaves = MerkleTreeTest.createLeaves(5);
+        MerkleTree merkleTree = new MerkleTree(leaves);
+
+        MerkleTree.InclusionProof decoded = MerkleTree.InclusionProof.getInstance(merkleTree.getInclusionProof(4).toASN1Primitive());
+
+        assertEquals(4, decoded.leafIndex());
+        assertEquals(5, decoded.treeSize());
+        assertTrue(MerkleTree.verifyInclusion(leaves.get(4), decoded, merkleTree.getRoot()));
+    }
+
+    private static List<byte[]> createLeaves(int size) {
+        List<byte[]> leaves = new ArrayList<>();
+
+        for (int index = 0; index < size; index++) {
+            leaves.add(("assinatura-" + index).getBytes(StandardCharsets.UTF_8));
+        }
+
+        return leaves;
+    }
+
+    // MTH(D[n]) do RFC 6962, seção 2.1
+    private static byte[] referenceRoot(List<byte[]> leaves) throws Exception {
+        MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+
+        if (leaves.size() == 1) {
+            messageDigest.update((byte) 0x00);
+            return messageDigest.digest(leaves.get(0));
+        }
+
+        int split = Integer.highestOneBit(leaves.size() - 1);
+
+        messageDigest.update((byte) 0x01);
+        messageDigest.update(MerkleTreeTest.referenceRoot(leaves.subList(0, split)));
+        return messageDigest.digest(MerkleTreeTest.referenceRoot(leaves.subList(split, leaves.size())));
+    }
+}
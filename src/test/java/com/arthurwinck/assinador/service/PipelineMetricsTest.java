@@ -0,0 +1,77 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.exception.InvalidSignatureFileException;
+import com.arthurwinck.assinador.exception.SigningKeyNotFoundException;
+import com.arthurwinck.assinador.exception.SigningValidationException;
+import com.arthurwinck.assinador.exception.VerifyValidationException;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.security.UnrecoverableKeyException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineMetricsTest {
+
+    @Test
+    @DisplayName("Deve registrar o tempo de cada etapa com as tags de operação e etapa")
+    void testRecordsStageTimers() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PipelineMetrics metrics = new PipelineMetrics(meterRegistry, true, false);
+
+        long start = metrics.start();
+        metrics.stop(PipelineMetrics.Stage.CMS_GENERATION, start);
+        metrics.stop(PipelineMetrics.Stage.CMS_GENERATION, metrics.start());
+        metrics.recordPayloadSize(PipelineMetrics.Operation.VERIFY, 2048);
+
+        Timer timer = meterRegistry.get(PipelineMetrics.STAGE_TIMER)
+                .tag("operation", "sign")
+                .tag("stage", "cms_generation")
+                .timer();
+
+        assertEquals(2, timer.count());
+        assertEquals(0, meterRegistry.get(PipelineMetrics.STAGE_TIMER).tag("stage", "parse").timer().count());
+        assertEquals(2048, meterRegistry.get(PipelineMetrics.PAYLOAD_SUMMARY).tag("operation", "verify").summary().totalAmount());
+    }
+
+    @Test
+    @DisplayName("Deve contar erros pelo ErrorType ou pela exceção específica")
+    void testCountsErrorsByErrorType() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PipelineMetrics metrics = new PipelineMetrics(meterRegistry, true, false);
+
+        SigningValidationException signingError = SigningValidationException.from(new UnrecoverableKeyException());
+        assertSame(signingError, metrics.recordError(signingError));
+        metrics.recordError(SigningValidationException.from(new UnrecoverableKeyException()));
+        metrics.recordError(new SigningKeyNotFoundException("chave"));
+        metrics.recordError(VerifyValidationException.from(new InvalidSignatureFileException("arquivo inválido")));
+
+        assertEquals(2, meterRegistry.get(PipelineMetrics.ERROR_COUNTER)
+                .tag("operation", "sign")
+                .tag("errorType", "UNRECOVERABLE_KEY_EXCEPTION")
+                .counter().count());
+        assertEquals(1, meterRegistry.get(PipelineMetrics.ERROR_COUNTER)
+                .tag("errorType", "SigningKeyNotFoundException")
+                .counter().count());
+        assertEquals(1, meterRegistry.get(PipelineMetrics.ERROR_COUNTER)
+                .tag("operation", "verify")
+                .tag("errorType", "INVALID_FILE_EXCEPTION")
+                .counter().count());
+    }
+
+    @Test
+    @DisplayName("Desabilitado não deve registrar métricas")
+    void testDisabledRegistersNothing() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PipelineMetrics metrics = new PipelineMetrics(meterRegistry, false, false);
+
+        assertEquals(0L, metrics.start());
+        metrics.stop(PipelineMetrics.Stage.PARSE, 0L);
+        metrics.recordPayloadSize(PipelineMetrics.Operation.SIGN, 10);
+        metrics.recordError(SigningValidationException.from(new UnrecoverableKeyException()));
+
+        assertTrue(meterRegistry.getMeters().isEmpty());
+    }
+}
@@ -0,0 +1,69 @@
+package com.arthurwinck.assinador.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RevokedSerialIndexTest {
+
+    @Test
+    @DisplayName("Deve encontrar todos os números de série revogados e nenhum outro")
+    void testContainsRandomSerials() {
+        Random random = new Random(42);
+        List<BigInteger> revoked = new ArrayList<>();
+
+        // Tamanhos variados, incluindo séries de 20 bytes com o bit mais alto ligado
+        for (int i = 0; i < 10_000; i++) {
+            revoked.add(new BigInteger(1 + random.nextInt(160), random));
+        }
+
+        RevokedSerialIndex index = RevokedSerialIndex.of(revoked);
+
+        for (BigInteger serial : revoked) {
+            assertTrue(index.contains(serial), "Série revogada não encontrada: " + serial);
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            BigInteger serial = new BigInteger(1 + random.nextInt(160), random);
+            assertEquals(revoked.contains(serial), index.contains(serial));
+        }
+    }
+
+    @Test
+    @DisplayName("Deve diferenciar séries com os mesmos bytes e tamanhos diferentes")
+    void testLeadingZerosDoNotCollide() {
+        RevokedSerialIndex index = RevokedSerialIndex.of(List.of(BigInteger.valueOf(0x01_00), BigInteger.valueOf(0xFF)));
+
+        assertTrue(index.contains(BigInteger.valueOf(0x01_00)));
+        assertTrue(index.contains(BigInteger.valueOf(0xFF)));
+        assertFalse(index.contains(BigInteger.ONE));
+        assertFalse(index.contains(BigInteger.ZERO));
+        assertFalse(index.contains(new BigInteger("0100", 16).shiftLeft(160)), "Série maior que qualquer revogada");
+    }
+
+    @Test
+    @DisplayName("Deve ignorar séries repetidas e aceitar séries negativas")
+    void testDuplicatesAndNegativeSerials() {
+        RevokedSerialIndex index = RevokedSerialIndex.of(List.of(BigInteger.TEN, BigInteger.TEN, BigInteger.valueOf(-5)));
+
+        assertEquals(2, index.size());
+        assertTrue(index.contains(BigInteger.TEN));
+        assertTrue(index.contains(BigInteger.valueOf(-5)));
+        assertFalse(index.contains(BigInteger.valueOf(5)));
+    }
+
+    @Test
+    @DisplayName("LCR sem entradas não deve conter nenhuma série")
+    void testEmptyIndex() {
+        RevokedSerialIndex index = RevokedSerialIndex.of(List.of());
+
+        assertEquals(0, index.size());
+        assertFalse(index.contains(BigInteger.ONE));
+    }
+}
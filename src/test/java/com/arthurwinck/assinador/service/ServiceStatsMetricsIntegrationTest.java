@@ -0,0 +1,38 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.VerifyOptions;
+import com.arthurwinck.assinador.dto.VerifyResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ServiceStatsMetricsIntegrationTest {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private VerifyResultCache verifyResultCache;
+
+    @Test
+    @DisplayName("Contadores de getStats() devem ser expostos no registry de métricas")
+    void testBindsServiceStats() throws Exception {
+        double misses = this.meterRegistry.get(ServiceStatsMetrics.CACHE_MISSES).tag("cache", "verify_result").functionCounter().count();
+
+        this.verifyResultCache.get("arquivo para as métricas".getBytes(), new VerifyOptions(), VerifyResponse::new);
+
+        assertEquals(misses + 1, this.meterRegistry.get(ServiceStatsMetrics.CACHE_MISSES).tag("cache", "verify_result").functionCounter().count());
+        assertEquals(this.verifyResultCache.getStats().size(), this.meterRegistry.get(ServiceStatsMetrics.CACHE_SIZE).tag("cache", "verify_result").gauge().value());
+
+        for (String meterName : new String[] {"assinador.crl.reloads", "assinador.archive.queue.size", "assinador.timestamp.tsa_requests", "assinador.ingestion.in_flight"}) {
+            assertNotNull(this.meterRegistry.find(meterName).meter(), meterName + " deve estar registrado");
+        }
+        assertNotNull(this.meterRegistry.find(ServiceStatsMetrics.CACHE_HITS).tag("cache", "signer_verifier").functionCounter());
+        assertNotNull(this.meterRegistry.find(ServiceStatsMetrics.CACHE_HITS).tag("cache", "certificate_chain").functionCounter());
+    }
+}
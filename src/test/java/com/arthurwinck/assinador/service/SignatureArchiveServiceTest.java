@@ -0,0 +1,228 @@
+package com.arthurwinck.assinador.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignatureArchiveServiceTest {
+
+    @TempDir
+    Path archiveDirectory;
+
+    private List<Path> listArchivedFiles() throws Exception {
+        try (Stream<Path> files = Files.list(this.archiveDirectory)) {
+            return files.toList();
+        }
+    }
+
+    @Test
+    @DisplayName("Deve gravar todas as assinaturas com nomes únicos mesmo no mesmo segundo")
+    void testArchivesWithUniqueFilenames() throws Exception {
+        SignatureArchiveService archiveService = new SignatureArchiveService(true, this.archiveDirectory.toString(), 1000, 1_048_576, 16, false, 50);
+        archiveService.start();
+
+        Set<String> filenames = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            filenames.add(archiveService.archive(("assinatura " + i).getBytes()));
+        }
+
+        archiveService.stop();
+
+        assertEquals(200, filenames.size(), "Nomes de arquivo não podem colidir");
+        assertEquals(200, this.listArchivedFiles().size());
+        assertEquals(200, archiveService.getStats().written());
+        assertEquals(0, archiveService.getStats().failed());
+
+        Path first = this.listArchivedFiles().stream().sorted().findFirst().orElseThrow();
+        assertTrue(first.getFileName().toString().endsWith(SigningService.SIGNATURE_FILE_EXTENSION));
+    }
+
+    @Test
+    @DisplayName("Assinaturas aceitas durante o encerramento devem ser gravadas")
+    void testArchivesSignaturesSubmittedDuringStop() throws Exception {
+        SignatureArchiveService archiveService = new SignatureArchiveService(true, this.archiveDirectory.toString(), 1000, 1_048_576, 16, false, 50);
+        archiveService.start();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<String>> filenames = new ArrayList<>();
+        Future<?> stopped = null;
+
+        try {
+            for (int i = 0; i < 400; i++) {
+                byte[] signature = ("assinatura " + i).getBytes();
+                filenames.add(executor.submit(() -> archiveService.archive(signature)));
+
+                if (i == 200) {
+                    stopped = executor.submit(() -> {
+                        archiveService.stop();
+                        return null;
+                    });
+                }
+            }
+
+            stopped.get();
+
+            for (Future<String> filename : filenames) {
+                assertTrue(Files.exists(this.archiveDirectory.resolve(filename.get())), "Assinatura aceita não foi gravada: " + filename.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(400, archiveService.getStats().written());
+    }
+
+    @Test
+    @DisplayName("Falha em uma assinatura não deve encerrar a thread de escrita e deve aparecer nas estatísticas")
+    void testWriterSurvivesFailedEntry() throws Exception {
+        SignatureArchiveService archiveService = new SignatureArchiveService(true, this.archiveDirectory.toString(), 10, 1_048_576, 16, true, 50);
+        archiveService.start();
+
+        // Assinatura nula falha dentro do lote (NullPointerException ao gravar)
+        archiveService.archive((byte[]) null);
+        this.awaitStats(archiveService, stats -> stats.failed() == 1);
+
+        assertTrue(archiveService.getStats().writerAlive());
+        assertNotNull(archiveService.getStats().lastError());
+
+        String filename = archiveService.archive("assinatura".getBytes());
+        this.awaitStats(archiveService, stats -> stats.written() == 1);
+
+        assertTrue(archiveService.getStats().writerAlive());
+        assertNull(archiveService.getStats().lastError(), "Lote gravado com sucesso limpa o último erro");
+        assertEquals(List.of(this.archiveDirectory.resolve(filename)), this.listArchivedFiles());
+
+        archiveService.stop();
+    }
+
+    private void awaitStats(SignatureArchiveService archiveService, Predicate<SignatureArchiveService.ArchiveStats> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000L;
+
+        while (!condition.test(archiveService.getStats())) {
+            assertTrue(System.currentTimeMillis() < deadline, "Estatísticas não atingidas: " + archiveService.getStats());
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    @DisplayName("Com a fila cheia a assinatura deve ser gravada na própria thread")
+    void testFullQueueFallsBackToSynchronousWrite() throws Exception {
+        // Serviço não iniciado: nenhuma thread consome a fila
+        SignatureArchiveService archiveService = new SignatureArchiveService(true, this.archiveDirectory.toString(), 1, 1_048_576, 16, true, 0);
+
+        String filename = archiveService.archive("assinatura".getBytes());
+
+        assertNotNull(filename);
+        assertArrayEquals("assinatura".getBytes(), Files.readAllBytes(this.archiveDirectory.resolve(filename)));
+        assertEquals(1, archiveService.getStats().synchronousWrites());
+    }
+
+    @Test
+    @DisplayName("Assinatura maior que o limite de bytes da fila deve ser gravada na própria thread")
+    void testOversizedSignatureFallsBackToSynchronousWrite() throws Exception {
+        // Serviço iniciado: a assinatura pequena passa pela fila, a grande não é retida no heap
+        SignatureArchiveService archiveService = new SignatureArchiveService(true, this.archiveDirectory.toString(), 1000, 1024, 16, false, 50);
+        archiveService.start();
+
+        byte[] largeSignature = new byte[2048];
+        String largeFilename = archiveService.archive(largeSignature);
+        archiveService.archive("assinatura".getBytes());
+        archiveService.stop();
+
+        assertArrayEquals(largeSignature, Files.readAllBytes(this.archiveDirectory.resolve(largeFilename)));
+        assertEquals(1, archiveService.getStats().enqueued());
+        assertEquals(1, archiveService.getStats().synchronousWrites());
+        assertEquals(0, archiveService.getStats().queueBytes());
+        assertEquals(2, this.listArchivedFiles().size());
+    }
+
+    @Test
+    @DisplayName("Assinaturas detached devem ser arquivadas como .p7s e attached como .p7m")
+    void testArchivesDetachedAsP7s() throws Exception {
+        SignatureArchiveService archiveService = new SignatureArchiveService(true, this.archiveDirectory.toString(), 1, 1_048_576, 16, false, 0);
+
+        String attached = archiveService.archive("assinatura attached".getBytes(), true);
+        String detached = archiveService.archive("assinatura detached".getBytes(), false);
+
+        String streamed;
+        try (SignatureArchiveService.ArchiveOutputStream archiveOutputStream = archiveService.openArchiveStream(false)) {
+            streamed = archiveOutputStream.getFilename();
+            archiveOutputStream.write("assinatura detached em streaming".getBytes());
+            archiveOutputStream.complete();
+        }
+
+        assertTrue(attached.endsWith(SigningService.SIGNATURE_FILE_EXTENSION));
+        assertTrue(detached.endsWith(SigningService.DETACHED_SIGNATURE_FILE_EXTENSION));
+        assertTrue(streamed.endsWith(SigningService.DETACHED_SIGNATURE_FILE_EXTENSION));
+        assertArrayEquals("assinatura detached".getBytes(), Files.readAllBytes(this.archiveDirectory.resolve(detached)));
+        assertEquals(3, this.listArchivedFiles().size());
+    }
+
+    @Test
+    @DisplayName("Com fsync, assinaturas em streaming e já gravadas em arquivo devem ser arquivadas")
+    void testFsyncArchivesStreamedAndFileSignatures(@TempDir Path workDirectory) throws Exception {
+        SignatureArchiveService archiveService = new SignatureArchiveService(true, this.archiveDirectory.toString(), 1, 1_048_576, 16, true, 0);
+
+        try (SignatureArchiveService.ArchiveOutputStream archiveOutputStream = archiveService.openArchiveStream()) {
+            archiveOutputStream.write("assinatura em streaming".getBytes());
+            archiveOutputStream.complete();
+        }
+
+        Path signedFile = Files.writeString(workDirectory.resolve("assinatura-mapeada.p7m"), "assinatura mapeada");
+        String filename = archiveService.archive(signedFile, true);
+
+        assertEquals("assinatura mapeada", Files.readString(this.archiveDirectory.resolve(filename)));
+        assertFalse(Files.exists(signedFile));
+        assertEquals(2, this.listArchivedFiles().size());
+        assertEquals(2, archiveService.getStats().written());
+        assertEquals(0, archiveService.getStats().failed());
+    }
+
+    @Test
+    @DisplayName("Arquivamento desabilitado não deve gravar arquivos")
+    void testDisabledArchiveWritesNothing() throws Exception {
+        SignatureArchiveService archiveService = new SignatureArchiveService(false, this.archiveDirectory.toString(), 10, 1_048_576, 16, false, 50);
+        archiveService.start();
+
+        assertNull(archiveService.archive("assinatura".getBytes()));
+
+        archiveService.stop();
+        assertTrue(this.listArchivedFiles().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Assinatura em streaming só deve ser mantida quando concluída")
+    void testArchiveStreamKeepsOnlyCompletedSignatures() throws Exception {
+        SignatureArchiveService archiveService = new SignatureArchiveService(true, this.archiveDirectory.toString(), 1, 1_048_576, 16, false, 0);
+
+        String filename;
+        try (SignatureArchiveService.ArchiveOutputStream archiveOutputStream = archiveService.openArchiveStream()) {
+            filename = archiveOutputStream.getFilename();
+            archiveOutputStream.write("assinatura em streaming".getBytes());
+            archiveOutputStream.complete();
+        }
+
+        // Assinatura interrompida (ex: cliente desconectou) não deixa arquivo parcial
+        try (SignatureArchiveService.ArchiveOutputStream archiveOutputStream = archiveService.openArchiveStream()) {
+            archiveOutputStream.write("assinatura incompleta".getBytes());
+        }
+
+        assertEquals(List.of(this.archiveDirectory.resolve(filename)), this.listArchivedFiles());
+        assertArrayEquals("assinatura em streaming".getBytes(), Files.readAllBytes(this.archiveDirectory.resolve(filename)));
+        assertEquals(1, archiveService.getStats().written());
+    }
+}
@@ -0,0 +1,216 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.SignerResult;
+import com.arthurwinck.assinador.dto.SigningInfo;
+import com.arthurwinck.assinador.dto.VerifyOptions;
+import com.arthurwinck.assinador.dto.VerifyResponse;
+import com.arthurwinck.assinador.exception.InvalidSignedDataException;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.SignerInformationStore;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.util.encoders.Base64;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class SignedDataAppenderIntegrationTest {
+
+    private static final byte[] CONTENT = "Contrato assinado por várias partes".getBytes(StandardCharsets.UTF_8);
+
+    private static SigningInfo firstSigner;
+    private static SigningInfo secondSigner;
+    private static SigningInfo rsaSigner;
+
+    @Autowired
+    private SigningService signingService;
+
+    @Autowired
+    private VerifyService verifyService;
+
+    @BeforeAll
+    static void setUpSigners() throws Exception {
+        firstSigner = SignedDataAppenderIntegrationTest.createSigningInfo("EC", "CN=Primeira parte, O=Teste, C=BR");
+        secondSigner = SignedDataAppenderIntegrationTest.createSigningInfo("EC", "CN=Segunda parte, O=Teste, C=BR");
+        rsaSigner = SignedDataAppenderIntegrationTest.createSigningInfo("RSA", "CN=Terceira parte, O=Teste, C=BR");
+    }
+
+    @Test
+    @DisplayName("Co-assinatura deve manter o conteúdo e o assinante original, ambos válidos")
+    void testCoSignKeepsContentAndSigners() throws Exception {
+        byte[] original = Base64.decode(signingService.signAttached(CONTENT, firstSigner));
+
+        byte[] coSigned = this.coSign(original, secondSigner, null);
+        CMSSignedData cmsSignedData = new CMSSignedData(coSigned);
+
+        assertArrayEquals(CONTENT, (byte[]) cmsSignedData.getSignedContent().getContent());
+        assertEquals(2, cmsSignedData.getSignerInfos().size());
+        assertArrayEquals(new CMSSignedData(original).getSignerInfos().iterator().next().toASN1Structure().getEncoded(),
+                cmsSignedData.getSignerInfos().iterator().next().toASN1Structure().getEncoded(), "Assinante original deve ser mantido como estava");
+
+        VerifyResponse verifyResponse = this.assertValid(coSigned);
+        assertEquals("CN=Segunda parte,O=Teste,C=BR", verifyResponse.getSigners().get(1).getSubject());
+    }
+
+    @Test
+    @DisplayName("Co-assinatura de assinatura em streaming (BER) com outro tipo de chave deve ser válida")
+    void testCoSignStreamingSignatureWithOtherKeyType() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        signingService.signStream(new ByteArrayInputStream(CONTENT), firstSigner, true, SigningService.SignatureEncoding.DER, outputStream);
+
+        byte[] coSigned = this.coSign(outputStream.toByteArray(), rsaSigner, null);
+
+        // RSA usaria SHA-512, mas reaproveita o hash SHA-256 do assinante existente
+        VerifyResponse verifyResponse = this.assertValid(coSigned);
+        assertEquals("SHA256WITHRSA", verifyResponse.getSigners().get(1).getSignatureAlgorithm());
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO,
+                verifyService.verify(new ByteArrayInputStream(coSigned), VerifyOptions.of(false, 0)).getStatus());
+    }
+
+    @Test
+    @DisplayName("Co-assinatura com hash diferente dos assinantes existentes deve calcular o hash do conteúdo")
+    void testCoSignHashesContentForOtherDigest() throws Exception {
+        byte[] original = Base64.decode(signingService.signAttached(CONTENT, firstSigner));
+
+        byte[] coSigned = this.coSign(original, secondSigner, SigningService.SignatureAlgorithm.SHA512_WITH_ECDSA);
+
+        VerifyResponse verifyResponse = this.assertValid(coSigned);
+        assertEquals("SHA512WITHECDSA", verifyResponse.getSigners().get(1).getSignatureAlgorithm());
+    }
+
+    @Test
+    @DisplayName("Co-assinatura detached sem assinante de hash compatível deve ser recusada")
+    void testCoSignDetachedWithoutCompatibleDigest() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        signingService.signStream(new ByteArrayInputStream(CONTENT), firstSigner, false, SigningService.SignatureEncoding.DER, outputStream);
+        SignedDataAppender signedData = signingService.openSignedData(ByteBuffer.wrap(outputStream.toByteArray()));
+
+        InvalidSignedDataException exception = assertThrows(InvalidSignedDataException.class,
+                () -> signingService.coSign(signedData, secondSigner, SigningService.SignatureAlgorithm.SHA512_WITH_ECDSA));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+    }
+
+    @Test
+    @DisplayName("Contra-assinatura deve ser verificada junto com o assinante")
+    void testCounterSign() throws Exception {
+        byte[] original = Base64.decode(signingService.signAttached(CONTENT, firstSigner));
+        SignedDataAppender signedData = signingService.openSignedData(ByteBuffer.wrap(original));
+
+        byte[] counterSigned = this.write(signedData, signingService.counterSign(signedData, 0, secondSigner, null));
+
+        VerifyResponse verifyResponse = this.assertValid(counterSigned);
+        List<SignerResult> counterSigners = verifyResponse.getSigners().get(0).getCounterSigners();
+
+        assertEquals(1, verifyResponse.getSigners().size());
+        assertEquals(1, counterSigners.size());
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO, counterSigners.get(0).getStatus());
+        assertEquals("CN=Segunda parte,O=Teste,C=BR", counterSigners.get(0).getSubject());
+    }
+
+    @Test
+    @DisplayName("Contra-assinatura de outra assinatura deve invalidar o assinante")
+    void testRejectsCounterSignatureFromAnotherSignature() throws Exception {
+        byte[] first = Base64.decode(signingService.signAttached(CONTENT, firstSigner));
+        byte[] second = Base64.decode(signingService.signAttached("Outro documento".getBytes(StandardCharsets.UTF_8), firstSigner));
+
+        SignedDataAppender signedData = signingService.openSignedData(ByteBuffer.wrap(first));
+        CMSSignedData counterSigned = new CMSSignedData(this.write(signedData, signingService.counterSign(signedData, 0, secondSigner, null)));
+        CMSSignedData secondSignedData = new CMSSignedData(second);
+
+        SignerInformation secondSignerInformation = secondSignedData.getSignerInfos().iterator().next();
+        SignerInformation tampered = SignerInformation.replaceUnsignedAttributes(secondSignerInformation,
+                counterSigned.getSignerInfos().iterator().next().getUnsignedAttributes());
+
+        List<SignerInformation> signers = new ArrayList<>(List.of(tampered));
+        CMSSignedData tamperedSignedData = CMSSignedData.replaceCertificatesAndCRLs(
+                CMSSignedData.replaceSigners(secondSignedData, new SignerInformationStore(signers)),
+                counterSigned.getCertificates(), null, null);
+
+        VerifyResponse verifyResponse = verifyService.verify(tamperedSignedData.getEncoded());
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.INVALIDO, verifyResponse.getStatus());
+        assertTrue(verifyResponse.getSigners().get(0).getError().startsWith("Contra-assinatura 0 inválida"));
+    }
+
+    @Test
+    @DisplayName("Contra-assinatura de assinante inexistente deve ser recusada")
+    void testCounterSignUnknownSigner() throws Exception {
+        SignedDataAppender signedData = signingService.openSignedData(ByteBuffer.wrap(Base64.decode(signingService.signAttached(CONTENT, firstSigner))));
+
+        assertThrows(InvalidSignedDataException.class, () -> signingService.counterSign(signedData, 1, secondSigner, null));
+    }
+
+    private byte[] coSign(byte[] signature, SigningInfo signingInfo, SigningService.SignatureAlgorithm signatureAlgorithm) throws Exception {
+        SignedDataAppender signedData = signingService.openSignedData(ByteBuffer.wrap(signature));
+
+        return this.write(signedData, signingService.coSign(signedData, signingInfo, signatureAlgorithm));
+    }
+
+    private byte[] write(SignedDataAppender signedData, SignedDataAppender.Additions additions) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        signingService.writeSignedData(signedData, additions, SigningService.SignatureEncoding.DER, outputStream);
+
+        return outputStream.toByteArray();
+    }
+
+    private VerifyResponse assertValid(byte[] signature) throws Exception {
+        VerifyResponse verifyResponse = verifyService.verify(signature, VerifyOptions.of(false, 0, VerifyOptions.VerifyPolicy.ALL));
+
+        for (SignerResult signerResult : verifyResponse.getSigners()) {
+            assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO, signerResult.getStatus(), signerResult.getError());
+        }
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO, verifyResponse.getStatus());
+        return verifyResponse;
+    }
+
+    private static SigningInfo createSigningInfo(String keyAlgorithm, String subjectName) throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(keyAlgorithm);
+
+        if ("EC".equals(keyAlgorithm)) {
+            keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        } else {
+            keyPairGenerator.initialize(2048);
+        }
+
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+        String certificateAlgorithm = "EC".equals(keyAlgorithm) ? "SHA256WITHECDSA" : "SHA256WITHRSA";
+
+        X500Name subject = new X500Name(subjectName);
+        Date notBefore = new Date(System.currentTimeMillis() - 60_000L);
+        X509CertificateHolder certificateHolder = new JcaX509v3CertificateBuilder(subject, BigInteger.valueOf(System.nanoTime()),
+                notBefore, new Date(notBefore.getTime() + 86_400_000L), subject, keyPair.getPublic())
+                .build(new JcaContentSignerBuilder(certificateAlgorithm).build(keyPair.getPrivate()));
+
+        SigningInfo signingInfo = new SigningInfo();
+        signingInfo.setPrivateKey(keyPair.getPrivate());
+        signingInfo.setX509Certificate(new JcaX509CertificateConverter().getCertificate(certificateHolder));
+        signingInfo.setCertificateHolderList(List.of(certificateHolder));
+        signingInfo.setSigningAttached(true);
+
+        return signingInfo;
+    }
+}
@@ -0,0 +1,88 @@
+package com.arthurwinck.assinador.service;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.SignerId;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.util.CollectionStore;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignerCertificateIndexTest {
+
+    private static KeyPair keyPair;
+
+    @BeforeAll
+    static void setUpKeyPair() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(256);
+        keyPair = keyPairGenerator.generateKeyPair();
+    }
+
+    private static X509CertificateHolder createCertificate(String subject, long serialNumber, boolean withSubjectKeyIdentifier) throws Exception {
+        X500Name name = new X500Name("CN=" + subject);
+        Date notBefore = new Date();
+
+        X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(name, BigInteger.valueOf(serialNumber),
+                notBefore, new Date(notBefore.getTime() + 86_400_000L), name, keyPair.getPublic());
+
+        if (withSubjectKeyIdentifier) {
+            builder.addExtension(Extension.subjectKeyIdentifier, false,
+                    new JcaX509ExtensionUtils().createSubjectKeyIdentifier(keyPair.getPublic()));
+        }
+
+        return builder.build(new JcaContentSignerBuilder("SHA256WITHECDSA").build(keyPair.getPrivate()));
+    }
+
+    @Test
+    @DisplayName("Deve localizar o certificado do assinante por emissor e número de série")
+    void testFindByIssuerAndSerial() throws Exception {
+        List<X509CertificateHolder> certificates = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            certificates.add(createCertificate("Assinante " + i, i + 1, false));
+        }
+
+        SignerCertificateIndex index = new SignerCertificateIndex(new CollectionStore<>(certificates));
+
+        X509CertificateHolder expected = certificates.get(37);
+        assertSame(expected, index.find(new SignerId(expected.getIssuer(), expected.getSerialNumber())));
+        assertNull(index.find(new SignerId(expected.getIssuer(), BigInteger.valueOf(999))),
+                "Número de série de outro certificado não pode ser encontrado");
+        assertEquals(50, index.size());
+    }
+
+    @Test
+    @DisplayName("Deve localizar o certificado do assinante pelo SubjectKeyIdentifier")
+    void testFindBySubjectKeyIdentifier() throws Exception {
+        X509CertificateHolder withExtension = createCertificate("Com extensão", 1, true);
+        X509CertificateHolder withoutExtension = createCertificate("Sem extensão", 2, false);
+
+        byte[] subjectKeyIdentifier = new JcaX509ExtensionUtils().createSubjectKeyIdentifier(keyPair.getPublic()).getKeyIdentifier();
+
+        // Mesma chave pública nos dois certificados: o índice mantém o primeiro, como a busca linear
+        SignerCertificateIndex index = new SignerCertificateIndex(new CollectionStore<>(List.of(withExtension, withoutExtension)));
+        SignerId signerId = new SignerId(subjectKeyIdentifier);
+
+        assertSame(withExtension, index.find(signerId));
+        assertTrue(signerId.match(index.find(signerId)));
+
+        // Sem a extensão o certificado não é encontrado pelo identificador, mesma regra do SignerId.match
+        SignerCertificateIndex indexWithoutExtension = new SignerCertificateIndex(new CollectionStore<>(List.of(withoutExtension)));
+        assertNull(indexWithoutExtension.find(signerId));
+        assertFalse(signerId.match(withoutExtension));
+    }
+}
@@ -0,0 +1,91 @@
+package com.arthurwinck.assinador.service;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.SignerInformationVerifier;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignerVerifierCacheTest {
+
+    private static KeyPair keyPair;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(256);
+        keyPair = keyPairGenerator.generateKeyPair();
+    }
+
+    private static X509CertificateHolder createCertificate(long serialNumber) throws Exception {
+        X500Name name = new X500Name("CN=Assinante " + serialNumber);
+        Date notBefore = new Date();
+
+        return new JcaX509v3CertificateBuilder(name, BigInteger.valueOf(serialNumber), notBefore,
+                new Date(notBefore.getTime() + 86_400_000L), name, keyPair.getPublic())
+                .build(new JcaContentSignerBuilder("SHA256WITHECDSA").build(keyPair.getPrivate()));
+    }
+
+    @Test
+    @DisplayName("Deve reaproveitar o verificador para o mesmo certificado")
+    void testReusesVerifierForSameCertificate() throws Exception {
+        SignerVerifierCache cache = new SignerVerifierCache(true, 10);
+        X509CertificateHolder certificate = createCertificate(1);
+
+        SignerInformationVerifier first = cache.get(certificate);
+        // Mesmo certificado lido novamente de outro documento
+        SignerInformationVerifier second = cache.get(new X509CertificateHolder(certificate.getEncoded()));
+
+        assertSame(first, second);
+        assertEquals(1, cache.getStats().hits());
+        assertEquals(1, cache.getStats().misses());
+        assertEquals(1, cache.getStats().size());
+    }
+
+    @Test
+    @DisplayName("Deve remover o verificador menos usado ao atingir o limite")
+    void testEvictsLeastRecentlyUsed() throws Exception {
+        SignerVerifierCache cache = new SignerVerifierCache(true, 2);
+        X509CertificateHolder first = createCertificate(1);
+        X509CertificateHolder second = createCertificate(2);
+        X509CertificateHolder third = createCertificate(3);
+
+        SignerInformationVerifier firstVerifier = cache.get(first);
+        cache.get(second);
+        cache.get(first);
+        cache.get(third);
+
+        assertSame(firstVerifier, cache.get(first), "Certificado usado recentemente deve permanecer no cache");
+        assertEquals(1, cache.getStats().evictions());
+        assertEquals(2, cache.getStats().size());
+
+        cache.get(second);
+        assertEquals(4, cache.getStats().misses(), "Certificado removido deve ser montado novamente");
+    }
+
+    @Test
+    @DisplayName("Cache desabilitado deve montar um verificador a cada chamada")
+    void testDisabledCacheCreatesNewVerifier() throws Exception {
+        SignerVerifierCache cache = new SignerVerifierCache(false, 10);
+        X509CertificateHolder certificate = createCertificate(1);
+
+        assertNotSame(cache.get(certificate), cache.get(certificate));
+        assertEquals(0, cache.getStats().size());
+    }
+}
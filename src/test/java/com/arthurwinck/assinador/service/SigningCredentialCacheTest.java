@@ -0,0 +1,82 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.SigningInfo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SigningCredentialCacheTest {
+
+    private static final byte[] PKCS12_BYTES = "conteúdo do arquivo pkcs12".getBytes();
+
+    private static SigningCredentialCache.CredentialLoader countingLoader(AtomicInteger loads) {
+        return () -> {
+            loads.incrementAndGet();
+            SigningInfo signingInfo = new SigningInfo();
+            signingInfo.setCertificateHolderList(new ArrayList<>());
+            return signingInfo;
+        };
+    }
+
+    @Test
+    @DisplayName("Deve reaproveitar credenciais para o mesmo arquivo e senha")
+    void testReusesCredentialForSameKeystoreAndPassword() throws Exception {
+        SigningCredentialCache cache = new SigningCredentialCache(true, 10, 600);
+        AtomicInteger loads = new AtomicInteger();
+
+        SigningInfo first = cache.get(PKCS12_BYTES, "senha", countingLoader(loads));
+        first.setSigningAttached(true);
+        SigningInfo second = cache.get(PKCS12_BYTES, "senha", countingLoader(loads));
+
+        assertEquals(1, loads.get(), "KeyStore deve ser carregado somente uma vez");
+        assertNotSame(first, second, "Cada chamada deve receber sua própria instância de SigningInfo");
+        assertFalse(second.isSigningAttached(), "Alterações feitas por uma requisição não podem vazar para o cache");
+    }
+
+    @Test
+    @DisplayName("Senhas diferentes devem gerar entradas diferentes")
+    void testDifferentPasswordsAreDifferentEntries() throws Exception {
+        SigningCredentialCache cache = new SigningCredentialCache(true, 10, 600);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(PKCS12_BYTES, "senha", countingLoader(loads));
+        cache.get(PKCS12_BYTES, "outra senha", countingLoader(loads));
+
+        assertEquals(2, loads.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    @DisplayName("Entradas expiradas, removidas ou além do limite devem ser recarregadas")
+    void testExpirationEvictionAndInvalidation() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+
+        SigningCredentialCache expiringCache = new SigningCredentialCache(true, 10, 0);
+        expiringCache.get(PKCS12_BYTES, "senha", countingLoader(loads));
+        expiringCache.get(PKCS12_BYTES, "senha", countingLoader(loads));
+        assertEquals(2, loads.get(), "Entrada com TTL expirado deve ser recarregada");
+
+        SigningCredentialCache boundedCache = new SigningCredentialCache(true, 1, 600);
+        boundedCache.get(PKCS12_BYTES, "senha", countingLoader(loads));
+        boundedCache.get(PKCS12_BYTES, "outra senha", countingLoader(loads));
+        assertEquals(1, boundedCache.size(), "Cache não pode ultrapassar o tamanho máximo");
+
+        boundedCache.invalidate(PKCS12_BYTES, "outra senha");
+        assertEquals(0, boundedCache.size(), "Entrada invalidada deve ser removida");
+    }
+
+    @Test
+    @DisplayName("Falhas ao carregar o KeyStore não devem ser armazenadas")
+    void testFailedLoadsAreNotCached() {
+        SigningCredentialCache cache = new SigningCredentialCache(true, 10, 600);
+
+        assertThrows(IllegalStateException.class, () -> cache.get(PKCS12_BYTES, "senha incorreta", () -> {
+            throw new IllegalStateException("senha incorreta");
+        }));
+        assertEquals(0, cache.size());
+    }
+}
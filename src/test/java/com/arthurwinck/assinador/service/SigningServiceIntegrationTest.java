@@ -1,30 +1,56 @@
 package com.arthurwinck.assinador.service;
 
+import com.arthurwinck.assinador.dto.SignerResult;
 import com.arthurwinck.assinador.dto.SigningInfo;
+import com.arthurwinck.assinador.dto.VerifyResponse;
+import com.arthurwinck.assinador.exception.InvalidCertificateException;
+import com.arthurwinck.assinador.exception.SigningKeyConflictException;
+import com.arthurwinck.assinador.exception.SigningValidationException;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.cms.*;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.operator.DefaultAlgorithmNameFinder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.util.encoders.Base64;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
-import org.mockito.InjectMocks;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
 
 import static com.arthurwinck.assinador.service.SigningService.CERT_KEY_FILE_FORMAT;
 import static com.arthurwinck.assinador.service.SigningService.SIGNATURE_ALGORITHM;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
 import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.security.Security;
+import java.security.cert.Certificate;
+import java.security.spec.ECGenParameterSpec;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 @SpringBootTest
@@ -36,9 +62,18 @@ class SigningServiceIntegrationTest {
     @Value("${signing.key-password}")
     private String keyPassword;
 
-    @InjectMocks
+    @Autowired
     private SigningService signingService;
 
+    @Autowired
+    private SigningKeyRegistry keyRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private VerifyService verifyService;
+
     private PrivateKey testPrivateKey;
     private java.security.cert.X509Certificate testJavaCertificate;
     private SigningInfo testSigningInfo;
@@ -155,4 +190,293 @@ class SigningServiceIntegrationTest {
         assertNotNull(subjectDN, "Certificate subject should not be null");
         assertFalse(subjectDN.trim().isEmpty(), "Certificate subject should not be empty");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Deve assinar com chave registrada reaproveitando as estruturas de assinatura")
+    void testSigningWithRegisteredKey() throws Exception {
+        byte[] keystoreBytes;
+        try (InputStream keystoreStream = new ClassPathResource("/keys/" + testCertificateName + ".pfx").getInputStream()) {
+            keystoreBytes = keystoreStream.readAllBytes();
+        }
+
+        String keyId = keyRegistry.register("chave-teste", keystoreBytes, keyPassword);
+        assertEquals("chave-teste", keyId);
+
+        // Duas assinaturas seguidas na mesma thread reaproveitam o mesmo SignerInfoGenerator
+        for (String testContent : List.of("Primeiro documento", "Segundo documento")) {
+            String base64Signature = signingService.signAttached(testContent.getBytes(StandardCharsets.UTF_8), keyId);
+            CMSSignedData signedData = new CMSSignedData(Base64.decode(base64Signature));
+
+            assertEquals(testContent, new String((byte[]) signedData.getSignedContent().getContent(), StandardCharsets.UTF_8));
+
+            SignerInformation signerInfo = signedData.getSignerInfos().getSigners().iterator().next();
+            X509CertificateHolder signerCert = (X509CertificateHolder) signedData.getCertificates().getMatches(signerInfo.getSID()).iterator().next();
+            assertTrue(signerInfo.verify(new JcaSimpleSignerInfoVerifierBuilder()
+                    .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                    .build(signerCert)), "Assinatura gerada com chave registrada deve ser válida");
+        }
+
+        assertTrue(keyRegistry.remove(keyId));
+    }
+
+    @Test
+    @DisplayName("Registro de keyId existente deve ser recusado, a troca somente com replace")
+    void testRegisterDuplicateKeyId() throws Exception {
+        byte[] keystoreBytes;
+        try (InputStream keystoreStream = new ClassPathResource("/keys/" + testCertificateName + ".pfx").getInputStream()) {
+            keystoreBytes = keystoreStream.readAllBytes();
+        }
+
+        keyRegistry.register("chave-duplicada", keystoreBytes, keyPassword);
+        RegisteredSigningKey registeredKey = keyRegistry.get("chave-duplicada");
+
+        SigningKeyConflictException exception = assertThrows(SigningKeyConflictException.class,
+                () -> keyRegistry.register("chave-duplicada", keystoreBytes, keyPassword));
+        assertEquals(HttpStatus.CONFLICT, exception.getHttpStatus());
+        assertSame(registeredKey, keyRegistry.get("chave-duplicada"), "Chave existente não deve ser substituída");
+
+        assertEquals("chave-duplicada", keyRegistry.replace("chave-duplicada", keystoreBytes, keyPassword));
+        assertNotSame(registeredKey, keyRegistry.get("chave-duplicada"));
+
+        assertThrows(InvalidCertificateException.class, () -> keyRegistry.register("keys", keystoreBytes, keyPassword));
+        assertThrows(InvalidCertificateException.class, () -> keyRegistry.register("Stream", keystoreBytes, keyPassword));
+
+        assertTrue(keyRegistry.remove("chave-duplicada"));
+    }
+
+    @Test
+    @DisplayName("Streaming interrompido com chave registrada não deve afetar a próxima assinatura da thread")
+    void testInterruptedStreamDoesNotCorruptNextSignature() throws Exception {
+        byte[] keystoreBytes;
+        try (InputStream keystoreStream = new ClassPathResource("/keys/" + testCertificateName + ".pfx").getInputStream()) {
+            keystoreBytes = keystoreStream.readAllBytes();
+        }
+
+        String keyId = keyRegistry.register("chave-interrompida", keystoreBytes, keyPassword);
+
+        // Cliente desconecta depois de parte do documento já ter passado pelo digest: a escrita da resposta falha
+        // também no fechamento da estrutura, antes do digest ser finalizado
+        OutputStream disconnectedClient = new OutputStream() {
+            private int written;
+
+            @Override
+            public void write(int b) throws IOException {
+                this.write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                this.written += length;
+
+                if (this.written > 16 * 1024) {
+                    throw new IOException("Conexão encerrada pelo cliente");
+                }
+            }
+        };
+
+        assertThrows(IOException.class, () -> signingService.signStream(new ByteArrayInputStream(new byte[256 * 1024]), keyId, true,
+                SigningService.SignatureEncoding.DER, disconnectedClient));
+
+        byte[] content = "Documento assinado depois da interrupção".getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        signingService.signStream(new ByteArrayInputStream(content), keyId, true, SigningService.SignatureEncoding.DER, outputStream);
+
+        CMSSignedData signedData = new CMSSignedData(outputStream.toByteArray());
+        assertArrayEquals(content, (byte[]) signedData.getSignedContent().getContent());
+        assertSignerIsValid(signedData);
+
+        assertSignerIsValid(new CMSSignedData(Base64.decode(signingService.signAttached(content, keyId))));
+
+        assertTrue(keyRegistry.remove(keyId));
+    }
+
+    @Test
+    @DisplayName("Deve assinar em streaming gerando assinatura attached em DER")
+    void testSignStreamAttachedDer() throws Exception {
+        byte[] content = new byte[256 * 1024];
+        new java.util.Random(7).nextBytes(content);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        signingService.signStream(new ByteArrayInputStream(content), testSigningInfo, true,
+                SigningService.SignatureEncoding.DER, outputStream);
+
+        CMSSignedData signedData = new CMSSignedData(outputStream.toByteArray());
+
+        assertArrayEquals(content, (byte[]) signedData.getSignedContent().getContent(),
+                "Conteúdo binário deve ser preservado dentro da assinatura");
+        assertSignerIsValid(signedData);
+    }
+
+    @Test
+    @DisplayName("Deve assinar em streaming gerando assinatura detached em Base64")
+    void testSignStreamDetachedBase64() throws Exception {
+        byte[] content = "Documento assinado de forma detached".getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        signingService.signStream(new ByteArrayInputStream(content), testSigningInfo, false,
+                SigningService.SignatureEncoding.BASE64, outputStream);
+
+        CMSSignedData signedData = new CMSSignedData(new CMSProcessableByteArray(content),
+                Base64.decode(outputStream.toByteArray()));
+
+        assertNull(new CMSSignedData(Base64.decode(outputStream.toByteArray())).getSignedContent(),
+                "Assinatura detached não deve conter o documento");
+        assertSignerIsValid(signedData);
+    }
+
+    @Test
+    @DisplayName("Deve assinar somente o hash do documento gerando assinatura detached")
+    void testSignDigest() throws Exception {
+        byte[] content = "Documento que não é enviado ao servidor".getBytes(StandardCharsets.UTF_8);
+
+        for (HashService.HashAlgorithm algorithm : HashService.HashAlgorithm.values()) {
+            String hexEncodedHash = new HashService().generateHexEncodedHash(content, algorithm);
+
+            String base64Signature = signingService.signDigest(hexEncodedHash, algorithm,
+                    new ClassPathResource("/keys/" + testCertificateName + ".pfx"), keyPassword);
+
+            assertNull(new CMSSignedData(Base64.decode(base64Signature)).getSignedContent(),
+                    "Assinatura a partir do hash deve ser detached");
+
+            // O documento original deve validar a assinatura feita somente sobre o seu hash
+            CMSSignedData signedData = new CMSSignedData(new CMSProcessableByteArray(content), Base64.decode(base64Signature));
+            SignerInformation signerInfo = signedData.getSignerInfos().getSigners().iterator().next();
+            assertEquals(algorithm.getOid().getId(), signerInfo.getDigestAlgOID());
+            assertSignerIsValid(signedData);
+        }
+    }
+
+    @Test
+    @DisplayName("Deve rejeitar hash com tamanho incompatível com o algoritmo")
+    void testSignDigestRejectsInvalidDigest() {
+        SigningValidationException exception = assertThrows(SigningValidationException.class, () ->
+                signingService.signDigest("abcd", HashService.HashAlgorithm.SHA256,
+                        new ClassPathResource("/keys/" + testCertificateName + ".pfx"), keyPassword));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+    }
+
+    private static void assertSignerIsValid(CMSSignedData signedData) throws Exception {
+        SignerInformation signerInfo = signedData.getSignerInfos().getSigners().iterator().next();
+        X509CertificateHolder signerCert = (X509CertificateHolder) signedData.getCertificates().getMatches(signerInfo.getSID()).iterator().next();
+        assertTrue(signerInfo.verify(new JcaSimpleSignerInfoVerifierBuilder()
+                .setProvider(BouncyCastleProvider.PROVIDER_NAME)
+                .build(signerCert)), "Assinatura gerada em streaming deve ser válida");
+    }
+
+    @Test
+    @DisplayName("Deve registrar o tempo das etapas da assinatura")
+    void testSigningRecordsStageMetrics() throws Exception {
+        long cmsGenerationCount = this.stageCount("cms_generation");
+        long encodingCount = this.stageCount("encoding");
+        long archiveCount = this.stageCount("archive");
+
+        signingService.signAttached("Documento com métricas".getBytes(StandardCharsets.UTF_8), testSigningInfo);
+
+        assertEquals(cmsGenerationCount + 1, this.stageCount("cms_generation"));
+        assertEquals(encodingCount + 1, this.stageCount("encoding"));
+        assertEquals(archiveCount + 1, this.stageCount("archive"));
+    }
+
+    private long stageCount(String stage) {
+        return meterRegistry.get(PipelineMetrics.STAGE_TIMER).tag("operation", "sign").tag("stage", stage).timer().count();
+    }
+
+    @Test
+    @DisplayName("Deve escolher o algoritmo de assinatura pelo tipo da chave do PKCS#12")
+    void testSignatureAlgorithmChosenFromKey() throws Exception {
+        byte[] content = "Documento assinado com chave EC/EdDSA".getBytes(StandardCharsets.UTF_8);
+
+        assertSignatureAlgorithm("SHA256WITHECDSA", signingService.signAttached(content,
+                createPkcs12(createKeyPair("EC", new ECGenParameterSpec("secp256r1")), "SHA256WITHECDSA"), keyPassword));
+        assertSignatureAlgorithm("SHA384WITHECDSA", signingService.signAttached(content,
+                createPkcs12(createKeyPair("EC", new ECGenParameterSpec("secp384r1")), "SHA384WITHECDSA"), keyPassword));
+        assertSignatureAlgorithm("ED25519", signingService.signAttached(content,
+                createPkcs12(createKeyPair("Ed25519", null), "Ed25519"), keyPassword));
+        assertSignatureAlgorithm(SIGNATURE_ALGORITHM, signingService.signAttached(content, testSigningInfo));
+    }
+
+    @Test
+    @DisplayName("Deve assinar com o algoritmo informado na requisição")
+    void testSignWithRequestedAlgorithm() throws Exception {
+        byte[] content = "Documento assinado com RSA-PSS".getBytes(StandardCharsets.UTF_8);
+
+        assertSignatureAlgorithm("SHA256WITHRSAANDMGF1",
+                signingService.signAttached(content, testSigningInfo, SigningService.SignatureAlgorithm.SHA256_WITH_RSA_PSS));
+        assertSignatureAlgorithm("SHA256WITHRSA",
+                signingService.signAttached(content, testSigningInfo, SigningService.SignatureAlgorithm.SHA256_WITH_RSA));
+    }
+
+    @Test
+    @DisplayName("Deve rejeitar algoritmo de assinatura incompatível com a chave")
+    void testRejectsIncompatibleAlgorithm() {
+        SigningValidationException exception = assertThrows(SigningValidationException.class, () ->
+                signingService.signAttached("Documento".getBytes(StandardCharsets.UTF_8), testSigningInfo,
+                        SigningService.SignatureAlgorithm.SHA256_WITH_ECDSA));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+    }
+
+    @Test
+    @DisplayName("Deve assinar o hash do documento com chave EC usando ECDSA com o mesmo hash")
+    void testSignDigestWithEcKey() throws Exception {
+        byte[] content = "Documento que não é enviado ao servidor".getBytes(StandardCharsets.UTF_8);
+        Resource pkcs12 = createPkcs12(createKeyPair("EC", new ECGenParameterSpec("secp256r1")), "SHA256WITHECDSA");
+        String hexEncodedHash = new HashService().generateHexEncodedHash(content, HashService.HashAlgorithm.SHA512);
+
+        String base64Signature = signingService.signDigest(hexEncodedHash, HashService.HashAlgorithm.SHA512, pkcs12, keyPassword);
+
+        CMSSignedData signedData = new CMSSignedData(new CMSProcessableByteArray(content), Base64.decode(base64Signature));
+        SignerInformation signerInfo = signedData.getSignerInfos().getSigners().iterator().next();
+        assertEquals("SHA512withECDSA", new DefaultCMSSignatureAlgorithmNameGenerator()
+                .getSignatureName(signerInfo.getDigestAlgorithmID(), signerInfo.toASN1Structure().getDigestEncryptionAlgorithm()));
+        assertSignerIsValid(signedData);
+
+        // RSA-PSS com SHA256 não corresponde ao hash SHA512 enviado
+        SigningValidationException exception = assertThrows(SigningValidationException.class, () ->
+                signingService.signDigest(hexEncodedHash, HashService.HashAlgorithm.SHA512,
+                        new ClassPathResource("/keys/" + testCertificateName + ".pfx"), keyPassword,
+                        SigningService.SignatureAlgorithm.SHA256_WITH_RSA_PSS));
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+    }
+
+    // A assinatura deve ser válida na verificação do serviço, que informa o algoritmo do assinante
+    private void assertSignatureAlgorithm(String expectedAlgorithm, String base64Signature) throws Exception {
+        VerifyResponse verifyResponse = verifyService.verify(Base64.decode(base64Signature));
+        SignerResult signerResult = verifyResponse.getSigners().get(0);
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO, verifyResponse.getStatus());
+        assertEquals(expectedAlgorithm, signerResult.getSignatureAlgorithm());
+    }
+
+    private static KeyPair createKeyPair(String keyAlgorithm, ECGenParameterSpec curve) throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(keyAlgorithm);
+
+        if (curve != null) {
+            keyPairGenerator.initialize(curve);
+        }
+
+        return keyPairGenerator.generateKeyPair();
+    }
+
+    // PKCS#12 gerado em memória, carregado pelo serviço como um arquivo enviado na requisição
+    private Resource createPkcs12(KeyPair keyPair, String certificateSignatureAlgorithm) throws Exception {
+        X500Name subject = new X500Name("CN=Teste " + keyPair.getPrivate().getAlgorithm() + ", O=Teste, C=BR");
+        Date notBefore = new Date();
+
+        X509CertificateHolder certificateHolder = new JcaX509v3CertificateBuilder(subject, BigInteger.valueOf(System.nanoTime()),
+                notBefore, new Date(notBefore.getTime() + 86_400_000L), subject, keyPair.getPublic())
+                .build(new JcaContentSignerBuilder(certificateSignatureAlgorithm).build(keyPair.getPrivate()));
+
+        KeyStore keyStore = KeyStore.getInstance(CERT_KEY_FILE_FORMAT);
+        keyStore.load(null, null);
+        keyStore.setKeyEntry("teste", keyPair.getPrivate(), keyPassword.toCharArray(),
+                new Certificate[] {new JcaX509CertificateConverter().getCertificate(certificateHolder)});
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        keyStore.store(outputStream, keyPassword.toCharArray());
+
+        return new ByteArrayResource(outputStream.toByteArray());
+    }
+}
@@ -0,0 +1,195 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.SignerResult;
+import com.arthurwinck.assinador.dto.SigningInfo;
+import com.arthurwinck.assinador.dto.VerifyResponse;
+import org.bouncycastle.asn1.DERSet;
+import org.bouncycastle.asn1.cms.Attribute;
+import org.bouncycastle.asn1.cms.AttributeTable;
+import org.bouncycastle.asn1.nist.NISTObjectIdentifiers;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.SignerInformation;
+import org.bouncycastle.cms.SignerInformationStore;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.tsp.TimeStampToken;
+import org.bouncycastle.util.encoders.Base64;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.spec.ECGenParameterSpec;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "signing.timestamp.enabled=true",
+        "signing.timestamp.local-authority=true",
+        "signing.timestamp.batch.max-delay-ms=100"
+})
+class TimestampServiceIntegrationTest {
+
+    @Autowired
+    private SigningService signingService;
+
+    @Autowired
+    private VerifyService verifyService;
+
+    @Autowired
+    private TimestampService timestampService;
+
+    private SigningInfo signingInfo;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+
+        X500Name subject = new X500Name("CN=Teste carimbo do tempo, O=Teste, C=BR");
+        Date notBefore = new Date(System.currentTimeMillis() - 60_000L);
+        X509CertificateHolder certificateHolder = new JcaX509v3CertificateBuilder(subject, BigInteger.valueOf(System.nanoTime()),
+                notBefore, new Date(notBefore.getTime() + 86_400_000L), subject, keyPair.getPublic())
+                .build(new JcaContentSignerBuilder("SHA256WITHECDSA").build(keyPair.getPrivate()));
+
+        this.signingInfo = new SigningInfo();
+        this.signingInfo.setPrivateKey(keyPair.getPrivate());
+        this.signingInfo.setX509Certificate(new JcaX509CertificateConverter().getCertificate(certificateHolder));
+        this.signingInfo.setCertificateHolderList(List.of(certificateHolder));
+        this.signingInfo.setSigningAttached(true);
+    }
+
+    @Test
+    @DisplayName("Assinatura deve receber o carimbo do tempo e ser válida na verificação")
+    void testSignatureIsTimestamped() throws Exception {
+        String base64Signature = signingService.signAttached("Documento com carimbo do tempo".getBytes(StandardCharsets.UTF_8), signingInfo);
+
+        SignerResult signerResult = this.assertValid(Base64.decode(base64Signature));
+
+        assertEquals(Boolean.TRUE, signerResult.getTimestampValid());
+        assertNotNull(signerResult.getTimestampTime());
+        assertEquals("CN=Assinador TSA local", signerResult.getTimestampAuthority());
+    }
+
+    @Test
+    @DisplayName("Assinatura em streaming deve receber o carimbo do tempo")
+    void testStreamingSignatureIsTimestamped() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        signingService.signStream(new ByteArrayInputStream("Documento em streaming".getBytes(StandardCharsets.UTF_8)), signingInfo,
+                true, SigningService.SignatureEncoding.DER, outputStream);
+
+        assertEquals(Boolean.TRUE, this.assertValid(outputStream.toByteArray()).getTimestampValid());
+    }
+
+    @Test
+    @DisplayName("Assinaturas simultâneas devem compartilhar o carimbo do lote com prova de inclusão")
+    void testConcurrentSignaturesShareBatchToken() throws Exception {
+        int signatureCount = 12;
+        long tsaRequests = timestampService.getStats().tsaRequests();
+
+        ExecutorService executorService = Executors.newFixedThreadPool(signatureCount);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+
+        try {
+            for (int index = 0; index < signatureCount; index++) {
+                byte[] content = ("Documento " + index).getBytes(StandardCharsets.UTF_8);
+
+                futures.add(executorService.submit(() -> {
+                    startLatch.await();
+                    return signingService.signAttached(content, signingInfo);
+                }));
+            }
+
+            startLatch.countDown();
+
+            for (Future<String> future : futures) {
+                byte[] signature = Base64.decode(future.get());
+                SignerInformation signer = new CMSSignedData(signature).getSignerInfos().getSigners().iterator().next();
+
+                assertNotNull(signer.getUnsignedAttributes().get(TimestampService.BATCH_TIMESTAMP_ATTRIBUTE),
+                        "Assinatura carimbada em lote deve ter o token do lote com a prova de inclusão");
+                assertNull(signer.getUnsignedAttributes().get(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken),
+                        "Token sobre a raiz do lote não pode ir no atributo padrão do CAdES");
+                assertEquals(Boolean.TRUE, this.assertValid(signature).getTimestampValid());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        assertTrue(timestampService.getStats().tsaRequests() - tsaRequests < signatureCount);
+    }
+
+    @Test
+    @DisplayName("Carimbo do tempo de outra assinatura deve invalidar o assinante")
+    void testRejectsTokenFromAnotherSignature() throws Exception {
+        CMSSignedData first = new CMSSignedData(Base64.decode(signingService.signAttached("Primeiro".getBytes(StandardCharsets.UTF_8), signingInfo)));
+        CMSSignedData second = new CMSSignedData(Base64.decode(signingService.signAttached("Segundo".getBytes(StandardCharsets.UTF_8), signingInfo)));
+
+        AttributeTable firstAttributes = first.getSignerInfos().getSigners().iterator().next().getUnsignedAttributes();
+        SignerInformation secondSigner = second.getSignerInfos().getSigners().iterator().next();
+        assertNotNull(firstAttributes.get(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken));
+
+        CMSSignedData tampered = CMSSignedData.replaceSigners(second,
+                new SignerInformationStore(SignerInformation.replaceUnsignedAttributes(secondSigner, firstAttributes)));
+
+        VerifyResponse verifyResponse = verifyService.verify(tampered.getEncoded());
+        SignerResult signerResult = verifyResponse.getSigners().get(0);
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.INVALIDO, verifyResponse.getStatus());
+        assertEquals(Boolean.FALSE, signerResult.getTimestampValid());
+        assertEquals("Carimbo do tempo não corresponde ao valor da assinatura", signerResult.getError());
+    }
+
+    @Test
+    @DisplayName("Carimbo do tempo de uma TSA não confiável deve invalidar o assinante mesmo sem validação de cadeia")
+    void testRejectsUntrustedTsa() throws Exception {
+        CMSSignedData signedData = new CMSSignedData(Base64.decode(signingService.signAttached("Documento".getBytes(StandardCharsets.UTF_8), signingInfo)));
+        SignerInformation signer = signedData.getSignerInfos().getSigners().iterator().next();
+
+        // Mesmo subject da TSA local, mas outra chave: token correto para a assinatura, emitido por quem não é confiável
+        byte[] imprint = MessageDigest.getInstance("SHA-256").digest(signer.getSignature());
+        TimeStampToken foreignToken = LocalTimestampAuthority.generate().timestamp(NISTObjectIdentifiers.id_sha256, imprint);
+        AttributeTable foreignAttributes = new AttributeTable(new Attribute(PKCSObjectIdentifiers.id_aa_signatureTimeStampToken,
+                new DERSet(foreignToken.toCMSSignedData().toASN1Structure())));
+
+        CMSSignedData tampered = CMSSignedData.replaceSigners(signedData,
+                new SignerInformationStore(SignerInformation.replaceUnsignedAttributes(signer, foreignAttributes)));
+
+        VerifyResponse verifyResponse = verifyService.verify(tampered.getEncoded());
+        SignerResult signerResult = verifyResponse.getSigners().get(0);
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.INVALIDO, verifyResponse.getStatus());
+        assertEquals(Boolean.FALSE, signerResult.getTimestampValid());
+        assertTrue(signerResult.getError().startsWith("Certificado da TSA não confiável"), signerResult.getError());
+    }
+
+    private SignerResult assertValid(byte[] signature) throws Exception {
+        VerifyResponse verifyResponse = verifyService.verify(signature);
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO, verifyResponse.getStatus(),
+                () -> String.valueOf(verifyResponse.getSigners().get(0).getError()));
+
+        return verifyResponse.getSigners().get(0);
+    }
+}
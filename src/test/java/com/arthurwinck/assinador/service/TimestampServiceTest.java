@@ -0,0 +1,147 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.config.TimestampConfiguration;
+import com.arthurwinck.assinador.exception.TimestampException;
+import org.bouncycastle.cms.jcajce.JcaSimpleSignerInfoVerifierBuilder;
+import org.bouncycastle.tsp.TimeStampToken;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimestampServiceTest {
+
+    private static LocalTimestampAuthority timestampAuthority;
+
+    private TimestampService timestampService;
+
+    @BeforeAll
+    static void setUpAuthority() throws Exception {
+        timestampAuthority = LocalTimestampAuthority.generate();
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        if (this.timestampService != null) {
+            this.timestampService.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Assinaturas simultâneas devem ser carimbadas juntas, cada uma com sua prova de inclusão")
+    void testBatchesConcurrentSignatures() throws Exception {
+        this.timestampService = new TimestampService(timestampAuthority, true, 64, 200, 10000);
+        this.timestampService.start();
+
+        int signatureCount = 16;
+        ExecutorService executorService = Executors.newFixedThreadPool(signatureCount);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Future<TimestampService.Timestamp>> futures = new ArrayList<>();
+
+        try {
+            for (int index = 0; index < signatureCount; index++) {
+                byte[] signature = ("assinatura-" + index).getBytes(StandardCharsets.UTF_8);
+
+                futures.add(executorService.submit(() -> {
+                    startLatch.await();
+                    return this.timestampService.timestamp(signature);
+                }));
+            }
+
+            startLatch.countDown();
+
+            for (int index = 0; index < signatureCount; index++) {
+                TimestampService.Timestamp timestamp = futures.get(index).get();
+                byte[] signature = ("assinatura-" + index).getBytes(StandardCharsets.UTF_8);
+
+                assertNotNull(timestamp.inclusionProof(), "Assinatura carimbada em lote deve ter a prova de inclusão");
+                assertTrue(MerkleTree.verifyInclusion(signature, timestamp.inclusionProof(),
+                        timestamp.token().getTimeStampInfo().getMessageImprintDigest()));
+                TimestampServiceTest.assertTokenIsValid(timestamp.token());
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        TimestampService.TimestampStats stats = this.timestampService.getStats();
+        assertEquals(signatureCount, stats.signatures());
+        assertTrue(stats.tsaRequests() < signatureCount, "Esperado menos requisições à TSA que assinaturas: " + stats.tsaRequests());
+    }
+
+    @Test
+    @DisplayName("Sem agrupamento o token deve ser sobre o hash da própria assinatura")
+    void testDirectTimestamp() throws Exception {
+        this.timestampService = new TimestampService(timestampAuthority, true, 1, 0, 10000);
+        this.timestampService.start();
+
+        byte[] signature = "assinatura".getBytes(StandardCharsets.UTF_8);
+        TimestampService.Timestamp timestamp = this.timestampService.timestamp(signature);
+
+        assertNull(timestamp.inclusionProof());
+        assertEquals(TimestampService.DIGEST_ALGORITHM, timestamp.token().getTimeStampInfo().getMessageImprintAlgOID());
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(signature),
+                timestamp.token().getTimeStampInfo().getMessageImprintDigest());
+        TimestampServiceTest.assertTokenIsValid(timestamp.token());
+    }
+
+    @Test
+    @DisplayName("Falha da TSA deve chegar a todas as assinaturas do lote como TimestampException")
+    void testPropagatesAuthorityFailure() {
+        TimestampAuthority unavailableAuthority = (digestAlgorithm, digest) -> {
+            throw new IOException("TSA indisponível");
+        };
+        this.timestampService = new TimestampService(unavailableAuthority, true, 64, 0, 10000);
+        this.timestampService.start();
+
+        TimestampException exception = assertThrows(TimestampException.class,
+                () -> this.timestampService.timestamp(new byte[] {1, 2, 3}));
+
+        assertEquals(HttpStatus.BAD_GATEWAY, exception.getHttpStatus());
+        assertTrue(exception.getMessage().contains("TSA indisponível"));
+    }
+
+    @Test
+    @DisplayName("Assinatura enviada após o encerramento deve ser recusada sem aguardar o timeout")
+    void testRejectsSubmitAfterStop() throws Exception {
+        this.timestampService = new TimestampService(timestampAuthority, true, 64, 10, 10000);
+        this.timestampService.start();
+        this.timestampService.stop();
+
+        long start = System.nanoTime();
+        TimestampException exception = assertThrows(TimestampException.class,
+                () -> this.timestampService.timestamp(new byte[] {1, 2, 3}));
+
+        assertTrue(System.nanoTime() - start < 5_000_000_000L, "Recusa não pode aguardar o timeout da TSA");
+        assertTrue(exception.getMessage().contains("encerramento"), exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("Carimbo habilitado sem TSA configurada só deve usar chave gerada com local-authority=true")
+    void testGeneratedAuthorityRequiresOptIn() throws Exception {
+        TimestampConfiguration configuration = new TimestampConfiguration();
+
+        assertThrows(IllegalStateException.class, () -> configuration.timestampAuthority(true, "", 10000, "", "", false));
+        assertInstanceOf(LocalTimestampAuthority.class, configuration.timestampAuthority(true, "", 10000, "", "", true));
+
+        // Desabilitado, nenhuma chave é gerada e nenhum certificado de TSA local é aceito
+        TimestampAuthority disabledAuthority = configuration.timestampAuthority(false, "", 10000, "", "", false);
+        assertNull(disabledAuthority.getCertificate());
+    }
+
+    private static void assertTokenIsValid(TimeStampToken token) throws Exception {
+        token.validate(new JcaSimpleSignerInfoVerifierBuilder().build(timestampAuthority.getCertificate()));
+    }
+}
@@ -0,0 +1,152 @@
+package com.arthurwinck.assinador.service;
+
+import com.arthurwinck.assinador.dto.SignerResult;
+import com.arthurwinck.assinador.dto.VerifyOptions;
+import com.arthurwinck.assinador.dto.VerifyResponse;
+import com.arthurwinck.assinador.exception.InvalidSignatureFileException;
+import com.arthurwinck.assinador.exception.VerifyValidationException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerifyResultCacheTest {
+
+    private static final byte[] SIGNATURE_BYTES = "conteúdo do arquivo de assinatura".getBytes();
+
+    private static VerifyResultCache.VerifyLoader countingLoader(AtomicInteger loads, Date certificatesNotAfter) {
+        return () -> {
+            loads.incrementAndGet();
+            VerifyResponse response = new VerifyResponse();
+            response.setStatus(VerifyResponse.VerifyResponseStatusEnum.VALIDO);
+            response.setOriginalData("6f6c61");
+            response.setCertificatesNotAfter(certificatesNotAfter);
+            return response;
+        };
+    }
+
+    private static Date inOneYear() {
+        return new Date(System.currentTimeMillis() + 365L * 86_400_000L);
+    }
+
+    @Test
+    @DisplayName("Deve reaproveitar o resultado para o mesmo arquivo e opções")
+    void testReusesResultForSameBytesAndOptions() throws Exception {
+        VerifyResultCache cache = new VerifyResultCache(true, 10, 300, 1024);
+        AtomicInteger loads = new AtomicInteger();
+
+        VerifyResponse first = cache.get(SIGNATURE_BYTES, new VerifyOptions(), countingLoader(loads, inOneYear()));
+        first.setOriginalData(null);
+        VerifyResponse second = cache.get(SIGNATURE_BYTES.clone(), new VerifyOptions(), countingLoader(loads, inOneYear()));
+
+        assertEquals(1, loads.get(), "Arquivo deve ser verificado somente uma vez");
+        assertNotSame(first, second);
+        assertEquals("6f6c61", second.getOriginalData(), "Alterações feitas por uma requisição não podem vazar para o cache");
+        assertEquals(1, cache.getStats().hits());
+
+        // Opções diferentes produzem respostas diferentes
+        cache.get(SIGNATURE_BYTES, VerifyOptions.of(false, 0), countingLoader(loads, inOneYear()));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("Alterações nos assinantes da resposta não podem vazar para o cache")
+    void testCopiesSignersDeeply() throws Exception {
+        VerifyResultCache cache = new VerifyResultCache(true, 10, 300, 1024);
+
+        VerifyResultCache.VerifyLoader loader = () -> {
+            SignerResult counterSigner = new SignerResult();
+            counterSigner.setStatus(VerifyResponse.VerifyResponseStatusEnum.VALIDO);
+
+            SignerResult signerResult = new SignerResult();
+            signerResult.setStatus(VerifyResponse.VerifyResponseStatusEnum.VALIDO);
+            signerResult.setSubject("CN=Assinante");
+            signerResult.setCounterSigners(new ArrayList<>(List.of(counterSigner)));
+
+            VerifyResponse response = new VerifyResponse();
+            response.setStatus(VerifyResponse.VerifyResponseStatusEnum.VALIDO);
+            response.setSigners(new ArrayList<>(List.of(signerResult)));
+            response.setDocumentHash("abcd");
+            response.setInclusionProofValid(true);
+            response.setCertificatesNotAfter(inOneYear());
+            return response;
+        };
+
+        VerifyResponse first = cache.get(SIGNATURE_BYTES, new VerifyOptions(), loader);
+        first.getSigners().get(0).setStatus(VerifyResponse.VerifyResponseStatusEnum.INVALIDO);
+        first.getSigners().get(0).getCounterSigners().get(0).setError("alterado");
+        first.getSigners().add(new SignerResult());
+
+        VerifyResponse second = cache.get(SIGNATURE_BYTES, new VerifyOptions(), loader);
+        second.getSigners().get(0).setSubject("CN=Alterado");
+
+        VerifyResponse third = cache.get(SIGNATURE_BYTES, new VerifyOptions(), loader);
+
+        assertEquals(1, third.getSigners().size());
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO, third.getSigners().get(0).getStatus());
+        assertEquals("CN=Assinante", third.getSigners().get(0).getSubject());
+        assertNull(third.getSigners().get(0).getCounterSigners().get(0).getError());
+        assertEquals("abcd", third.getDocumentHash());
+        assertTrue(third.getInclusionProofValid());
+        assertEquals(2, cache.getStats().hits());
+    }
+
+    @Test
+    @DisplayName("Validade da entrada não pode passar do fim da validade do certificado")
+    void testExpiresWithCertificate() throws Exception {
+        VerifyResultCache cache = new VerifyResultCache(true, 10, 300, 1024);
+        AtomicInteger loads = new AtomicInteger();
+        Date expiredCertificate = new Date(System.currentTimeMillis() - 1000);
+
+        cache.get(SIGNATURE_BYTES, new VerifyOptions(), countingLoader(loads, expiredCertificate));
+        cache.get(SIGNATURE_BYTES, new VerifyOptions(), countingLoader(loads, expiredCertificate));
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.getStats().size());
+    }
+
+    @Test
+    @DisplayName("Validade da entrada não pode passar da próxima atualização das LCRs consultadas")
+    void testExpiresWithCrlNextUpdate() throws Exception {
+        VerifyResultCache cache = new VerifyResultCache(true, 10, 300, 1024);
+        AtomicInteger loads = new AtomicInteger();
+
+        VerifyResultCache.VerifyLoader loader = () -> {
+            VerifyResponse response = countingLoader(loads, inOneYear()).load();
+            response.setCrlNextUpdate(new Date(System.currentTimeMillis() + 150));
+            return response;
+        };
+
+        cache.get(SIGNATURE_BYTES, new VerifyOptions(), loader);
+        cache.get(SIGNATURE_BYTES, new VerifyOptions(), loader);
+        assertEquals(1, loads.get(), "Antes da próxima atualização o resultado deve ser reaproveitado");
+
+        Thread.sleep(200);
+
+        cache.get(SIGNATURE_BYTES, new VerifyOptions(), loader);
+        assertEquals(2, loads.get(), "Após a próxima atualização da LCR o arquivo deve ser verificado novamente");
+    }
+
+    @Test
+    @DisplayName("Não deve armazenar erros nem respostas com conteúdo original grande")
+    void testDoesNotCacheErrorsOrLargeResponses() throws Exception {
+        VerifyResultCache cache = new VerifyResultCache(true, 10, 300, 4);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThrows(VerifyValidationException.class, () -> cache.get(SIGNATURE_BYTES, new VerifyOptions(), () -> {
+            loads.incrementAndGet();
+            throw new InvalidSignatureFileException("Não foi possível carregar arquivo de assinatura.");
+        }));
+
+        cache.get(SIGNATURE_BYTES, new VerifyOptions(), countingLoader(loads, inOneYear()));
+        cache.get(SIGNATURE_BYTES, new VerifyOptions(), countingLoader(loads, inOneYear()));
+
+        assertEquals(3, loads.get());
+        assertEquals(0, cache.getStats().size());
+    }
+}
@@ -1,12 +1,23 @@
 package com.arthurwinck.assinador.service;
 
+import com.arthurwinck.assinador.dto.SignerResult;
 import com.arthurwinck.assinador.dto.SigningInfo;
+import com.arthurwinck.assinador.dto.VerifyOptions;
 import com.arthurwinck.assinador.dto.VerifyResponse;
 import com.arthurwinck.assinador.exception.InvalidSignatureFileException;
 import com.arthurwinck.assinador.exception.VerifyValidationException;
+import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaCertStore;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cms.CMSProcessableByteArray;
 import org.bouncycastle.cms.CMSSignedData;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.cms.jcajce.JcaSignerInfoGeneratorBuilder;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.DigestCalculatorProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -17,11 +28,17 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.HttpStatus;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
 import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.security.Security;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HexFormat;
 import java.util.List;
 
 import static com.arthurwinck.assinador.service.SigningService.CERT_KEY_FILE_FORMAT;
@@ -148,4 +165,223 @@ class VerifyServiceIntegrationTest {
         assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO, verifyResponse.getStatus(),
                 "Assinatura codificada em Base64 deve ser válida");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Deve verificar em streaming uma assinatura DER sem devolver o conteúdo original")
+    void testVerifyStreamWithoutOriginalData() throws Exception {
+        CMSSignedData signedData = signingService.sign("Documento para verificação em streaming", testSigningInfo);
+
+        VerifyResponse verifyResponse = verifyService.verify(
+                new ByteArrayInputStream(signedData.getEncoded()), VerifyOptions.of(false, 0));
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO, verifyResponse.getStatus());
+        assertNull(verifyResponse.getOriginalData(), "Conteúdo original não deve ser devolvido");
+        assertNotNull(verifyResponse.getCNSignerName());
+        assertEquals(verifyService.verify(signedData.getEncoded()).getEncapContentInfoHash(),
+                verifyResponse.getEncapContentInfoHash());
+    }
+
+    @Test
+    @DisplayName("Deve verificar em streaming uma assinatura Base64 limitando o conteúdo original")
+    void testVerifyStreamBase64WithTruncatedOriginalData() throws Exception {
+        byte[] content = new byte[64 * 1024];
+        new java.util.Random(42).nextBytes(content);
+
+        CMSSignedData signedData = signingService.sign(content, testSigningInfo);
+        byte[] base64EncodedSignature = java.util.Base64.getMimeEncoder().encode(signedData.getEncoded());
+
+        VerifyResponse verifyResponse = verifyService.verify(
+                new ByteArrayInputStream(base64EncodedSignature), VerifyOptions.of(true, 16));
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO, verifyResponse.getStatus());
+        assertEquals(HexFormat.of().formatHex(content, 0, 16), verifyResponse.getOriginalData());
+        assertEquals(Boolean.TRUE, verifyResponse.getOriginalDataTruncated());
+    }
+
+    @Test
+    @DisplayName("Deve devolver o conteúdo original completo quando não houver limite")
+    void testVerifyStreamWithFullOriginalData() throws Exception {
+        String testContent = "Documento curto";
+        CMSSignedData signedData = signingService.sign(testContent, testSigningInfo);
+
+        VerifyResponse verifyResponse = verifyService.verify(
+                new ByteArrayInputStream(signedData.getEncoded()), VerifyOptions.of(true, 0));
+
+        assertEquals(HexFormat.of().formatHex(testContent.getBytes()), verifyResponse.getOriginalData());
+        assertNull(verifyResponse.getOriginalDataTruncated());
+    }
+
+    @Test
+    @DisplayName("Deve retornar erro de arquivo inválido em streaming para dados corrompidos")
+    void testVerifyStreamInvalidSignature() {
+        byte[] corruptedData = "dados-corrompidos-que-não-são-cms".getBytes();
+
+        VerifyValidationException exception = assertThrows(VerifyValidationException.class, () ->
+                verifyService.verify(new ByteArrayInputStream(corruptedData), VerifyOptions.of(false, 0)));
+
+        assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+        assertEquals(VerifyValidationException.ErrorType.INVALID_FILE_EXCEPTION.getMessage(), exception.getMessage());
+    }
+
+    @Test
+    @DisplayName("Deve verificar assinatura detached a partir do hash do documento")
+    void testVerifyDigest() throws Exception {
+        byte[] content = "Documento verificado somente pelo hash".getBytes();
+        HashService hashService = new HashService();
+
+        testSigningInfo.setSigningAttached(false);
+        byte[] detachedSignature = signingService.sign(content, testSigningInfo).getEncoded();
+
+        VerifyResponse validResponse = verifyService.verifyDigest(detachedSignature,
+                hashService.generateHexEncodedHash(content, HashService.HashAlgorithm.SHA512), HashService.HashAlgorithm.SHA512);
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO, validResponse.getStatus());
+        assertNull(validResponse.getOriginalData());
+        assertEquals(hashService.generateHexEncodedHash(content, HashService.HashAlgorithm.SHA512), validResponse.getEncapContentInfoHash());
+
+        // Hash de outro documento não pode validar a assinatura
+        VerifyResponse invalidResponse = verifyService.verifyDigest(detachedSignature,
+                hashService.generateHexEncodedHash("outro documento", HashService.HashAlgorithm.SHA512), HashService.HashAlgorithm.SHA512);
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.INVALIDO, invalidResponse.getStatus());
+
+        // Opções da requisição valem também para a assinatura detached (sem âncoras configuradas a cadeia é inválida)
+        VerifyResponse withChain = verifyService.verifyDigest(detachedSignature,
+                hashService.generateHexEncodedHash(content, HashService.HashAlgorithm.SHA512), HashService.HashAlgorithm.SHA512,
+                VerifyOptions.of(false, 0, VerifyOptions.VerifyPolicy.ALL, true));
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.INVALIDO, withChain.getStatus());
+        assertEquals(Boolean.FALSE, withChain.getSigners().get(0).getChainValid());
+    }
+
+    @Test
+    @DisplayName("Deve devolver o mesmo resultado para um arquivo reenviado")
+    void testVerifyResubmittedSignatureUsesCachedResult() throws Exception {
+        byte[] signedBytes = signingService.sign("Documento reenviado", testSigningInfo).getEncoded();
+
+        VerifyResponse first = verifyService.verify(signedBytes);
+        VerifyResponse second = verifyService.verify(signedBytes.clone());
+
+        assertNotSame(first, second);
+        assertEquals(first.getStatus(), second.getStatus());
+        assertEquals(first.getCNSignerName(), second.getCNSignerName());
+        assertEquals(first.getEncapContentInfoHash(), second.getEncapContentInfoHash());
+        assertEquals(testJavaCertificate.getNotAfter(), second.getCertificatesNotAfter());
+    }
+
+    // Documento co-assinado: o mesmo certificado de teste assina várias vezes e, opcionalmente, um assinante
+    // cujo certificado não foi incluído no documento (não pode ser verificado)
+    private byte[] signWithMultipleSigners(int validSigners, boolean withUnknownSigner) throws Exception {
+        CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
+        DigestCalculatorProvider digestCalculatorProvider = new JcaDigestCalculatorProviderBuilder().build();
+
+        for (int i = 0; i < validSigners; i++) {
+            generator.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(digestCalculatorProvider)
+                    .build(new JcaContentSignerBuilder("SHA256WITHRSA").build(testPrivateKey), testJavaCertificate));
+        }
+
+        if (withUnknownSigner) {
+            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("EC");
+            keyPairGenerator.initialize(256);
+            KeyPair keyPair = keyPairGenerator.generateKeyPair();
+
+            X500Name name = new X500Name("CN=Assinante desconhecido");
+            Date notBefore = new Date();
+            X509CertificateHolder unknownCertificate = new JcaX509v3CertificateBuilder(name, BigInteger.ONE, notBefore,
+                    new Date(notBefore.getTime() + 86_400_000L), name, keyPair.getPublic())
+                    .build(new JcaContentSignerBuilder("SHA256WITHECDSA").build(keyPair.getPrivate()));
+
+            generator.addSignerInfoGenerator(new JcaSignerInfoGeneratorBuilder(digestCalculatorProvider)
+                    .build(new JcaContentSignerBuilder("SHA256WITHECDSA").build(keyPair.getPrivate()), unknownCertificate));
+        }
+
+        generator.addCertificates(new JcaCertStore(List.of(testJavaCertificate)));
+
+        return generator.generate(new CMSProcessableByteArray("Contrato co-assinado".getBytes()), true).getEncoded();
+    }
+
+    @Test
+    @DisplayName("Deve verificar todos os assinantes de um documento co-assinado")
+    void testVerifyMultipleSigners() throws Exception {
+        VerifyResponse verifyResponse = verifyService.verify(signWithMultipleSigners(4, false), new VerifyOptions());
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO, verifyResponse.getStatus());
+        assertEquals(4, verifyResponse.getSigners().size());
+
+        for (int i = 0; i < 4; i++) {
+            SignerResult signerResult = verifyResponse.getSigners().get(i);
+
+            assertEquals(i, signerResult.getIndex(), "Resultados devem seguir a ordem dos assinantes no documento");
+            assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO, signerResult.getStatus());
+            assertNotNull(signerResult.getSubject());
+            assertNotNull(signerResult.getIssuer());
+            assertNotNull(signerResult.getSigningTime());
+            assertNotNull(signerResult.getEncapContentInfoHash());
+            assertNull(signerResult.getError());
+        }
+
+        // Campos anteriores continuam com os valores de todos os assinantes
+        String subject = verifyResponse.getSigners().get(0).getSubject();
+        assertEquals((subject + ",").repeat(4), verifyResponse.getCNSignerName());
+        assertEquals(4 * verifyResponse.getSigners().get(0).getEncapContentInfoHash().length(), verifyResponse.getEncapContentInfoHash().length());
+    }
+
+    @Test
+    @DisplayName("Com a política ALL todos os assinantes devem ser verificados mesmo após um inválido")
+    void testVerifyAllSignersPolicy() throws Exception {
+        byte[] signedBytes = signWithMultipleSigners(3, true);
+
+        VerifyResponse verifyResponse = verifyService.verify(signedBytes,
+                VerifyOptions.of(false, 0, VerifyOptions.VerifyPolicy.ALL));
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.INVALIDO, verifyResponse.getStatus());
+        assertEquals(4, verifyResponse.getSigners().size());
+        assertEquals(3, verifyResponse.getSigners().stream()
+                .filter(signerResult -> signerResult.getStatus() == VerifyResponse.VerifyResponseStatusEnum.VALIDO).count());
+
+        // Ordem dos assinantes é a do SET codificado no documento, não a ordem em que foram adicionados
+        SignerResult unknownSigner = verifyResponse.getSigners().stream()
+                .filter(signerResult -> signerResult.getStatus() == VerifyResponse.VerifyResponseStatusEnum.INVALIDO)
+                .findFirst().orElseThrow();
+        assertNull(unknownSigner.getSubject());
+        assertNotNull(unknownSigner.getError());
+        assertNull(verifyResponse.getCNSignerName(), "Documento inválido não deve preencher os campos anteriores");
+    }
+
+    @Test
+    @DisplayName("Com a política FAIL_FAST o documento deve ser inválido ao primeiro assinante inválido")
+    void testVerifyFailFastPolicy() throws Exception {
+        byte[] signedBytes = signWithMultipleSigners(3, true);
+
+        VerifyResponse verifyResponse = verifyService.verify(signedBytes,
+                VerifyOptions.of(false, 0, VerifyOptions.VerifyPolicy.FAIL_FAST));
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.INVALIDO, verifyResponse.getStatus());
+        assertEquals(4, verifyResponse.getSigners().size());
+        assertEquals(1, verifyResponse.getSigners().stream()
+                .filter(signerResult -> signerResult.getStatus() == VerifyResponse.VerifyResponseStatusEnum.INVALIDO).count());
+
+        // Assinantes não verificados ficam sem status, mas sempre com o motivo
+        verifyResponse.getSigners().stream()
+                .filter(signerResult -> signerResult.getStatus() == null)
+                .forEach(signerResult -> assertNotNull(signerResult.getError()));
+    }
+
+    @Test
+    @DisplayName("Sem âncoras de confiança configuradas a validação da cadeia deve invalidar o documento")
+    void testVerifyWithChainValidationWithoutTrustAnchors() throws Exception {
+        byte[] signedBytes = signingService.sign("Documento com cadeia", testSigningInfo).getEncoded();
+
+        VerifyResponse withoutChain = verifyService.verify(signedBytes,
+                VerifyOptions.of(false, 0, VerifyOptions.VerifyPolicy.FAIL_FAST, false));
+        VerifyResponse withChain = verifyService.verify(signedBytes,
+                VerifyOptions.of(false, 0, VerifyOptions.VerifyPolicy.FAIL_FAST, true));
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.VALIDO, withoutChain.getStatus());
+        assertNull(withoutChain.getSigners().get(0).getChainValid());
+
+        assertEquals(VerifyResponse.VerifyResponseStatusEnum.INVALIDO, withChain.getStatus());
+        assertEquals(Boolean.FALSE, withChain.getSigners().get(0).getChainValid());
+        assertNotNull(withChain.getSigners().get(0).getError());
+    }
+}